@@ -0,0 +1,119 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link ArticleStore} queries against an in-memory SQLite database on the device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticleStoreTest {
+
+    private ArticleDbHelper mDbHelper;
+    private ArticleStore mStore;
+
+    @Before
+    public void setUp() {
+        mDbHelper = new ArticleDbHelper(InstrumentationRegistry.getTargetContext(), null);
+        mStore = new ArticleStore(mDbHelper);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+    }
+
+    private static Article article(String url, String sectionId, long date, String author) {
+        return new Article("Title " + url, "Section " + sectionId, sectionId, new Date(date), author, url);
+    }
+
+    @Test
+    public void queryNewest_returnsNewestFirst() {
+        mStore.upsert(Arrays.asList(
+                article("a", "politics", 1000, "Ann"),
+                article("b", "sport", 3000, "Bob"),
+                article("c", "politics", 2000, "Ann")));
+
+        List<Article> newest = mStore.queryNewest(2);
+
+        assertEquals(2, newest.size());
+        assertEquals("b", newest.get(0).getUrl());
+        assertEquals("c", newest.get(1).getUrl());
+    }
+
+    @Test
+    public void queryNewestInSection_filtersOnSectionId() {
+        mStore.upsert(Arrays.asList(
+                article("a", "politics", 1000, "Ann"),
+                article("b", "sport", 3000, "Bob"),
+                article("c", "politics", 2000, "Ann")));
+
+        List<Article> politics = mStore.queryNewestInSection("politics", 10);
+
+        assertEquals(Arrays.asList(article("c", "politics", 2000, "Ann"), article("a", "politics", 1000, "Ann")),
+                politics);
+        assertEquals("politics", politics.get(0).getSectionId());
+    }
+
+    @Test
+    public void queryNewestByAuthor_filtersOnAuthor() {
+        mStore.upsert(Arrays.asList(
+                article("a", "politics", 1000, "Ann"),
+                article("b", "sport", 3000, "Bob")));
+
+        List<Article> byBob = mStore.queryNewestByAuthor("Bob", 10);
+
+        assertEquals(1, byBob.size());
+        assertEquals("b", byBob.get(0).getUrl());
+    }
+
+    @Test
+    public void upsert_replacesTheRowWithTheSameUrl() {
+        mStore.upsert(Arrays.asList(article("a", "politics", 1000, "Ann")));
+        mStore.upsert(Arrays.asList(new Article("Updated", "Politics", "politics", new Date(1000), "Ann", "a")));
+
+        List<Article> newest = mStore.queryNewest(10);
+
+        assertEquals(1, newest.size());
+        assertEquals("Updated", newest.get(0).getArticle_title());
+    }
+
+    @Test
+    public void thumbnailUrl_isStored() {
+        mStore.upsert(Arrays.asList(new Article("T", "Politics", "politics", 1000, "Ann", "a", "https://t/a.jpg"),
+                article("b", "politics", 500, "Ann")));
+
+        List<Article> newest = mStore.queryNewest(10);
+
+        assertEquals("https://t/a.jpg", newest.get(0).getThumbnailUrl());
+        assertEquals(null, newest.get(1).getThumbnailUrl());
+    }
+
+    @Test
+    public void upsert_keepsOnlyTheNewestArticles() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < ArticleStore.MAX_ARTICLES + 10; i++) {
+            articles.add(article("url" + i, "politics", i, "Ann"));
+        }
+        mStore.upsert(articles);
+
+        List<Article> newest = mStore.queryNewest(ArticleStore.MAX_ARTICLES + 10);
+
+        assertEquals(ArticleStore.MAX_ARTICLES, newest.size());
+        assertEquals("url" + (ArticleStore.MAX_ARTICLES + 9), newest.get(0).getUrl());
+        assertTrue(newest.get(newest.size() - 1).getDate().getTime() >= 10);
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls a page of 50 articles through the feed screen, a few rows per frame like a fling,
+ * with the row texts laid out on the UI thread as they are bound (before) and laid out ahead
+ * by {@link ArticleTextLayouts} (after), and reports the time of the UI thread work of every
+ * frame and the frames over 16 ms.
+ *
+ * Every run shows titles of its own, so the text measured by one does not warm the font
+ * caches of the next.
+ *
+ * Run with: ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.benchmark=true
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 16)
+public class RowFrameBenchmark {
+
+    private static final String LOG_TAG = RowFrameBenchmark.class.getSimpleName();
+
+    private static final int PAGE_SIZE = 50;
+    /** Scrolls measured per mode, after one warming up the classes */
+    private static final int RUNS = 5;
+    /** Part of the height of the list scrolled every frame */
+    private static final int SCROLL_FRACTION = 3;
+    /** Time left to the layouts laid out ahead, as a page takes to load */
+    private static final long PREPARE_MILLIS = 1000;
+    private static final long FRAME_BUDGET_NANOS = 16666667;
+    private static final long SCROLL_TIMEOUT_SECONDS = 30;
+
+    private static final String[] WORDS = {"government", "minister", "announces", "review", "of",
+            "the", "controversial", "plans", "for", "climate", "policy", "after", "weeks", "of",
+            "pressure", "from", "campaigners", "and", "opposition", "parties", "in", "parliament",
+            "football", "manager", "says", "season", "internationally", "unprecedented", "economy"};
+
+    private Instrumentation mInstrumentation;
+    private Context mContext;
+    private HttpTransport mTransport;
+    private Activity mActivity;
+    private RecyclerView mList;
+    private final Random mRandom = new Random(42);
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mContext = InstrumentationRegistry.getTargetContext();
+        mTransport = QueryUtils.getTransport();
+        QueryUtils.setTransport(new HttpTransport() {
+            @Override
+            public Response get(String url, Map<String, String> headers) throws IOException {
+                throw new IOException("No network in the row benchmark");
+            }
+        });
+        Intent intent = new Intent(mContext, ArticleActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        mActivity = mInstrumentation.startActivitySync(intent);
+        mList = (RecyclerView) mActivity.findViewById(R.id.list);
+    }
+
+    @After
+    public void tearDown() {
+        if (mActivity != null) {
+            mActivity.finish();
+        }
+        if (mTransport != null) {
+            QueryUtils.setTransport(mTransport);
+        }
+    }
+
+    @Test
+    public void scrollPage_layoutOnBindVersusPrecomputed() throws InterruptedException {
+        long[][] results = new long[2][];
+        for (int mode = 0; mode < 2; mode++) {
+            boolean precompute = mode == 1;
+            List<Long> works = new ArrayList<>();
+            int slowFrames = 0;
+            for (int run = -1; run < RUNS; run++) {
+                long[] frames = scrollPage(precompute);
+                if (run >= 0) {
+                    for (long work : frames) {
+                        works.add(work);
+                        if (work > FRAME_BUDGET_NANOS) {
+                            slowFrames++;
+                        }
+                    }
+                }
+            }
+            long[] sorted = new long[works.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = works.get(i);
+            }
+            Arrays.sort(sorted);
+            results[mode] = new long[]{percentile(sorted, 0.50), percentile(sorted, 0.90),
+                    sorted[sorted.length - 1], slowFrames, sorted.length};
+        }
+
+        String report = String.format("layout on bind: %s, precomputed: %s",
+                format(results[0]), format(results[1]));
+        Log.i(LOG_TAG, report);
+        Bundle status = new Bundle();
+        status.putLong("bind_layout_p90_us", results[0][1] / 1000);
+        status.putLong("precomputed_p90_us", results[1][1] / 1000);
+        status.putString("row_frames", report);
+        mInstrumentation.sendStatus(0, status);
+    }
+
+    /**
+     * Shows a new page of articles from the top, then scrolls it to the end, and returns the
+     * time of the UI thread work of every frame: binding, measuring and laying out the rows
+     * scrolled in.
+     */
+    private long[] scrollPage(final boolean precompute) throws InterruptedException {
+        final List<Article> articles = newPage();
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ArticleAdapter adapter = new ArticleAdapter(new ArticleAdapter.OnArticleClickListener() {
+                    @Override
+                    public void onArticleClick(Article article) {
+                    }
+                }, precompute);
+                mList.setAdapter(adapter);
+                adapter.submitList(articles);
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+        SystemClock.sleep(PREPARE_MILLIS);
+
+        final List<Long> frames = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (!mList.canScrollVertically(1)) {
+                            done.countDown();
+                            return;
+                        }
+                        long start = System.nanoTime();
+                        mList.scrollBy(0, mList.getHeight() / SCROLL_FRACTION);
+                        frames.add(System.nanoTime() - start);
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                });
+            }
+        });
+        assertTrue(done.await(SCROLL_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        long[] result = new long[frames.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = frames.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a page of articles with titles of one to three lines never shown before.
+     */
+    private List<Article> newPage() {
+        List<Article> articles = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 6 + mRandom.nextInt(18);
+            for (int w = 0; w < words; w++) {
+                title.append(w == 0 ? "" : " ").append(WORDS[mRandom.nextInt(WORDS.length)]);
+            }
+            // A number of its own keeps the title out of the caches of the earlier runs
+            title.append(' ').append(mRandom.nextInt(1000000));
+            articles.add(new Article(title.toString(), "Politics", "politics", now - i * 60000L,
+                    "Author " + mRandom.nextInt(1000), "https://www.theguardian.com/rows/" + mRandom.nextLong(), null));
+        }
+        return articles;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (percentile * sorted.length))];
+    }
+
+    private static String format(long[] result) {
+        return String.format("p50=%.2f ms p90=%.2f ms max=%.2f ms, %d of %d frames over 16 ms",
+                result[0] / 1e6, result[1] / 1e6, result[2] / 1e6, result[3], result[4]);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Launches the feed activity repeatedly and reports its time to first frame and time to
+ * first article, from the launch intent, against a startup budget.
+ *
+ * The feed is served from the cache, as on a usual launch, and the network is replaced by
+ * a transport which always fails, so the results do not depend on it. The process is already
+ * running, so this measures the launch of the activity; "adb shell am start -W" gives the
+ * time of a cold start of the process on top of it.
+ *
+ * Run with: ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.benchmark=true
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final String LOG_TAG = StartupBenchmark.class.getSimpleName();
+
+    /** Launches measured, after one launch warming up the classes and the cache */
+    private static final int RUNS = 10;
+
+    /** Median times over which the startup is reported as a regression */
+    private static final long FIRST_FRAME_BUDGET_MILLIS = 500;
+    private static final long FIRST_ARTICLE_BUDGET_MILLIS = 700;
+
+    private static final long EVENT_TIMEOUT_MILLIS = 10000;
+
+    private Instrumentation mInstrumentation;
+    private Context mContext;
+    private HttpTransport mTransport;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mContext = InstrumentationRegistry.getTargetContext();
+        mTransport = QueryUtils.getTransport();
+        QueryUtils.setTransport(new HttpTransport() {
+            @Override
+            public Response get(String url, Map<String, String> headers) throws IOException {
+                throw new IOException("No network in the startup benchmark");
+            }
+        });
+
+        // A fresh list for every feed URL of the current settings
+        List<Article> articles = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 20; i++) {
+            articles.add(new Article("Startup benchmark article " + i, "Politics", "politics",
+                    now - i * 60000L, "Author " + i, "https://www.theguardian.com/startup/" + i, null));
+        }
+        for (String url : ArticleQuery.buildFeedUrls(mContext)) {
+            ArticleCache.getInstance(mContext).put(url, articles);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (mTransport != null) {
+            QueryUtils.setTransport(mTransport);
+        }
+    }
+
+    @Test
+    public void launch_withCachedFeed() throws InterruptedException {
+        long[] firstFrame = new long[RUNS];
+        long[] firstArticle = new long[RUNS];
+        for (int run = -1; run < RUNS; run++) {
+            StartupTrace.reset();
+            Intent intent = new Intent(mContext, ArticleActivity.class)
+                    .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+            long launchedAt = System.nanoTime();
+            Activity activity = mInstrumentation.startActivitySync(intent);
+            assertTrue(StartupTrace.await(StartupTrace.EVENT_FIRST_FRAME, EVENT_TIMEOUT_MILLIS));
+            assertTrue(StartupTrace.await(StartupTrace.EVENT_FIRST_ARTICLE, EVENT_TIMEOUT_MILLIS));
+            if (run >= 0) {
+                firstFrame[run] = (StartupTrace.getTime(StartupTrace.EVENT_FIRST_FRAME) - launchedAt) / 1000000;
+                firstArticle[run] = (StartupTrace.getTime(StartupTrace.EVENT_FIRST_ARTICLE) - launchedAt) / 1000000;
+            }
+            activity.finish();
+            mInstrumentation.waitForIdleSync();
+        }
+
+        long firstFrameMedian = median(firstFrame);
+        long firstArticleMedian = median(firstArticle);
+        String report = String.format("first frame p50=%d ms max=%d ms, first article p50=%d ms max=%d ms",
+                firstFrameMedian, max(firstFrame), firstArticleMedian, max(firstArticle));
+        Log.i(LOG_TAG, report);
+        Bundle results = new Bundle();
+        results.putLong("first_frame_p50_ms", firstFrameMedian);
+        results.putLong("first_article_p50_ms", firstArticleMedian);
+        results.putString("startup", report);
+        mInstrumentation.sendStatus(0, results);
+
+        assertTrue("Time to first frame over budget: " + report, firstFrameMedian <= FIRST_FRAME_BUDGET_MILLIS);
+        assertTrue("Time to first article over budget: " + report, firstArticleMedian <= FIRST_ARTICLE_BUDGET_MILLIS);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long max(long[] values) {
+        long max = 0;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+}
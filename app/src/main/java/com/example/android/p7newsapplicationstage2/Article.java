@@ -1,31 +1,74 @@
 package com.example.android.p7newsapplicationstage2;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 
 /**
  * An {@link Article} object contains information related to a single news.
+ *
+ * Feeds keep thousands of them in memory, so the strings repeated across articles are
+ * shared through {@link ArticleStrings} and the publication time is a primitive.
  */
 public class Article {
+
+    /**
+     * Publication time of an article without a date
+     */
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * Newest first, the articles without a date last
+     */
+    static final Comparator<Article> NEWEST_FIRST = new Comparator<Article>() {
+        @Override
+        public int compare(Article a, Article b) {
+            // NO_DATE is the smallest time, so it sorts last.
+            return Long.compare(b.getPublicationTime(), a.getPublicationTime());
+        }
+    };
+
+    private static final ArticleTag[] NO_TAGS = new ArticleTag[0];
+
     /**
      * Article title for news
      */
-    private String mTitle;
+    private final String mTitle;
     /**
      * Article section for the news
      */
-    private String mSection_Article;
+    private final String mSection_Article;
+    /**
+     * Article section ID for the news, e.g. "politics", or null if unknown
+     */
+    private final String mSectionId;
     /**
-     * Date of the article news
+     * Publication time of the article news in epoch millis, or {@link #NO_DATE}
      */
-    private Date mPublicationDate;
+    private final long mPublicationTime;
     /**
      * Author of the article news
      */
-    private String mNameAuthor;
+    private final String mNameAuthor;
     /**
      * Website URL of the article news
      */
-    private String mUrl;
+    private final String mUrl;
+    /**
+     * URL of the thumbnail of the article news, or null if it has none
+     */
+    private final String mThumbnailUrl;
+    /**
+     * Contributor and keyword tags of the article news, in the order of the API
+     */
+    private final ArticleTag[] mTags;
+    /**
+     * Date and time of the article news as shown in the list, formatted once at parse time
+     */
+    private final String mDisplayDate;
+    private final String mDisplayTime;
 
     /**
      * Constructs a new {@link Article} object
@@ -37,11 +80,64 @@ public class Article {
      * @param Url            is the url of the article news
      */
     Article(String articleTitle, String articleSection, Date arcticleDate, String arcticleAuthor, String Url) {
+        this(articleTitle, articleSection, null, arcticleDate, arcticleAuthor, Url);
+    }
+
+    /**
+     * Constructs a new {@link Article} object with its section ID
+     *
+     * @param articleSectionId is the ID of the Section of the article news, e.g. "politics"
+     */
+    Article(String articleTitle, String articleSection, String articleSectionId, Date arcticleDate,
+            String arcticleAuthor, String Url) {
+        this(articleTitle, articleSection, articleSectionId,
+                arcticleDate == null ? NO_DATE : arcticleDate.getTime(), arcticleAuthor, Url);
+    }
+
+    /**
+     * Constructs a new {@link Article} object from its publication time
+     *
+     * @param publicationTime is the publication time in epoch millis, or {@link #NO_DATE}
+     */
+    Article(String articleTitle, String articleSection, String articleSectionId, long publicationTime,
+            String arcticleAuthor, String Url) {
+        this(articleTitle, articleSection, articleSectionId, publicationTime, arcticleAuthor, Url, null);
+    }
+
+    /**
+     * Constructs a new {@link Article} object with its thumbnail
+     *
+     * @param thumbnailUrl is the URL of the thumbnail image, or null if it has none
+     */
+    Article(String articleTitle, String articleSection, String articleSectionId, long publicationTime,
+            String arcticleAuthor, String Url, String thumbnailUrl) {
+        this(articleTitle, articleSection, articleSectionId, publicationTime, arcticleAuthor, Url, thumbnailUrl, null);
+    }
+
+    /**
+     * Constructs a new {@link Article} object with its tags
+     *
+     * @param tags is the list of the contributor and keyword tags, or null if it has none
+     */
+    Article(String articleTitle, String articleSection, String articleSectionId, long publicationTime,
+            String arcticleAuthor, String Url, String thumbnailUrl, List<ArticleTag> tags) {
         mTitle = articleTitle;
-        mSection_Article = articleSection;
-        mPublicationDate = arcticleDate;
-        mNameAuthor = arcticleAuthor;
+        mSection_Article = ArticleStrings.intern(articleSection);
+        mSectionId = ArticleStrings.intern(articleSectionId);
+        mPublicationTime = publicationTime;
+        mNameAuthor = ArticleStrings.intern(arcticleAuthor);
         mUrl = Url;
+        mThumbnailUrl = thumbnailUrl;
+        mTags = tags == null || tags.isEmpty() ? NO_TAGS : tags.toArray(new ArticleTag[tags.size()]);
+        // Articles published the same day or at the same minute share their strings, formatted
+        // once per minute.
+        if (publicationTime == NO_DATE) {
+            mDisplayDate = ArticleStrings.intern(",");
+            mDisplayTime = ArticleStrings.intern("");
+        } else {
+            mDisplayDate = ArticleStrings.displayDate(publicationTime);
+            mDisplayTime = ArticleStrings.displayTime(publicationTime);
+        }
     }
 
     /**
@@ -59,10 +155,24 @@ public class Article {
     }
 
     /**
-     * Returns the date of the article news
+     * Returns the article section ID of the article news, or null if unknown
+     */
+    public String getSectionId() {
+        return mSectionId;
+    }
+
+    /**
+     * Returns a new {@link Date} of the article news, or null if it has none
      */
     public Date getDate() {
-        return mPublicationDate;
+        return mPublicationTime == NO_DATE ? null : new Date(mPublicationTime);
+    }
+
+    /**
+     * Returns the publication time of the article news in epoch millis, or {@link #NO_DATE}
+     */
+    public long getPublicationTime() {
+        return mPublicationTime;
     }
 
     /**
@@ -79,4 +189,74 @@ public class Article {
         return mUrl;
     }
 
+    /**
+     * Returns the url of the thumbnail of the article news, or null if it has none
+     */
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    /**
+     * Returns the contributor and keyword tags of the article news, in the order of the API
+     */
+    public List<ArticleTag> getTags() {
+        return Collections.unmodifiableList(Arrays.asList(mTags));
+    }
+
+    /**
+     * Returns a stable ID for the article, derived from its website url (64-bit FNV-1a hash)
+     */
+    public long getId() {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < mUrl.length(); i++) {
+            hash ^= mUrl.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Two articles are equal when everything shown in the list is the same
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Article)) {
+            return false;
+        }
+        Article other = (Article) o;
+        return equal(mUrl, other.mUrl)
+                && equal(mTitle, other.mTitle)
+                && equal(mSection_Article, other.mSection_Article)
+                && mPublicationTime == other.mPublicationTime
+                && equal(mNameAuthor, other.mNameAuthor)
+                && equal(mThumbnailUrl, other.mThumbnailUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(new Object[]{mUrl, mTitle, mSection_Article, mNameAuthor, mThumbnailUrl});
+        return 31 * result + (int) (mPublicationTime ^ (mPublicationTime >>> 32));
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Returns the date of the article news as shown in the list, e.g. "May 29, 2018,"
+     */
+    public String getDisplayDate() {
+        return mDisplayDate;
+    }
+
+    /**
+     * Returns the time of the article news as shown in the list, e.g. "2:40 PM"
+     */
+    public String getDisplayTime() {
+        return mDisplayTime;
+    }
+
 }
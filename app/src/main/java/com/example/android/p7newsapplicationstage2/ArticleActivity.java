@@ -1,196 +1,578 @@
 package com.example.android.p7newsapplicationstage2;
 
-import android.app.LoaderManager;
 import android.app.LoaderManager.LoaderCallbacks;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
 import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
-public class ArticleActivity extends AppCompatActivity implements LoaderCallbacks<List<Article>>,
+public class ArticleActivity extends AppCompatActivity implements LoaderCallbacks<ArticlePage>,
         SharedPreferences.OnSharedPreferenceChangeListener{
     private static final String LOG_TAG = ArticleActivity.class.getName();
 
-    /** URL for newsfeed data from the Guardian JSON dataset */
-    private static final String GUARDIAN_REQUEST_URL =
-            "http://content.guardianapis.com/search?order-by=newest&show-tags=contributor&page-size=15&q=politics&api-key=f1dfc1ea-9071-49cc-b586-005ed71ac92c";
-
     /**
      * Constant value for the article loader ID. We can choose any integer.
      * This really only comes into play if you're using multiple loaders.
      */
     private static final int JSON_ARTICLE_FEED_LOADER_ID = 1;
 
+    /** Loader ID for the following pages, appended while the user scrolls */
+    private static final int JSON_ARTICLE_NEXT_PAGE_LOADER_ID = 2;
+
+    /** Bundle key of the page requested by the next page loader */
+    private static final String ARG_PAGE = "page";
+
+    /** Maximum number of results of the offline search */
+    private static final int SEARCH_RESULT_LIMIT = 50;
+
+    /** Delay after the last query preference change before the feed is restarted */
+    private static final long PREFERENCE_DEBOUNCE_MILLIS = 300;
+
     /** Adapter for the list of news */
     private ArticleAdapter JSONnewsAdapter;
 
+    /** Articles currently submitted to the adapter, replaced by a new list on every change */
+    private List<Article> mArticles = new ArrayList<>();
+
+    /** Layout manager of the list, for the scroll position */
+    private LinearLayoutManager mLayoutManager;
+
     /** TextView that is displayed when the list is empty */
     private TextView mEmptyStateTextView;
 
+    /** True when a network connection was available, checked once after the first frame */
+    private boolean mIsConnected;
+    private boolean mConnectivityChecked;
+
+    /** Feed query read off the main thread at startup, used by the next loader created */
+    private ArticleQuery.Snapshot mQuery;
+
+    /** True once the activity is destroyed, the query read in the background is dropped */
+    private boolean mDestroyed;
+
+    /** True when the list shows the merged feed of the followed sections */
+    private boolean mMultiSection;
+
+    /** True while the list only shows the first articles of the first page */
+    private boolean mFirstPagePartial;
+
+    /** Query of the offline search, null when the feed is shown. Read by the search thread */
+    private volatile String mSearchQuery;
+
+    /** Posts the debounced restart of the feed */
+    private final Handler mHandler = new Handler();
+
+    /** True while a restart of the feed is posted */
+    private boolean mRestartPending;
+
+    /** Restarts the feed once the query preferences stopped changing */
+    private final Runnable mRestartFeed = new Runnable() {
+        @Override
+        public void run() {
+            restartFeed();
+        }
+    };
+
+    /** Loader of the first page of the list shown, its next deliveries revalidate that page */
+    private Loader<ArticlePage> mShownFeedLoader;
+
+    /** Paging state of the list */
+    private final ArticlePager mPager = new ArticlePager();
+
+    /** Requests the next page when the end of the list is close */
+    private final Runnable mLoadMore = new Runnable() {
+        @Override
+        public void run() {
+            loadMoreIfNeeded();
+        }
+    };
+
+    /** Callbacks of the loader appending the following pages to the list */
+    private final LoaderCallbacks<ArticlePage> mNextPageCallbacks = new LoaderCallbacks<ArticlePage>() {
+        @Override
+        public Loader<ArticlePage> onCreateLoader(int id, Bundle bundle) {
+            return new ArticlePageLoader(ArticleActivity.this,
+                    ArticleQuery.buildRequestUrl(ArticleActivity.this,
+                            String.valueOf(mPager.getPageSize()), bundle.getInt(ARG_PAGE),
+                            ArticleQuery.getTopicCategory(ArticleActivity.this)));
+        }
+
+        @Override
+        public void onLoadFinished(Loader<ArticlePage> loader, ArticlePage page) {
+            // Append only the articles not shown yet, the list and its scroll position are kept.
+            List<Article> newArticles = mPager.onPageLoaded(page);
+            if (!newArticles.isEmpty()) {
+                List<Article> articles = new ArrayList<>(mArticles);
+                articles.addAll(newArticles);
+                showArticles(articles);
+            } else if (page != null && page.isSuccessful()) {
+                // The list did not grow, so no scroll will ask for the page after this one.
+                // A failed page is not requested again right away, but on the next scroll.
+                mHandler.post(mLoadMore);
+            }
+        }
+
+        @Override
+        public void onLoaderReset(Loader<ArticlePage> loader) {
+            mPager.onPageFailed();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTrace.mark(StartupTrace.EVENT_CREATE);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.articles_activity);
 
-        // Find a reference to the {@link ListView} in the layout
-        ListView newsfeedListView = (ListView) findViewById(R.id.list);
+        // Record the timings and counters of the feed in debug builds only
+        FeedMetrics.setEnabled(BuildConfig.DEBUG);
+
+        // Find a reference to the {@link RecyclerView} in the layout
+        RecyclerView newsfeedListView = (RecyclerView) findViewById(R.id.list);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        newsfeedListView.setLayoutManager(layoutManager);
+        mLayoutManager = layoutManager;
 
         mEmptyStateTextView = (TextView) findViewById(R.id.empty_view);
-        newsfeedListView.setEmptyView(mEmptyStateTextView);
 
-        // Create a new adapter that takes an empty list of news as input
-        JSONnewsAdapter = new ArticleAdapter(this, new ArrayList<Article>());
+        // Create a new adapter, with a click listener which opens the selected news in the
+        // reader, instantly when its text has been prefetched.
+        JSONnewsAdapter = new ArticleAdapter(new ArticleAdapter.OnArticleClickListener() {
+            @Override
+            public void onArticleClick(Article currentArticle) {
+                startActivity(ReaderActivity.newIntent(ArticleActivity.this, currentArticle));
+            }
+        });
 
-        // Set the adapter on the {@link ListView}
+        // Set the adapter on the {@link RecyclerView}
         // so the list can be populated in the user interface
         newsfeedListView.setAdapter(JSONnewsAdapter);
 
+        // Prefetch the next page when the user scrolls close to the end of the list
+        newsfeedListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                loadMoreIfNeeded();
+            }
+
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                // Prefetch the texts of the articles on screen once the list settles
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    ArticleBodies.getInstance(ArticleActivity.this).prefetch(JSONnewsAdapter.getArticles(
+                            layoutManager.findFirstVisibleItemPosition(), layoutManager.findLastVisibleItemPosition()));
+                }
+            }
+        });
 
-        // Obtain a reference to the SharedPreferences file for this app
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        // And register to be notified of preference changes
-        // So we know when the user has adjusted the query settings
-        prefs.registerOnSharedPreferenceChangeListener(this);
+        // Only the layout is needed for the first frame, which shows the skeleton rows until
+        // the loader delivers the cached ones. Everything else waits for that frame.
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Posted from the traversal, it runs once the frame has been drawn.
+                decorView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        StartupTrace.mark(StartupTrace.EVENT_FIRST_FRAME);
+                        onFirstFrame();
+                    }
+                });
+                return true;
+            }
+        });
 
+        if (getLoaderManager().getLoader(JSON_ARTICLE_FEED_LOADER_ID) != null) {
+            // Recreated, e.g. rotated: the loader kept its list and delivers it right away.
+            getLoaderManager().initLoader(JSON_ARTICLE_FEED_LOADER_ID, null, this);
+        } else {
+            startFeedLoader();
+        }
+    }
 
-        // Set an item click listener on the ListView, which sends an intent to a web browser
-        // to open a website with more information about the selected news.
-        newsfeedListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+    /**
+     * Read the feed query off the main thread, the preference files being loaded from disk on
+     * first use, then start the loader with it. The loader serves the cached articles first,
+     * even without a network connection.
+     */
+    private void startFeedLoader() {
+        final Context appContext = getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                // Find the current news that was clicked on
-                Article currentArticle = JSONnewsAdapter.getItem(position);
-                Uri newsfeedUrl = Uri.parse(currentArticle.getUrl());
-                // View the news URI
-                Intent websiteIntent = new Intent(Intent.ACTION_VIEW, newsfeedUrl);
-                startActivity(websiteIntent);
+            public void run() {
+                final ArticleQuery.Snapshot query = ArticleQuery.readSnapshot(appContext);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mDestroyed) {
+                            return;
+                        }
+                        mQuery = query;
+                        getLoaderManager().initLoader(JSON_ARTICLE_FEED_LOADER_ID, null, ArticleActivity.this);
+                    }
+                });
             }
         });
+    }
+
+    /**
+     * The work deferred until the first frame has been drawn.
+     */
+    private void onFirstFrame() {
+        if (mDestroyed) {
+            return;
+        }
+        // Register to be notified of preference changes, so we know when the user has adjusted
+        // the query settings
+        PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(this);
 
-        // Get a reference to the ConnectivityManager to check state of network connectivity
-        ConnectivityManager connMgr = (ConnectivityManager)
-                getSystemService(Context.CONNECTIVITY_SERVICE);
+        // Checked ahead of the first empty state, unless a load already needed it
+        isConnected();
 
-        // Get details on the currently active default data network
-        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        // Keep the feed warm in the background, so the next launch renders from the cache.
+        // Scheduling is a call to the system, it runs off the main thread.
+        final Context appContext = getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                FeedSyncJobService.schedule(appContext);
+            }
+        });
+    }
 
-        // If there is a network connection, fetch data
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+    /**
+     * Returns true when a network connection was available at the first check.
+     */
+    private boolean isConnected() {
+        if (!mConnectivityChecked) {
+            mConnectivityChecked = true;
+            // Get details on the currently active default data network
+            ConnectivityManager connMgr = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+            mIsConnected = networkInfo != null && networkInfo.isConnected();
+        }
+        return mIsConnected;
+    }
 
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(JSON_ARTICLE_FEED_LOADER_ID, null, this);
-        } else {
-            // Otherwise, display error
-            // First, hide loading indicator so error message will be visible
-            View loadingIndicator = findViewById(R.id.loading_indicator);
-            loadingIndicator.setVisibility(View.GONE);
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Back from the settings or the reader, the loader delivers its list again and only
+        // reloads it when stale, or when the query changed. The first page size following
+        // the network does not count.
+        // A change of the query settings restarts the loader instead.
+        final Loader<ArticlePage> loader = getLoaderManager().getLoader(JSON_ARTICLE_FEED_LOADER_ID);
+        if (!mRestartPending && loader instanceof ArticleLoader) {
+            // The URL reads the preferences and the network type, off the main thread.
+            final Context appContext = getApplicationContext();
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final String url = ArticleQuery.buildFirstPageUrl(appContext);
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mDestroyed || mRestartPending) {
+                                return;
+                            }
+                            // Dropped when the loader has been restarted or replaced meanwhile.
+                            Loader<ArticlePage> current = getLoaderManager().getLoader(JSON_ARTICLE_FEED_LOADER_ID);
+                            if (current == loader) {
+                                ((ArticleLoader) loader).setUrl(url);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
 
-            // Update empty state with no connection error message
-            mEmptyStateTextView.setText(R.string.no_internet_connection);
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ArticleThumbnails.getInstance(this).onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            JSONnewsAdapter.clearTextLayouts();
         }
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mDestroyed = true;
+        mHandler.removeCallbacks(mRestartFeed);
+        mHandler.removeCallbacks(mLoadMore);
+        PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(this);
+    }
+
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         if (key.equals(getString(R.string.settings_item_per_page)) ||
-                key.equals(getString(R.string.settings_topic_category))){
-            // Clear the ListView as a new query will be kicked off
-            JSONnewsAdapter.clear();
-
-            // Hide the empty state text view as the loading indicator will be displayed
-            mEmptyStateTextView.setVisibility(View.GONE);
+                key.equals(getString(R.string.settings_topic_category)) ||
+                key.equals(getString(R.string.settings_sections))){
+            // A burst of changes restarts the feed once, after the last one.
+            mHandler.removeCallbacks(mRestartFeed);
+            mHandler.postDelayed(mRestartFeed, PREFERENCE_DEBOUNCE_MILLIS);
+            mRestartPending = true;
+        }
 
+    }
 
-            // Show the loading indicator while new data is being fetched
-            View loadingIndicator = findViewById(R.id.loading_indicator);
-            loadingIndicator.setVisibility(View.VISIBLE);
+    /**
+     * Restart the feed for the query settings, which have been updated.
+     */
+    private void restartFeed() {
+        mRestartPending = false;
+        // The current rows stay until the new query answers, then only the
+        // differences are applied to the list.
+        // Hide the empty state text view as the loading indicator will be displayed
+        mEmptyStateTextView.setVisibility(View.GONE);
+
+        // Show the loading indicator while new data is being fetched
+        View loadingIndicator = findViewById(R.id.loading_indicator);
+        loadingIndicator.setVisibility(View.VISIBLE);
 
-            // Restart the loader to requery the USGS as the query settings have been updated
-            getLoaderManager().restartLoader(JSON_ARTICLE_FEED_LOADER_ID, null, this);
-        }
+        // Drop the following pages of the previous query
+        getLoaderManager().destroyLoader(JSON_ARTICLE_NEXT_PAGE_LOADER_ID);
+        mPager.reset(null);
 
+        // Restart the loader to requery the Guardian API. The load of the previous query
+        // is canceled, and its download aborted unless another request shares it.
+        getLoaderManager().restartLoader(JSON_ARTICLE_FEED_LOADER_ID, null, this);
     }
 
     @Override
-    public Loader<List<Article>> onCreateLoader(int i, Bundle bundle) {
-        // Create a new loader for the given URL
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-        String itemPerPage = sharedPrefs.getString(
-                getString(R.string.settings_item_per_page),
-                getString(R.string.settings_item_per_page_default));
-
-        String orderbyTopic = sharedPrefs.getString(
-                getString(R.string.settings_topic_category),
-                getString(R.string.settings_topic_category_by_default));
-
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
-        uriBuilder.appendQueryParameter("format", "json");
-        //can be oldest,newest or relevance(default where q params is specified)
-        uriBuilder.appendQueryParameter("order-by", "newest");
-        /*can be author,isbn,basic-prefix,...*/
-        uriBuilder.appendQueryParameter("show-reference", "author");
-        /*can be all,contributor,keyword,newspaper-book,publication,series,tone,type,...*/
-        uriBuilder.appendQueryParameter("show-tags", "contributor");
-        /*language parameter(ISO language code:fr,en)*/
-        uriBuilder.appendQueryParameter("lang", "en");
-        //default items per page is 10 but can get more(1-50)!!
-        uriBuilder.appendQueryParameter("page-size", itemPerPage);
-        if (!orderbyTopic.equals(getString(R.string.settings_topic_category_by_default))) {
-            uriBuilder.appendQueryParameter("section", orderbyTopic);
-        }
-        //q parameter can be something like education,debate,economy,immigration,...
-        //can combine debate AND economy as well(can use these operators :AND,OR,NOT)
-        uriBuilder.appendQueryParameter("q", "");
-        //Free student key from the Guardian API website
-        return new ArticleLoader(this, uriBuilder.toString());
+    public Loader<ArticlePage> onCreateLoader(int i, Bundle bundle) {
+        // The query read at startup, or the one of the settings updated since.
+        ArticleQuery.Snapshot query = mQuery != null ? mQuery : ArticleQuery.readSnapshot(this);
+        mQuery = null;
+
+        // With followed sections, load one query per section in parallel and merge them.
+        // The merged feed is not paged.
+        List<String> sectionUrls = query.getSectionUrls();
+        mMultiSection = !sectionUrls.isEmpty();
+        if (mMultiSection) {
+            return new MultiSectionLoader(this, sectionUrls);
+        }
+
+        // Create a new loader for the first page, with a small page size so it shows up quickly.
+        // Until the network answers, the loader shows the newest stored articles of the section.
+        return new ArticleLoader(this, query.getFirstPageUrl(), query.getSectionFilter(), query.getFirstPageSize());
     }
 
     @Override
-    public void onLoadFinished(Loader<List<Article>> loader,
-                               List<Article> articles) {
-        // Hide loading indicator because the data has been loaded
+    public void onLoadFinished(Loader<ArticlePage> loader,
+                               ArticlePage page) {
+        // Hide the skeleton rows and the loading indicator because the data has been loaded
+        findViewById(R.id.skeleton).setVisibility(View.GONE);
         View loadingIndicator = findViewById(R.id.loading_indicator);
         loadingIndicator.setVisibility(View.GONE);
 
-        // Set empty state text to display "No articles found."
-        mEmptyStateTextView.setText(R.string.no_article);
+        // Set empty state text to display "No articles found.", or why the request failed
+        // when there is no cached list to show.
+        mEmptyStateTextView.setText(getEmptyStateText(page));
+        List<Article> articles = page == null ? null : page.getArticles();
+        if (page != null && page.isFallback()) {
+            // The saved list is shown instead of the fresh one, tell the user why.
+            Toast.makeText(this, getString(R.string.showing_saved_articles, getString(getEmptyStateText(page))),
+                    Toast.LENGTH_LONG).show();
+        } else if (page != null && page.isPartial()) {
+            Toast.makeText(this, getString(R.string.showing_partial_articles, getString(getEmptyStateText(page))),
+                    Toast.LENGTH_LONG).show();
+        }
 
-        // If there is a valid list of {@link Article}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (articles != null && !articles.isEmpty()) {
-            //JSONnewsAdapter.addAll(articles);
-            JSONnewsAdapter.addAll(articles);
+        // The loader can deliver the cached list and then the refreshed one. The new list
+        // replaces the adapter's data set, and the adapter only redraws the rows that changed.
+        if (loader == mShownFeedLoader && !mMultiSection && articles != null && !articles.isEmpty()) {
+            // The first page of the list shown, revalidated: it replaces the head of the list,
+            // and the pages appended by scrolling and the scroll position are kept.
+            showArticles(mPager.onFirstPageRevalidated(mArticles, articles));
+        } else {
+            showArticles(articles == null ? new ArrayList<Article>() : new ArrayList<>(articles));
+
+            // The following pages start over from this first page, once it is complete, with a
+            // page size and a prefetch distance suited to the network measured so far.
+            getLoaderManager().destroyLoader(JSON_ARTICLE_NEXT_PAGE_LOADER_ID);
+            int pageSize = ArticleQuery.getPageSize(this);
+            mPager.reset(articles, pageSize, FetchPolicy.getInstance(this).getPrefetchDistance(pageSize));
+            mShownFeedLoader = loader;
         }
+        if (articles != null && page.isSuccessful()) {
+            // The top of the fresh list is on screen, prefetch the texts of its articles
+            ArticleBodies.getInstance(this).prefetch(articles);
+        }
+        // Nothing is paged from the beginning of a page, whether the rest is still loading or
+        // its download failed.
+        mFirstPagePartial = loader instanceof ArticleLoader && ((ArticleLoader) loader).isDeliveringPartialList()
+                || page != null && page.isPartial();
     }
 
     @Override
-    public void onLoaderReset(Loader<List<Article>> loader) {
+    public void onLoaderReset(Loader<ArticlePage> loader) {
         // Loader reset, so we can clear out our existing data.
-        JSONnewsAdapter.clear();
+        showArticles(new ArrayList<Article>());
+        mPager.reset(null);
+        mShownFeedLoader = null;
+    }
+
+    /**
+     * Request the next page of the feed when the last visible row is close to the end.
+     */
+    private void loadMoreIfNeeded() {
+        if (mDestroyed || mMultiSection || mFirstPagePartial || mSearchQuery != null) {
+            return;
+        }
+        if (mPager.shouldLoadMore(mLayoutManager.findLastVisibleItemPosition(), mLayoutManager.getItemCount())) {
+            Bundle args = new Bundle();
+            args.putInt(ARG_PAGE, mPager.startLoading());
+            getLoaderManager().restartLoader(JSON_ARTICLE_NEXT_PAGE_LOADER_ID, args, mNextPageCallbacks);
+        }
+    }
+
+    /**
+     * Returns the text shown when there is no article, telling why the request failed if it did.
+     */
+    private int getEmptyStateText(ArticlePage page) {
+        int outcome = page == null ? ArticlePage.OUTCOME_OK : page.getOutcome();
+        switch (outcome) {
+            case ArticlePage.OUTCOME_NETWORK_ERROR:
+                return isConnected() ? R.string.error_network : R.string.no_internet_connection;
+            case ArticlePage.OUTCOME_TIMEOUT:
+                return R.string.error_timeout;
+            case ArticlePage.OUTCOME_SERVER_ERROR:
+            case ArticlePage.OUTCOME_CIRCUIT_OPEN:
+                return R.string.error_server;
+            case ArticlePage.OUTCOME_RATE_LIMITED:
+                return R.string.error_rate_limited;
+            case ArticlePage.OUTCOME_HTTP_ERROR:
+                return R.string.error_http;
+            default:
+                return isConnected() ? R.string.no_article : R.string.no_internet_connection;
+        }
+    }
+
+    /**
+     * Replace the feed with a new list of {@link Article}s. While searching, the feed is
+     * only displayed again once the search is closed.
+     */
+    private void showArticles(List<Article> articles) {
+        mArticles = articles;
+        if (mSearchQuery == null) {
+            displayArticles(articles);
+        }
+    }
+
+    /**
+     * Submit a new list of {@link Article}s to the adapter, which computes the differences
+     * with the current list on a background thread.
+     */
+    private void displayArticles(List<Article> articles) {
+        JSONnewsAdapter.submitList(articles);
+        mEmptyStateTextView.setVisibility(articles.isEmpty() ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Show the articles matching the query, from the offline index. An empty query shows
+     * the feed.
+     *
+     * The index is searched off the main thread, one query after the other, since it may be
+     * busy indexing a list. A query typed over before its turn is skipped, and results are
+     * only shown while their query is still the current one.
+     */
+    private void search(final String query) {
+        mSearchQuery = query;
+        if (query.trim().isEmpty()) {
+            displayArticles(mArticles);
+            return;
+        }
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (query != mSearchQuery) {
+                    return;
+                }
+                final List<Article> results = ArticleSearchIndex.getInstance().search(query, SEARCH_RESULT_LIMIT);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mDestroyed && query == mSearchQuery) {
+                            displayArticles(results);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Adds the {@link FeedMetrics} to "adb shell dumpsys activity".
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        FeedMetrics.dump(prefix, writer);
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_settings, menu);
+        menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
+
+        // Search the downloaded articles as the query is typed, without any network request
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                search(query);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                // Back to the feed, with the pages loaded before the search
+                mSearchQuery = null;
+                displayArticles(mArticles);
+                return true;
+            }
+        });
         return true;
     }
 
@@ -202,6 +584,10 @@ public class ArticleActivity extends AppCompatActivity implements LoaderCallback
             startActivity(settingsIntent);
             return true;
         }
+        if (id == R.id.action_metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
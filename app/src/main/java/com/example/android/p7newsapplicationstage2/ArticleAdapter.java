@@ -1,103 +1,201 @@
 package com.example.android.p7newsapplicationstage2;
 
-import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.v7.recyclerview.extensions.ListAdapter;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
-import android.widget.TextView;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import android.widget.ImageView;
+
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * An {@link ArticleAdapter} knows how to create a list item layout for each news
  * in the data source (a list of {@link Article} objects).
  *
- * These list item layouts will be provided to an adapter view like ListView
- * to be displayed to the user.
+ * These list item layouts will be provided to a RecyclerView to be displayed to the user.
+ * A new list is compared to the current one on a background thread, using the article
+ * url as the stable ID, so only the inserted, moved and changed rows are redrawn.
+ *
+ * The thumbnails are loaded by {@link ArticleThumbnails}, and a recycled row stops loading
+ * the thumbnail it no longer shows. The texts of a list are laid out in the background by
+ * {@link ArticleTextLayouts} when it is submitted, unless the adapter lays them out on the UI
+ * thread as the rows are bound.
  */
-public class ArticleAdapter extends ArrayAdapter<Article> {
+public class ArticleAdapter extends ListAdapter<Article, ArticleAdapter.ViewHolder> {
+
+    /**
+     * Compares two articles: same url means same item, equal articles mean same content.
+     */
+    private static final DiffUtil.ItemCallback<Article> DIFF_CALLBACK = new DiffUtil.ItemCallback<Article>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Article oldArticle, @NonNull Article newArticle) {
+            return oldArticle.getUrl().equals(newArticle.getUrl());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Article oldArticle, @NonNull Article newArticle) {
+            return oldArticle.equals(newArticle);
+        }
+    };
+
+    /**
+     * Callback invoked when a news row is clicked.
+     */
+    public interface OnArticleClickListener {
+        void onArticleClick(Article article);
+    }
+
+    private final OnArticleClickListener mListener;
+
+    /** Text layouts of the rows laid out ahead, or null when laid out as the rows are bound */
+    private final ArticleTextLayouts mTextLayouts;
+
+    /**
+     * Constructs a new {@link ArticleAdapter}, which lays out the texts of the rows ahead.
+     *
+     * @param listener is notified when a news row is clicked
+     */
+    public ArticleAdapter(OnArticleClickListener listener) {
+        this(listener, true);
+    }
+
     /**
      * Constructs a new {@link ArticleAdapter}.
      *
-     * @param context of the app
-     * @param newsfeed is the list of newsfeed, which is the data source of the adapter
+     * @param listener       is notified when a news row is clicked
+     * @param precomputeText true to lay out the texts of a list in the background when it is
+     *                       submitted, false to lay them out on the UI thread as rows are bound
      */
-    public ArticleAdapter(Context context, List<Article> newsfeed) {
-        super(context, 0, newsfeed);
+    public ArticleAdapter(OnArticleClickListener listener, boolean precomputeText) {
+        super(DIFF_CALLBACK);
+        mListener = listener;
+        mTextLayouts = precomputeText ? new ArticleTextLayouts() : null;
+        setHasStableIds(true);
     }
+
     /**
-     * Returns a list item view that displays information about every news at the given position
-     * in the list of newsfeeds.
+     * Holds the views of a list item, so they are looked up only once.
      */
-    static class ViewHolder {
-        TextView  titlearticle;
-        TextView  sectionarticle;
-        TextView  authorarticle;
-        TextView  articledate=null;
-        TextView  articletime=null;
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        ArticleTextView titlearticle;
+        ArticleTextView sectionarticle;
+        ArticleTextView authorarticle;
+        ArticleTextView articledate;
+        ArticleTextView articletime;
+        ImageView thumbnail;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            titlearticle = (ArticleTextView) itemView.findViewById(R.id.article_title);
+            sectionarticle = (ArticleTextView) itemView.findViewById(R.id.article_section);
+            articledate = (ArticleTextView) itemView.findViewById(R.id.article_date);
+            articletime = (ArticleTextView) itemView.findViewById(R.id.article_time);
+            authorarticle = (ArticleTextView) itemView.findViewById(R.id.author);
+            thumbnail = (ImageView) itemView.findViewById(R.id.thumbnail);
+            itemView.setOnClickListener(this);
+            if (mTextLayouts != null) {
+                titlearticle.setLayouts(mTextLayouts, ArticleTextLayouts.FIELD_TITLE);
+                sectionarticle.setLayouts(mTextLayouts, ArticleTextLayouts.FIELD_SECTION);
+                articledate.setLayouts(mTextLayouts, ArticleTextLayouts.FIELD_DATE);
+                articletime.setLayouts(mTextLayouts, ArticleTextLayouts.FIELD_TIME);
+                authorarticle.setLayouts(mTextLayouts, ArticleTextLayouts.FIELD_AUTHOR);
+            }
+        }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                mListener.onArticleClick(getItem(position));
+            }
+        }
     }
 
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        // Check if there is an existing list item view (called convertView) that we can reuse,
-        // otherwise, if convertView is null, then inflate a new list item layout.
-        ViewHolder holder;
-        if (convertView == null) {
-            convertView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.articles_list_item, parent, false);
-            holder = new ViewHolder();
-            holder.titlearticle = (TextView) convertView.findViewById(R.id.article_title);
-            holder.sectionarticle = (TextView) convertView.findViewById(R.id.article_section);
-            holder.articledate = (TextView)convertView.findViewById(R.id.article_date);
-            holder.articletime =(TextView) convertView.findViewById(R.id.article_time);
-            holder.authorarticle = (TextView) convertView.findViewById(R.id.author);
-            convertView.setTag(holder);
-        }else {
-            holder = (ViewHolder) convertView.getTag();
-        }
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext()).inflate(
+                R.layout.articles_list_item, parent, false);
+        return new ViewHolder(itemView);
+    }
+
+    /**
+     * Displays the information about the news at the given position in the list of newsfeeds.
+     */
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        long bindStart = FeedMetrics.startTimer();
         // Find the news at the given position in the list of newsfeeds
         Article currentArticle = getItem(position);
         //ID article_title
-        assert currentArticle != null;
         holder.titlearticle.setText(currentArticle.getArticle_title());
 
         //ID article_section
         holder.sectionarticle.setText(currentArticle.getArticle_section());
 
         // ID date
-        // Format the date string
-        String formattedDate = formatDate(currentArticle.getDate()).concat(",");
-        // Display the date of the current earthquake in that TextView
-        holder.articledate.setText(formattedDate);
+        // Display the date of the current article, formatted when it was parsed
+        holder.articledate.setText(currentArticle.getDisplayDate());
 
         // ID time
-        // Format the time string
-        String formattedTime = formatTime(currentArticle.getDate());
-        // Display the time of the current earthquake in that TextView
-        holder.articletime.setText(formattedTime);
+        // Display the time of the current article, formatted when it was parsed
+        holder.articletime.setText(currentArticle.getDisplayTime());
 
         //ID author
-        holder.authorarticle .setText(currentArticle.getAuthor());
-        return convertView;
+        holder.authorarticle.setText(currentArticle.getAuthor());
+
+        //ID thumbnail
+        // Display the cached thumbnail, or load it off the main thread at the size of the view
+        ArticleThumbnails.getInstance(holder.itemView.getContext())
+                .bind(holder.thumbnail, currentArticle.getThumbnailUrl());
+
+        FeedMetrics.recordStage(FeedMetrics.STAGE_BIND, bindStart);
+        StartupTrace.mark(StartupTrace.EVENT_FIRST_ARTICLE);
     }
 
     /**
-     * Return the formatted date string from a Date object.
+     * Submits a new list, and lays out the texts of its rows in the background meanwhile.
      */
-    private String formatDate(Date dateObject) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("LLL dd, yyyy");
-        return dateFormat.format(dateObject);
+    @Override
+    public void submitList(List<Article> articles) {
+        if (mTextLayouts != null && articles != null) {
+            mTextLayouts.prepare(articles);
+        }
+        super.submitList(articles);
     }
 
     /**
-     * Return the formatted date string from a Date object.
+     * Drop the text layouts laid out ahead, e.g. when the system runs low on memory.
      */
-    private String formatTime(Date dateObject) {
-        SimpleDateFormat timeFormat = new SimpleDateFormat("h:mm a");
-        return timeFormat.format(dateObject);
+    public void clearTextLayouts() {
+        if (mTextLayouts != null) {
+            mTextLayouts.clear();
+        }
     }
 
+    @Override
+    public void onViewRecycled(ViewHolder holder) {
+        ArticleThumbnails.getInstance(holder.itemView.getContext()).unbind(holder.thumbnail);
+    }
 
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+
+    /**
+     * Returns the articles of the rows between the given positions, both included, e.g. the
+     * rows on screen. Positions out of the list are ignored.
+     */
+    public List<Article> getArticles(int firstPosition, int lastPosition) {
+        List<Article> articles = new ArrayList<>();
+        for (int position = Math.max(firstPosition, 0);
+             position <= lastPosition && position < getItemCount(); position++) {
+            articles.add(getItem(position));
+        }
+        return articles;
+    }
 }
@@ -0,0 +1,131 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the texts of the articles on screen ready for the {@link ReaderActivity}, through an
+ * {@link ArticlePrefetcher} which only runs when the battery and the network allow it.
+ *
+ * Nothing is prefetched on a low battery which is not charging, in battery saver mode, or
+ * without a connection. On a metered network fewer articles are prefetched, within a smaller
+ * byte budget. The budgets are renewed every day, and only the prefetches spend them.
+ */
+public class ArticleBodies {
+
+    /**
+     * Name and size of the cache of the texts, compressed
+     */
+    private static final String CACHE_DIRECTORY = "bodies";
+    private static final long MAX_CACHE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Concurrent downloads, and the largest page downloaded
+     */
+    private static final int PREFETCH_THREADS = 2;
+    private static final long MAX_PAGE_BYTES = 1024 * 1024;
+
+    /**
+     * Number of articles prefetched from the top of the screen, and the byte budgets
+     */
+    private static final int UNMETERED_PREFETCH_COUNT = 10;
+    private static final int METERED_PREFETCH_COUNT = 3;
+    private static final long UNMETERED_BYTE_BUDGET = 20 * 1024 * 1024;
+    private static final long METERED_BYTE_BUDGET = 2 * 1024 * 1024;
+
+    /**
+     * Battery level, in percent, below which nothing is prefetched unless charging
+     */
+    private static final int MIN_BATTERY_PERCENT = 20;
+
+    private static ArticleBodies sInstance;
+
+    private final Context mContext;
+    private final ArticlePrefetcher mPrefetcher;
+
+    private ArticleBodies(Context context) {
+        mContext = context;
+        mPrefetcher = new ArticlePrefetcher(
+                new ArticleBodyCache(new File(context.getCacheDir(), CACHE_DIRECTORY), MAX_CACHE_BYTES),
+                QueryUtils.getTransport(),
+                Executors.newFixedThreadPool(PREFETCH_THREADS, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "prefetch");
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                }),
+                MAX_PAGE_BYTES, METERED_BYTE_BUDGET);
+    }
+
+    /**
+     * Returns the article texts shared by the whole app.
+     */
+    public static synchronized ArticleBodies getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleBodies(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Prefetch the texts of the first articles of the given list, those on screen, when the
+     * battery and the network allow it.
+     */
+    public void prefetch(List<Article> visibleArticles) {
+        if (!isBatteryOk()) {
+            return;
+        }
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return;
+        }
+        boolean metered = Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN
+                ? networkInfo.getType() != ConnectivityManager.TYPE_WIFI
+                : connectivityManager.isActiveNetworkMetered();
+        mPrefetcher.setByteBudget(metered ? METERED_BYTE_BUDGET : UNMETERED_BYTE_BUDGET);
+        int count = Math.min(visibleArticles.size(), metered ? METERED_PREFETCH_COUNT : UNMETERED_PREFETCH_COUNT);
+        mPrefetcher.prefetch(visibleArticles.subList(0, count));
+    }
+
+    /**
+     * Returns the text of the article, downloaded now if it was not prefetched. Called off the
+     * main thread.
+     */
+    public String load(String url) throws IOException {
+        return mPrefetcher.load(url);
+    }
+
+    private boolean isBatteryOk() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PowerManager powerManager = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
+            if (powerManager.isPowerSaveMode()) {
+                return false;
+            }
+        }
+        // The battery status is a sticky broadcast, read without registering a receiver.
+        Intent battery = mContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return true;
+        }
+        boolean charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return charging || level < 0 || scale <= 0 || level * 100 / scale >= MIN_BATTERY_PERCENT;
+    }
+}
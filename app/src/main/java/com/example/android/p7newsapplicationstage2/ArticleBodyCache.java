@@ -0,0 +1,94 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.util.Log;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of the extracted article texts, keyed by the article URL.
+ *
+ * Every text is stored gzip compressed in a {@link LruFileCache}, which evicts the least
+ * recently read ones once over its size budget.
+ */
+public class ArticleBodyCache {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ArticleBodyCache.class.getSimpleName();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final LruFileCache mFiles;
+
+    /**
+     * Constructs a new {@link ArticleBodyCache}.
+     *
+     * @param directory where the compressed texts are stored
+     * @param maxBytes  is the compressed size above which least recently read texts are evicted
+     */
+    ArticleBodyCache(File directory, long maxBytes) {
+        mFiles = new LruFileCache(directory, maxBytes);
+    }
+
+    /**
+     * Returns true when the text of the article is cached.
+     */
+    public boolean contains(String url) {
+        return mFiles.get(url) != null;
+    }
+
+    /**
+     * Returns the cached text of the article, or null if there is none.
+     */
+    public String get(String url) {
+        File file = mFiles.get(url);
+        if (file == null) {
+            return null;
+        }
+        try {
+            InputStream in = new GZIPInputStream(new FileInputStream(file));
+            try {
+                return IOUtils.toString(in, UTF_8);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // Evicted while being read, or corrupted
+            Log.e(LOG_TAG, "Problem reading the article text", e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the text of the article.
+     */
+    public void put(String url, String text) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(text.length() / 3 + 64);
+        OutputStream out = new GZIPOutputStream(compressed);
+        try {
+            out.write(text.getBytes(UTF_8));
+        } finally {
+            out.close();
+        }
+        mFiles.put(url, new ByteArrayInputStream(compressed.toByteArray()));
+    }
+
+    /**
+     * Returns the size of the compressed texts in bytes.
+     */
+    public long size() {
+        return mFiles.size();
+    }
+}
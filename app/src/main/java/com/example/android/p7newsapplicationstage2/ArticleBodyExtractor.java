@@ -0,0 +1,87 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * Extracts the readable text of an article web page with jsoup.
+ *
+ * The body of a Guardian article is the element marked itemprop="articleBody". Other pages
+ * fall back to their article element, then to the whole body. Scripts, figures, asides and
+ * the like are removed, and the text is kept one paragraph per line.
+ */
+public final class ArticleBodyExtractor {
+
+    /**
+     * Containers of the article text, the first one found is used
+     */
+    private static final String[] BODY_SELECTORS = {
+            "[itemprop=articleBody]", ".content__article-body", "article", "main"};
+
+    /**
+     * Elements which are no part of the text
+     */
+    private static final String CLUTTER = "script, style, noscript, iframe, figure, aside, nav, header, footer, form,"
+            + " button, svg, [aria-hidden=true], .submeta, .element-rich-link";
+
+    /**
+     * Elements kept as paragraphs
+     */
+    private static final String PARAGRAPHS = "p, h2, h3, h4, li, blockquote";
+
+    private ArticleBodyExtractor() {
+    }
+
+    /**
+     * Returns the text of the article in the HTML page, one paragraph per line, or an empty
+     * string when there is none.
+     *
+     * @param html    is the web page
+     * @param baseUri is the URL of the page
+     */
+    public static String extract(String html, String baseUri) {
+        Document document = Jsoup.parse(html, baseUri);
+        Element body = findBody(document);
+        if (body == null) {
+            return "";
+        }
+        body.select(CLUTTER).remove();
+
+        StringBuilder text = new StringBuilder();
+        for (Element paragraph : body.select(PARAGRAPHS)) {
+            // A list item or a quote holding paragraphs is written by its paragraphs, the
+            // selection of an element includes the element itself.
+            if (paragraph.select(PARAGRAPHS).size() > 1) {
+                continue;
+            }
+            appendParagraph(text, paragraph.text());
+        }
+        if (text.length() == 0) {
+            // No paragraph markup, e.g. a live blog entry: keep the text as a whole.
+            appendParagraph(text, body.text());
+        }
+        return text.toString();
+    }
+
+    private static Element findBody(Document document) {
+        for (String selector : BODY_SELECTORS) {
+            Element body = document.select(selector).first();
+            if (body != null) {
+                return body;
+            }
+        }
+        return document.body();
+    }
+
+    private static void appendParagraph(StringBuilder text, String paragraph) {
+        String trimmed = paragraph.trim();
+        if (trimmed.isEmpty()) {
+            return;
+        }
+        if (text.length() > 0) {
+            text.append("\n\n");
+        }
+        text.append(trimmed);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * Loads the text of an article for the {@link ReaderActivity}: the prefetched one, or the
+ * one downloaded and extracted right away.
+ */
+public class ArticleBodyLoader extends AsyncTaskLoader<String> {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = ArticleBodyLoader.class.getSimpleName();
+
+    /** Website URL of the article */
+    private final String mUrl;
+
+    /** Text already loaded, delivered again when the activity is recreated */
+    private String mText;
+
+    public ArticleBodyLoader(Context context, String url) {
+        super(context);
+        mUrl = url;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mText != null) {
+            deliverResult(mText);
+        } else {
+            forceLoad();
+        }
+    }
+
+    /**
+     * This is on a background thread. Returns null when the text could not be loaded.
+     */
+    @Override
+    public String loadInBackground() {
+        try {
+            return ArticleBodies.getInstance(getContext()).load(mUrl);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem loading the article text", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void deliverResult(String text) {
+        mText = text;
+        super.deliverResult(text);
+    }
+}
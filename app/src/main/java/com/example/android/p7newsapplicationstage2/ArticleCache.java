@@ -0,0 +1,307 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent on-disk cache of parsed {@link Article} lists, keyed by the request URL without
+ * its page size, which follows the network: a first page requested with another size than
+ * the last time still finds the saved list, cut to the size requested.
+ *
+ * Every entry is a small file in the app cache directory, in the binary {@link ArticleCodec}
+ * format: reading an entry maps and checks the file, and the articles are decoded on first
+ * access. An entry which does not decode is a miss and its file is deleted. Entries older than
+ * the TTL are still returned but flagged as stale so the caller can refresh them, and the least
+ * recently used entries are evicted once the directory grows over its size budget.
+ */
+public class ArticleCache {
+
+    /**
+     * Tag for log message
+     */
+    private static final String LOG_TAG = ArticleCache.class.getSimpleName();
+
+    /**
+     * Name of the cache directory and default limits
+     */
+    private static final String CACHE_DIRECTORY = "articles";
+    private static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+    private static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000;
+    private static final String FILE_SUFFIX = ".bin";
+
+    /** Suffix of a file being written, renamed once complete */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static ArticleCache sInstance;
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final long mTtlMillis;
+
+    /**
+     * Cache files in least recently used order, mapped to their size in bytes
+     */
+    private LinkedHashMap<String, Long> mIndex;
+    private long mSize;
+
+    /**
+     * A cached list of {@link Article}s, the time it was saved and the HTTP validators
+     * of the response it was parsed from.
+     */
+    public static class Entry {
+        private final List<Article> mArticles;
+        private final long mSavedAt;
+        private final long mFullSavedAt;
+        private final long mTtlMillis;
+        private final String mEtag;
+        private final String mLastModified;
+
+        Entry(List<Article> articles, long savedAt, long fullSavedAt, long ttlMillis, String etag,
+              String lastModified) {
+            mArticles = articles;
+            mSavedAt = savedAt;
+            mFullSavedAt = fullSavedAt;
+            mTtlMillis = ttlMillis;
+            mEtag = etag;
+            mLastModified = lastModified;
+        }
+
+        public List<Article> getArticles() {
+            return mArticles;
+        }
+
+        public long getSavedAt() {
+            return mSavedAt;
+        }
+
+        /**
+         * Returns when the list was last fetched in full, not merged from a delta request
+         */
+        public long getFullSavedAt() {
+            return mFullSavedAt;
+        }
+
+        /**
+         * Returns the ETag header of the cached response, or null
+         */
+        public String getEtag() {
+            return mEtag;
+        }
+
+        /**
+         * Returns the Last-Modified header of the cached response, or null
+         */
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        /**
+         * Returns true when the entry is older than the cache TTL at the given time
+         */
+        public boolean isStale(long now) {
+            return now - mSavedAt > mTtlMillis;
+        }
+    }
+
+    /**
+     * Constructs a new {@link ArticleCache}.
+     *
+     * @param directory where the cache files are stored
+     * @param maxBytes  is the size above which least recently used entries are evicted
+     * @param ttlMillis is the age after which an entry is stale
+     */
+    ArticleCache(File directory, long maxBytes, long ttlMillis) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mTtlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the cache shared by the whole app.
+     */
+    public static synchronized ArticleCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIRECTORY);
+            sInstance = new ArticleCache(directory, DEFAULT_MAX_BYTES, DEFAULT_TTL_MILLIS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the cached entry for the given request URL, or null if there is none. The list
+     * holds at most as many articles as the page size of the URL, and can hold fewer.
+     */
+    public synchronized Entry get(String url) {
+        ensureIndex();
+        String name = fileName(url);
+        if (!mIndex.containsKey(name)) {
+            return null;
+        }
+        File file = new File(mDirectory, name);
+        try {
+            ArticleCodec.Decoded decoded = ArticleCodec.map(file);
+            // Touch the entry so it becomes the most recently used one, also across restarts.
+            mIndex.get(name);
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(limit(decoded.getArticles(), url), decoded.getSavedAt(), decoded.getFullSavedAt(),
+                    mTtlMillis, decoded.getEtag(), decoded.getLastModified());
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cached articles", e);
+            remove(name);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the list of {@link Article}s for the given request URL.
+     */
+    public synchronized void put(String url, List<Article> articles) {
+        put(url, articles, null, null);
+    }
+
+    /**
+     * Stores the list of {@link Article}s for the given request URL along with the
+     * ETag and Last-Modified headers of the response, either of which may be null.
+     */
+    public synchronized void put(String url, List<Article> articles, String etag, String lastModified) {
+        long now = System.currentTimeMillis();
+        write(url, ArticleCodec.encode(articles, now, now, etag, lastModified));
+    }
+
+    /**
+     * Stores the list of {@link Article}s for the given request URL, merged from a delta request
+     * into the list fetched in full at fullSavedAt.
+     */
+    public synchronized void putMerged(String url, List<Article> articles, long fullSavedAt) {
+        write(url, ArticleCodec.encode(articles, System.currentTimeMillis(), fullSavedAt, null, null));
+    }
+
+    private void write(String url, byte[] bytes) {
+        ensureIndex();
+        String name = fileName(url);
+        try {
+            Long previousSize = mIndex.remove(name);
+            if (previousSize != null) {
+                mSize -= previousSize;
+            }
+            // Written aside then renamed, a list still mapping the previous file keeps reading it.
+            File file = new File(mDirectory, name);
+            File temp = new File(mDirectory, name + TEMP_SUFFIX);
+            FileUtils.writeByteArrayToFile(temp, bytes);
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Problem renaming " + temp);
+            }
+            mIndex.put(name, file.length());
+            mSize += file.length();
+            trimToSize();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the cached articles", e);
+        }
+    }
+
+    /**
+     * Returns the total size of the cache files in bytes.
+     */
+    public synchronized long size() {
+        ensureIndex();
+        return mSize;
+    }
+
+    /**
+     * Build the LRU index from the files already on disk, oldest access first.
+     */
+    private void ensureIndex() {
+        if (mIndex != null) {
+            return;
+        }
+        mIndex = new LinkedHashMap<>(16, 0.75f, true);
+        mSize = 0;
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_SUFFIX)) {
+                mIndex.put(file.getName(), file.length());
+                mSize += file.length();
+            } else {
+                // Left over by an interrupted write or by the former JSON format
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used entries until the cache fits in its size budget.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = mIndex.entrySet().iterator();
+        while (mSize > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            mSize -= eldest.getValue();
+            new File(mDirectory, eldest.getKey()).delete();
+        }
+    }
+
+    private void remove(String name) {
+        Long size = mIndex.remove(name);
+        if (size != null) {
+            mSize -= size;
+            new File(mDirectory, name).delete();
+        }
+    }
+
+    /**
+     * Returns the first articles of the list, as many as the page size of the URL if it has one.
+     */
+    private static List<Article> limit(List<Article> articles, String url) {
+        int pageSize = DeltaSync.getPageSize(url);
+        // A view of the mapped list, the articles are still decoded on first access.
+        return pageSize > 0 && articles.size() > pageSize ? articles.subList(0, pageSize) : articles;
+    }
+
+    /**
+     * Returns the file name for a request URL: the SHA-1 of the URL without its page size.
+     */
+    static String fileName(String url) {
+        return sha1(ArticleQuery.withoutPageSize(url)) + FILE_SUFFIX;
+    }
+
+    /**
+     * Returns the SHA-1 of the URL in hexadecimal, a name safe for any file system.
+     */
+    static String sha1(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest.digest(url.getBytes(Charset.forName("UTF-8")))) {
+                name.append(String.format("%02x", b));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary encoding of a list of {@link Article}s, used by the
+ * {@link ArticleCache} files.
+ *
+ * Layout, big endian:
+ * <pre>
+ * int     magic "ARTL"
+ * byte    version
+ * long    savedAt, epoch millis
+ * long    fullSavedAt, epoch millis the list was last fetched in full
+ * string  etag, string lastModified
+ * varint  number of interned strings, then every string
+ * varint  number of articles
+ * int[]   offset of every article record, from the start of the records
+ * records title, section index, section ID index, date, author index, url, thumbnail url,
+ *         varint number of tags, then the ID, type and title index of every tag
+ * </pre>
+ * Strings are a varint UTF-8 byte length plus one, 0 standing for null, followed by the
+ * bytes. Section names, section IDs, authors and tags repeat a lot and are stored once in the
+ * interned string table, the records refer to them by index. Dates are epoch millis,
+ * {@link Article#NO_DATE} for an unknown date.
+ *
+ * The offsets let {@link #map(File)} hand the list over without decoding it: every record is
+ * decoded straight from the memory mapped file by the first thread reading it. The records are
+ * only checked when the file is mapped, every offset, length and interned index being in
+ * bounds, so a corrupted file fails to map instead of failing a later read of the list.
+ */
+public final class ArticleCodec {
+
+    /** "ARTL" */
+    private static final int MAGIC = 0x4152544c;
+
+    /** Version of the layout, to increment whenever it changes */
+    static final byte VERSION = 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ArticleCodec() {
+    }
+
+    /**
+     * A decoded file: its header and its {@link Article}s.
+     */
+    public static final class Decoded {
+        private final long mSavedAt;
+        private final long mFullSavedAt;
+        private final String mEtag;
+        private final String mLastModified;
+        private final List<Article> mArticles;
+
+        Decoded(long savedAt, long fullSavedAt, String etag, String lastModified, List<Article> articles) {
+            mSavedAt = savedAt;
+            mFullSavedAt = fullSavedAt;
+            mEtag = etag;
+            mLastModified = lastModified;
+            mArticles = articles;
+        }
+
+        public long getSavedAt() {
+            return mSavedAt;
+        }
+
+        /**
+         * Returns when the list was last fetched in full, not merged from a delta request
+         */
+        public long getFullSavedAt() {
+            return mFullSavedAt;
+        }
+
+        public String getEtag() {
+            return mEtag;
+        }
+
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        /**
+         * Returns the articles, decoded on first access when the file was mapped
+         */
+        public List<Article> getArticles() {
+            return mArticles;
+        }
+    }
+
+    /**
+     * Encode the articles and the cache header of a list fetched in full.
+     */
+    public static byte[] encode(List<Article> articles, long savedAt, String etag, String lastModified) {
+        return encode(articles, savedAt, savedAt, etag, lastModified);
+    }
+
+    /**
+     * Encode the articles and the cache header.
+     */
+    public static byte[] encode(List<Article> articles, long savedAt, long fullSavedAt, String etag,
+                                String lastModified) {
+        // Intern the repeated strings, index 0 stands for null.
+        Map<String, Integer> internedIndexes = new HashMap<>();
+        List<String> interned = new ArrayList<>();
+        int[] sectionIndexes = new int[articles.size()];
+        int[] sectionIdIndexes = new int[articles.size()];
+        int[] authorIndexes = new int[articles.size()];
+        for (int i = 0; i < articles.size(); i++) {
+            Article article = articles.get(i);
+            sectionIndexes[i] = intern(article.getArticle_section(), internedIndexes, interned);
+            sectionIdIndexes[i] = intern(article.getSectionId(), internedIndexes, interned);
+            authorIndexes[i] = intern(article.getAuthor(), internedIndexes, interned);
+        }
+
+        try {
+            ByteArrayOutputStream records = new ByteArrayOutputStream(articles.size() * 128);
+            DataOutputStream recordsOut = new DataOutputStream(records);
+            int[] offsets = new int[articles.size()];
+            for (int i = 0; i < articles.size(); i++) {
+                Article article = articles.get(i);
+                offsets[i] = recordsOut.size();
+                writeString(recordsOut, article.getArticle_title());
+                writeVarint(recordsOut, sectionIndexes[i]);
+                writeVarint(recordsOut, sectionIdIndexes[i]);
+                recordsOut.writeLong(article.getPublicationTime());
+                writeVarint(recordsOut, authorIndexes[i]);
+                writeString(recordsOut, article.getUrl());
+                writeString(recordsOut, article.getThumbnailUrl());
+                // The string table is written after the records, so tags are interned here.
+                List<ArticleTag> tags = article.getTags();
+                writeVarint(recordsOut, tags.size());
+                for (ArticleTag tag : tags) {
+                    writeVarint(recordsOut, intern(tag.getId(), internedIndexes, interned));
+                    writeVarint(recordsOut, intern(tag.getType(), internedIndexes, interned));
+                    writeVarint(recordsOut, intern(tag.getTitle(), internedIndexes, interned));
+                }
+            }
+
+            ByteArrayOutputStream file = new ByteArrayOutputStream(records.size() + articles.size() * 4 + 256);
+            DataOutputStream out = new DataOutputStream(file);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(savedAt);
+            out.writeLong(fullSavedAt);
+            writeString(out, etag);
+            writeString(out, lastModified);
+            writeVarint(out, interned.size());
+            for (String string : interned) {
+                writeString(out, string);
+            }
+            writeVarint(out, articles.size());
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            records.writeTo(out);
+            out.flush();
+            return file.toByteArray();
+        } catch (IOException e) {
+            // A ByteArrayOutputStream never throws.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decode every article of the buffer right away.
+     */
+    public static Decoded decode(ByteBuffer buffer) throws IOException {
+        Decoded lazy = decodeLazily(buffer);
+        return new Decoded(lazy.getSavedAt(), lazy.getFullSavedAt(), lazy.getEtag(), lazy.getLastModified(),
+                new ArrayList<>(lazy.getArticles()));
+    }
+
+    /**
+     * Memory map the file and return its articles, which are decoded from the mapping one at a
+     * time on first access. The file can be replaced, not modified in place, while mapped.
+     */
+    public static Decoded map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid once the channel is closed.
+            return decodeLazily(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Read the header and the interned strings, the records are left to the returned list.
+     */
+    static Decoded decodeLazily(ByteBuffer buffer) throws IOException {
+        try {
+            ByteBuffer in = buffer.duplicate();
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not an article file");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported article file version " + version);
+            }
+            long savedAt = in.getLong();
+            long fullSavedAt = in.getLong();
+            byte[] scratch = new byte[256];
+            String etag = readString(in, scratch);
+            String lastModified = readString(in, scratch);
+            String[] interned = new String[readVarint(in) + 1];
+            for (int i = 1; i < interned.length; i++) {
+                interned[i] = readString(in, scratch);
+            }
+            int count = readVarint(in);
+            int offsetsStart = in.position();
+            if (count < 0 || count > (in.limit() - offsetsStart) / 4) {
+                throw new IOException("Truncated article file");
+            }
+            int recordsStart = offsetsStart + count * 4;
+            checkRecords(in, interned.length, count, offsetsStart, recordsStart);
+            return new Decoded(savedAt, fullSavedAt, etag, lastModified,
+                    new LazyArticleList(in, interned, count, offsetsStart, recordsStart));
+        } catch (RuntimeException e) {
+            // BufferUnderflowException and IndexOutOfBoundsException on a corrupted file
+            throw new IOException("Corrupted article file", e);
+        }
+    }
+
+    /**
+     * Walk the records without decoding them, checking that every one starts at its offset,
+     * fits in the buffer and only refers to interned strings of the table.
+     */
+    private static void checkRecords(ByteBuffer buffer, int internedCount, int count, int offsetsStart,
+                                     int recordsStart) throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        in.position(recordsStart);
+        for (int i = 0; i < count; i++) {
+            if (recordsStart + in.getInt(offsetsStart + i * 4) != in.position()) {
+                throw new IOException("Bad offset of article " + i);
+            }
+            skipString(in);
+            checkIndex(readVarint(in), internedCount);
+            checkIndex(readVarint(in), internedCount);
+            if (in.remaining() < 8) {
+                throw new IOException("Truncated article " + i);
+            }
+            in.position(in.position() + 8);
+            checkIndex(readVarint(in), internedCount);
+            skipString(in);
+            skipString(in);
+            int tagCount = readVarint(in);
+            if (tagCount < 0 || tagCount > in.remaining() / 3) {
+                throw new IOException("Truncated tags of article " + i);
+            }
+            for (int t = 0; t < tagCount * 3; t++) {
+                checkIndex(readVarint(in), internedCount);
+            }
+        }
+    }
+
+    private static void checkIndex(int index, int internedCount) throws IOException {
+        if (index < 0 || index >= internedCount) {
+            throw new IOException("Bad interned string index " + index);
+        }
+    }
+
+    private static void skipString(ByteBuffer in) throws IOException {
+        int length = readVarint(in) - 1;
+        if (length > in.remaining()) {
+            throw new IOException("Truncated string");
+        }
+        if (length > 0) {
+            in.position(in.position() + length);
+        }
+    }
+
+    /**
+     * Read-only list decoding every {@link Article} from the buffer on its first access. The
+     * records have been checked by {@link #checkRecords}, their decoding does not fail.
+     */
+    private static final class LazyArticleList extends AbstractList<Article> {
+
+        private final ByteBuffer mBuffer;
+        private final String[] mInterned;
+        private final int mOffsetsStart;
+        private final int mRecordsStart;
+        private final Article[] mDecoded;
+        private byte[] mScratch = new byte[256];
+
+        LazyArticleList(ByteBuffer buffer, String[] interned, int count, int offsetsStart, int recordsStart) {
+            mBuffer = buffer;
+            mInterned = interned;
+            mOffsetsStart = offsetsStart;
+            mRecordsStart = recordsStart;
+            mDecoded = new Article[count];
+        }
+
+        @Override
+        public int size() {
+            return mDecoded.length;
+        }
+
+        /**
+         * Loaders decode on their thread and the UI reads on the main thread.
+         */
+        @Override
+        public synchronized Article get(int index) {
+            Article article = mDecoded[index];
+            if (article == null) {
+                article = decodeRecord(mRecordsStart + mBuffer.getInt(mOffsetsStart + index * 4));
+                mDecoded[index] = article;
+            }
+            return article;
+        }
+
+        private Article decodeRecord(int position) {
+            mBuffer.position(position);
+            try {
+                String title = readString(mBuffer, mScratch);
+                String section = mInterned[readVarint(mBuffer)];
+                String sectionId = mInterned[readVarint(mBuffer)];
+                long publicationTime = mBuffer.getLong();
+                String author = mInterned[readVarint(mBuffer)];
+                String url = readString(mBuffer, mScratch);
+                String thumbnailUrl = readString(mBuffer, mScratch);
+                int tagCount = readVarint(mBuffer);
+                List<ArticleTag> tags = new ArrayList<>(tagCount);
+                for (int i = 0; i < tagCount; i++) {
+                    tags.add(new ArticleTag(mInterned[readVarint(mBuffer)], mInterned[readVarint(mBuffer)],
+                            mInterned[readVarint(mBuffer)]));
+                }
+                return new Article(title, section, sectionId, publicationTime, author, url, thumbnailUrl, tags);
+            } catch (IOException e) {
+                // Checked when mapped, the file is replaced and never modified in place
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static int intern(String string, Map<String, Integer> indexes, List<String> interned) {
+        if (string == null) {
+            return 0;
+        }
+        Integer index = indexes.get(string);
+        if (index == null) {
+            interned.add(string);
+            index = interned.size();
+            indexes.put(string, index);
+        }
+        return index;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in, byte[] scratch) throws IOException {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IOException("Truncated string");
+        }
+        if (length > scratch.length) {
+            scratch = new byte[length];
+        }
+        in.get(scratch, 0, length);
+        return new String(scratch, 0, length, UTF_8);
+    }
+
+    /**
+     * Write an unsigned int in 7 bit groups, low group first
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.provider.BaseColumns;
+
+/**
+ * Schema of the local article database.
+ */
+public final class ArticleContract {
+
+    private ArticleContract() {
+    }
+
+    /**
+     * Table of the articles, one row per webUrl.
+     */
+    public static final class ArticleEntry implements BaseColumns {
+
+        public static final String TABLE_NAME = "articles";
+
+        /** Website URL of the article, the primary key */
+        public static final String COLUMN_URL = "web_url";
+        public static final String COLUMN_TITLE = "title";
+        public static final String COLUMN_SECTION_NAME = "section_name";
+        public static final String COLUMN_SECTION_ID = "section_id";
+        /** Publication date in epoch millis, null if unknown */
+        public static final String COLUMN_PUBLISHED = "published";
+        public static final String COLUMN_AUTHOR = "author";
+        /** URL of the thumbnail image, null if none */
+        public static final String COLUMN_THUMBNAIL = "thumbnail";
+        /** Contributor and keyword tags, encoded by {@link ArticleTag}, null if none */
+        public static final String COLUMN_TAGS = "tags";
+
+        private ArticleEntry() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Thread-safe cache of the {@link SimpleDateFormat}s used by the app.
+ *
+ * A {@link SimpleDateFormat} is expensive to create and not thread-safe, so every thread
+ * keeps its own instance of each pattern instead of creating a new one per call.
+ */
+public final class ArticleDateFormats {
+
+    /**
+     * Patterns of the dates read from the Guardian json and shown in the list
+     */
+    private static final String guardian_date_pattern = "yyyy-MM-dd'T'HH:mm:ss";
+    private static final String guardian_date_pattern_utc = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+    private static final String row_date_pattern = "LLL dd, yyyy";
+    private static final String row_time_pattern = "h:mm a";
+    private static final String short_date_pattern = "MMM d, yyy";
+    private static final String http_date_pattern = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private static final ThreadLocal<SimpleDateFormat> GUARDIAN_DATE = formatter(guardian_date_pattern, null);
+    private static final ThreadLocal<SimpleDateFormat> GUARDIAN_DATE_UTC = formatter(guardian_date_pattern_utc, Locale.UK);
+    private static final ThreadLocal<SimpleDateFormat> ROW_DATE = formatter(row_date_pattern, null);
+    private static final ThreadLocal<SimpleDateFormat> ROW_TIME = formatter(row_time_pattern, null);
+    private static final ThreadLocal<SimpleDateFormat> SHORT_DATE = formatter(short_date_pattern, Locale.UK);
+    private static final ThreadLocal<SimpleDateFormat> HTTP_DATE = formatter(http_date_pattern, Locale.US);
+
+    private ArticleDateFormats() {
+    }
+
+    private static ThreadLocal<SimpleDateFormat> formatter(final String pattern, final Locale locale) {
+        return new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return locale == null ? new SimpleDateFormat(pattern) : new SimpleDateFormat(pattern, locale);
+            }
+        };
+    }
+
+    /**
+     * Parse a "webPublicationDate" of the Guardian json, in the default time zone.
+     */
+    public static Date parseGuardianDate(String dateData) throws ParseException {
+        return GUARDIAN_DATE.get().parse(dateData);
+    }
+
+    /**
+     * Parse a "webPublicationDate" of the Guardian json, keeping its trailing 'Z'.
+     */
+    public static Date parseGuardianDateUtc(String dateData) throws ParseException {
+        return GUARDIAN_DATE_UTC.get().parse(dateData);
+    }
+
+    /**
+     * Format a date like a "webPublicationDate" of the Guardian json, the way
+     * {@link #parseGuardianDate(String)} reads it back, e.g. for the "from-date" parameter.
+     */
+    public static String formatGuardianDate(Date date) {
+        return GUARDIAN_DATE_UTC.get().format(date);
+    }
+
+    /**
+     * Returns the date as shown in an article row, e.g. "May 29, 2018"
+     */
+    public static String formatRowDate(Date date) {
+        return date == null ? "" : ROW_DATE.get().format(date);
+    }
+
+    /**
+     * Returns the time as shown in an article row, e.g. "2:40 PM"
+     */
+    public static String formatRowTime(Date date) {
+        return date == null ? "" : ROW_TIME.get().format(date);
+    }
+
+    /**
+     * Returns the short date, e.g. "May 29, 2018"
+     */
+    public static String formatShortDate(Date date) {
+        return SHORT_DATE.get().format(date);
+    }
+
+    /**
+     * Parse an HTTP date, e.g. "Wed, 21 Oct 2015 07:28:00 GMT" in a Retry-After header.
+     */
+    public static Date parseHttpDate(String dateData) throws ParseException {
+        return HTTP_DATE.get().parse(dateData);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.android.p7newsapplicationstage2.ArticleContract.ArticleEntry;
+
+/**
+ * Creates and upgrades the local article database.
+ */
+public class ArticleDbHelper extends SQLiteOpenHelper {
+
+    /** Name of the database file */
+    private static final String DATABASE_NAME = "articles.db";
+
+    /** Database version, to increment when the schema changes */
+    private static final int DATABASE_VERSION = 3;
+
+    public ArticleDbHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructs a helper for the given database file, or for an in-memory database when
+     * the name is null.
+     */
+    ArticleDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + ArticleEntry.TABLE_NAME + " ("
+                + ArticleEntry.COLUMN_URL + " TEXT PRIMARY KEY NOT NULL, "
+                + ArticleEntry.COLUMN_TITLE + " TEXT NOT NULL, "
+                + ArticleEntry.COLUMN_SECTION_NAME + " TEXT, "
+                + ArticleEntry.COLUMN_SECTION_ID + " TEXT, "
+                + ArticleEntry.COLUMN_PUBLISHED + " INTEGER, "
+                + ArticleEntry.COLUMN_AUTHOR + " TEXT, "
+                + ArticleEntry.COLUMN_THUMBNAIL + " TEXT, "
+                + ArticleEntry.COLUMN_TAGS + " TEXT)");
+        // Every list query is ordered newest first, optionally filtered by section or author
+        db.execSQL("CREATE INDEX idx_articles_published ON " + ArticleEntry.TABLE_NAME
+                + " (" + ArticleEntry.COLUMN_PUBLISHED + ")");
+        db.execSQL("CREATE INDEX idx_articles_section ON " + ArticleEntry.TABLE_NAME
+                + " (" + ArticleEntry.COLUMN_SECTION_ID + ", " + ArticleEntry.COLUMN_PUBLISHED + ")");
+        db.execSQL("CREATE INDEX idx_articles_author ON " + ArticleEntry.TABLE_NAME
+                + " (" + ArticleEntry.COLUMN_AUTHOR + ", " + ArticleEntry.COLUMN_PUBLISHED + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The table only holds data downloaded again on the next refresh
+        db.execSQL("DROP TABLE IF EXISTS " + ArticleEntry.TABLE_NAME);
+        onCreate(db);
+    }
+}
@@ -3,47 +3,376 @@ package com.example.android.p7newsapplicationstage2;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Loads a list of news by using an AsyncTask to perform the
  * network request to the given URL.
+ *
+ * The first load delivers the list saved in the {@link ArticleCache} for that URL, if any.
+ * When the cached list is stale it is refreshed from the network right after it has been
+ * delivered, and the fresh list is pushed to the UI in a second delivery.
+ *
+ * Without a cache entry, e.g. right after the section was changed in the settings, the first
+ * load delivers the newest articles of that section from the {@link ArticleStore} instead.
+ * Every list downloaded is upserted into the store.
+ *
+ * Without any list to show, the first articles are delivered as soon as they have been
+ * parsed, followed by the whole page. Canceling the load, e.g. when the query changes,
+ * aborts the download and the parsing. Stopping the loader does not: a load in progress
+ * when the activity stops runs to its end, and its page is delivered on the next start.
+ *
+ * The delivered {@link ArticlePage} tells how the request ended. When it failed, the page
+ * holds the last good list, flagged as a fallback, so the UI can keep it and explain why it
+ * was not refreshed.
+ *
+ * The first network load also fills the {@link ArticleSearchIndex} with the stored articles,
+ * so the offline search covers them and not only the ones downloaded since the app started.
+ *
+ * The last page delivered is kept: when the activity comes back, e.g. from the settings or
+ * the reader, it is delivered again right away, and reloaded only when it is older than
+ * {@link #MAX_RESULT_AGE_MILLIS}, when it came from a failed request, when the query
+ * changed, or when the content changed while the loader was stopped. The page size alone
+ * does not make another query: it follows the network, see {@link FetchPolicy}.
  */
-public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
+public class ArticleLoader extends AsyncTaskLoader<ArticlePage> {
 
     /** Tag for log messages */
     private static final String LOG_TAG = ArticleLoader.class.getName();
 
-    /** Query URL */
-    private String mUrl;
+    /** True once the stored articles have been added to the search index in this process */
+    private static volatile boolean sStoreIndexed;
+
+    /** Age after which the page delivered is reloaded on the next start */
+    static final long MAX_RESULT_AGE_MILLIS = 10 * 60 * 1000;
+
+    /** Query URL, read by the loading thread */
+    private volatile String mUrl;
+
+    /** Persistent cache of the parsed lists */
+    private final ArticleCache mCache;
+
+    /** Local database of every article downloaded */
+    private final ArticleStore mStore;
+
+    /** ID of the section the URL is filtered on, null for every section */
+    private final String mSectionId;
+
+    /** Number of articles read from the store when there is no cache entry */
+    private final int mLimit;
+
+    /** True once the cache has been looked up for this loader */
+    private boolean mCacheChecked;
+
+    /** Last list read from the cache, used as a fallback when the refresh fails */
+    private List<Article> mCachedArticles;
+
+    /** Number of articles delivered ahead of the rest of the page */
+    private static final int PROGRESSIVE_DELIVERY_SIZE = 3;
+
+    /** Posts the progressive deliveries to the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** True on the main thread while the first articles are delivered ahead of the page */
+    private boolean mDeliveringPartialList;
+
+    /** Subscription to the network request of the current load, canceled with the load */
+    private volatile FeedRequests.Ticket mTicket;
+
+    /** True when the list being delivered is stale and must be refreshed afterwards */
+    private volatile boolean mRevalidate;
+
+    /** Cached articles to add to the indexes once delivered, null if none */
+    private volatile List<Article> mArticlesToIndex;
+
+    /** Last page delivered, not counting the progressive deliveries, and when it was */
+    private ArticlePage mResult;
+    private long mResultTime;
+
+    /** True from the start of a load until its page is delivered */
+    private boolean mLoadPending;
 
     /**
      * Constructs a new {@link ArticleLoader}.
      *
      * @param context of the activity
      * @param url to load data from
+     * @param sectionId is the section the URL is filtered on, or null for every section
+     * @param limit is the number of articles read from the store
      */
-    public ArticleLoader(Context context, String url) {
+    public ArticleLoader(Context context, String url, String sectionId, int limit) {
         super(context);
         mUrl = url;
+        mCache = ArticleCache.getInstance(context);
+        mStore = ArticleStore.getInstance(context);
+        mSectionId = sectionId;
+        mLimit = limit;
     }
 
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        // Taken first, the content changed flag must be cleared even when nothing was loaded.
+        boolean reload = shouldReload(takeContentChanged(), mLoadPending, mResult, mResultTime,
+                System.currentTimeMillis());
+        if (mResult != null) {
+            // Delivered as is, it is no newer than it was.
+            super.deliverResult(mResult);
+        }
+        if (reload) {
+            forceLoad();
+        }
+    }
+
+    /**
+     * Returns true when the loader must reload as it starts at now: when the content changed,
+     * or when no load is in progress and the last page, delivered at the given time, is
+     * missing or stale. A load in progress is left to deliver its page.
+     */
+    static boolean shouldReload(boolean contentChanged, boolean loadPending, ArticlePage result,
+                                long deliveredAt, long now) {
+        return contentChanged || !loadPending && (result == null || isStale(result, deliveredAt, now));
     }
 
+    /**
+     * Returns true when the page delivered at the given time must be reloaded at now.
+     */
+    static boolean isStale(ArticlePage page, long deliveredAt, long now) {
+        return !page.isSuccessful() || now - deliveredAt > MAX_RESULT_AGE_MILLIS;
+    }
+
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        mLoadPending = true;
+    }
+
+    /**
+     * The activity is stopped: the load in progress runs to its end, the loader manager
+     * holds its page until the next start.
+     */
+    @Override
+    protected void onStopLoading() {
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelLoad();
+        mResult = null;
+        mLoadPending = false;
+    }
+
+    /**
+     * Point the loader to the query URL and reload when the query changed. A URL differing
+     * only by its page size, which follows the network measured since, is the same query and
+     * is ignored. Called on the main thread.
+     */
+    public void setUrl(String url) {
+        if (url != null && !isSameQuery(url, mUrl)) {
+            mUrl = url;
+            onContentChanged();
+        }
+    }
+
+    /**
+     * Returns true when both URLs request the same query, whatever their page sizes.
+     */
+    static boolean isSameQuery(String url, String other) {
+        return other != null && ArticleQuery.withoutPageSize(url).equals(ArticleQuery.withoutPageSize(other));
+    }
+
+
     /**
      * This is on a background thread.
      */
     @Override
-    public List<Article> loadInBackground() {
-        if (mUrl == null) {
+    public ArticlePage loadInBackground() {
+        // Read once, the URL can change on the main thread meanwhile.
+        String url = mUrl;
+        if (url == null) {
             return null;
         }
+        long loadStart = FeedMetrics.startTimer();
+        try {
+            return load(url);
+        } finally {
+            FeedMetrics.recordStage(FeedMetrics.STAGE_LOAD, loadStart);
+        }
+    }
+
+    /**
+     * Returns the cached or stored list on the first load, the network list afterwards.
+     */
+    private ArticlePage load(String url) {
+        // Serve the cached list first, the network refresh happens after its delivery.
+        if (!mCacheChecked) {
+            mCacheChecked = true;
+            ArticleCache.Entry entry = mCache.get(url);
+            FeedMetrics.recordCacheLookup(entry != null);
+            if (entry != null) {
+                mCachedArticles = entry.getArticles();
+                // Indexed once delivered: the records are decoded on first access, and the
+                // delivery must not wait for all of them.
+                mArticlesToIndex = mCachedArticles;
+                mRevalidate = entry.isStale(System.currentTimeMillis());
+                return new ArticlePage(mCachedArticles);
+            }
+            List<Article> stored = mSectionId == null
+                    ? mStore.queryNewest(mLimit) : mStore.queryNewestInSection(mSectionId, mLimit);
+            if (!stored.isEmpty()) {
+                mCachedArticles = stored;
+                mRevalidate = true;
+                return new ArticlePage(mCachedArticles);
+            }
+        }
+
+        // Index the stored articles once, after the first delivery so it does not delay it.
+        if (!sStoreIndexed) {
+            sStoreIndexed = true;
+            List<Article> stored = mStore.queryNewest(ArticleStore.MAX_ARTICLES);
+            ArticleSearchIndex.getInstance().addAll(stored);
+            ArticleTagIndex.getInstance().addAll(stored);
+        }
 
         // Perform the network request, parse the response, and extract a list of newsFeeds.
-        List<Article> Article = QueryUtils.fetchArcticlesAppData(mUrl);
-        return Article;
+        // The request is conditional on the cached entry and saves the new list in the cache.
+        // An identical request already in flight, e.g. from the background sync, is joined.
+        // With nothing on screen yet, the first rows are shown before the body is complete.
+        final FeedRequests.Ticket ticket = new FeedRequests.Ticket();
+        mTicket = ticket;
+        ArticleStreamParser.OnArticleParsedListener progress =
+                mCachedArticles == null ? new ProgressiveDelivery(ticket) : null;
+        ArticlePage page = FeedRequests.getInstance().fetch(url, mCache, ticket, progress);
+        if (page.getArticles().isEmpty() && mCachedArticles != null) {
+            // Keep showing the last good list rather than an empty screen.
+            return fallback(page, mCachedArticles);
+        }
+        if (page.getArticles().isEmpty() && progress != null) {
+            // The download failed midway, keep the rows already shown, flagged as such.
+            List<Article> parsed = ((ProgressiveDelivery) progress).getParsed();
+            ArticlePage partial = page.withArticles(parsed);
+            partial.setPartial(!page.isSuccessful() && !parsed.isEmpty());
+            return partial;
+        }
+        if (page.isSuccessful()) {
+            mStore.upsert(page.getArticles());
+            if (!page.getArticles().isEmpty()) {
+                // The last good list, the fallback of the next reloads
+                mCachedArticles = page.getArticles();
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns the given articles with the outcome of the page, flagged as a fallback when the
+     * request failed.
+     */
+    private static ArticlePage fallback(ArticlePage page, List<Article> articles) {
+        ArticlePage fallback = page.withArticles(articles);
+        fallback.setFallback(!page.isSuccessful() && !articles.isEmpty());
+        return fallback;
+    }
+
+    /**
+     * Delivers the first parsed {@link Article}s of the page to the UI while the rest of the
+     * response is still being downloaded.
+     */
+    private class ProgressiveDelivery implements ArticleStreamParser.OnArticleParsedListener {
+
+        private final FeedRequests.Ticket mLoadTicket;
+        private final List<Article> mParsed = new ArrayList<>();
+
+        ProgressiveDelivery(FeedRequests.Ticket ticket) {
+            mLoadTicket = ticket;
+        }
+
+        /**
+         * Returns the articles delivered ahead of the page, empty if none was.
+         * Called on the loading thread, like the parsing callbacks.
+         */
+        List<Article> getParsed() {
+            return mParsed.size() == PROGRESSIVE_DELIVERY_SIZE ? new ArrayList<>(mParsed) : new ArrayList<Article>();
+        }
+
+        @Override
+        public void onArticleParsed(Article article) {
+            if (mParsed.size() >= PROGRESSIVE_DELIVERY_SIZE) {
+                return;
+            }
+            mParsed.add(article);
+            if (mParsed.size() == PROGRESSIVE_DELIVERY_SIZE) {
+                final List<Article> firstArticles = new ArrayList<>(mParsed);
+                // Posted before the load completes, so it reaches the UI before the whole page.
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mLoadTicket.isCanceled() && isStarted() && !isAbandoned()) {
+                            mDeliveringPartialList = true;
+                            try {
+                                deliverResult(new ArticlePage(firstArticles));
+                            } finally {
+                                mDeliveringPartialList = false;
+                            }
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Called on the main thread when the load is canceled, e.g. when the loader is restarted
+     * for a new query: the superseded request stops waiting, and its download is aborted
+     * unless another loader shares it.
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        FeedRequests.Ticket ticket = mTicket;
+        if (ticket != null) {
+            ticket.cancel();
+        }
+    }
+
+    /**
+     * Returns true, from onLoadFinished, when the list delivered is only the beginning of the
+     * page and the rest of it is still loading.
+     */
+    public boolean isDeliveringPartialList() {
+        return mDeliveringPartialList;
+    }
+
+    @Override
+    public void deliverResult(ArticlePage data) {
+        if (isReset()) {
+            return;
+        }
+        if (!mDeliveringPartialList) {
+            mResult = data;
+            mResultTime = System.currentTimeMillis();
+            mLoadPending = false;
+        }
+        super.deliverResult(data);
+        final List<Article> articlesToIndex = mArticlesToIndex;
+        if (articlesToIndex != null) {
+            mArticlesToIndex = null;
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ArticleSearchIndex.getInstance().addAll(articlesToIndex);
+                    ArticleTagIndex.getInstance().addAll(articlesToIndex);
+                }
+            });
+        }
+        if (mRevalidate) {
+            mRevalidate = false;
+            // Reloads right away when started, or on the next start otherwise.
+            onContentChanged();
+        }
     }
 }
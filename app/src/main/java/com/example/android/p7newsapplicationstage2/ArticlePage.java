@@ -0,0 +1,157 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link ArticlePage} holds the {@link Article}s of one page of the Guardian search
+ * results along with the paging information of the response.
+ *
+ * It also tells how the request went: a failed request has an error outcome, and its
+ * articles are the last good ones saved for the URL, if any, flagged as a fallback, or the
+ * first ones parsed before the download failed, flagged as partial.
+ */
+public class ArticlePage {
+
+    /**
+     * Value of the paging fields when the response didn't carry them, e.g. a 304 cache hit
+     */
+    public static final int UNKNOWN = 0;
+
+    /**
+     * Outcomes of the request the page comes from
+     */
+    public static final int OUTCOME_OK = 0;
+    /** No connection, or it was lost before the response headers */
+    public static final int OUTCOME_NETWORK_ERROR = 1;
+    public static final int OUTCOME_TIMEOUT = 2;
+    /** 5xx response */
+    public static final int OUTCOME_SERVER_ERROR = 3;
+    /** 429 response, see {@link #getRetryAfterMillis()} */
+    public static final int OUTCOME_RATE_LIMITED = 4;
+    /** Any other response than 200 and 304 */
+    public static final int OUTCOME_HTTP_ERROR = 5;
+    /** Not attempted, the API failed too often lately */
+    public static final int OUTCOME_CIRCUIT_OPEN = 6;
+    public static final int OUTCOME_CANCELED = 7;
+
+    private final List<Article> mArticles;
+    private int mCurrentPage = UNKNOWN;
+    private int mPages = UNKNOWN;
+    private int mOutcome = OUTCOME_OK;
+    private boolean mFallback;
+    private boolean mPartial;
+    private long mRetryAfterMillis;
+
+    ArticlePage() {
+        mArticles = new ArrayList<>();
+    }
+
+    ArticlePage(List<Article> articles) {
+        mArticles = articles;
+    }
+
+    /**
+     * Returns the articles of the page
+     */
+    public List<Article> getArticles() {
+        return mArticles;
+    }
+
+    /**
+     * Returns the number of the page, starting at 1, or {@link #UNKNOWN}
+     */
+    public int getCurrentPage() {
+        return mCurrentPage;
+    }
+
+    /**
+     * Returns the total number of pages for the query, or {@link #UNKNOWN}
+     */
+    public int getPages() {
+        return mPages;
+    }
+
+    /**
+     * Returns how the request went, one of the OUTCOME constants
+     */
+    public int getOutcome() {
+        return mOutcome;
+    }
+
+    /**
+     * Returns true when the request succeeded, the articles being fresh or still valid
+     */
+    public boolean isSuccessful() {
+        return mOutcome == OUTCOME_OK;
+    }
+
+    /**
+     * Returns true when the request failed and the articles are the last good ones instead
+     */
+    public boolean isFallback() {
+        return mFallback;
+    }
+
+    /**
+     * Returns true when the request failed and the articles are only the beginning of the
+     * page, so it must neither be paged from nor saved as a whole page
+     */
+    public boolean isPartial() {
+        return mPartial;
+    }
+
+    /**
+     * Returns the delay the server asked for before the next request, 0 if none
+     */
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+
+    void setOutcome(int outcome) {
+        mOutcome = outcome;
+    }
+
+    void setFallback(boolean fallback) {
+        mFallback = fallback;
+    }
+
+    void setPartial(boolean partial) {
+        mPartial = partial;
+    }
+
+    void setRetryAfterMillis(long retryAfterMillis) {
+        mRetryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns an empty page with the given outcome.
+     */
+    static ArticlePage failed(int outcome) {
+        ArticlePage page = new ArticlePage();
+        page.setOutcome(outcome);
+        return page;
+    }
+
+    /**
+     * Returns a copy of the page with the given articles, and the same paging and outcome.
+     */
+    ArticlePage withArticles(List<Article> articles) {
+        ArticlePage copy = new ArticlePage(articles);
+        copy.mCurrentPage = mCurrentPage;
+        copy.mPages = mPages;
+        copy.mOutcome = mOutcome;
+        copy.mFallback = mFallback;
+        copy.mPartial = mPartial;
+        copy.mRetryAfterMillis = mRetryAfterMillis;
+        return copy;
+    }
+
+    void setCurrentPage(int currentPage) {
+        mCurrentPage = currentPage;
+    }
+
+    void setPages(int pages) {
+        mPages = pages;
+    }
+}
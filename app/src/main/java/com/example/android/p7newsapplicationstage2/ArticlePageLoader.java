@@ -0,0 +1,69 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+
+/**
+ * Loads one page of news, with its paging information, by using an AsyncTask to
+ * perform the network request to the given URL.
+ */
+public class ArticlePageLoader extends AsyncTaskLoader<ArticlePage> {
+
+    /** Query URL, including the page parameter */
+    private String mUrl;
+
+    /** Subscription to the network request, canceled with the load */
+    private final FeedRequests.Ticket mTicket = new FeedRequests.Ticket();
+
+    /** Page loaded for the URL, kept so it is not requested again on a configuration change */
+    private ArticlePage mPage;
+
+    /**
+     * Constructs a new {@link ArticlePageLoader}.
+     *
+     * @param context of the activity
+     * @param url to load data from
+     */
+    public ArticlePageLoader(Context context, String url) {
+        super(context);
+        mUrl = url;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mPage != null) {
+            deliverResult(mPage);
+        } else {
+            forceLoad();
+        }
+    }
+
+    /**
+     * This is on a background thread.
+     */
+    @Override
+    public ArticlePage loadInBackground() {
+        if (mUrl == null) {
+            return null;
+        }
+        ArticlePage page = FeedRequests.getInstance().fetch(mUrl, ArticleCache.getInstance(getContext()), mTicket);
+        if (page.isSuccessful()) {
+            ArticleStore.getInstance(getContext()).upsert(page.getArticles());
+        }
+        return page;
+    }
+
+    /**
+     * The page is not wanted anymore, stop waiting for it.
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        mTicket.cancel();
+    }
+
+    @Override
+    public void deliverResult(ArticlePage page) {
+        mPage = page;
+        super.deliverResult(page);
+    }
+}
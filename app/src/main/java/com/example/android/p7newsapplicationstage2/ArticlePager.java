@@ -0,0 +1,174 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps track of the pages already appended to the article list.
+ *
+ * The first page is requested with a small page size so it paints quickly. The following
+ * pages use a larger page size, and are requested from the page holding the first article not
+ * shown yet: when both sizes are equal paging goes on at page 2, otherwise the articles already
+ * shown come back once and are dropped by the de-duplication on webUrl. Both sizes and the
+ * prefetch distance come from the {@link FetchPolicy}; the following page size is set on reset
+ * and kept until the next one, as changing it would shift the pages.
+ */
+public class ArticlePager {
+
+    /**
+     * Page size of the first request, small so the first rows show up quickly
+     */
+    public static final int FIRST_PAGE_SIZE = 10;
+
+    /**
+     * Page size of the following pages, until the first page is set
+     */
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+    /** Page size of the following pages */
+    private int mPageSize = DEFAULT_PAGE_SIZE;
+
+    /** Start loading the next page when the last visible row is this close to the end */
+    private int mPrefetchDistance = FetchPolicy.MIN_PREFETCH_DISTANCE;
+
+    /** URL of the articles already in the list */
+    private final Set<String> mLoadedUrls = new HashSet<>();
+
+    /** Next page to request, with the page size of the following pages */
+    private int mNextPage = 1;
+
+    /** Total number of pages, known once a page has been loaded */
+    private int mPages = ArticlePage.UNKNOWN;
+
+    /** True once a page came back empty without any paging information */
+    private boolean mEndReached;
+
+    /** True while a page request is in flight */
+    private boolean mLoading;
+
+    /**
+     * Start over from the given first page of articles, the following pages having the given
+     * size and being requested prefetchDistance rows before the end of the list.
+     */
+    public void reset(List<Article> firstPage, int pageSize, int prefetchDistance) {
+        mPageSize = pageSize;
+        mPrefetchDistance = prefetchDistance;
+        reset(firstPage);
+    }
+
+    /**
+     * Start over from the given first page of articles, keeping the page size.
+     */
+    public void reset(List<Article> firstPage) {
+        mLoadedUrls.clear();
+        mNextPage = 1;
+        mPages = ArticlePage.UNKNOWN;
+        mEndReached = false;
+        mLoading = false;
+        if (firstPage != null) {
+            for (Article article : firstPage) {
+                mLoadedUrls.add(article.getUrl());
+            }
+        }
+        mNextPage = getFirstPageNotShown();
+    }
+
+    /**
+     * Returns the page of the following page size holding the first article not in the list.
+     */
+    private int getFirstPageNotShown() {
+        return mLoadedUrls.size() / Math.max(1, mPageSize) + 1;
+    }
+
+    /**
+     * Merge a new delivery of the first page, e.g. refreshed after the cached one was shown,
+     * into the list shown: returns the first page followed by the articles of the list it does
+     * not hold, in their order. The pages appended so far and the next page to request are kept.
+     */
+    public List<Article> onFirstPageRevalidated(List<Article> shown, List<Article> firstPage) {
+        List<Article> merged = new ArrayList<>(firstPage);
+        Set<String> firstPageUrls = new HashSet<>();
+        for (Article article : firstPage) {
+            firstPageUrls.add(article.getUrl());
+            mLoadedUrls.add(article.getUrl());
+        }
+        for (Article article : shown) {
+            if (!firstPageUrls.contains(article.getUrl())) {
+                merged.add(article);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Returns true when the next page should be requested for the given scroll position.
+     *
+     * @param lastVisibleItem is the position of the last visible row
+     * @param itemCount       is the number of rows in the list
+     */
+    public boolean shouldLoadMore(int lastVisibleItem, int itemCount) {
+        return !mLoading && hasMore() && itemCount > 0 && lastVisibleItem >= itemCount - 1 - mPrefetchDistance;
+    }
+
+    /**
+     * Returns the page size of the following pages
+     */
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * Returns false once the last page of the query has been loaded
+     */
+    public boolean hasMore() {
+        return !mEndReached && (mPages == ArticlePage.UNKNOWN || mNextPage <= mPages);
+    }
+
+    /**
+     * Returns the page to request next and marks the request as in flight
+     */
+    public int startLoading() {
+        mLoading = true;
+        return mNextPage;
+    }
+
+    /**
+     * Record a loaded page and return its articles that are not in the list yet.
+     * A page delivered again by its loader, while no request is in flight, is ignored.
+     */
+    public List<Article> onPageLoaded(ArticlePage page) {
+        List<Article> newArticles = new ArrayList<>();
+        if (!mLoading || page == null) {
+            return newArticles;
+        }
+        mLoading = false;
+        if (!page.isSuccessful() && !page.isFallback()) {
+            // Nothing to show and no sign of the end: the same page is requested again.
+            return newArticles;
+        }
+        for (Article article : page.getArticles()) {
+            if (mLoadedUrls.add(article.getUrl())) {
+                newArticles.add(article);
+            }
+        }
+        if (page.getPages() != ArticlePage.UNKNOWN) {
+            mPages = page.getPages();
+        } else if (page.getArticles().isEmpty()) {
+            // No paging information and nothing returned: there is nothing left to read.
+            mEndReached = true;
+        }
+        // On from the first article not shown, and past this page even when it added nothing,
+        // e.g. when newer articles pushed the shown ones into it.
+        mNextPage = Math.max(mNextPage + 1, getFirstPageNotShown());
+        return newArticles;
+    }
+
+    /**
+     * Let the same page be requested again, after its request failed or was dropped.
+     */
+    public void onPageFailed() {
+        mLoading = false;
+    }
+}
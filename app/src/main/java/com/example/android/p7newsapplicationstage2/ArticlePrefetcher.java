@@ -0,0 +1,250 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.util.Log;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads the web pages of the articles the user is likely to open next, extracts their
+ * text with the {@link ArticleBodyExtractor} and keeps it in an {@link ArticleBodyCache}, so
+ * the reader opens them without waiting for the network.
+ *
+ * The work is bounded: the executor limits how many pages download at once, pages larger
+ * than a maximum are dropped, and prefetching stops once a byte budget has been spent, until
+ * the budget is renewed a {@link #BUDGET_PERIOD_MILLIS} after it started being spent. Only
+ * the prefetches are charged to it, not the pages the reader loads itself. The prefetches
+ * still queued for articles which are no longer wanted, e.g. scrolled past, are dropped on
+ * the next call.
+ *
+ * {@link #prefetch(List)} is called on the main thread, so whether a text is cached, which
+ * reads the disk, is only checked once the prefetch runs on the executor.
+ */
+public class ArticlePrefetcher {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ArticlePrefetcher.class.getSimpleName();
+
+    private static final String header_content_type = "Content-Type";
+    private static final String charset_parameter = "charset=";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Period after which the bytes spent no longer count against the budget
+     */
+    static final long BUDGET_PERIOD_MILLIS = 24 * 60 * 60 * 1000;
+
+    private final ArticleBodyCache mCache;
+    private final HttpTransport mTransport;
+    private final ExecutorService mExecutor;
+    private final long mMaxPageBytes;
+    private final FeedSync.Clock mClock;
+
+    /** Bytes the prefetches may download, and the bytes they downloaded since the period started */
+    private long mByteBudget;
+    private long mBytesUsed;
+    private long mBudgetPeriodStart;
+
+    /** Prefetches queued or running, by article URL */
+    private final Map<String, Future<?>> mPending = new HashMap<>();
+
+    /**
+     * Constructs a new {@link ArticlePrefetcher}.
+     *
+     * @param cache        keeps the extracted texts
+     * @param transport    downloads the pages
+     * @param executor     runs the prefetches, its thread count bounds the concurrent downloads
+     * @param maxPageBytes is the size above which a page is not downloaded any further
+     * @param byteBudget   is the number of bytes the prefetches may download
+     */
+    ArticlePrefetcher(ArticleBodyCache cache, HttpTransport transport, ExecutorService executor,
+                      long maxPageBytes, long byteBudget) {
+        this(cache, transport, executor, maxPageBytes, byteBudget, FeedSync.SYSTEM_CLOCK);
+    }
+
+    /**
+     * Same as {@link #ArticlePrefetcher(ArticleBodyCache, HttpTransport, ExecutorService, long, long)},
+     * with the clock the budget periods are measured on.
+     */
+    ArticlePrefetcher(ArticleBodyCache cache, HttpTransport transport, ExecutorService executor,
+                      long maxPageBytes, long byteBudget, FeedSync.Clock clock) {
+        mCache = cache;
+        mTransport = transport;
+        mExecutor = executor;
+        mMaxPageBytes = maxPageBytes;
+        mByteBudget = byteBudget;
+        mClock = clock;
+        mBudgetPeriodStart = clock.currentTimeMillis();
+    }
+
+    /**
+     * Prefetch the texts of the given articles which are not cached yet, in order, as long as
+     * the byte budget lasts. The prefetches of other articles which have not started yet are
+     * dropped. Does not touch the disk, so it can be called on the main thread.
+     *
+     * @return the number of prefetches queued, including the ones finding their text cached
+     */
+    public synchronized int prefetch(List<Article> articles) {
+        Set<String> wanted = new HashSet<>();
+        for (Article article : articles) {
+            wanted.add(article.getUrl());
+        }
+        Iterator<Map.Entry<String, Future<?>>> iterator = mPending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Future<?>> pending = iterator.next();
+            // A running download is left to complete, the bytes are already spent.
+            if (!wanted.contains(pending.getKey()) && pending.getValue().cancel(false)) {
+                iterator.remove();
+            }
+        }
+
+        int queued = 0;
+        for (Article article : articles) {
+            if (!hasBudget()) {
+                break;
+            }
+            final String url = article.getUrl();
+            if (mPending.containsKey(url)) {
+                continue;
+            }
+            mPending.put(url, mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!mCache.contains(url) && hasBudget()) {
+                            fetch(url, true);
+                        }
+                    } catch (IOException e) {
+                        Log.w(LOG_TAG, "Problem prefetching " + url, e);
+                    } finally {
+                        removePending(url);
+                    }
+                }
+            }));
+            queued++;
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the text of the article: the cached one, or the one downloaded right now when
+     * it is not cached, which is not charged to the byte budget. Called off the main thread,
+     * e.g. by the reader.
+     */
+    public String load(String url) throws IOException {
+        String text = mCache.get(url);
+        return text != null ? text : fetch(url, false);
+    }
+
+    /**
+     * Change the number of bytes the prefetches may download, e.g. on a metered network.
+     */
+    public synchronized void setByteBudget(long byteBudget) {
+        mByteBudget = byteBudget;
+    }
+
+    /**
+     * Returns the number of bytes prefetched in the current budget period
+     */
+    public synchronized long getBytesUsed() {
+        return mBytesUsed;
+    }
+
+    /**
+     * Returns the number of prefetches queued or running
+     */
+    synchronized int pendingCount() {
+        return mPending.size();
+    }
+
+    private synchronized boolean hasBudget() {
+        long now = mClock.currentTimeMillis();
+        if (now - mBudgetPeriodStart >= BUDGET_PERIOD_MILLIS) {
+            mBudgetPeriodStart = now;
+            mBytesUsed = 0;
+        }
+        return mBytesUsed < mByteBudget;
+    }
+
+    private synchronized void removePending(String url) {
+        mPending.remove(url);
+    }
+
+    private synchronized void addBytesUsed(long bytes) {
+        mBytesUsed += bytes;
+    }
+
+    /**
+     * Download the page, extract its text and cache it.
+     *
+     * @param prefetch is true to charge the bytes downloaded to the budget
+     */
+    private String fetch(String url, boolean prefetch) throws IOException {
+        HttpTransport.Response response = mTransport.get(url, new HashMap<String, String>());
+        byte[] page;
+        String contentType = response.getHeader(header_content_type);
+        boolean complete = false;
+        try {
+            if (response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Error response code: " + response.getStatusCode());
+            }
+            // One byte past the maximum tells a page too large from one of the maximum size.
+            page = IOUtils.toByteArray(new BoundedInputStream(response.getBody(), mMaxPageBytes + 1));
+            if (prefetch) {
+                addBytesUsed(response.getBytesTransferred());
+            }
+            if (page.length > mMaxPageBytes) {
+                throw new IOException("Page larger than " + mMaxPageBytes + " bytes");
+            }
+            complete = true;
+        } finally {
+            // The rest of a page too large is not worth downloading to reuse the connection.
+            if (complete || response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+                response.close();
+            } else {
+                response.abort();
+            }
+        }
+
+        String text = ArticleBodyExtractor.extract(
+                new String(page, charsetOf(contentType)), url);
+        if (text.isEmpty()) {
+            throw new IOException("No article text");
+        }
+        mCache.put(url, text);
+        return text;
+    }
+
+    /**
+     * Returns the charset of the Content-Type header, UTF-8 when there is none.
+     */
+    static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            int index = contentType.toLowerCase().indexOf(charset_parameter);
+            if (index >= 0) {
+                String name = contentType.substring(index + charset_parameter.length()).split(";")[0]
+                        .replace("\"", "").trim();
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException e) {
+                    // Unknown charset, the Guardian pages are UTF-8 anyway.
+                }
+            }
+        }
+        return UTF_8;
+    }
+}
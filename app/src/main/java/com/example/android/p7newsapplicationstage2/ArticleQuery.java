@@ -0,0 +1,227 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the Guardian query URLs from the settings of the user.
+ *
+ * The activity and the background sync both use it, so the sync warms the cache entries
+ * the loaders read at startup.
+ */
+public final class ArticleQuery {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = ArticleQuery.class.getSimpleName();
+
+    /** URL for newsfeed data from the Guardian JSON dataset */
+    private static final String GUARDIAN_REQUEST_URL =
+            "http://content.guardianapis.com/search?order-by=newest&show-tags=contributor,keyword&q=politics&api-key=f1dfc1ea-9071-49cc-b586-005ed71ac92c";
+
+    private ArticleQuery() {
+    }
+
+    /**
+     * The feed query of the settings, read at once. Reading it is what costs at startup:
+     * the preference files are loaded from disk on first use, so it is read off the main thread.
+     */
+    public static final class Snapshot {
+        private final List<String> mSectionUrls;
+        private final String mFirstPageUrl;
+        private final String mSectionFilter;
+        private final int mFirstPageSize;
+
+        private Snapshot(Context context) {
+            mSectionUrls = ArticleQuery.buildSectionUrls(context);
+            mFirstPageUrl = ArticleQuery.buildFirstPageUrl(context);
+            mSectionFilter = ArticleQuery.getSectionFilter(context);
+            mFirstPageSize = ArticleQuery.getFirstPageSize(context);
+        }
+
+        /**
+         * Returns one URL per followed section, or an empty list when no section is followed
+         */
+        public List<String> getSectionUrls() {
+            return mSectionUrls;
+        }
+
+        public String getFirstPageUrl() {
+            return mFirstPageUrl;
+        }
+
+        /**
+         * Returns the section ID the feed is filtered on, or null when every section is shown
+         */
+        public String getSectionFilter() {
+            return mSectionFilter;
+        }
+
+        public int getFirstPageSize() {
+            return mFirstPageSize;
+        }
+    }
+
+    /**
+     * Read the feed query of the settings. Can be called from any thread.
+     */
+    public static Snapshot readSnapshot(Context context) {
+        return new Snapshot(context.getApplicationContext());
+    }
+
+    /**
+     * Returns the number of items per page chosen in the settings, the largest page requested
+     */
+    public static String getItemPerPage(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return sharedPrefs.getString(
+                context.getString(R.string.settings_item_per_page),
+                context.getString(R.string.settings_item_per_page_default));
+    }
+
+    /**
+     * Returns the topic category chosen in the settings
+     */
+    public static String getTopicCategory(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return sharedPrefs.getString(
+                context.getString(R.string.settings_topic_category),
+                context.getString(R.string.settings_topic_category_by_default));
+    }
+
+    /**
+     * Returns the section ID the feed is filtered on, or null when every section is shown
+     */
+    public static String getSectionFilter(Context context) {
+        String topicCategory = getTopicCategory(context);
+        if (topicCategory.equals(context.getString(R.string.settings_topic_category_by_default))) {
+            return null;
+        }
+        return topicCategory;
+    }
+
+    /**
+     * Returns the number of items per page chosen in the settings as a number
+     */
+    private static int getMaxPageSize(Context context) {
+        try {
+            return Integer.parseInt(getItemPerPage(context));
+        } catch (NumberFormatException e) {
+            Log.e(LOG_TAG, "Problem reading the number of items per page", e);
+            return ArticlePager.FIRST_PAGE_SIZE;
+        }
+    }
+
+    /**
+     * Returns the number of articles of the first page, small enough to show up quickly on
+     * the network measured so far
+     */
+    public static int getFirstPageSize(Context context) {
+        return FetchPolicy.getInstance(context).getFirstPageSize(getMaxPageSize(context));
+    }
+
+    /**
+     * Returns the number of articles of the following pages and of the section queries,
+     * at most the number of items per page chosen in the settings
+     */
+    public static int getPageSize(Context context) {
+        return FetchPolicy.getInstance(context).getPageSize(getMaxPageSize(context));
+    }
+
+    /**
+     * Returns the URL of the first page of the feed, with a small page size so it shows up quickly
+     */
+    public static String buildFirstPageUrl(Context context) {
+        return buildRequestUrl(context, String.valueOf(getFirstPageSize(context)), 1, getTopicCategory(context));
+    }
+
+    /**
+     * Returns one URL per followed section, or an empty list when no section is followed
+     */
+    public static List<String> buildSectionUrls(Context context) {
+        Set<String> sections = PreferenceManager.getDefaultSharedPreferences(context)
+                .getStringSet(context.getString(R.string.settings_sections), Collections.<String>emptySet());
+        List<String> urls = new ArrayList<>();
+        for (String section : sections) {
+            urls.add(buildRequestUrl(context, String.valueOf(getPageSize(context)), 1, section));
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the URLs the feed starts from: one per followed section, or the first page URL
+     */
+    public static List<String> buildFeedUrls(Context context) {
+        List<String> urls = buildSectionUrls(context);
+        if (urls.isEmpty()) {
+            urls.add(buildFirstPageUrl(context));
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the URL without its "page-size" query parameters, the query it requests whatever
+     * the page size, which follows the network.
+     */
+    static String withoutPageSize(String url) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return url;
+        }
+        StringBuilder stripped = new StringBuilder(url.substring(0, query + 1));
+        for (String parameter : url.substring(query + 1).split("&")) {
+            if (!parameter.equals("page-size") && !parameter.startsWith("page-size=")) {
+                stripped.append(parameter).append('&');
+            }
+        }
+        return stripped.toString();
+    }
+
+    /**
+     * Build the Guardian query URL for the given page size, page (starting at 1) and section.
+     */
+    public static String buildRequestUrl(Context context, String itemPerPage, int page, String orderbyTopic) {
+        return buildRequestUrl(itemPerPage, page,
+                orderbyTopic.equals(context.getString(R.string.settings_topic_category_by_default)) ? null : orderbyTopic);
+    }
+
+    /**
+     * Build the Guardian query URL for the given page size, page (starting at 1) and section,
+     * null for every section.
+     */
+    static String buildRequestUrl(String itemPerPage, int page, String section) {
+        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+        uriBuilder.appendQueryParameter("format", "json");
+        //can be oldest,newest or relevance(default where q params is specified)
+        uriBuilder.appendQueryParameter("order-by", "newest");
+        /*can be author,isbn,basic-prefix,...*/
+        uriBuilder.appendQueryParameter("show-reference", "author");
+        /*can be all,contributor,keyword,newspaper-book,publication,series,tone,type,...*/
+        // The contributors give the author, the keywords feed the related articles
+        uriBuilder.appendQueryParameter("show-tags", "contributor,keyword");
+        /*can be thumbnail,trailText,headline,body,...*/
+        uriBuilder.appendQueryParameter("show-fields", "thumbnail");
+        /*language parameter(ISO language code:fr,en)*/
+        uriBuilder.appendQueryParameter("lang", "en");
+        //default items per page is 10 but can get more(1-50)!!
+        uriBuilder.appendQueryParameter("page-size", itemPerPage);
+        //pages start at 1
+        uriBuilder.appendQueryParameter("page", String.valueOf(page));
+        if (section != null) {
+            uriBuilder.appendQueryParameter("section", section);
+        }
+        //q parameter can be something like education,debate,economy,immigration,...
+        //can combine debate AND economy as well(can use these operators :AND,OR,NOT)
+        uriBuilder.appendQueryParameter("q", "");
+        //Free student key from the Guardian API website
+        return uriBuilder.toString();
+    }
+}
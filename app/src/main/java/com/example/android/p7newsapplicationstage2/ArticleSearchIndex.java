@@ -0,0 +1,307 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over the title, section name and author of the {@link Article}s,
+ * so the list can be searched offline.
+ *
+ * Articles are added as they are downloaded or read back from the cache, in small batches so
+ * a search waits for one batch at most and not for a whole list. An article indexed again
+ * with other fields replaces the previous version, whose postings are removed and whose
+ * document ID is reused. Every word of the query must be the prefix of a word of the article;
+ * results are ranked by the field the words matched in (title, then author, then section),
+ * whole words first, then newest first.
+ */
+public class ArticleSearchIndex {
+
+    /**
+     * Indexed fields, stored in the two low bits of every posting
+     */
+    static final int FIELD_TITLE = 0;
+    static final int FIELD_SECTION = 1;
+    static final int FIELD_AUTHOR = 2;
+
+    /**
+     * Score of a match in each field, doubled when the whole word matches
+     */
+    private static final int[] FIELD_WEIGHTS = {4, 1, 2};
+
+    /**
+     * Articles indexed under one hold of the lock
+     */
+    static final int BATCH_SIZE = 50;
+
+    private static final ArticleSearchIndex sInstance = new ArticleSearchIndex();
+
+    /** Indexed articles by document ID, null while the ID is free */
+    private final List<Article> mDocuments = new ArrayList<>();
+
+    /** Document IDs freed by replaced articles, reused first */
+    private final IntList mFreeIds = new IntList();
+
+    /** Publication time of every document, to rank equal scores newest first */
+    private long[] mDates = new long[64];
+
+    /** Document ID of every indexed URL */
+    private final Map<String, Integer> mDocumentIds = new HashMap<>();
+
+    /** Sorted words, mapped to their postings: document ID << 2 | field */
+    private final TreeMap<String, IntList> mTerms = new TreeMap<>();
+
+    /** Scratch arrays of the search, indexed by document ID */
+    private int[] mScores = new int[0];
+    private int[] mMatchedWords = new int[0];
+    private int[] mWordScores = new int[0];
+
+    /**
+     * Growable array of ints, so postings do not box every entry.
+     */
+    private static final class IntList {
+        int[] mValues = new int[4];
+        int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+
+        int last() {
+            return mSize == 0 ? -1 : mValues[mSize - 1];
+        }
+
+        int removeLast() {
+            return mValues[--mSize];
+        }
+
+        /**
+         * Remove every occurrence of the value, keeping the order of the others.
+         */
+        void removeAll(int value) {
+            int kept = 0;
+            for (int i = 0; i < mSize; i++) {
+                if (mValues[i] != value) {
+                    mValues[kept++] = mValues[i];
+                }
+            }
+            mSize = kept;
+        }
+    }
+
+    /**
+     * Returns the index shared by the whole app.
+     */
+    public static ArticleSearchIndex getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns the number of indexed articles.
+     */
+    public synchronized int size() {
+        return mDocumentIds.size();
+    }
+
+    /**
+     * Index the given articles, releasing the lock between batches of {@link #BATCH_SIZE}.
+     */
+    public void addAll(List<Article> articles) {
+        if (articles == null) {
+            return;
+        }
+        for (int start = 0; start < articles.size(); start += BATCH_SIZE) {
+            synchronized (this) {
+                for (Article article : articles.subList(start, Math.min(start + BATCH_SIZE, articles.size()))) {
+                    add(article);
+                }
+            }
+        }
+    }
+
+    /**
+     * Index a single article. An article already indexed with the same URL is replaced.
+     */
+    public synchronized void add(Article article) {
+        Integer previousId = mDocumentIds.get(article.getUrl());
+        if (previousId != null) {
+            Article previous = mDocuments.get(previousId);
+            if (article.equals(previous)) {
+                return;
+            }
+            removeField(previousId, FIELD_TITLE, previous.getArticle_title());
+            removeField(previousId, FIELD_SECTION, previous.getArticle_section());
+            removeField(previousId, FIELD_AUTHOR, previous.getAuthor());
+            mDocuments.set(previousId, null);
+            mFreeIds.add(previousId);
+        }
+        int id;
+        if (mFreeIds.mSize > 0) {
+            id = mFreeIds.removeLast();
+            mDocuments.set(id, article);
+        } else {
+            id = mDocuments.size();
+            mDocuments.add(article);
+        }
+        mDocumentIds.put(article.getUrl(), id);
+        if (id == mDates.length) {
+            mDates = Arrays.copyOf(mDates, id * 2);
+        }
+        mDates[id] = article.getPublicationTime() == Article.NO_DATE ? 0 : article.getPublicationTime();
+        addField(id, FIELD_TITLE, article.getArticle_title());
+        addField(id, FIELD_SECTION, article.getArticle_section());
+        addField(id, FIELD_AUTHOR, article.getAuthor());
+    }
+
+    /**
+     * Returns at most limit articles matching every word of the query, best match first.
+     */
+    public synchronized List<Article> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        ensureScratchCapacity();
+
+        // Documents matching the first word are the candidates, the following words narrow them.
+        IntList candidates = new IntList();
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            IntList touched = new IntList();
+            for (Map.Entry<String, IntList> term
+                    : mTerms.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+                int multiplier = term.getKey().length() == word.length() ? 2 : 1;
+                IntList postings = term.getValue();
+                for (int p = 0; p < postings.mSize; p++) {
+                    int doc = postings.mValues[p] >>> 2;
+                    if (mMatchedWords[doc] != i) {
+                        continue;
+                    }
+                    int score = FIELD_WEIGHTS[postings.mValues[p] & 3] * multiplier;
+                    if (mWordScores[doc] == 0) {
+                        touched.add(doc);
+                    }
+                    if (score > mWordScores[doc]) {
+                        mWordScores[doc] = score;
+                    }
+                }
+            }
+            for (int t = 0; t < touched.mSize; t++) {
+                int doc = touched.mValues[t];
+                mScores[doc] += mWordScores[doc];
+                mWordScores[doc] = 0;
+                mMatchedWords[doc] = i + 1;
+            }
+            if (i == 0) {
+                candidates = touched;
+            }
+        }
+
+        // Keep the best results in a bounded heap whose head is the worst one kept.
+        Comparator<Integer> worstFirst = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byScore = Integer.compare(mScores[a], mScores[b]);
+                return byScore != 0 ? byScore : Long.compare(mDates[a], mDates[b]);
+            }
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, worstFirst);
+        for (int c = 0; c < candidates.mSize; c++) {
+            int doc = candidates.mValues[c];
+            if (mMatchedWords[doc] == words.size() && mDocuments.get(doc) != null) {
+                best.add(doc);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        Article[] results = new Article[best.size()];
+        for (int r = results.length - 1; r >= 0; r--) {
+            results[r] = mDocuments.get(best.poll());
+        }
+
+        for (int c = 0; c < candidates.mSize; c++) {
+            int doc = candidates.mValues[c];
+            mScores[doc] = 0;
+            mMatchedWords[doc] = 0;
+        }
+        return Arrays.asList(results);
+    }
+
+    private void addField(int id, int field, String text) {
+        int posting = id << 2 | field;
+        for (String word : tokenize(text)) {
+            IntList postings = mTerms.get(word);
+            if (postings == null) {
+                postings = new IntList();
+                mTerms.put(word, postings);
+            }
+            // A word repeated in the same field is only posted once.
+            if (postings.last() != posting) {
+                postings.add(posting);
+            }
+        }
+    }
+
+    private void removeField(int id, int field, String text) {
+        int posting = id << 2 | field;
+        for (String word : tokenize(text)) {
+            IntList postings = mTerms.get(word);
+            if (postings != null) {
+                postings.removeAll(posting);
+                if (postings.mSize == 0) {
+                    mTerms.remove(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of indexed words.
+     */
+    synchronized int getTermCount() {
+        return mTerms.size();
+    }
+
+    private void ensureScratchCapacity() {
+        int documents = mDocuments.size();
+        if (mScores.length < documents) {
+            int capacity = Math.max(documents, mScores.length * 2);
+            mScores = new int[capacity];
+            mMatchedWords = new int[capacity];
+            mWordScores = new int[capacity];
+        }
+    }
+
+    /**
+     * Split the text into lower case words made of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean wordChar = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.p7newsapplicationstage2.ArticleContract.ArticleEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local persistence of the {@link Article}s, backed by SQLite.
+ *
+ * Every downloaded feed is upserted in one transaction, and the lists are read back with
+ * indexed queries, newest first, so switching section does not need the network.
+ */
+public class ArticleStore {
+
+    /**
+     * Upsert of one article, the row with the same webUrl is replaced
+     */
+    private static final String UPSERT_SQL = "INSERT OR REPLACE INTO " + ArticleEntry.TABLE_NAME + " ("
+            + ArticleEntry.COLUMN_URL + ", " + ArticleEntry.COLUMN_TITLE + ", "
+            + ArticleEntry.COLUMN_SECTION_NAME + ", " + ArticleEntry.COLUMN_SECTION_ID + ", "
+            + ArticleEntry.COLUMN_PUBLISHED + ", " + ArticleEntry.COLUMN_AUTHOR + ", "
+            + ArticleEntry.COLUMN_THUMBNAIL + ", " + ArticleEntry.COLUMN_TAGS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String[] COLUMNS = {
+            ArticleEntry.COLUMN_URL, ArticleEntry.COLUMN_TITLE, ArticleEntry.COLUMN_SECTION_NAME,
+            ArticleEntry.COLUMN_SECTION_ID, ArticleEntry.COLUMN_PUBLISHED, ArticleEntry.COLUMN_AUTHOR,
+            ArticleEntry.COLUMN_THUMBNAIL, ArticleEntry.COLUMN_TAGS};
+
+    private static final String NEWEST_FIRST = ArticleEntry.COLUMN_PUBLISHED + " DESC";
+
+    /**
+     * Number of articles kept in the database, the older ones are deleted after every upsert
+     */
+    static final int MAX_ARTICLES = 1000;
+
+    private static ArticleStore sInstance;
+
+    private final ArticleDbHelper mDbHelper;
+
+    ArticleStore(ArticleDbHelper dbHelper) {
+        mDbHelper = dbHelper;
+    }
+
+    /**
+     * Returns the store shared by the whole app.
+     */
+    public static synchronized ArticleStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleStore(new ArticleDbHelper(context.getApplicationContext()));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Insert or replace the given articles, in a single transaction, then keep only the
+     * {@link #MAX_ARTICLES} newest ones.
+     */
+    public void upsert(List<Article> articles) {
+        if (articles == null || articles.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(UPSERT_SQL);
+        db.beginTransaction();
+        try {
+            for (Article article : articles) {
+                statement.clearBindings();
+                statement.bindString(1, article.getUrl());
+                statement.bindString(2, article.getArticle_title());
+                bindNullable(statement, 3, article.getArticle_section());
+                bindNullable(statement, 4, article.getSectionId());
+                if (article.getPublicationTime() != Article.NO_DATE) {
+                    statement.bindLong(5, article.getPublicationTime());
+                }
+                bindNullable(statement, 6, article.getAuthor());
+                bindNullable(statement, 7, article.getThumbnailUrl());
+                if (!article.getTags().isEmpty()) {
+                    statement.bindString(8, ArticleTag.encode(article.getTags()));
+                }
+                statement.executeInsert();
+            }
+            trimToNewest(db, MAX_ARTICLES);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+
+    /**
+     * Returns the newest articles, of every section.
+     */
+    public List<Article> queryNewest(int limit) {
+        return query(null, null, limit);
+    }
+
+    /**
+     * Returns the newest articles of the section with the given ID, e.g. "politics".
+     */
+    public List<Article> queryNewestInSection(String sectionId, int limit) {
+        return query(ArticleEntry.COLUMN_SECTION_ID + " = ?", new String[]{sectionId}, limit);
+    }
+
+    /**
+     * Returns the newest articles of the given author.
+     */
+    public List<Article> queryNewestByAuthor(String author, int limit) {
+        return query(ArticleEntry.COLUMN_AUTHOR + " = ?", new String[]{author}, limit);
+    }
+
+    /**
+     * Delete every article but the newest ones, to keep the database small.
+     *
+     * @return the number of deleted articles
+     */
+    public int trimToNewest(int keep) {
+        return trimToNewest(mDbHelper.getWritableDatabase(), keep);
+    }
+
+    private static int trimToNewest(SQLiteDatabase db, int keep) {
+        return db.delete(ArticleEntry.TABLE_NAME, ArticleEntry.COLUMN_URL + " NOT IN (SELECT "
+                + ArticleEntry.COLUMN_URL + " FROM " + ArticleEntry.TABLE_NAME + " ORDER BY "
+                + NEWEST_FIRST + " LIMIT " + keep + ")", null);
+    }
+
+    private List<Article> query(String selection, String[] selectionArgs, int limit) {
+        List<Article> articles = new ArrayList<>();
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(ArticleEntry.TABLE_NAME, COLUMNS, selection, selectionArgs,
+                null, null, NEWEST_FIRST, String.valueOf(limit));
+        try {
+            while (cursor.moveToNext()) {
+                long publicationTime = cursor.isNull(4) ? Article.NO_DATE : cursor.getLong(4);
+                articles.add(new Article(cursor.getString(1), cursor.getString(2), cursor.getString(3),
+                        publicationTime, cursor.getString(5), cursor.getString(0), cursor.getString(6),
+                        ArticleTag.decode(cursor.getString(7))));
+            }
+        } finally {
+            cursor.close();
+        }
+        return articles;
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
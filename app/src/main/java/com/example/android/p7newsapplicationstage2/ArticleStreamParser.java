@@ -0,0 +1,274 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Pull-style parser for the Guardian search response.
+ *
+ * The {@link ArticleStreamParser} reads "response.results[]" straight from the connection
+ * {@link InputStream} and emits one {@link Article} at a time, so the whole body never has to
+ * be held in memory as a String or as a JSONObject tree. Unknown fields are skipped.
+ */
+public final class ArticleStreamParser {
+
+    /**
+     * Tag for log message
+     */
+    private static final String LOG_TAG = ArticleStreamParser.class.getSimpleName();
+
+    /**
+     * shortcuts used for json responses
+     */
+    private static final String json_tags = "tags";
+    private static final String json_publicationDate = "webPublicationDate";
+    private static final String json_title = "webTitle";
+    private static final String json_id = "id";
+    private static final String json_type = "type";
+    private static final String json_sectionName = "sectionName";
+    private static final String json_sectionId = "sectionId";
+    private static final String json_response = "response";
+    private static final String json_results = "results";
+    private static final String json_url = "webUrl";
+    private static final String json_currentPage = "currentPage";
+    private static final String json_pages = "pages";
+    private static final String json_fields = "fields";
+    private static final String json_thumbnail = "thumbnail";
+
+    /**
+     * Callback receiving every {@link Article} as soon as it has been parsed.
+     */
+    public interface OnArticleParsedListener {
+        void onArticleParsed(Article article);
+    }
+
+    private ArticleStreamParser() {
+    }
+
+    /**
+     * Parse the given stream and return the list of {@link Article}s it contains.
+     */
+    public static List<Article> parse(InputStream inputStream) {
+        final List<Article> articles = new ArrayList<>();
+        parse(inputStream, new OnArticleParsedListener() {
+            @Override
+            public void onArticleParsed(Article article) {
+                articles.add(article);
+            }
+        });
+        return articles;
+    }
+
+    /**
+     * Parse the given stream into an {@link ArticlePage}, including its paging information.
+     */
+    public static ArticlePage parsePage(InputStream inputStream) {
+        return parsePage(inputStream, null);
+    }
+
+    /**
+     * Parse the given stream into an {@link ArticlePage}, also handing every {@link Article}
+     * to the listener, if not null, as soon as it has been parsed.
+     */
+    public static ArticlePage parsePage(InputStream inputStream, final OnArticleParsedListener listener) {
+        final ArticlePage page = new ArticlePage();
+        parse(inputStream, new OnArticleParsedListener() {
+            @Override
+            public void onArticleParsed(Article article) {
+                page.getArticles().add(article);
+                if (listener != null) {
+                    listener.onArticleParsed(article);
+                }
+            }
+        }, page);
+        return page;
+    }
+
+    /**
+     * Parse the given stream and hand every {@link Article} to the listener.
+     *
+     * Like {@link QueryUtils#extractFeatureFromJson(String)}, parsing stops at the first
+     * result missing a required field; the articles emitted before it are kept.
+     */
+    public static void parse(InputStream inputStream, OnArticleParsedListener listener) {
+        parse(inputStream, listener, null);
+    }
+
+    /**
+     * Parse the given stream, hand every {@link Article} to the listener and, when the page
+     * is not null, record the paging fields of the response in it.
+     */
+    private static void parse(InputStream inputStream, OnArticleParsedListener listener, ArticlePage page) {
+        if (inputStream == null) {
+            return;
+        }
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (json_response.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    readResponse(reader, listener, page);
+                    return;
+                }
+                reader.skipValue();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // MalformedJsonException is an IOException, a wrong token type is an IllegalStateException.
+            Log.e(LOG_TAG, "Problem parsing the ArcticlesApp JSON results", e);
+        }
+    }
+
+    /**
+     * Read the "response" object. Without a page to fill, reading stops once the
+     * "results" array has been consumed.
+     */
+    private static void readResponse(JsonReader reader, OnArticleParsedListener listener, ArticlePage page)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (json_results.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Article article = readResult(reader);
+                    if (article == null) {
+                        return;
+                    }
+                    listener.onArticleParsed(article);
+                }
+                reader.endArray();
+                if (page == null) {
+                    return;
+                }
+            } else if (page != null && json_currentPage.equals(name) && reader.peek() == JsonToken.NUMBER) {
+                page.setCurrentPage(reader.nextInt());
+            } else if (page != null && json_pages.equals(name) && reader.peek() == JsonToken.NUMBER) {
+                page.setPages(reader.nextInt());
+            } else {
+                reader.skipValue();
+            }
+        }
+    }
+
+    /**
+     * Read a single result object, or return null if one of the required fields is missing.
+     */
+    private static Article readResult(JsonReader reader) throws IOException {
+        String secName = "";
+        String secId = null;
+        String originalPublicationDate = null;
+        String artTitle = null;
+        String url = null;
+        String articleAuthor = null;
+        String thumbnailUrl = null;
+        List<ArticleTag> tags = null;
+        boolean authorMissing = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (json_sectionName.equals(name)) {
+                secName = reader.nextString();
+            } else if (json_sectionId.equals(name)) {
+                secId = reader.nextString();
+            } else if (json_publicationDate.equals(name)) {
+                originalPublicationDate = reader.nextString();
+            } else if (json_title.equals(name)) {
+                artTitle = reader.nextString();
+            } else if (json_url.equals(name)) {
+                url = reader.nextString();
+            } else if (json_tags.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                tags = readTags(reader);
+                // The first contributor is the author
+                ArticleTag author = ArticleTag.findAuthor(tags);
+                articleAuthor = author == null ? null : author.getTitle();
+                authorMissing = author != null && articleAuthor == null;
+            } else if (json_fields.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                thumbnailUrl = readThumbnail(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (originalPublicationDate == null || artTitle == null || url == null || tags == null || authorMissing) {
+            Log.e(LOG_TAG, "Problem parsing the ArcticlesApp JSON results: missing field");
+            return null;
+        }
+        Date publicationDate = QueryUtils.parsePublicationDate(originalPublicationDate);
+        return new Article(artTitle, secName, secId, publicationDate == null ? Article.NO_DATE : publicationDate.getTime(),
+                articleAuthor, url, thumbnailUrl, tags);
+    }
+
+    /**
+     * Read the "fields" object and return its "thumbnail", or null if it has none.
+     */
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        String thumbnail = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (json_thumbnail.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                thumbnail = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnail;
+    }
+
+    /**
+     * Read the "tags" array and return every tag object of it.
+     */
+    private static List<ArticleTag> readTags(JsonReader reader) throws IOException {
+        List<ArticleTag> tags = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                tags.add(readTag(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return tags;
+    }
+
+    /**
+     * Read a tag object and return its "id", "type" and "webTitle".
+     */
+    private static ArticleTag readTag(JsonReader reader) throws IOException {
+        String id = null;
+        String type = null;
+        String title = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (json_id.equals(name)) {
+                id = reader.nextString();
+            } else if (json_type.equals(name)) {
+                type = reader.nextString();
+            } else if (json_title.equals(name)) {
+                title = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new ArticleTag(id, type, title);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of the strings repeated across {@link Article}s: section names and IDs, authors and
+ * the formatted dates and times.
+ *
+ * Every parsed result carries its own copy of these strings; going through the pool, all the
+ * articles of a section share a single instance and the parsed copies are left to the GC.
+ * Unlike {@link String#intern()}, the pool is bounded and simply starts over once full. It is
+ * a concurrent map, so the threads parsing the pages in parallel do not wait for each other.
+ *
+ * The dates and times shown in the list are pooled by the minute of the publication time,
+ * so an article published at a minute already seen is not formatted again.
+ */
+final class ArticleStrings {
+
+    /**
+     * Pooled strings kept at most, far more than the sections, authors and dates of a feed
+     */
+    static final int MAX_STRINGS = 8192;
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    private static final ConcurrentHashMap<String, String> sPool = new ConcurrentHashMap<>();
+
+    /** Date and time shown in the list, by minute of the publication time */
+    private static final Map<Long, String> sDisplayDates = new ConcurrentHashMap<>();
+    private static final Map<Long, String> sDisplayTimes = new ConcurrentHashMap<>();
+
+    private ArticleStrings() {
+    }
+
+    /**
+     * Returns the pooled instance equal to the string, which becomes the pooled one if there
+     * is none yet. Null is returned as is.
+     */
+    static String intern(String string) {
+        if (string == null) {
+            return null;
+        }
+        String pooled = sPool.get(string);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (sPool.size() >= MAX_STRINGS) {
+            sPool.clear();
+        }
+        pooled = sPool.putIfAbsent(string, string);
+        return pooled != null ? pooled : string;
+    }
+
+    /**
+     * Returns the date of the publication time as shown in the list, followed by a comma.
+     */
+    static String displayDate(long publicationTime) {
+        Long minute = minuteOf(publicationTime);
+        String date = sDisplayDates.get(minute);
+        if (date == null) {
+            date = intern(ArticleDateFormats.formatRowDate(new Date(publicationTime)).concat(","));
+            put(sDisplayDates, minute, date);
+        }
+        return date;
+    }
+
+    /**
+     * Returns the time of the publication time as shown in the list.
+     */
+    static String displayTime(long publicationTime) {
+        Long minute = minuteOf(publicationTime);
+        String time = sDisplayTimes.get(minute);
+        if (time == null) {
+            time = intern(ArticleDateFormats.formatRowTime(new Date(publicationTime)));
+            put(sDisplayTimes, minute, time);
+        }
+        return time;
+    }
+
+    /**
+     * Returns the minute of the time since the epoch, rounded down before it too.
+     */
+    private static long minuteOf(long time) {
+        return time >= 0 ? time / MINUTE_MILLIS : (time + 1) / MINUTE_MILLIS - 1;
+    }
+
+    private static void put(Map<Long, String> strings, Long minute, String string) {
+        if (strings.size() >= MAX_STRINGS) {
+            strings.clear();
+        }
+        strings.put(minute, string);
+    }
+
+    /**
+     * Returns the number of pooled strings.
+     */
+    static int size() {
+        return sPool.size();
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Guardian tag of an {@link Article}: a contributor, e.g. "profile/peterbradshaw", or a
+ * keyword, e.g. "politics/eu-referendum".
+ *
+ * The same tags are carried by many articles, so their strings are shared through
+ * {@link ArticleStrings}.
+ */
+public final class ArticleTag {
+
+    /**
+     * Types of the tags requested with "show-tags"
+     */
+    public static final String TYPE_CONTRIBUTOR = "contributor";
+    public static final String TYPE_KEYWORD = "keyword";
+
+    /**
+     * Separators of the text form of a list of tags, which never appear in the API strings
+     */
+    private static final char FIELD_SEPARATOR = '\u001f';
+    private static final char TAG_SEPARATOR = '\u001e';
+
+    /**
+     * ID of the tag, e.g. "profile/peterbradshaw", or null if unknown
+     */
+    private final String mId;
+    /**
+     * Type of the tag, e.g. "contributor", or null if unknown
+     */
+    private final String mType;
+    /**
+     * Title of the tag, e.g. the name of the contributor, or null if it has none
+     */
+    private final String mTitle;
+
+    /**
+     * Constructs a new {@link ArticleTag}
+     *
+     * @param id    is the ID of the tag, or null if unknown
+     * @param type  is the type of the tag, or null if unknown
+     * @param title is the title of the tag, or null if it has none
+     */
+    public ArticleTag(String id, String type, String title) {
+        mId = ArticleStrings.intern(id);
+        mType = ArticleStrings.intern(type);
+        mTitle = ArticleStrings.intern(title);
+    }
+
+    /**
+     * Returns the ID of the tag, or null if unknown
+     */
+    public String getId() {
+        return mId;
+    }
+
+    /**
+     * Returns the type of the tag, or null if unknown
+     */
+    public String getType() {
+        return mType;
+    }
+
+    /**
+     * Returns the title of the tag, or null if it has none
+     */
+    public String getTitle() {
+        return mTitle;
+    }
+
+    /**
+     * Returns true when the tag is a contributor of the article
+     */
+    public boolean isContributor() {
+        return TYPE_CONTRIBUTOR.equals(mType);
+    }
+
+    /**
+     * Returns true when the tag is a keyword of the article
+     */
+    public boolean isKeyword() {
+        return TYPE_KEYWORD.equals(mType);
+    }
+
+    /**
+     * Returns the tag naming the author of an article: its first contributor, or its first tag
+     * when the types of its tags are unknown. Returns null if it has none.
+     */
+    static ArticleTag findAuthor(List<ArticleTag> tags) {
+        boolean typed = false;
+        for (ArticleTag tag : tags) {
+            if (tag.isContributor()) {
+                return tag;
+            }
+            typed |= tag.mType != null;
+        }
+        return typed || tags.isEmpty() ? null : tags.get(0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ArticleTag)) {
+            return false;
+        }
+        ArticleTag other = (ArticleTag) o;
+        return equal(mId, other.mId) && equal(mType, other.mType) && equal(mTitle, other.mTitle);
+    }
+
+    @Override
+    public int hashCode() {
+        return mId == null ? 0 : mId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mId;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Returns the tags as a single string, as stored by the {@link ArticleStore}.
+     */
+    static String encode(List<ArticleTag> tags) {
+        StringBuilder encoded = new StringBuilder();
+        for (ArticleTag tag : tags) {
+            if (encoded.length() > 0) {
+                encoded.append(TAG_SEPARATOR);
+            }
+            encoded.append(tag.mId == null ? "" : tag.mId).append(FIELD_SEPARATOR)
+                    .append(tag.mType == null ? "" : tag.mType).append(FIELD_SEPARATOR)
+                    .append(tag.mTitle == null ? "" : tag.mTitle);
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Returns the tags of a string returned by {@link #encode(List)}, none if it is null.
+     */
+    static List<ArticleTag> decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ArticleTag> tags = new ArrayList<>();
+        int start = 0;
+        while (start <= encoded.length()) {
+            int end = encoded.indexOf(TAG_SEPARATOR, start);
+            if (end < 0) {
+                end = encoded.length();
+            }
+            int typeStart = encoded.indexOf(FIELD_SEPARATOR, start) + 1;
+            int titleStart = encoded.indexOf(FIELD_SEPARATOR, typeStart) + 1;
+            if (typeStart > 0 && titleStart > 0 && titleStart <= end) {
+                tags.add(new ArticleTag(emptyToNull(encoded.substring(start, typeStart - 1)),
+                        emptyToNull(encoded.substring(typeStart, titleStart - 1)),
+                        emptyToNull(encoded.substring(titleStart, end))));
+            }
+            start = end + 1;
+        }
+        return tags;
+    }
+
+    private static String emptyToNull(String string) {
+        return string.isEmpty() ? null : string;
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory inverted index from the contributor and keyword tags to the {@link Article}s
+ * carrying them, so "more from this author" and "related stories" are answered without a
+ * request.
+ *
+ * Articles are added as they are downloaded or read back from the cache and the store, like
+ * for the {@link ArticleSearchIndex}. The articles of every tag are kept newest first, so the
+ * newest articles of a tag are read straight from the head of its list. The index is bounded:
+ * it holds at most {@link #MAX_ARTICLES} articles, the ones indexed the longest ago are dropped
+ * first, and at most {@link #MAX_ARTICLES_PER_TAG} of the newest articles of every tag. A
+ * lookup therefore reads a bounded number of articles, however large the index.
+ */
+public class ArticleTagIndex {
+
+    /**
+     * Articles indexed at most, more than the store keeps
+     */
+    static final int MAX_ARTICLES = 2000;
+
+    /**
+     * Newest articles kept for every tag
+     */
+    static final int MAX_ARTICLES_PER_TAG = 100;
+
+    private static final ArticleTagIndex sInstance = new ArticleTagIndex(MAX_ARTICLES, MAX_ARTICLES_PER_TAG);
+
+    private final int mMaxArticles;
+    private final int mMaxArticlesPerTag;
+
+    /** Indexed articles by URL, the one indexed the longest ago first */
+    private final LinkedHashMap<String, Article> mArticles = new LinkedHashMap<>();
+
+    /** Articles of every tag ID, newest first */
+    private final Map<String, List<Article>> mPostings = new HashMap<>();
+
+    /** Tag of every indexed ID, as last seen */
+    private final Map<String, ArticleTag> mTags = new HashMap<>();
+
+    ArticleTagIndex(int maxArticles, int maxArticlesPerTag) {
+        mMaxArticles = maxArticles;
+        mMaxArticlesPerTag = maxArticlesPerTag;
+    }
+
+    /**
+     * Returns the index shared by the whole app.
+     */
+    public static ArticleTagIndex getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns the number of indexed articles.
+     */
+    public synchronized int size() {
+        return mArticles.size();
+    }
+
+    /**
+     * Returns the number of indexed tags.
+     */
+    public synchronized int getTagCount() {
+        return mPostings.size();
+    }
+
+    /**
+     * Index the given articles.
+     */
+    public synchronized void addAll(List<Article> articles) {
+        if (articles == null) {
+            return;
+        }
+        for (Article article : articles) {
+            add(article);
+        }
+    }
+
+    /**
+     * Index a single article. An article already indexed with the same URL is replaced.
+     */
+    public synchronized void add(Article article) {
+        Article previous = mArticles.remove(article.getUrl());
+        if (previous != null) {
+            if (previous.equals(article) && previous.getTags().equals(article.getTags())) {
+                // Seen again, it is kept as if indexed now.
+                mArticles.put(article.getUrl(), previous);
+                return;
+            }
+            remove(previous);
+        }
+        if (getTagIds(article).isEmpty()) {
+            return;
+        }
+
+        mArticles.put(article.getUrl(), article);
+        for (ArticleTag tag : article.getTags()) {
+            if (tag.getId() == null) {
+                continue;
+            }
+            mTags.put(tag.getId(), tag);
+            List<Article> postings = mPostings.get(tag.getId());
+            if (postings == null) {
+                postings = new ArrayList<>();
+                mPostings.put(tag.getId(), postings);
+            } else if (postings.contains(article)) {
+                // A tag listed twice
+                continue;
+            }
+            int position = Collections.binarySearch(postings, article, Article.NEWEST_FIRST);
+            // After the articles published at the same time
+            position = position < 0 ? -position - 1 : position + 1;
+            while (position < postings.size()
+                    && postings.get(position).getPublicationTime() == article.getPublicationTime()) {
+                position++;
+            }
+            postings.add(position, article);
+            if (postings.size() > mMaxArticlesPerTag) {
+                postings.remove(postings.size() - 1);
+            }
+        }
+
+        Iterator<Article> eldest = mArticles.values().iterator();
+        while (mArticles.size() > mMaxArticles) {
+            Article evicted = eldest.next();
+            eldest.remove();
+            remove(evicted);
+        }
+    }
+
+    /**
+     * Remove the article from the lists of its tags, and drop the tags left without articles.
+     */
+    private void remove(Article article) {
+        for (String id : getTagIds(article)) {
+            List<Article> postings = mPostings.get(id);
+            if (postings != null && postings.remove(article) && postings.isEmpty()) {
+                mPostings.remove(id);
+                mTags.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Returns the tag with the given ID, or null if no indexed article carries it.
+     */
+    public synchronized ArticleTag getTag(String id) {
+        return mTags.get(id);
+    }
+
+    /**
+     * Returns at most limit articles of the tag, newest first.
+     */
+    public synchronized List<Article> getArticles(String tagId, int limit) {
+        List<Article> postings = mPostings.get(tagId);
+        if (postings == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(postings.subList(0, Math.min(limit, postings.size())));
+    }
+
+    /**
+     * Returns at most limit other articles of the contributors of the article, newest first.
+     */
+    public synchronized List<Article> getByAuthor(Article article, int limit) {
+        List<List<Article>> lists = new ArrayList<>();
+        for (ArticleTag tag : article.getTags()) {
+            List<Article> postings = tag.isContributor() ? mPostings.get(tag.getId()) : null;
+            if (postings != null) {
+                lists.add(postings);
+            }
+        }
+
+        // Merge the lists of the contributors, which are all newest first.
+        List<Article> results = new ArrayList<>();
+        Set<String> urls = new HashSet<>();
+        urls.add(article.getUrl());
+        int[] heads = new int[lists.size()];
+        while (results.size() < limit) {
+            int newest = -1;
+            for (int i = 0; i < lists.size(); i++) {
+                if (heads[i] < lists.get(i).size() && (newest < 0 || Article.NEWEST_FIRST.compare(
+                        lists.get(i).get(heads[i]), lists.get(newest).get(heads[newest])) < 0)) {
+                    newest = i;
+                }
+            }
+            if (newest < 0) {
+                break;
+            }
+            Article next = lists.get(newest).get(heads[newest]++);
+            if (urls.add(next.getUrl())) {
+                results.add(next);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns at most limit other articles sharing keyword tags with the article: the ones
+     * sharing the most keywords first, then the ones sharing the rarest, then the newest.
+     */
+    public synchronized List<Article> getRelated(Article article, int limit) {
+        // Score of every candidate: one point per shared keyword, plus its rarity to break ties
+        final Map<Article, double[]> scores = new HashMap<>();
+        for (ArticleTag tag : article.getTags()) {
+            List<Article> postings = tag.isKeyword() ? mPostings.get(tag.getId()) : null;
+            if (postings == null) {
+                continue;
+            }
+            double rarity = 1.0 / postings.size();
+            for (Article candidate : postings) {
+                if (candidate.getUrl().equals(article.getUrl())) {
+                    continue;
+                }
+                double[] score = scores.get(candidate);
+                if (score == null) {
+                    score = new double[2];
+                    scores.put(candidate, score);
+                }
+                score[0] += 1;
+                score[1] += rarity;
+            }
+        }
+
+        List<Article> results = new ArrayList<>(scores.keySet());
+        Collections.sort(results, new Comparator<Article>() {
+            @Override
+            public int compare(Article a, Article b) {
+                double[] scoreA = scores.get(a);
+                double[] scoreB = scores.get(b);
+                int byShared = Double.compare(scoreB[0], scoreA[0]);
+                if (byShared != 0) {
+                    return byShared;
+                }
+                int byRarity = Double.compare(scoreB[1], scoreA[1]);
+                return byRarity != 0 ? byRarity : Article.NEWEST_FIRST.compare(a, b);
+            }
+        });
+        return results.size() > limit ? new ArrayList<>(results.subList(0, Math.max(limit, 0))) : results;
+    }
+
+    /**
+     * Returns the distinct IDs of the tags of the article.
+     */
+    private static Set<String> getTagIds(Article article) {
+        Set<String> ids = new HashSet<>();
+        for (ArticleTag tag : article.getTags()) {
+            if (tag.getId() != null) {
+                ids.add(tag.getId());
+            }
+        }
+        return ids;
+    }
+}
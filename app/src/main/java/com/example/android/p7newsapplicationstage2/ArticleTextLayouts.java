@@ -0,0 +1,215 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The text layouts of the article rows, measured and laid out on a background thread while a
+ * list is delivered, so binding a row only hands its {@link ArticleTextView}s a ready layout.
+ *
+ * A layout depends on the text, the paint and the width of its field. The widths and paints
+ * are the ones the rows were last measured with: until a first row has been measured nothing
+ * can be laid out ahead. The layouts are keyed by field, width and text, so the section names
+ * shared by many articles are laid out once, and the layouts of a width no longer measured
+ * are dropped as the least recently used ones. A paint of another size, typeface or color
+ * drops every layout.
+ */
+public class ArticleTextLayouts {
+
+    // Text fields of a row
+
+    public static final int FIELD_TITLE = 0;
+    public static final int FIELD_SECTION = 1;
+    public static final int FIELD_DATE = 2;
+    public static final int FIELD_TIME = 3;
+    public static final int FIELD_AUTHOR = 4;
+
+    private static final int FIELD_COUNT = 5;
+
+    /**
+     * Layouts kept, the five fields of about a hundred rows
+     */
+    private static final int MAX_LAYOUTS = 500;
+
+    private final LruCache<String, Layout> mLayouts = new LruCache<>(MAX_LAYOUTS);
+
+    /** Paints and widths of the fields, guarded by this */
+    private final TextPaint[] mPaints = new TextPaint[FIELD_COUNT];
+    private final int[] mWidths = new int[FIELD_COUNT];
+
+    /** Articles of the last list delivered, laid out again once the widths are known */
+    private List<Article> mArticles;
+
+    /** Incremented by every list delivered, so the layout of an older list stops */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    private final Executor mExecutor;
+
+    /**
+     * Constructs the layouts of the rows of one list, laid out on a low priority thread.
+     */
+    public ArticleTextLayouts() {
+        this(newLayoutExecutor());
+    }
+
+    ArticleTextLayouts(Executor executor) {
+        mExecutor = executor;
+    }
+
+    private static ExecutorService newLayoutExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "text-layout");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Use the paint of the field for the next layouts. A paint of another size or typeface,
+     * e.g. after a change of the font scale, drops every layout.
+     */
+    public synchronized void setPaint(int field, TextPaint paint) {
+        TextPaint current = mPaints[field];
+        if (current != null && current.getTextSize() == paint.getTextSize()
+                && current.getTypeface() == paint.getTypeface() && current.getColor() == paint.getColor()) {
+            return;
+        }
+        if (current != null) {
+            mLayouts.evictAll();
+        }
+        // A copy of its own, the view may change its paint while a layout is built
+        mPaints[field] = new TextPaint(paint);
+    }
+
+    /**
+     * Returns the layout of the text laid out ahead at the current width of the field, or null.
+     */
+    public Layout get(int field, CharSequence text) {
+        int width;
+        synchronized (this) {
+            width = mWidths[field];
+        }
+        return width > 0 ? mLayouts.get(key(field, width, text)) : null;
+    }
+
+    /**
+     * Returns the layout of the text at the given width, laid out on the calling thread when
+     * it was not laid out ahead. Called by the rows when they are measured.
+     */
+    public Layout obtain(int field, CharSequence text, TextPaint paint, int width) {
+        List<Article> articles = null;
+        synchronized (this) {
+            if (mWidths[field] != width) {
+                if (mWidths[field] == 0) {
+                    articles = mArticles;
+                }
+                mWidths[field] = width;
+            }
+        }
+        if (articles != null) {
+            // Lay out the rows below the first ones at the width now known
+            prepare(articles);
+        }
+
+        String key = key(field, width, text);
+        Layout layout = mLayouts.get(key);
+        if (layout == null) {
+            layout = build(text, paint, width);
+            mLayouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Lay out the texts of the articles in the background, in the order of the list, at the
+     * widths the rows were last measured with. The layout of a previous list stops.
+     */
+    public void prepare(List<Article> articles) {
+        final List<Article> snapshot = new ArrayList<>(articles);
+        final TextPaint[] paints = new TextPaint[FIELD_COUNT];
+        final int[] widths = new int[FIELD_COUNT];
+        synchronized (this) {
+            mArticles = snapshot;
+            System.arraycopy(mPaints, 0, paints, 0, FIELD_COUNT);
+            System.arraycopy(mWidths, 0, widths, 0, FIELD_COUNT);
+        }
+        final int generation = mGeneration.incrementAndGet();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Article article : snapshot) {
+                    if (mGeneration.get() != generation) {
+                        return;
+                    }
+                    for (int field = 0; field < FIELD_COUNT; field++) {
+                        if (paints[field] == null || widths[field] <= 0) {
+                            continue;
+                        }
+                        CharSequence text = getText(article, field);
+                        String key = key(field, widths[field], text);
+                        if (mLayouts.get(key) == null) {
+                            mLayouts.put(key, build(text, paints[field], widths[field]));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop every layout, e.g. when the system runs low on memory.
+     */
+    public void clear() {
+        mLayouts.evictAll();
+    }
+
+    /**
+     * Returns the text of the field of the article, as shown by its row.
+     */
+    public static CharSequence getText(Article article, int field) {
+        String text;
+        switch (field) {
+            case FIELD_TITLE:
+                text = article.getArticle_title();
+                break;
+            case FIELD_SECTION:
+                text = article.getArticle_section();
+                break;
+            case FIELD_DATE:
+                text = article.getDisplayDate();
+                break;
+            case FIELD_TIME:
+                text = article.getDisplayTime();
+                break;
+            default:
+                text = article.getAuthor();
+                break;
+        }
+        return text == null ? "" : text;
+    }
+
+    /**
+     * Returns the text laid out at the given width, as a {@link android.widget.TextView}
+     * lays it out: aligned to the start, with the font padding.
+     */
+    public static Layout build(CharSequence text, TextPaint paint, int width) {
+        return new StaticLayout(text, paint, Math.max(width, 0), Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+    }
+
+    private static String key(int field, int width, CharSequence text) {
+        return field + "/" + width + "/" + text;
+    }
+}
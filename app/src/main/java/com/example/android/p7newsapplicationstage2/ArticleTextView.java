@@ -0,0 +1,215 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.v4.content.res.ResourcesCompat;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.TextView;
+
+/**
+ * A single text of an article row, drawn from a {@link Layout} which can be laid out ahead
+ * on a background thread by {@link ArticleTextLayouts}. Binding a row then only assigns the
+ * layout, instead of measuring and wrapping the text on the UI thread like a TextView does.
+ *
+ * The text is styled by the same attributes as a TextView: android:textSize,
+ * android:textColor and android:fontFamily, and its paddings. It wraps at the width it is
+ * given and is as wide as its longest line. Like a TextView, its text is read out by the
+ * accessibility services.
+ */
+public class ArticleTextView extends View {
+
+    private static final int[] ATTRS = {
+            android.R.attr.textSize, android.R.attr.textColor, android.R.attr.fontFamily};
+    private static final int ATTR_TEXT_SIZE = 0;
+    private static final int ATTR_TEXT_COLOR = 1;
+    private static final int ATTR_FONT_FAMILY = 2;
+
+    /** Size of the text when none is given, as a TextView */
+    private static final float DEFAULT_TEXT_SIZE_SP = 15;
+
+    private final TextPaint mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    private CharSequence mText = "";
+    private Layout mLayout;
+
+    /** Layouts laid out ahead, and the field of this view, or null to lay out on the UI thread */
+    private ArticleTextLayouts mLayouts;
+    private int mField;
+
+    public ArticleTextView(Context context) {
+        this(context, null);
+    }
+
+    public ArticleTextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        TypedArray array = context.obtainStyledAttributes(attrs, ATTRS);
+        try {
+            mPaint.setTextSize(array.getDimension(ATTR_TEXT_SIZE, TypedValue.applyDimension(
+                    TypedValue.COMPLEX_UNIT_SP, DEFAULT_TEXT_SIZE_SP, getResources().getDisplayMetrics())));
+            ColorStateList color = array.getColorStateList(ATTR_TEXT_COLOR);
+            mPaint.setColor(color != null ? color.getDefaultColor() : getThemeTextColor(context));
+            mPaint.setTypeface(getTypeface(context, array));
+        } finally {
+            array.recycle();
+        }
+        mPaint.density = getResources().getDisplayMetrics().density;
+        // Reported to the accessibility services like a TextView, which a plain View is not.
+        // Before Jelly Bean every view is.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                && getImportantForAccessibility() == IMPORTANT_FOR_ACCESSIBILITY_AUTO) {
+            setImportantForAccessibility(IMPORTANT_FOR_ACCESSIBILITY_YES);
+        }
+    }
+
+    /**
+     * Returns the font of android:fontFamily, a font resource or the name of a system family.
+     */
+    private static Typeface getTypeface(Context context, TypedArray array) {
+        int fontId = array.getResourceId(ATTR_FONT_FAMILY, 0);
+        if (fontId != 0) {
+            try {
+                Typeface font = ResourcesCompat.getFont(context, fontId);
+                if (font != null) {
+                    return font;
+                }
+            } catch (Resources.NotFoundException e) {
+                // Not a font resource, a family name
+            }
+        }
+        String family = array.getString(ATTR_FONT_FAMILY);
+        return family != null ? Typeface.create(family, Typeface.NORMAL) : Typeface.DEFAULT;
+    }
+
+    /**
+     * Returns the color of the secondary texts of the theme, the default color of a TextView.
+     */
+    private static int getThemeTextColor(Context context) {
+        TypedArray array = context.obtainStyledAttributes(new int[]{android.R.attr.textColorSecondary});
+        try {
+            return array.getColor(0, 0xff000000);
+        } finally {
+            array.recycle();
+        }
+    }
+
+    /**
+     * Take the layouts of the given field from the shared ones, laid out ahead when possible.
+     */
+    public void setLayouts(ArticleTextLayouts layouts, int field) {
+        mLayouts = layouts;
+        mField = field;
+        layouts.setPaint(field, mPaint);
+    }
+
+    public TextPaint getPaint() {
+        return mPaint;
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+
+    public void setText(CharSequence text) {
+        if (text == null) {
+            text = "";
+        }
+        if (mLayout != null && text.toString().equals(mText.toString())) {
+            return;
+        }
+        mText = text;
+        // A layout at the width of the last measure, or one built when measured
+        mLayout = mLayouts != null ? mLayouts.get(mField, text) : null;
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setClassName(TextView.class.getName());
+        info.setText(mText);
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        if (!TextUtils.isEmpty(mText)) {
+            event.getText().add(mText);
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+
+        int textWidth = widthMode == MeasureSpec.UNSPECIFIED
+                ? (int) Math.ceil(Layout.getDesiredWidth(mText, mPaint))
+                : widthSize - horizontalPadding;
+        textWidth = Math.max(textWidth, 0);
+        if (!fits(mLayout, textWidth)) {
+            if (widthMode == MeasureSpec.AT_MOST && mLayouts != null) {
+                // The width available to the field, the one the rows are laid out ahead at
+                mLayout = mLayouts.obtain(mField, mText, mPaint, textWidth);
+            } else {
+                mLayout = ArticleTextLayouts.build(mText, mPaint, textWidth);
+            }
+        }
+
+        int width = widthMode == MeasureSpec.EXACTLY ? widthSize
+                : Math.min(getLineWidth(mLayout) + horizontalPadding,
+                widthMode == MeasureSpec.AT_MOST ? widthSize : Integer.MAX_VALUE);
+        int height = resolveSize(mLayout.getHeight() + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+        setMeasuredDimension(width, height);
+    }
+
+    /**
+     * Returns true when the layout wraps the text as it would be wrapped at the given width:
+     * built at that width, or at a larger one which none of its lines needed.
+     */
+    private static boolean fits(Layout layout, int textWidth) {
+        return layout != null && (layout.getWidth() == textWidth
+                || (layout.getWidth() > textWidth && getLineWidth(layout) <= textWidth));
+    }
+
+    /**
+     * Returns the width of the longest line of the layout.
+     */
+    private static int getLineWidth(Layout layout) {
+        float width = 0;
+        for (int line = 0; line < layout.getLineCount(); line++) {
+            width = Math.max(width, layout.getLineWidth(line));
+        }
+        return (int) Math.ceil(width);
+    }
+
+    @Override
+    public int getBaseline() {
+        return mLayout != null ? getPaddingTop() + mLayout.getLineBaseline(0) : super.getBaseline();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mLayout == null) {
+            return;
+        }
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Shows the thumbnails of the article rows, through a {@link ThumbnailPipeline} decoding
+ * {@link Bitmap}s downsampled to the size of the image views.
+ */
+public class ArticleThumbnails {
+
+    /**
+     * Name and size of the disk cache, number of download and decoding threads
+     */
+    private static final String CACHE_DIRECTORY = "thumbnails";
+    private static final long MAX_DISK_BYTES = 10 * 1024 * 1024;
+    private static final int WORKER_THREADS = 2;
+
+    /**
+     * Share of the app memory class the decoded thumbnails may take
+     */
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+
+    private static ArticleThumbnails sInstance;
+
+    private final ThumbnailPipeline<Bitmap> mPipeline;
+
+    private ArticleThumbnails(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long maxMemoryBytes = activityManager.getMemoryClass() * 1024L * 1024L / MEMORY_CLASS_DIVISOR;
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        mPipeline = new ThumbnailPipeline<>(
+                new LruFileCache(new File(context.getCacheDir(), CACHE_DIRECTORY), MAX_DISK_BYTES),
+                QueryUtils.getTransport(), new BitmapDecoder(),
+                Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "thumbnails");
+                        // Below the UI thread, the scrolling comes first.
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                }),
+                new Executor() {
+                    @Override
+                    public void execute(Runnable runnable) {
+                        mainHandler.post(runnable);
+                    }
+                }, maxMemoryBytes);
+    }
+
+    /**
+     * Returns the thumbnails shared by the whole app.
+     */
+    public static synchronized ArticleThumbnails getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleThumbnails(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Show the thumbnail of the given URL in the image view, or hide the view when the URL is
+     * null. The view must have a fixed size, the thumbnail is decoded at that size.
+     */
+    public void bind(final ImageView view, String url) {
+        if (url == null) {
+            mPipeline.cancel(view);
+            view.setImageDrawable(null);
+            view.setVisibility(View.GONE);
+            return;
+        }
+        view.setVisibility(View.VISIBLE);
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        Bitmap bitmap = mPipeline.load(view, url, params.width, params.height,
+                new ThumbnailPipeline.Callback<Bitmap>() {
+                    @Override
+                    public void onThumbnailLoaded(Bitmap image) {
+                        view.setImageBitmap(image);
+                    }
+                });
+        // The previous image of a recycled view is cleared until the new one is loaded.
+        view.setImageBitmap(bitmap);
+    }
+
+    /**
+     * Stop loading the thumbnail of the image view, e.g. when its row is recycled.
+     */
+    public void unbind(ImageView view) {
+        mPipeline.cancel(view);
+    }
+
+    /**
+     * Release the decoded thumbnails when the system asks the app to trim its memory.
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mPipeline.clearMemory();
+        }
+    }
+
+    /**
+     * Decodes the image files into {@link Bitmap}s no larger than needed.
+     */
+    private static class BitmapDecoder implements ThumbnailPipeline.Decoder<Bitmap> {
+
+        @Override
+        public Bitmap decode(File file, int width, int height) throws IOException {
+            // Read the dimensions only, then decode at the largest power of two subsampling
+            // which keeps the image at least as large as the view.
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(file.getPath(), options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                throw new IOException("Not an image: " + file);
+            }
+            options.inSampleSize = sampleSize(options.outWidth, options.outHeight, width, height);
+            options.inJustDecodeBounds = false;
+            // Photos without transparency, half the memory of ARGB_8888
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        }
+
+        @Override
+        public int sizeOf(Bitmap image) {
+            return image.getByteCount();
+        }
+    }
+
+    /**
+     * Returns the largest power of two by which the image can be subsampled while staying at
+     * least as large as the requested size.
+     */
+    static int sampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int sampleSize = 1;
+        if (width <= 0 || height <= 0) {
+            return sampleSize;
+        }
+        while (imageWidth / (sampleSize * 2) >= width && imageHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
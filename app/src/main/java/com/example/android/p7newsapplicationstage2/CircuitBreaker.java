@@ -0,0 +1,154 @@
+package com.example.android.p7newsapplicationstage2;
+
+/**
+ * Stops sending feed requests to the API after repeated failures.
+ *
+ * The circuit is closed while requests succeed. After {@link #getFailureThreshold()} failures
+ * in a row it opens: requests are refused without touching the network until the open delay
+ * has elapsed. A single trial request then goes through; its success closes the circuit, its
+ * failure opens it again for twice as long, up to a maximum. A trial which tells nothing about
+ * the API, canceled or refused as a client error, lets the next request be the trial.
+ */
+public class CircuitBreaker {
+
+    /**
+     * States of the circuit
+     */
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    /** The open delay elapsed and a trial request is in flight */
+    public static final int STATE_HALF_OPEN = 2;
+
+    /**
+     * Default thresholds of the feed requests
+     */
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_OPEN_MILLIS = 30 * 1000;
+    private static final long DEFAULT_MAX_OPEN_MILLIS = 10 * 60 * 1000;
+
+    private final int mFailureThreshold;
+    private final long mInitialOpenMillis;
+    private final long mMaxOpenMillis;
+    private final FeedSync.Clock mClock;
+
+    private int mState = STATE_CLOSED;
+    private int mFailureCount;
+    private long mOpenMillis;
+    private long mOpenUntil;
+
+    /**
+     * Constructs a new {@link CircuitBreaker}.
+     *
+     * @param failureThreshold is the number of failures in a row opening the circuit
+     * @param openMillis       is how long the circuit first stays open
+     * @param maxOpenMillis    is the longest it stays open after failed trials
+     * @param clock            is the source of the current time
+     */
+    CircuitBreaker(int failureThreshold, long openMillis, long maxOpenMillis, FeedSync.Clock clock) {
+        mFailureThreshold = failureThreshold;
+        mInitialOpenMillis = openMillis;
+        mMaxOpenMillis = maxOpenMillis;
+        mClock = clock;
+        mOpenMillis = openMillis;
+    }
+
+    /**
+     * Returns the circuit breaker of the feed requests.
+     */
+    public static CircuitBreaker defaultBreaker() {
+        return new CircuitBreaker(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS, DEFAULT_MAX_OPEN_MILLIS,
+                FeedSync.SYSTEM_CLOCK);
+    }
+
+    /**
+     * Returns true when a request may be sent now. Once the open delay has elapsed, only the
+     * first caller gets true, until its request succeeds, fails or is canceled.
+     */
+    public synchronized boolean allowRequest() {
+        if (mState == STATE_CLOSED) {
+            return true;
+        }
+        if (mState == STATE_OPEN && mClock.currentTimeMillis() >= mOpenUntil) {
+            mState = STATE_HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record a successful request, which closes the circuit.
+     */
+    public synchronized void onSuccess() {
+        mState = STATE_CLOSED;
+        mFailureCount = 0;
+        mOpenMillis = mInitialOpenMillis;
+    }
+
+    /**
+     * Record a failed request.
+     */
+    public synchronized void onFailure() {
+        mFailureCount++;
+        if (mState == STATE_HALF_OPEN) {
+            mOpenMillis = Math.min(mOpenMillis * 2, mMaxOpenMillis);
+            open(mOpenMillis);
+        } else if (mState == STATE_CLOSED && mFailureCount >= mFailureThreshold) {
+            open(mOpenMillis);
+        }
+    }
+
+    /**
+     * Record a request canceled before it ended, e.g. when the loader was restarted.
+     */
+    public synchronized void onCanceled() {
+        releaseTrial();
+    }
+
+    /**
+     * Record a request refused with a client error, which is no sign of the API being up or
+     * down: the failures in a row are kept.
+     */
+    public synchronized void onClientError() {
+        releaseTrial();
+    }
+
+    /**
+     * Let the next request be the trial, when the trial request ended without telling whether
+     * the API is back.
+     */
+    private void releaseTrial() {
+        if (mState == STATE_HALF_OPEN) {
+            open(0);
+        }
+    }
+
+    /**
+     * Open the circuit for at least the given delay, e.g. the Retry-After delay of a 429.
+     */
+    public synchronized void openFor(long millis) {
+        long openUntil = mClock.currentTimeMillis() + millis;
+        if (mState != STATE_OPEN || openUntil > mOpenUntil) {
+            mState = STATE_OPEN;
+            mOpenUntil = openUntil;
+        }
+    }
+
+    private void open(long millis) {
+        mState = STATE_OPEN;
+        mOpenUntil = mClock.currentTimeMillis() + millis;
+    }
+
+    /**
+     * Returns the state of the circuit, one of the STATE constants
+     */
+    public synchronized int getState() {
+        return mState;
+    }
+
+    /**
+     * Returns the number of failures in a row opening the circuit
+     */
+    public int getFailureThreshold() {
+        return mFailureThreshold;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Incremental refresh of a cached feed: only the articles published since the newest one
+ * already held are requested, then merged into the cached list.
+ *
+ * The high-water mark of a query is the newest publication time of its cached list. The
+ * delta request is the query with a "from-date" a little before it, so an article indexed
+ * late by the API is not missed, and the rows it returns twice are dropped by URL. Since the
+ * feed is ordered by newest, the newest rows of the merged list are the page a full request
+ * would return.
+ *
+ * A delta request only brings the new articles: the edits and removals of the cached ones
+ * are only picked up by a full request, made once the list was last fetched in full more than
+ * {@link #MAX_DELTA_AGE_MILLIS} ago, and when the cached list holds fewer articles than the
+ * page size requested.
+ */
+public final class DeltaSync {
+
+    /**
+     * Query parameters of the Guardian API
+     */
+    private static final String param_from_date = "from-date";
+    private static final String param_use_date = "use-date";
+    private static final String param_page = "page";
+    private static final String param_page_size = "page-size";
+    private static final String use_date_published = "published";
+
+    /**
+     * The delta request starts this long before the high-water mark
+     */
+    static final long OVERLAP_MILLIS = 10 * 60 * 1000;
+
+    /**
+     * Longest time a cached list is refreshed by delta requests before it is fetched in full
+     */
+    static final long MAX_DELTA_AGE_MILLIS = 60 * 60 * 1000;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private DeltaSync() {
+    }
+
+    /**
+     * Returns the newest publication time of the articles, or {@link Article#NO_DATE}
+     */
+    public static long highWaterMark(List<Article> articles) {
+        long newest = Article.NO_DATE;
+        for (Article article : articles) {
+            newest = Math.max(newest, article.getPublicationTime());
+        }
+        return newest;
+    }
+
+    /**
+     * Returns the URL of the delta request refreshing the cached entry at now, or null when the
+     * entry has validators, was last fetched in full too long ago, or can't be refreshed
+     * incrementally.
+     */
+    public static String buildDeltaUrl(String requestUrl, ArticleCache.Entry cached, long now) {
+        // A list shorter than the page, e.g. saved for a smaller page size, is completed by a
+        // full request.
+        if (cached.getEtag() != null || cached.getLastModified() != null
+                || now - cached.getFullSavedAt() > MAX_DELTA_AGE_MILLIS
+                || cached.getArticles().size() < getPageSize(requestUrl)) {
+            return null;
+        }
+        return buildDeltaUrl(requestUrl, cached.getArticles());
+    }
+
+    /**
+     * Returns the URL of the articles of the query published since the high-water mark of the
+     * cached list, or null when the query can't be refreshed incrementally: a following page,
+     * a query already bounded by date, or a list without dates.
+     */
+    public static String buildDeltaUrl(String requestUrl, List<Article> cached) {
+        long highWaterMark = highWaterMark(cached);
+        String page = getQueryParameter(requestUrl, param_page);
+        if (highWaterMark == Article.NO_DATE || (page != null && !page.equals("1"))
+                || getQueryParameter(requestUrl, param_from_date) != null) {
+            return null;
+        }
+        String fromDate = ArticleDateFormats.formatGuardianDate(new Date(highWaterMark - OVERLAP_MILLIS));
+        return requestUrl + (requestUrl.indexOf('?') < 0 ? '?' : '&')
+                + param_from_date + '=' + encode(fromDate)
+                + '&' + param_use_date + '=' + use_date_published;
+    }
+
+    /**
+     * Returns the newest articles of both lists, at most as many as the page size of the
+     * query, or as the cached list when the query has none. A newer article replaces the
+     * cached one with the same URL.
+     */
+    public static List<Article> merge(String requestUrl, List<Article> newer, List<Article> cached) {
+        int pageSize = getPageSize(requestUrl);
+        int limit = pageSize > 0 ? pageSize : cached.size();
+
+        List<Article> merged = new ArrayList<>(newer.size() + cached.size());
+        Set<String> urls = new HashSet<>();
+        for (Article article : newer) {
+            if (urls.add(article.getUrl())) {
+                merged.add(article);
+            }
+        }
+        for (Article article : cached) {
+            if (urls.add(article.getUrl())) {
+                merged.add(article);
+            }
+        }
+        // Stable: between articles published at the same time, the API order is kept.
+        Collections.sort(merged, Article.NEWEST_FIRST);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * Returns the page size of the request URL, or 0 when it has none.
+     */
+    static int getPageSize(String requestUrl) {
+        String pageSize = getQueryParameter(requestUrl, param_page_size);
+        if (pageSize != null) {
+            try {
+                return Integer.parseInt(pageSize);
+            } catch (NumberFormatException e) {
+                // No usable page size
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the decoded value of the first query parameter with the given name, or null.
+     */
+    static String getQueryParameter(String url, String name) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return null;
+        }
+        for (String parameter : url.substring(query + 1).split("&")) {
+            int equals = parameter.indexOf('=');
+            String key = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (key.equals(name)) {
+                return equals < 0 ? "" : decode(parameter.substring(equals + 1));
+            }
+        }
+        return null;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
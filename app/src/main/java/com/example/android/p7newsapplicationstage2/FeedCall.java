@@ -0,0 +1,76 @@
+package com.example.android.p7newsapplicationstage2;
+
+/**
+ * Handle of one network request of the feed, which another thread can cancel.
+ *
+ * Cancelling aborts the {@link HttpTransport.Response} being read, so the thread running the
+ * request gets out of its blocking read right away instead of downloading the rest of a
+ * response nobody waits for anymore.
+ */
+public class FeedCall {
+
+    private boolean mCanceled;
+    private HttpTransport.Response mResponse;
+
+    /**
+     * Cancel the request, aborting its response if it already arrived.
+     */
+    public void cancel() {
+        HttpTransport.Response response;
+        synchronized (this) {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            response = mResponse;
+            // Wake up a thread waiting before its next attempt.
+            notifyAll();
+        }
+        if (response != null) {
+            response.abort();
+        }
+    }
+
+    public synchronized boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Wait for the given delay, e.g. before retrying the request, unless the call is canceled.
+     *
+     * @return true if the call was canceled before the delay elapsed
+     */
+    synchronized boolean awaitCancel(long millis) {
+        long deadline = System.nanoTime() + millis * 1000000;
+        try {
+            for (long left = millis; !mCanceled && left > 0; left = (deadline - System.nanoTime()) / 1000000) {
+                wait(left);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+        return mCanceled;
+    }
+
+    /**
+     * Attach the response of the request, aborted right away if the call is already canceled.
+     */
+    void setResponse(HttpTransport.Response response) {
+        synchronized (this) {
+            mResponse = response;
+            if (!mCanceled) {
+                return;
+            }
+        }
+        response.abort();
+    }
+
+    /**
+     * Forget the response once it has been closed, a later cancel must not abort the
+     * connection it handed back to the keep-alive pool.
+     */
+    synchronized void clearResponse() {
+        mResponse = null;
+    }
+}
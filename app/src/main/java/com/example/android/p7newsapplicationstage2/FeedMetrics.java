@@ -0,0 +1,258 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timings of the feed loads: network, parsing and rendering.
+ *
+ * Every value is kept in lock-free atomics, so the stages record from any thread. When the
+ * metrics are disabled, which is the default in release builds, recording costs one
+ * volatile read: {@link #startTimer()} returns 0 without reading the clock and every
+ * record method returns right away.
+ *
+ * The values are shown by the {@link MetricsActivity} and dumped with
+ * "adb shell dumpsys activity com.example.android.p7newsapplicationstage2".
+ */
+public final class FeedMetrics {
+
+    // Timed stages
+
+    /** Opening the connection: DNS lookup, TCP and TLS handshakes */
+    public static final int STAGE_CONNECT = 0;
+    /** From the request sent to the status line received */
+    public static final int STAGE_FIRST_BYTE = 1;
+    /** Downloading and parsing the body, which are streamed together */
+    public static final int STAGE_DOWNLOAD_PARSE = 2;
+    /** A whole load of the feed loader, cache included */
+    public static final int STAGE_LOAD = 3;
+    /** Binding one row of the list */
+    public static final int STAGE_BIND = 4;
+
+    private static final String[] STAGE_NAMES = {"connect", "first byte", "download + parse", "load", "bind"};
+
+    private static volatile boolean sEnabled;
+
+    private static final LatencyHistogram[] sStages = new LatencyHistogram[STAGE_NAMES.length];
+
+    static {
+        for (int i = 0; i < sStages.length; i++) {
+            sStages[i] = new LatencyHistogram();
+        }
+    }
+
+    /** Responses by status class, index 1 for 1xx up to 5 for 5xx, 0 for anything else */
+    private static final AtomicLongArray sStatusClasses = new AtomicLongArray(6);
+    private static final AtomicLong sNotModified = new AtomicLong();
+    private static final AtomicLong sNetworkErrors = new AtomicLong();
+    private static final AtomicLong sRetries = new AtomicLong();
+    private static final AtomicLong sCircuitOpen = new AtomicLong();
+    private static final AtomicLong sDeltaSyncs = new AtomicLong();
+    private static final AtomicLong sBytesRead = new AtomicLong();
+    private static final AtomicLong sCacheHits = new AtomicLong();
+    private static final AtomicLong sCacheMisses = new AtomicLong();
+    private static final AtomicLong sItemsParsed = new AtomicLong();
+
+    private FeedMetrics() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Returns the start time to hand to {@link #recordStage(int, long)}, or 0 when disabled
+     */
+    public static long startTimer() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time spent in a stage since the given start time.
+     */
+    public static void recordStage(int stage, long startNanos) {
+        if (startNanos != 0 && sEnabled) {
+            sStages[stage].record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Record the status code of a response.
+     */
+    public static void recordStatus(int statusCode) {
+        if (!sEnabled) {
+            return;
+        }
+        int statusClass = statusCode / 100;
+        sStatusClasses.incrementAndGet(statusClass >= 1 && statusClass <= 5 ? statusClass : 0);
+        if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            sNotModified.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record a request which failed without a response.
+     */
+    public static void recordNetworkError() {
+        if (sEnabled) {
+            sNetworkErrors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record a failed request about to be sent again.
+     */
+    public static void recordRetry() {
+        if (sEnabled) {
+            sRetries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record a request refused by the open circuit breaker.
+     */
+    public static void recordCircuitOpen() {
+        if (sEnabled) {
+            sCircuitOpen.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record a refresh which only downloaded the articles newer than the cached list.
+     */
+    public static void recordDeltaSync() {
+        if (sEnabled) {
+            sDeltaSyncs.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the number of bytes read from the network.
+     */
+    public static void addBytesRead(long bytes) {
+        if (sEnabled) {
+            sBytesRead.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Record whether a load found its list in the cache.
+     */
+    public static void recordCacheLookup(boolean hit) {
+        if (sEnabled) {
+            (hit ? sCacheHits : sCacheMisses).incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the number of articles parsed from a response.
+     */
+    public static void addItemsParsed(int count) {
+        if (sEnabled) {
+            sItemsParsed.addAndGet(count);
+        }
+    }
+
+    /**
+     * Returns the histogram of a stage
+     */
+    static LatencyHistogram getStage(int stage) {
+        return sStages[stage];
+    }
+
+    static long getBytesRead() {
+        return sBytesRead.get();
+    }
+
+    static long getCacheHits() {
+        return sCacheHits.get();
+    }
+
+    static long getCacheMisses() {
+        return sCacheMisses.get();
+    }
+
+    static long getItemsParsed() {
+        return sItemsParsed.get();
+    }
+
+    static long getRetries() {
+        return sRetries.get();
+    }
+
+    static long getCircuitOpen() {
+        return sCircuitOpen.get();
+    }
+
+    static long getDeltaSyncs() {
+        return sDeltaSyncs.get();
+    }
+
+    /**
+     * Returns the number of responses of the given status class, e.g. 2 for 2xx
+     */
+    static long getStatusClassCount(int statusClass) {
+        return sStatusClasses.get(statusClass);
+    }
+
+    /**
+     * Forget every recorded value.
+     */
+    public static void reset() {
+        for (LatencyHistogram stage : sStages) {
+            stage.reset();
+        }
+        for (int i = 0; i < sStatusClasses.length(); i++) {
+            sStatusClasses.set(i, 0);
+        }
+        sNotModified.set(0);
+        sNetworkErrors.set(0);
+        sRetries.set(0);
+        sCircuitOpen.set(0);
+        sDeltaSyncs.set(0);
+        sBytesRead.set(0);
+        sCacheHits.set(0);
+        sCacheMisses.set(0);
+        sItemsParsed.set(0);
+    }
+
+    /**
+     * Write every value in a human readable form.
+     */
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Feed metrics" + (sEnabled ? "" : " (disabled)"));
+        for (int i = 0; i < sStages.length; i++) {
+            LatencyHistogram stage = sStages[i];
+            writer.println(String.format("%s  %-17s n=%-6d mean=%dus p50=%dus p99=%dus max=%dus", prefix,
+                    STAGE_NAMES[i], stage.getCount(), stage.getMeanMicros(), stage.getPercentileMicros(0.50),
+                    stage.getPercentileMicros(0.99), stage.getMaxMicros()));
+        }
+        writer.println(String.format("%s  responses 2xx=%d 3xx=%d (304=%d) 4xx=%d 5xx=%d other=%d errors=%d", prefix,
+                sStatusClasses.get(2), sStatusClasses.get(3), sNotModified.get(), sStatusClasses.get(4),
+                sStatusClasses.get(5), sStatusClasses.get(0) + sStatusClasses.get(1), sNetworkErrors.get()));
+        writer.println(String.format("%s  retries=%d refused by the open circuit=%d", prefix,
+                sRetries.get(), sCircuitOpen.get()));
+        writer.println(String.format("%s  delta syncs=%d", prefix, sDeltaSyncs.get()));
+        writer.println(String.format("%s  bytes read=%d", prefix, sBytesRead.get()));
+        writer.println(String.format("%s  cache hits=%d misses=%d", prefix, sCacheHits.get(), sCacheMisses.get()));
+        writer.println(String.format("%s  articles parsed=%d", prefix, sItemsParsed.get()));
+        writer.println(String.format("%s  fetch policy: %s", prefix, FetchPolicy.getInstance()));
+        writer.flush();
+    }
+
+    /**
+     * Returns the dump of every value as a String.
+     */
+    public static String dump() {
+        StringWriter dump = new StringWriter();
+        dump("", new PrintWriter(dump));
+        return dump.toString();
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared request layer of the feed: identical requests in flight are coalesced into a
+ * single network call.
+ *
+ * The first caller for a URL runs the request on its own thread, the callers asking for the
+ * same URL meanwhile subscribe to it and receive a copy of its result. Every caller holds a
+ * {@link Ticket}; canceling a ticket releases its caller right away, and the network call
+ * itself is canceled once none of its subscribers wants it anymore, e.g. when the loader
+ * that started it has been replaced by a loader for a new query.
+ */
+public class FeedRequests {
+
+    private static final FeedRequests sInstance = new FeedRequests();
+
+    /** Requests in flight by URL */
+    private final Map<String, SharedRequest> mInFlight = new HashMap<>();
+
+    /**
+     * Subscription of one caller, canceled from another thread when its result is not
+     * wanted anymore.
+     */
+    public static class Ticket {
+
+        private boolean mCanceled;
+        private SharedRequest mRequest;
+
+        /**
+         * Stop waiting for the result. Returns right away.
+         */
+        public void cancel() {
+            SharedRequest request;
+            synchronized (this) {
+                if (mCanceled) {
+                    return;
+                }
+                mCanceled = true;
+                request = mRequest;
+            }
+            if (request != null) {
+                request.unsubscribe();
+            }
+        }
+
+        public synchronized boolean isCanceled() {
+            return mCanceled;
+        }
+
+        /**
+         * Attach the request, returns false if the ticket was canceled before.
+         */
+        private synchronized boolean attach(SharedRequest request) {
+            mRequest = request;
+            return !mCanceled;
+        }
+    }
+
+    /**
+     * One network call and its subscribers.
+     */
+    private class SharedRequest {
+
+        final String mUrl;
+        final FeedCall mCall = new FeedCall();
+
+        /** Number of tickets waiting for the result, guarded by FeedRequests.this */
+        int mSubscribers;
+
+        /** Result of the call, set once done */
+        private ArticlePage mResult;
+        private boolean mDone;
+
+        SharedRequest(String url) {
+            mUrl = url;
+        }
+
+        /**
+         * Drop one subscriber, and cancel the call when it was the last one.
+         */
+        void unsubscribe() {
+            boolean abandoned;
+            synchronized (FeedRequests.this) {
+                abandoned = --mSubscribers == 0;
+                if (abandoned && mInFlight.get(mUrl) == this) {
+                    // The next caller for this URL starts a new call instead of joining this one.
+                    mInFlight.remove(mUrl);
+                }
+            }
+            if (abandoned) {
+                mCall.cancel();
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        synchronized void complete(ArticlePage result) {
+            mResult = result;
+            mDone = true;
+            notifyAll();
+        }
+
+        /**
+         * Wait for the result, or return null as soon as the ticket is canceled.
+         */
+        synchronized ArticlePage await(Ticket ticket) {
+            while (!mDone && !ticket.isCanceled()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    ticket.cancel();
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return ticket.isCanceled() ? null : mResult;
+        }
+    }
+
+    FeedRequests() {
+    }
+
+    /**
+     * Returns the request layer shared by the whole app.
+     */
+    public static FeedRequests getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Fetch a page of articles like {@link QueryUtils#fetchArticlePage(String, ArticleCache)},
+     * joining the request already in flight for the same URL if there is one.
+     *
+     * @return the page, or an empty page with the canceled outcome when the ticket was canceled
+     */
+    public ArticlePage fetch(String url, ArticleCache cache, Ticket ticket) {
+        return fetch(url, cache, ticket, null);
+    }
+
+    /**
+     * Same as {@link #fetch(String, ArticleCache, Ticket)}, handing the articles to the
+     * listener while they are parsed. Only the caller running the network call gets them,
+     * a caller joining a request in flight only gets the final page.
+     *
+     * @param listener can be null
+     */
+    public ArticlePage fetch(String url, ArticleCache cache, Ticket ticket,
+                             ArticleStreamParser.OnArticleParsedListener listener) {
+        SharedRequest request;
+        boolean owner = false;
+        synchronized (this) {
+            request = mInFlight.get(url);
+            if (request == null) {
+                request = new SharedRequest(url);
+                mInFlight.put(url, request);
+                owner = true;
+            }
+            request.mSubscribers++;
+        }
+        if (!ticket.attach(request)) {
+            request.unsubscribe();
+            return ArticlePage.failed(ArticlePage.OUTCOME_CANCELED);
+        }
+
+        if (owner) {
+            ArticlePage result = QueryUtils.fetchArticlePage(url, cache, request.mCall, listener);
+            synchronized (this) {
+                if (mInFlight.get(url) == request) {
+                    mInFlight.remove(url);
+                }
+            }
+            request.complete(result);
+        }
+        ArticlePage result = request.await(ticket);
+        return result == null ? ArticlePage.failed(ArticlePage.OUTCOME_CANCELED) : copy(result);
+    }
+
+    /**
+     * Same as {@link #fetch(String, ArticleCache, Ticket)} for a caller which never cancels.
+     */
+    public ArticlePage fetch(String url, ArticleCache cache) {
+        return fetch(url, cache, new Ticket());
+    }
+
+    /**
+     * Returns the number of network calls in flight.
+     */
+    synchronized int inFlightCount() {
+        return mInFlight.size();
+    }
+
+    /**
+     * Every subscriber gets its own page, the lists are modified by the callers.
+     */
+    private static ArticlePage copy(ArticlePage page) {
+        return page.withArticles(new ArrayList<>(page.getArticles()));
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.util.List;
+
+/**
+ * Fetches the configured feed in the background and writes it into the {@link ArticleCache}
+ * and the {@link ArticleStore}, so the loaders can show it right away when the app opens.
+ *
+ * After a successful sync the next one is due {@link #MIN_SYNC_SPACING_MILLIS} later, well
+ * within the period of the job so a run early in its window is not skipped. After a failed
+ * sync the next attempt is pushed back by an exponential backoff of whole job periods on top
+ * of that spacing, so every failure skips at least the next run of the job. The clock is injected so the
+ * schedule can be driven from the unit tests.
+ *
+ * A sync can be canceled from another thread, which aborts its request in flight and leaves
+ * the schedule as it was.
+ */
+public class FeedSync {
+
+    /**
+     * Time between two successful syncs
+     */
+    public static final long SYNC_INTERVAL_MILLIS = 30 * 60 * 1000;
+
+    /**
+     * Window at the end of every period in which the job may run
+     */
+    public static final long SYNC_FLEX_MILLIS = SYNC_INTERVAL_MILLIS / 4;
+
+    /**
+     * Time after a successful sync before the next one is due
+     */
+    static final long MIN_SYNC_SPACING_MILLIS = SYNC_INTERVAL_MILLIS / 2;
+
+    /**
+     * First delay after a failure, doubled on every following failure up to the maximum.
+     * The job runs once per period at most, a shorter backoff would not skip any run.
+     */
+    static final long INITIAL_BACKOFF_MILLIS = SYNC_INTERVAL_MILLIS;
+    static final long MAX_BACKOFF_MILLIS = 4 * 60 * 60 * 1000;
+
+    /**
+     * Source of the current time.
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    /**
+     * {@link Clock} reading the system time.
+     */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final ArticleCache mCache;
+    private final ArticleStore mStore;
+    private final Clock mClock;
+
+    /** Number of failed syncs in a row */
+    private int mFailureCount;
+
+    /** Time of the next sync attempt, 0 to sync right away */
+    private long mNextAttemptAt;
+
+    /** Time of the last successful sync, 0 if there was none */
+    private long mLastSuccessAt;
+
+    /** Subscription to the request in flight, and true once the sync is canceled */
+    private volatile FeedRequests.Ticket mTicket;
+    private volatile boolean mCanceled;
+
+    /**
+     * Constructs a new {@link FeedSync}.
+     *
+     * @param cache where the fetched articles are stored
+     * @param clock is the source of the current time
+     */
+    public FeedSync(ArticleCache cache, Clock clock) {
+        this(cache, null, clock);
+    }
+
+    /**
+     * Constructs a new {@link FeedSync} also upserting the fetched articles into a store.
+     *
+     * @param cache where the fetched lists are stored
+     * @param store where the fetched articles are upserted, or null
+     * @param clock is the source of the current time
+     */
+    public FeedSync(ArticleCache cache, ArticleStore store, Clock clock) {
+        mCache = cache;
+        mStore = store;
+        mClock = clock;
+    }
+
+    /**
+     * Restore the schedule saved by a previous run.
+     */
+    public void restore(int failureCount, long nextAttemptAt, long lastSuccessAt) {
+        mFailureCount = failureCount;
+        mNextAttemptAt = nextAttemptAt;
+        mLastSuccessAt = lastSuccessAt;
+    }
+
+    public int getFailureCount() {
+        return mFailureCount;
+    }
+
+    public long getNextAttemptAt() {
+        return mNextAttemptAt;
+    }
+
+    public long getLastSuccessAt() {
+        return mLastSuccessAt;
+    }
+
+    /**
+     * Returns true when a sync should run now
+     */
+    public boolean isDue() {
+        return mClock.currentTimeMillis() >= mNextAttemptAt;
+    }
+
+    /**
+     * Fetch every feed URL into the cache if a sync is due.
+     *
+     * @return true when the sync ran and at least one URL returned articles
+     */
+    public boolean runIfDue(List<String> requestUrls) {
+        if (!isDue()) {
+            return false;
+        }
+        boolean success = false;
+        for (String requestUrl : requestUrls) {
+            FeedRequests.Ticket ticket = new FeedRequests.Ticket();
+            mTicket = ticket;
+            if (mCanceled) {
+                // Stopped, the schedule is kept for the next run.
+                return false;
+            }
+            // The request is conditional on the cached entry and saves the new list in the cache.
+            // A loader already fetching the same URL shares its request with the sync.
+            // A failed request only returns the last good list, which is no success.
+            ArticlePage page = FeedRequests.getInstance().fetch(requestUrl, mCache, ticket);
+            if (page.getOutcome() == ArticlePage.OUTCOME_CANCELED || mCanceled) {
+                return false;
+            }
+            List<Article> articles = page.getArticles();
+            if (page.isSuccessful() && !articles.isEmpty()) {
+                success = true;
+                if (mStore != null) {
+                    mStore.upsert(articles);
+                }
+            }
+        }
+        long now = mClock.currentTimeMillis();
+        if (success) {
+            mFailureCount = 0;
+            mLastSuccessAt = now;
+            mNextAttemptAt = now + MIN_SYNC_SPACING_MILLIS;
+        } else {
+            mFailureCount++;
+            mNextAttemptAt = now + MIN_SYNC_SPACING_MILLIS + backoffMillis(mFailureCount);
+        }
+        return success;
+    }
+
+    /**
+     * Cancel the sync from another thread: the request in flight is aborted, unless a loader
+     * shares it, and {@link #runIfDue(List)} returns without changing the schedule.
+     */
+    public void cancel() {
+        mCanceled = true;
+        FeedRequests.Ticket ticket = mTicket;
+        if (ticket != null) {
+            ticket.cancel();
+        }
+    }
+
+    /**
+     * Returns the delay before the next attempt after the given number of failures in a row
+     */
+    static long backoffMillis(int failureCount) {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int i = 1; i < failureCount && backoff < MAX_BACKOFF_MILLIS; i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, MAX_BACKOFF_MILLIS);
+    }
+}
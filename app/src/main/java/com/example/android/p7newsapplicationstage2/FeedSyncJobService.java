@@ -0,0 +1,107 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Periodic job running the {@link FeedSync} on unmetered networks only.
+ *
+ * The job is scheduled once from the activity and survives reboots. The sync schedule and
+ * its backoff are saved in a private preferences file between runs. The backoff after a
+ * failure is the one of the {@link FeedSync}, the job is never rescheduled by the system.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class FeedSyncJobService extends JobService {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = FeedSyncJobService.class.getSimpleName();
+
+    /** ID of the periodic job */
+    private static final int FEED_SYNC_JOB_ID = 1;
+
+    /**
+     * Preferences file holding the sync schedule, and its keys
+     */
+    private static final String SYNC_PREFERENCES = "feed_sync";
+    private static final String KEY_FAILURE_COUNT = "failure_count";
+    private static final String KEY_NEXT_ATTEMPT_AT = "next_attempt_at";
+    private static final String KEY_LAST_SUCCESS_AT = "last_success_at";
+
+    /** Sync of the current job */
+    private volatile FeedSync mFeedSync;
+
+    /**
+     * Schedule the periodic feed sync, unless it is already scheduled.
+     * Does nothing before Lollipop, which has no JobScheduler.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo pendingJob : jobScheduler.getAllPendingJobs()) {
+            if (pendingJob.getId() == FEED_SYNC_JOB_ID) {
+                return;
+            }
+        }
+        JobInfo.Builder builder = new JobInfo.Builder(FEED_SYNC_JOB_ID, new ComponentName(context, FeedSyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setPersisted(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            builder.setPeriodic(FeedSync.SYNC_INTERVAL_MILLIS, FeedSync.SYNC_FLEX_MILLIS);
+        } else {
+            builder.setPeriodic(FeedSync.SYNC_INTERVAL_MILLIS);
+        }
+        JobInfo job = builder.build();
+        if (jobScheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(LOG_TAG, "Problem scheduling the feed sync");
+        }
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final SharedPreferences state = getSharedPreferences(SYNC_PREFERENCES, MODE_PRIVATE);
+        final FeedSync feedSync = new FeedSync(ArticleCache.getInstance(this),
+                ArticleStore.getInstance(this), FeedSync.SYSTEM_CLOCK);
+        feedSync.restore(state.getInt(KEY_FAILURE_COUNT, 0),
+                state.getLong(KEY_NEXT_ATTEMPT_AT, 0), state.getLong(KEY_LAST_SUCCESS_AT, 0));
+        if (!feedSync.isDue()) {
+            // Still backing off after a failure, wait for the next period.
+            return false;
+        }
+        mFeedSync = feedSync;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                feedSync.runIfDue(ArticleQuery.buildFeedUrls(FeedSyncJobService.this));
+                state.edit()
+                        .putInt(KEY_FAILURE_COUNT, feedSync.getFailureCount())
+                        .putLong(KEY_NEXT_ATTEMPT_AT, feedSync.getNextAttemptAt())
+                        .putLong(KEY_LAST_SUCCESS_AT, feedSync.getLastSuccessAt())
+                        .apply();
+                // A failure is retried after the backoff of the sync, on a later period.
+                jobFinished(params, false);
+            }
+        }, "feed-sync").start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The network went away or became metered: the download is aborted, and the sync
+        // runs again on the next period.
+        FeedSync feedSync = mFeedSync;
+        if (feedSync != null) {
+            feedSync.cancel();
+        }
+        return false;
+    }
+}
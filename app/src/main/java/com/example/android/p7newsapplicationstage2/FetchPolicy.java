@@ -0,0 +1,237 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Picks the page sizes, the prefetch distance and the timeouts of the feed requests from the
+ * throughput and the round-trip time measured on the previous ones.
+ *
+ * The page size chosen in the settings is the largest page ever requested: on a slow link the
+ * first page is cut down so it still arrives within {@link #FIRST_PAGE_TARGET_MILLIS}, while
+ * on a fast one every page has the size of the settings. The estimates are saved so a cold
+ * start already knows the network of the previous run.
+ */
+public class FetchPolicy {
+
+    /**
+     * Time the first page and the following ones should take to arrive
+     */
+    static final long FIRST_PAGE_TARGET_MILLIS = 1000;
+    static final long PAGE_TARGET_MILLIS = 4000;
+
+    /**
+     * Page sizes requested, a handful of them so the cache keys of the URLs seldom change
+     */
+    private static final int[] PAGE_SIZES = {5, 10, 15, 20, 30, 40, 50};
+
+    /**
+     * Prefetch distance bounds, and the time the user takes to scroll past a row
+     */
+    static final int MIN_PREFETCH_DISTANCE = 5;
+    private static final int MAX_PREFETCH_DISTANCE = 30;
+    private static final long MILLIS_PER_ROW = 200;
+
+    /**
+     * Timeouts without any measurement, and their bounds once scaled to the measurements
+     */
+    static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15000;
+    static final int DEFAULT_READ_TIMEOUT_MILLIS = 10000;
+    private static final int MIN_CONNECT_TIMEOUT_MILLIS = 8000;
+    private static final int MIN_READ_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_TIMEOUT_MILLIS = 30000;
+
+    /**
+     * Bytes a stalled read may wait for before timing out, in round trips and transfer time
+     */
+    private static final int READ_TIMEOUT_BYTES = 16 * 1024;
+
+    /**
+     * Bodies smaller than this mostly measure the round-trip time, not the throughput
+     */
+    static final long MIN_THROUGHPUT_BYTES = 2048;
+
+    /**
+     * Weight of a new sample in the moving averages
+     */
+    private static final double SAMPLE_WEIGHT = 0.3;
+
+    /**
+     * Preferences file and keys of the saved estimates
+     */
+    private static final String PREFERENCES_NAME = "fetch_policy";
+    private static final String KEY_ROUND_TRIP_MILLIS = "round_trip_millis";
+    private static final String KEY_BYTES_PER_SECOND = "bytes_per_second";
+    private static final String KEY_BYTES_PER_ARTICLE = "bytes_per_article";
+
+    private static FetchPolicy sInstance;
+
+    /** Where the estimates are saved, null until a context is known */
+    private SharedPreferences mPreferences;
+
+    /** Moving averages, 0 until measured */
+    private double mRoundTripMillis;
+    private double mBytesPerSecond;
+    private double mBytesPerArticle;
+
+    FetchPolicy() {
+    }
+
+    /**
+     * Returns the policy shared by the whole app, without restoring the saved estimates.
+     */
+    public static synchronized FetchPolicy getInstance() {
+        if (sInstance == null) {
+            sInstance = new FetchPolicy();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the policy shared by the whole app, with the estimates saved by the previous run.
+     */
+    public static synchronized FetchPolicy getInstance(Context context) {
+        FetchPolicy policy = getInstance();
+        policy.restore(context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE));
+        return policy;
+    }
+
+    private synchronized void restore(SharedPreferences preferences) {
+        if (mPreferences != null) {
+            return;
+        }
+        mPreferences = preferences;
+        // The measurements of this run, if any, are newer than the saved ones.
+        if (mRoundTripMillis == 0) {
+            mRoundTripMillis = preferences.getFloat(KEY_ROUND_TRIP_MILLIS, 0);
+        }
+        if (mBytesPerSecond == 0) {
+            mBytesPerSecond = preferences.getFloat(KEY_BYTES_PER_SECOND, 0);
+            mBytesPerArticle = preferences.getFloat(KEY_BYTES_PER_ARTICLE, 0);
+        }
+    }
+
+    /**
+     * Record a completed request.
+     *
+     * @param headersMillis  is the time from the request to the response headers
+     * @param bodyMillis     is the time taken to read the body
+     * @param bodyBytes      is the number of bytes of the body, as transferred
+     * @param articles       is the number of articles in the body
+     */
+    public synchronized void recordFetch(long headersMillis, long bodyMillis, long bodyBytes, int articles) {
+        mRoundTripMillis = average(mRoundTripMillis, Math.max(1, headersMillis));
+        if (bodyBytes >= MIN_THROUGHPUT_BYTES && articles > 0) {
+            mBytesPerSecond = average(mBytesPerSecond, bodyBytes * 1000.0 / Math.max(1, bodyMillis));
+            mBytesPerArticle = average(mBytesPerArticle, (double) bodyBytes / articles);
+        }
+        if (mPreferences != null) {
+            mPreferences.edit()
+                    .putFloat(KEY_ROUND_TRIP_MILLIS, (float) mRoundTripMillis)
+                    .putFloat(KEY_BYTES_PER_SECOND, (float) mBytesPerSecond)
+                    .putFloat(KEY_BYTES_PER_ARTICLE, (float) mBytesPerArticle)
+                    .apply();
+        }
+    }
+
+    /**
+     * Returns the size of the first page: the largest one expected within the first page
+     * target, never more than maxPageSize.
+     */
+    public synchronized int getFirstPageSize(int maxPageSize) {
+        if (mBytesPerSecond == 0) {
+            return Math.min(ArticlePager.FIRST_PAGE_SIZE, maxPageSize);
+        }
+        return pageSizeWithin(FIRST_PAGE_TARGET_MILLIS, maxPageSize);
+    }
+
+    /**
+     * Returns the size of the following pages: the largest one expected within the page
+     * target, never more than maxPageSize.
+     */
+    public synchronized int getPageSize(int maxPageSize) {
+        if (mBytesPerSecond == 0) {
+            return maxPageSize;
+        }
+        return pageSizeWithin(PAGE_TARGET_MILLIS, maxPageSize);
+    }
+
+    /**
+     * Returns how many rows before the end of the list the next page of the given size should
+     * be requested, so it arrives before the user reaches the end.
+     */
+    public synchronized int getPrefetchDistance(int pageSize) {
+        if (mBytesPerSecond == 0) {
+            return MIN_PREFETCH_DISTANCE;
+        }
+        long rows = expectedMillis(pageSize) / MILLIS_PER_ROW;
+        return (int) Math.max(MIN_PREFETCH_DISTANCE, Math.min(rows, Math.min(pageSize, MAX_PREFETCH_DISTANCE)));
+    }
+
+    /**
+     * Returns the connect timeout: a few round trips, as DNS and TLS take several.
+     */
+    public synchronized int getConnectTimeoutMillis() {
+        if (mRoundTripMillis == 0) {
+            return DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        }
+        return clampTimeout(mRoundTripMillis * 8, MIN_CONNECT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Returns the read timeout: the time to receive the next bytes with some margin.
+     */
+    public synchronized int getReadTimeoutMillis() {
+        if (mBytesPerSecond == 0) {
+            return DEFAULT_READ_TIMEOUT_MILLIS;
+        }
+        return clampTimeout(3 * (mRoundTripMillis + READ_TIMEOUT_BYTES * 1000.0 / mBytesPerSecond),
+                MIN_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Forget every estimate, the unit tests use it.
+     */
+    synchronized void reset() {
+        mRoundTripMillis = 0;
+        mBytesPerSecond = 0;
+        mBytesPerArticle = 0;
+    }
+
+    private int pageSizeWithin(long targetMillis, int maxPageSize) {
+        int pageSize = Math.min(PAGE_SIZES[0], maxPageSize);
+        for (int candidate : PAGE_SIZES) {
+            if (candidate > maxPageSize || expectedMillis(candidate) > targetMillis) {
+                break;
+            }
+            pageSize = candidate;
+        }
+        // A fast network gets the page size of the settings even between two steps.
+        if (pageSize < maxPageSize && expectedMillis(maxPageSize) <= targetMillis) {
+            pageSize = maxPageSize;
+        }
+        return pageSize;
+    }
+
+    /**
+     * Returns the time a page of the given size should take to arrive, headers included.
+     */
+    private long expectedMillis(int pageSize) {
+        return (long) (mRoundTripMillis + pageSize * mBytesPerArticle * 1000 / mBytesPerSecond);
+    }
+
+    private static int clampTimeout(double millis, int minMillis) {
+        return (int) Math.max(minMillis, Math.min(millis, MAX_TIMEOUT_MILLIS));
+    }
+
+    private static double average(double average, double sample) {
+        return average == 0 ? sample : average + SAMPLE_WEIGHT * (sample - average);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("round trip %.0f ms, %.0f B/s, %.0f B per article",
+                mRoundTripMillis, mBytesPerSecond, mBytesPerArticle);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Performs the HTTP GET requests of the app.
+ *
+ * {@link QueryUtils} talks to the Guardian API through this interface only, so the transport
+ * can be swapped, for example against a local mock server in the unit tests.
+ */
+public interface HttpTransport {
+
+    /**
+     * Send a GET request to the given URL with the extra request headers.
+     * The caller must close the returned {@link Response}.
+     */
+    Response get(String url, Map<String, String> headers) throws IOException;
+
+    /**
+     * Status, headers and body of an HTTP response.
+     */
+    abstract class Response implements Closeable {
+
+        private final int mStatusCode;
+
+        protected Response(int statusCode) {
+            mStatusCode = statusCode;
+        }
+
+        /**
+         * Returns the HTTP status code of the response
+         */
+        public int getStatusCode() {
+            return mStatusCode;
+        }
+
+        /**
+         * Returns the value of the given response header, or null if it is absent
+         */
+        public abstract String getHeader(String name);
+
+        /**
+         * Returns the decoded response body
+         */
+        public abstract InputStream getBody() throws IOException;
+
+        /**
+         * Returns the number of body bytes received on the wire so far, before decompression
+         */
+        public abstract long getBytesTransferred();
+
+        /**
+         * Abort the request from another thread, the blocked reads of the body fail right away.
+         * Does nothing by default.
+         */
+        public void abort() {
+        }
+    }
+}
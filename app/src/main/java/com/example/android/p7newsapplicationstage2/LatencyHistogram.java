@@ -0,0 +1,94 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, with one bucket per power of two microseconds.
+ *
+ * Recording is a few atomic increments, so it can be called from any thread on the hot
+ * paths. Percentiles are approximated by the upper bound of their bucket.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Bucket i counts the durations under 2^i microseconds, the last one every longer duration
+     */
+    static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    /**
+     * Record one duration.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        mBuckets.incrementAndGet(bucketOf(nanos / 1000));
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+        long max = mMaxNanos.get();
+        while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+            max = mMaxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * Returns the mean duration in microseconds, 0 when nothing was recorded
+     */
+    public long getMeanMicros() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotalNanos.get() / count / 1000;
+    }
+
+    public long getMaxMicros() {
+        return mMaxNanos.get() / 1000;
+    }
+
+    /**
+     * Returns the upper bound in microseconds of the bucket holding the given percentile,
+     * e.g. 0.99, or 0 when nothing was recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= rank) {
+                return Math.min(1L << i, getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * Forget every recorded duration.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+
+    /**
+     * Returns the bucket of a duration: the number of bits of the duration in microseconds
+     */
+    static int bucketOf(long micros) {
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-disk cache of files keyed by URL, e.g. the downloaded thumbnails or the article bodies.
+ *
+ * Thumbnails are stored as downloaded, still compressed, so they can be decoded again at any
+ * size. Like the {@link ArticleCache}, the least recently used files are evicted once the
+ * directory grows over its size budget.
+ */
+public class LruFileCache {
+
+    /** Suffix of the cached files, and of a file being written, renamed once complete */
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    /**
+     * Cached files in least recently used order, mapped to their size in bytes
+     */
+    private LinkedHashMap<String, Long> mIndex;
+    private long mSize;
+
+    /**
+     * Constructs a new {@link LruFileCache}.
+     *
+     * @param directory where the files are stored
+     * @param maxBytes  is the size above which least recently used files are evicted
+     */
+    LruFileCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the file cached for the given URL, or null if there is none.
+     */
+    public synchronized File get(String url) {
+        ensureIndex();
+        String name = fileName(url);
+        if (mIndex.get(name) == null) {
+            return null;
+        }
+        File file = new File(mDirectory, name);
+        // Touched so it is the most recently used one, also across restarts.
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Stores the content read from the stream for the given URL and returns its file. It is
+     * written aside and only added once complete, so a failed download leaves nothing.
+     */
+    public File put(String url, InputStream content) throws IOException {
+        String name = fileName(url);
+        synchronized (this) {
+            // Indexed first, as indexing deletes the temporary files.
+            ensureIndex();
+        }
+        // Each download writes its own temporary file, outside of the lock.
+        File temp = File.createTempFile(name, TEMP_SUFFIX, ensureDirectory());
+        try {
+            // The stream is left open, its owner drains and closes it.
+            OutputStream out = FileUtils.openOutputStream(temp);
+            try {
+                IOUtils.copy(content, out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        synchronized (this) {
+            File file = new File(mDirectory, name);
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Problem renaming " + temp);
+            }
+            Long previousSize = mIndex.put(name, file.length());
+            mSize += file.length() - (previousSize == null ? 0 : previousSize);
+            trimToSize();
+            return file;
+        }
+    }
+
+    /**
+     * Returns the total size of the cached files in bytes.
+     */
+    public synchronized long size() {
+        ensureIndex();
+        return mSize;
+    }
+
+    private File ensureDirectory() throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs() && !mDirectory.isDirectory()) {
+            throw new IOException("Problem creating " + mDirectory);
+        }
+        return mDirectory;
+    }
+
+    /**
+     * Build the LRU index from the files already on disk, oldest access first.
+     */
+    private void ensureIndex() {
+        if (mIndex != null) {
+            return;
+        }
+        mIndex = new LinkedHashMap<>(16, 0.75f, true);
+        mSize = 0;
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_SUFFIX)) {
+                mIndex.put(file.getName(), file.length());
+                mSize += file.length();
+            } else {
+                // Left over by an interrupted download
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used files until the cache fits in its size budget.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = mIndex.entrySet().iterator();
+        while (mSize > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            mSize -= eldest.getValue();
+            new File(mDirectory, eldest.getKey()).delete();
+        }
+    }
+
+    private static String fileName(String url) {
+        return ArticleCache.sha1(url) + FILE_SUFFIX;
+    }
+}
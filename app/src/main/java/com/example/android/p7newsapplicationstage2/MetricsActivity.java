@@ -0,0 +1,53 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+/**
+ * Debug screen showing the {@link FeedMetrics} recorded since the app started.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private TextView mMetricsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.metrics_activity);
+        mMetricsTextView = (TextView) findViewById(R.id.metrics_text);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    private void showMetrics() {
+        mMetricsTextView.setText(FeedMetrics.dump());
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_refresh_metrics) {
+            showMetrics();
+            return true;
+        }
+        if (id == R.id.action_reset_metrics) {
+            FeedMetrics.reset();
+            showMetrics();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches one Guardian query per followed section at the same time and merges the
+ * results into a single newest first feed.
+ *
+ * The queries run on a small bounded pool. A section that fails, or that is still loading
+ * when the deadline is reached, is left out of the feed without holding back the others.
+ * A fetch canceled from another thread returns right away, and the section requests nobody
+ * else waits for are aborted.
+ */
+public class MultiSectionFetcher {
+
+    /**
+     * Tag for log message
+     */
+    private static final String LOG_TAG = MultiSectionFetcher.class.getSimpleName();
+
+    /**
+     * Number of requests running at the same time
+     */
+    private static final int MAX_PARALLEL_REQUESTS = 4;
+
+    /**
+     * Time given to all the sections to answer
+     */
+    private static final long DEADLINE_MILLIS = 30000;
+
+    private static ExecutorService sExecutor;
+
+    private final ExecutorService mExecutor;
+    private final ArticleCache mCache;
+    private final long mDeadlineMillis;
+
+    /** Subscriptions and tasks of the section requests in progress, guarded by this */
+    private final List<FeedRequests.Ticket> mTickets = new ArrayList<>();
+    private final List<Future<ArticlePage>> mFutures = new ArrayList<>();
+    private boolean mCanceled;
+
+    /**
+     * Constructs a new {@link MultiSectionFetcher} running on the shared request pool.
+     *
+     * @param cache can be null, then plain requests are made
+     */
+    public MultiSectionFetcher(ArticleCache cache) {
+        this(getExecutor(), cache, DEADLINE_MILLIS);
+    }
+
+    MultiSectionFetcher(ExecutorService executor, ArticleCache cache, long deadlineMillis) {
+        mExecutor = executor;
+        mCache = cache;
+        mDeadlineMillis = deadlineMillis;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "section-fetch-" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Fetch every request URL in parallel and return the merged feed, newest first,
+     * without duplicated URLs.
+     */
+    public List<Article> fetch(List<String> requestUrls) {
+        return fetchPage(requestUrls).getArticles();
+    }
+
+    /**
+     * Same as {@link #fetch(List)}, the merged feed being returned as a page whose outcome is
+     * successful when at least one section is. Otherwise it is the outcome of the first section,
+     * and the page is a fallback when a section fell back to its saved list.
+     */
+    public ArticlePage fetchPage(List<String> requestUrls) {
+        List<Future<ArticlePage>> futures = new ArrayList<>();
+        List<FeedRequests.Ticket> tickets = new ArrayList<>();
+        for (final String requestUrl : requestUrls) {
+            final FeedRequests.Ticket ticket = new FeedRequests.Ticket();
+            synchronized (this) {
+                if (mCanceled) {
+                    // The sections submitted so far were canceled with the fetch.
+                    return ArticlePage.failed(ArticlePage.OUTCOME_CANCELED);
+                }
+                Future<ArticlePage> future = mExecutor.submit(new Callable<ArticlePage>() {
+                    @Override
+                    public ArticlePage call() {
+                        return FeedRequests.getInstance().fetch(requestUrl, mCache, ticket);
+                    }
+                });
+                mFutures.add(future);
+                mTickets.add(ticket);
+                futures.add(future);
+                tickets.add(ticket);
+            }
+        }
+
+        List<List<Article>> sections = new ArrayList<>();
+        int outcome = ArticlePage.OUTCOME_CANCELED;
+        boolean anySuccess = false;
+        boolean anyFallback = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mDeadlineMillis);
+        for (int i = 0; i < futures.size(); i++) {
+            Future<ArticlePage> future = futures.get(i);
+            try {
+                ArticlePage section = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sections.add(section.getArticles());
+                anySuccess |= section.isSuccessful();
+                anyFallback |= section.isFallback();
+                if (i == 0) {
+                    outcome = section.getOutcome();
+                }
+            } catch (TimeoutException e) {
+                Log.e(LOG_TAG, "Section request timed out: " + requestUrls.get(i));
+                tickets.get(i).cancel();
+                future.cancel(true);
+                if (i == 0) {
+                    outcome = ArticlePage.OUTCOME_TIMEOUT;
+                }
+            } catch (ExecutionException e) {
+                Log.e(LOG_TAG, "Section request failed: " + requestUrls.get(i), e);
+                if (i == 0) {
+                    outcome = ArticlePage.OUTCOME_NETWORK_ERROR;
+                }
+            } catch (CancellationException e) {
+                // The whole fetch was canceled.
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                break;
+            }
+        }
+        if (isCanceled()) {
+            return ArticlePage.failed(ArticlePage.OUTCOME_CANCELED);
+        }
+        ArticlePage page = new ArticlePage(merge(sections));
+        page.setOutcome(anySuccess ? ArticlePage.OUTCOME_OK : outcome);
+        // A section showing its saved list does not make a stale page of the live sections.
+        page.setFallback(!anySuccess && anyFallback);
+        return page;
+    }
+
+    /**
+     * Stop the fetch in progress, called from another thread. The pending sections are not
+     * started, the running ones stop being waited for and their downloads are aborted unless
+     * another caller shares them. {@link #fetchPage(List)} then returns a canceled page.
+     */
+    public void cancel() {
+        List<FeedRequests.Ticket> tickets;
+        List<Future<ArticlePage>> futures;
+        synchronized (this) {
+            mCanceled = true;
+            tickets = new ArrayList<>(mTickets);
+            futures = new ArrayList<>(mFutures);
+        }
+        for (FeedRequests.Ticket ticket : tickets) {
+            ticket.cancel();
+        }
+        for (Future<ArticlePage> future : futures) {
+            // Not interrupted, the thread may be running a request shared with another caller.
+            future.cancel(false);
+        }
+    }
+
+    public synchronized boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Merge the lists of every section into one newest first list without duplicated URLs.
+     */
+    static List<Article> merge(List<List<Article>> sections) {
+        List<Article> merged = new ArrayList<>();
+        Set<String> urls = new HashSet<>();
+        for (List<Article> section : sections) {
+            for (Article article : section) {
+                if (urls.add(article.getUrl())) {
+                    merged.add(article);
+                }
+            }
+        }
+        // Stable sort, so articles with the same date keep the order of their section
+        Collections.sort(merged, Article.NEWEST_FIRST);
+        return merged;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+
+import java.util.List;
+
+/**
+ * Loads the merged feed of several sections by using an AsyncTask to perform
+ * one network request per section URL, in parallel.
+ */
+public class MultiSectionLoader extends AsyncTaskLoader<ArticlePage> {
+
+    /** Query URL of every section */
+    private List<String> mUrls;
+
+    /** Fetcher of the current load, canceled with the load */
+    private volatile MultiSectionFetcher mFetcher;
+
+    /**
+     * Constructs a new {@link MultiSectionLoader}.
+     *
+     * @param context of the activity
+     * @param urls to load data from, one per section
+     */
+    public MultiSectionLoader(Context context, List<String> urls) {
+        super(context);
+        mUrls = urls;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        forceLoad();
+    }
+
+    /**
+     * This is on a background thread.
+     */
+    @Override
+    public ArticlePage loadInBackground() {
+        if (mUrls == null || mUrls.isEmpty()) {
+            return null;
+        }
+        MultiSectionFetcher fetcher = new MultiSectionFetcher(ArticleCache.getInstance(getContext()));
+        mFetcher = fetcher;
+        ArticlePage page = fetcher.fetchPage(mUrls);
+        if (!fetcher.isCanceled()) {
+            ArticleStore.getInstance(getContext()).upsert(page.getArticles());
+        }
+        return page;
+    }
+
+    /**
+     * Called on the main thread when the load is canceled, e.g. when the loader is restarted
+     * for new sections: the superseded section requests stop being waited for, and their
+     * downloads are aborted unless another loader shares them.
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        MultiSectionFetcher fetcher = mFetcher;
+        if (fetcher != null) {
+            fetcher.cancel();
+        }
+    }
+}
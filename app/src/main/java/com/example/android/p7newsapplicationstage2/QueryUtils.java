@@ -12,14 +12,15 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
 /**
  * Helper methods related to requesting and receiving news data from the Guardian json.
@@ -37,31 +38,298 @@ public final class QueryUtils {
     private static final String json_tags = "tags";
     private static final String json_publicationDate = "webPublicationDate";
     private static final String json_title = "webTitle";
+    private static final String json_id = "id";
+    private static final String json_type = "type";
     private static final String json_sectionName = "sectionName";
+    private static final String json_sectionId = "sectionId";
     private static final String json_response = "response";
     private static final String json_results = "results";
     private static final String json_url = "webUrl";
-    private static final String json_requestmethod = "GET";
-    private static final int the_index = 0;
-    private static final int jsnon_readtimeout=10000;
-    private static final int json_connectiontimeout=15000;
+    private static final String json_fields = "fields";
+    private static final String json_thumbnail = "thumbnail";
+
+    /**
+     * HTTP headers of the conditional requests
+     */
+    private static final String header_etag = "ETag";
+    private static final String header_last_modified = "Last-Modified";
+    private static final String header_if_none_match = "If-None-Match";
+    private static final String header_if_modified_since = "If-Modified-Since";
+    private static final String header_retry_after = "Retry-After";
+
+    /**
+     * Status codes missing from {@link HttpURLConnection}
+     */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Transport performing the HTTP requests
+     */
+    private static HttpTransport sTransport = new UrlConnectionTransport();
+
+    /**
+     * Retries of the failed requests, and the circuit breaker shared by every request
+     */
+    private static RetryPolicy sRetryPolicy = RetryPolicy.defaultPolicy();
+    private static CircuitBreaker sCircuitBreaker = CircuitBreaker.defaultBreaker();
 
     /**
      * building and manipulating my uri url requests
      */
     public static List<Article> fetchArcticlesAppData(String requestUrl) {
+        return fetchArcticlesAppData(requestUrl, null);
+    }
+
+    /**
+     * Fetch the articles of the given URL, revalidating the entry saved in the cache.
+     * <p>
+     * The ETag and Last-Modified values stored with the cached entry are sent along, and a
+     * 304 Not Modified answer returns the cached list without downloading or parsing anything.
+     * A successful answer is saved in the cache with its new validators.
+     *
+     * @param cache can be null, then a plain request is made
+     */
+    public static List<Article> fetchArcticlesAppData(String requestUrl, ArticleCache cache) {
+        return fetchArticlePage(requestUrl, cache).getArticles();
+    }
+
+    /**
+     * Same as {@link #fetchArcticlesAppData(String, ArticleCache)}, but also returns the paging
+     * information of the response. The paging fields are {@link ArticlePage#UNKNOWN} when
+     * the cached list is returned.
+     * <p>
+     * When the cached entry has no validators, only the articles newer than its list are
+     * downloaded and merged into it, see {@link DeltaSync}.
+     * <p>
+     * Timeouts, connection errors, 408, 429 and 5xx responses are retried as the
+     * {@link RetryPolicy} says, unless the {@link CircuitBreaker} is open. When every attempt
+     * failed, the page has the outcome of the last one and the cached list, if any, as a
+     * fallback.
+     */
+    public static ArticlePage fetchArticlePage(String requestUrl, ArticleCache cache) {
+        return fetchArticlePage(requestUrl, cache, new FeedCall());
+    }
+
+    /**
+     * Same as {@link #fetchArticlePage(String, ArticleCache)}, the request being aborted when
+     * the call is canceled. A canceled request returns an empty page and leaves the cache alone.
+     */
+    static ArticlePage fetchArticlePage(String requestUrl, ArticleCache cache, FeedCall call) {
+        return fetchArticlePage(requestUrl, cache, call, null);
+    }
+
+    /**
+     * Same as {@link #fetchArticlePage(String, ArticleCache, FeedCall)}, handing every
+     * downloaded {@link Article} to the listener as soon as it has been parsed, while the
+     * rest of the body is still on its way.
+     *
+     * @param listener can be null
+     */
+    static ArticlePage fetchArticlePage(String requestUrl, ArticleCache cache, FeedCall call,
+                                        ArticleStreamParser.OnArticleParsedListener listener) {
         //Create URL object
         URL url = createUrl(requestUrl);
-        //Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
+        //If the URL is null or the call already canceled, then return early.
+        if (url == null) {
+            return ArticlePage.failed(ArticlePage.OUTCOME_HTTP_ERROR);
+        }
+        if (call.isCanceled()) {
+            return ArticlePage.failed(ArticlePage.OUTCOME_CANCELED);
+        }
+        ArticleCache.Entry cached = cache == null ? null : cache.get(requestUrl);
+
+        // Retry the failures worth it, unless the API failed so often lately that the circuit
+        // breaker keeps the requests from reaching it.
+        RetryPolicy retryPolicy = sRetryPolicy;
+        CircuitBreaker circuitBreaker = sCircuitBreaker;
+        ArticlePage page;
+        for (int attempt = 1; ; attempt++) {
+            if (!circuitBreaker.allowRequest()) {
+                FeedMetrics.recordCircuitOpen();
+                page = ArticlePage.failed(ArticlePage.OUTCOME_CIRCUIT_OPEN);
+                break;
+            }
+            page = fetchOnce(url, requestUrl, cache, cached, call, listener);
+            if (page.getOutcome() == ArticlePage.OUTCOME_CANCELED) {
+                circuitBreaker.onCanceled();
+                return page;
+            }
+            if (page.isSuccessful()) {
+                circuitBreaker.onSuccess();
+                break;
+            }
+            if (!isRetryable(page)) {
+                // A client error is no sign of the API being up or down.
+                circuitBreaker.onClientError();
+                break;
+            }
+            circuitBreaker.onFailure();
+            long retryAfter = page.getRetryAfterMillis();
+            if (retryAfter > retryPolicy.getMaxDelayMillis()) {
+                // Not worth waiting for here, and no other request should be sent before.
+                circuitBreaker.openFor(retryAfter);
+                break;
+            }
+            if (attempt >= retryPolicy.getMaxAttempts()) {
+                break;
+            }
+            FeedMetrics.recordRetry();
+            if (call.awaitCancel(Math.max(retryAfter, retryPolicy.backoffMillis(attempt)))) {
+                circuitBreaker.onCanceled();
+                return ArticlePage.failed(ArticlePage.OUTCOME_CANCELED);
+            }
+        }
+
+        if (!page.isSuccessful() && cached != null) {
+            // Show the last good list rather than nothing, flagged so the UI can tell.
+            page = page.withArticles(cached.getArticles());
+            page.setFallback(true);
+        }
+        // Return the page of {@link Article}s
+        return page;
+    }
+
+    /**
+     * Returns true when the page failed in a way that another attempt may fix.
+     */
+    private static boolean isRetryable(ArticlePage page) {
+        switch (page.getOutcome()) {
+            case ArticlePage.OUTCOME_NETWORK_ERROR:
+            case ArticlePage.OUTCOME_TIMEOUT:
+            case ArticlePage.OUTCOME_SERVER_ERROR:
+            case ArticlePage.OUTCOME_RATE_LIMITED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the outcome of a response which is neither 200 nor 304.
+     */
+    private static int outcomeOf(int statusCode) {
+        if (statusCode == HTTP_TOO_MANY_REQUESTS) {
+            return ArticlePage.OUTCOME_RATE_LIMITED;
+        } else if (statusCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT) {
+            return ArticlePage.OUTCOME_TIMEOUT;
+        } else if (statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            return ArticlePage.OUTCOME_SERVER_ERROR;
+        }
+        return ArticlePage.OUTCOME_HTTP_ERROR;
+    }
+
+    /**
+     * Make a single request, conditional on the cached entry, and return its page.
+     */
+    private static ArticlePage fetchOnce(URL url, String requestUrl, ArticleCache cache, ArticleCache.Entry cached,
+                                         FeedCall call, ArticleStreamParser.OnArticleParsedListener listener) {
+        // Without validators to revalidate the cached list, e.g. from the Guardian API, only the
+        // articles published since its newest one are requested, then merged into it, unless
+        // the list is due for a full request.
+        String deltaUrl = cached != null
+                ? DeltaSync.buildDeltaUrl(requestUrl, cached, System.currentTimeMillis()) : null;
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null && cached.getEtag() != null) {
+            headers.put(header_if_none_match, cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            headers.put(header_if_modified_since, cached.getLastModified());
+        }
+        ArticlePage page = new ArticlePage();
+        //Perform HTTP request to the URL and parse the JSON response while it is downloaded
+        HttpTransport.Response response = null;
         try {
-            jsonResponse = makeHttpRequest(url);
+            long requestStart = System.nanoTime();
+            response = sTransport.get(deltaUrl != null ? deltaUrl : url.toString(), headers);
+            long headersAt = System.nanoTime();
+            call.setResponse(response);
+            int statusCode = response.getStatusCode();
+            FeedMetrics.recordStatus(statusCode);
+            if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                FetchPolicy.getInstance().recordFetch(nanosToMillis(headersAt - requestStart), 0, 0, 0);
+                page = new ArticlePage(cached.getArticles());
+                cache.put(requestUrl, page.getArticles(), cached.getEtag(), cached.getLastModified());
+            } else if (statusCode == HttpURLConnection.HTTP_OK) {
+                long parseStart = FeedMetrics.startTimer();
+                page = ArticleStreamParser.parsePage(response.getBody(), listener);
+                FeedMetrics.recordStage(FeedMetrics.STAGE_DOWNLOAD_PARSE, parseStart);
+                if (call.isCanceled()) {
+                    // The body was cut short, the partial list must not be used nor cached.
+                    return ArticlePage.failed(ArticlePage.OUTCOME_CANCELED);
+                }
+                FeedMetrics.addItemsParsed(page.getArticles().size());
+                // The page sizes and timeouts of the next requests follow the measured network.
+                FetchPolicy.getInstance().recordFetch(nanosToMillis(headersAt - requestStart),
+                        nanosToMillis(System.nanoTime() - headersAt), response.getBytesTransferred(),
+                        page.getArticles().size());
+                // Every downloaded article becomes searchable offline, and so do its tags.
+                ArticleSearchIndex.getInstance().addAll(page.getArticles());
+                ArticleTagIndex.getInstance().addAll(page.getArticles());
+                if (deltaUrl != null) {
+                    // The paging of the delta request is not the one of the query.
+                    FeedMetrics.recordDeltaSync();
+                    boolean changed = !page.getArticles().isEmpty();
+                    page = new ArticlePage(DeltaSync.merge(requestUrl, page.getArticles(), cached.getArticles()));
+                    // An empty delta may be a parse failure, the entry is only written with news.
+                    // The validators of the delta response do not apply to the query.
+                    if (changed) {
+                        cache.putMerged(requestUrl, page.getArticles(), cached.getFullSavedAt());
+                    }
+                    return page;
+                }
+                // An empty list is most likely a parse failure, it must not replace a good entry.
+                if (cache != null && !page.getArticles().isEmpty()) {
+                    cache.put(requestUrl, page.getArticles(),
+                            response.getHeader(header_etag), response.getHeader(header_last_modified));
+                }
+            } else {
+                Log.e(LOD_TAG, "Error response code:" + statusCode);
+                page = ArticlePage.failed(outcomeOf(statusCode));
+                page.setRetryAfterMillis(RetryPolicy.parseRetryAfterMillis(
+                        response.getHeader(header_retry_after), System.currentTimeMillis()));
+            }
         } catch (IOException e) {
+            if (call.isCanceled()) {
+                return ArticlePage.failed(ArticlePage.OUTCOME_CANCELED);
+            }
             Log.e(LOD_TAG, "There is a problem making the HTTP request.", e);
+            FeedMetrics.recordNetworkError();
+            page = ArticlePage.failed(e instanceof SocketTimeoutException
+                    ? ArticlePage.OUTCOME_TIMEOUT : ArticlePage.OUTCOME_NETWORK_ERROR);
+        } finally {
+            call.clearResponse();
+            closeQuietly(response);
+            if (response != null) {
+                FeedMetrics.addBytesRead(response.getBytesTransferred());
+            }
         }
-        // Extract relevant fields from the JSON response and create a list of {@link NewsApp}s
-        // Return the list of {@link NewsApp}s
-        return extractFeatureFromJson(jsonResponse);
+        return page;
+    }
+
+    private static long nanosToMillis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    /**
+     * Returns the transport used for every request, shared with the thumbnail downloads.
+     */
+    static HttpTransport getTransport() {
+        return sTransport;
+    }
+
+    /**
+     * Replace the transport used for every request, the unit tests use it.
+     */
+    static void setTransport(HttpTransport transport) {
+        sTransport = transport;
+    }
+
+    /**
+     * Replace the retry policy and the circuit breaker of every request, the unit tests use it.
+     */
+    static void setResilience(RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+        sRetryPolicy = retryPolicy;
+        sCircuitBreaker = circuitBreaker;
     }
 
     /**
@@ -81,13 +349,9 @@ public final class QueryUtils {
      * Date Helper
      */
     private static String formatDate(String dateData) {
-        String guardianJsonDateFormat = "yyyy-MM-dd'T'HH:mm:ss'Z'";
-        SimpleDateFormat jsonDateFormatter = new SimpleDateFormat(guardianJsonDateFormat, Locale.UK);
         try {
-            Date jsonDateToParse = jsonDateFormatter.parse(dateData);
-            String resultDate = "MMM d, yyy";
-            SimpleDateFormat resultDateFormatter = new SimpleDateFormat(resultDate, Locale.UK);
-            return resultDateFormatter.format(jsonDateToParse);
+            Date jsonDateToParse = ArticleDateFormats.parseGuardianDateUtc(dateData);
+            return ArticleDateFormats.formatShortDate(jsonDateToParse);
         } catch (ParseException e) {
             Log.e(LOD_TAG, "There is an error Formatting the Json Date", e);
             return "";
@@ -95,52 +359,35 @@ public final class QueryUtils {
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Parse the "webPublicationDate" of an article, or return null if it can't be parsed.
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
-        //If the URL is null, then return early.
-        if (url == null) {
-            return jsonResponse;
-        }
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
+    static Date parsePublicationDate(String originalPublicationDate) {
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(jsnon_readtimeout);
-            urlConnection.setConnectTimeout(json_connectiontimeout);
-            urlConnection.setRequestMethod(json_requestmethod);
-            urlConnection.connect();
-            // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            } else {
-                Log.e(LOD_TAG, "Error response code:" + urlConnection.getResponseCode());
-            }
-        } catch (IOException e) {
-            Log.e(LOD_TAG, "Problem retrieving the Article News Json result.", e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies than an IOException
-                // could be thrown.
-                inputStream.close();
+            return ArticleDateFormats.parseGuardianDate(originalPublicationDate);
+        } catch (Exception e) {
+            Log.e("QueryUtils", "Problem parsing the news date", e);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(HttpTransport.Response response) {
+        if (response != null) {
+            try {
+                response.close();
+            } catch (IOException e) {
+                Log.e(LOD_TAG, "Problem closing the Article News response.", e);
             }
         }
-        return jsonResponse;
     }
 
     /**
      * Convert the {@link InputStream} into a String which contains the
      * <p>
      * whole JSON response from the server.
+     * <p>
+     * Kept as the reference for {@link ArticleStreamParser}, the network path no longer uses it.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    static String readFromStream(InputStream inputStream) throws IOException {
         StringBuilder output = new StringBuilder();
         if (inputStream != null) {
             InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
@@ -158,8 +405,10 @@ public final class QueryUtils {
      * Return a list of {@link Article} objects that has been built up from
      * <p>
      * parsing the given JSON response.
+     * <p>
+     * Kept as the reference for {@link ArticleStreamParser}, the network path no longer uses it.
      */
-    private static List<Article> extractFeatureFromJson(String newsAppJson) {
+    static List<Article> extractFeatureFromJson(String newsAppJson) {
         // Create an empty ArrayList that we can start adding newsApps to
         List<Article> newsApps = new ArrayList<>();
         // Try to parse the JSON response string. If there's a problem with the way the JSON
@@ -177,34 +426,44 @@ public final class QueryUtils {
                 JSONObject currentArticlesApp = resultsArray.getJSONObject(i);
                 // Extract the value for the key called "sectionName"
                 String secName = currentArticlesApp.optString(json_sectionName);
+                // Extract the value for the key called "sectionId", null when missing
+                String secId = currentArticlesApp.isNull(json_sectionId) ? null : currentArticlesApp.getString(json_sectionId);
 
                 // Extract the value for the key called "webPublicationDate"
                 String originalPublicationDate = currentArticlesApp.getString(json_publicationDate);
 
                 //Format publication date
-                Date publicationDate = null;
-                try {
-                    publicationDate = (new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss")).parse(originalPublicationDate);
-                } catch (Exception e) {
-                    Log.e("QueryUtils", "Problem parsing the news date", e);
-                }
+                Date publicationDate = parsePublicationDate(originalPublicationDate);
 
                 // Extract the value for the key called "webTitle"
                 String artTitle = currentArticlesApp.getString(json_title);
                 //Extract the value for the key called"webUrl"
                 String url = currentArticlesApp.getString(json_url);
 
-                //Extract the value of the author
-                String articleAuthor = null;
+                //Extract every tag with its ID, the first contributor being the author
+                List<ArticleTag> tags = new ArrayList<>();
                 JSONArray tagsArray = currentArticlesApp.getJSONArray(json_tags);
-                if (!tagsArray.isNull(the_index)) {
-                    JSONObject currentStoryTags = tagsArray.getJSONObject(the_index);
-                    if (currentArticlesApp.has(json_title)) {
-                        articleAuthor = currentStoryTags.getString(json_title);
+                for (int t = 0; t < tagsArray.length(); t++) {
+                    JSONObject currentStoryTag = tagsArray.optJSONObject(t);
+                    if (currentStoryTag != null) {
+                        tags.add(new ArticleTag(currentStoryTag.optString(json_id, null),
+                                currentStoryTag.optString(json_type, null), currentStoryTag.optString(json_title, null)));
                     }
                 }
-                // Create a new {@link NewsApp} object with the artTitle, secName,publicationDate,articleAuthor and url.
-                Article JSONarcticles = new Article(artTitle, secName,publicationDate, articleAuthor, url);
+                ArticleTag authorTag = ArticleTag.findAuthor(tags);
+                String articleAuthor = authorTag == null ? null : authorTag.getTitle();
+                if (authorTag != null && articleAuthor == null) {
+                    throw new JSONException("No webTitle in the author tag");
+                }
+                //Extract the thumbnail, requested with show-fields
+                String thumbnailUrl = null;
+                JSONObject fields = currentArticlesApp.optJSONObject(json_fields);
+                if (fields != null && fields.has(json_thumbnail)) {
+                    thumbnailUrl = fields.getString(json_thumbnail);
+                }
+                // Create a new {@link NewsApp} object with the artTitle, secName,publicationDate,articleAuthor, url and thumbnail.
+                Article JSONarcticles = new Article(artTitle, secName, secId,
+                        publicationDate == null ? Article.NO_DATE : publicationDate.getTime(), articleAuthor, url, thumbnailUrl, tags);
                 // and url from the JSON response.
                 newsApps.add(JSONarcticles);
             }
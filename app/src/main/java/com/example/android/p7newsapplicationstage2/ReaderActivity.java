@@ -0,0 +1,88 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.app.LoaderManager.LoaderCallbacks;
+import android.content.Context;
+import android.content.Intent;
+import android.content.Loader;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * In-app reader showing the text of an article, extracted from its web page. The prefetched
+ * articles open without any network request; the web page stays one menu item away.
+ */
+public class ReaderActivity extends AppCompatActivity implements LoaderCallbacks<String> {
+
+    /**
+     * Intent extras describing the article
+     */
+    private static final String EXTRA_URL = "url";
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_BYLINE = "byline";
+
+    /** Loader ID of the article text */
+    private static final int ARTICLE_BODY_LOADER_ID = 1;
+
+    private String mUrl;
+    private TextView mBodyTextView;
+
+    /**
+     * Returns the intent opening the given article in the reader.
+     */
+    public static Intent newIntent(Context context, Article article) {
+        String byline = article.getAuthor() == null
+                ? article.getArticle_section() : article.getArticle_section() + " | " + article.getAuthor();
+        return new Intent(context, ReaderActivity.class)
+                .putExtra(EXTRA_URL, article.getUrl())
+                .putExtra(EXTRA_TITLE, article.getArticle_title())
+                .putExtra(EXTRA_BYLINE, byline);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.reader_activity);
+        mUrl = getIntent().getStringExtra(EXTRA_URL);
+        ((TextView) findViewById(R.id.reader_title)).setText(getIntent().getStringExtra(EXTRA_TITLE));
+        ((TextView) findViewById(R.id.reader_byline)).setText(getIntent().getStringExtra(EXTRA_BYLINE));
+        mBodyTextView = (TextView) findViewById(R.id.reader_body);
+        getLoaderManager().initLoader(ARTICLE_BODY_LOADER_ID, null, this);
+    }
+
+    @Override
+    public Loader<String> onCreateLoader(int id, Bundle bundle) {
+        return new ArticleBodyLoader(this, mUrl);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<String> loader, String text) {
+        findViewById(R.id.reader_loading_indicator).setVisibility(View.GONE);
+        mBodyTextView.setText(text != null ? text : getString(R.string.reader_unavailable));
+    }
+
+    @Override
+    public void onLoaderReset(Loader<String> loader) {
+        mBodyTextView.setText(null);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_reader, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_open_in_browser) {
+            // View the news URI
+            startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(mUrl)));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
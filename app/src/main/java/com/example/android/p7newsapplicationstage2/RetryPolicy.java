@@ -0,0 +1,99 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.text.ParseException;
+import java.util.Random;
+
+/**
+ * When and how long to wait before retrying a failed feed request.
+ *
+ * Every feed request is a GET, so any of them can be sent again. Timeouts, connection errors,
+ * 408, 429 and 5xx responses are retried after an exponential backoff with jitter, so the
+ * clients which failed together do not retry together. A delay asked by the server in a
+ * Retry-After header is honored when it is longer.
+ */
+public class RetryPolicy {
+
+    /**
+     * Attempts of a request and the bounds of the backoff between them
+     */
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 8000;
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final Random mRandom;
+
+    /**
+     * Constructs a new {@link RetryPolicy}.
+     *
+     * @param maxAttempts     is the number of attempts of a request, the first one included
+     * @param baseDelayMillis is the backoff after the first failure, doubled after every other
+     * @param maxDelayMillis  is the longest delay waited before an attempt
+     * @param random          draws the jitter
+     */
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, Random random) {
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mRandom = random;
+    }
+
+    /**
+     * Returns the policy of the feed requests.
+     */
+    public static RetryPolicy defaultPolicy() {
+        return new RetryPolicy(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, new Random());
+    }
+
+    /**
+     * Returns the number of attempts of a request, the first one included
+     */
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Returns the longest delay waited before an attempt
+     */
+    public long getMaxDelayMillis() {
+        return mMaxDelayMillis;
+    }
+
+    /**
+     * Returns the delay before the attempt following the given failed one, starting at 1:
+     * a random delay between half and all of the exponential backoff.
+     */
+    public long backoffMillis(int failedAttempt) {
+        long backoff = mBaseDelayMillis;
+        for (int i = 1; i < failedAttempt && backoff < mMaxDelayMillis; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, mMaxDelayMillis);
+        synchronized (mRandom) {
+            return backoff / 2 + (long) (mRandom.nextDouble() * (backoff - backoff / 2));
+        }
+    }
+
+    /**
+     * Returns the delay asked by a Retry-After header, in seconds or as an HTTP date, or 0
+     * when there is no header or it can't be parsed.
+     */
+    public static long parseRetryAfterMillis(String retryAfter, long nowMillis) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return 0;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, it must be a date.
+        }
+        try {
+            return Math.max(0, ArticleDateFormats.parseHttpDate(value).getTime() - nowMillis);
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
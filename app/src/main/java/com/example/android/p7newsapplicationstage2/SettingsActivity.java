@@ -4,11 +4,15 @@ package com.example.android.p7newsapplicationstage2;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.ListPreference;
+import android.preference.MultiSelectListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class SettingsActivity extends AppCompatActivity {
 
     @Override
@@ -30,10 +34,30 @@ public class SettingsActivity extends AppCompatActivity {
 
             Preference orderbyTopic = findPreference(getString(R.string.settings_topic_category));
             bindPreferenceSummaryToValue(orderbyTopic);
+
+            Preference sections = findPreference(getString(R.string.settings_sections));
+            sections.setOnPreferenceChangeListener(this);
+            onPreferenceChange(sections, PreferenceManager.getDefaultSharedPreferences(getActivity())
+                    .getStringSet(sections.getKey(), Collections.<String>emptySet()));
         }
 
         @Override
         public boolean onPreferenceChange(Preference preference, Object value) {
+            if (preference instanceof MultiSelectListPreference) {
+                MultiSelectListPreference multiSelectPreference = (MultiSelectListPreference) preference;
+                StringBuilder summary = new StringBuilder();
+                for (Object section : (Set<?>) value) {
+                    int prefIndex = multiSelectPreference.findIndexOfValue(section.toString());
+                    if (prefIndex >= 0) {
+                        if (summary.length() > 0) {
+                            summary.append(", ");
+                        }
+                        summary.append(multiSelectPreference.getEntries()[prefIndex]);
+                    }
+                }
+                preference.setSummary(summary.length() > 0 ? summary : getString(R.string.settings_sections_none));
+                return true;
+            }
             String stringValue = value.toString();
             if (preference instanceof ListPreference) {
                 ListPreference listPreference = (ListPreference) preference;
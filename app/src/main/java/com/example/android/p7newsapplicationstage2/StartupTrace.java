@@ -0,0 +1,100 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timestamps of the start of the feed screen, from the creation of the activity to the first
+ * frame drawn and to the first article shown.
+ *
+ * Every event keeps the time it first happened, on the {@link System#nanoTime()} clock, until
+ * {@link #reset()}. Marking an event already marked costs one atomic read, so the rows can
+ * mark the first article on every bind. The durations are logged once the first article is
+ * shown, and the startup benchmark waits for the events to measure a launch.
+ */
+public final class StartupTrace {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = StartupTrace.class.getSimpleName();
+
+    // Events
+
+    /** The feed activity is being created */
+    public static final int EVENT_CREATE = 0;
+    /** The first frame of the activity, the skeleton or the cached rows, has been drawn */
+    public static final int EVENT_FIRST_FRAME = 1;
+    /** The first article row has been bound */
+    public static final int EVENT_FIRST_ARTICLE = 2;
+
+    private static final int EVENT_COUNT = 3;
+
+    /** Time of every event, 0 until it happens */
+    private static final AtomicLongArray sTimes = new AtomicLongArray(EVENT_COUNT);
+
+    /** Notified when an event happens */
+    private static final Object sLock = new Object();
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Record the event, unless it already happened since the last reset.
+     */
+    public static void mark(int event) {
+        if (sTimes.get(event) != 0 || !sTimes.compareAndSet(event, 0, System.nanoTime())) {
+            return;
+        }
+        synchronized (sLock) {
+            sLock.notifyAll();
+        }
+        if (event == EVENT_FIRST_ARTICLE) {
+            Log.i(LOG_TAG, "Startup: first frame " + getMillisSinceCreate(EVENT_FIRST_FRAME)
+                    + " ms, first article " + getMillisSinceCreate(EVENT_FIRST_ARTICLE) + " ms");
+        }
+    }
+
+    /**
+     * Returns the time of the event on the {@link System#nanoTime()} clock, or 0 if it did not
+     * happen yet.
+     */
+    public static long getTime(int event) {
+        return sTimes.get(event);
+    }
+
+    /**
+     * Returns the milliseconds from the creation of the activity to the event, or -1 if
+     * either did not happen yet.
+     */
+    public static long getMillisSinceCreate(int event) {
+        long create = sTimes.get(EVENT_CREATE);
+        long time = sTimes.get(event);
+        return create == 0 || time == 0 ? -1 : (time - create) / 1000000;
+    }
+
+    /**
+     * Wait for the event to happen, at most the given time. Returns true if it happened.
+     */
+    public static boolean await(int event, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMillis * 1000000;
+        synchronized (sLock) {
+            while (sTimes.get(event) == 0) {
+                long leftMillis = (deadline - System.nanoTime()) / 1000000;
+                if (leftMillis <= 0) {
+                    return false;
+                }
+                sLock.wait(leftMillis);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forget every event, before the next launch is measured.
+     */
+    public static void reset() {
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            sTimes.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.android.p7newsapplicationstage2;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the thumbnails of the article rows: downloads them once into a
+ * {@link LruFileCache}, decodes them on worker threads at the size they are shown, and
+ * keeps the decoded images in a memory LRU bounded in bytes.
+ *
+ * A target, e.g. the image view of a row, waits for at most one image. Binding it to another
+ * image or canceling it drops its request, which is aborted once no other target waits for
+ * the same image: the rows scrolled past stop loading. Targets asking for an image already
+ * loading share its request.
+ *
+ * The decoding is left to a {@link Decoder}, so the pipeline runs without Android in the
+ * unit tests.
+ *
+ * @param <T> is the type of the decoded images, e.g. Bitmap
+ */
+public class ThumbnailPipeline<T> {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ThumbnailPipeline.class.getSimpleName();
+
+    /**
+     * Decodes the image files.
+     */
+    public interface Decoder<T> {
+        /**
+         * Decode the image file, downsampled to about the given size in pixels, or return null
+         * if the file is not an image.
+         */
+        T decode(File file, int width, int height) throws IOException;
+
+        /**
+         * Returns the memory taken by a decoded image, in bytes
+         */
+        int sizeOf(T image);
+    }
+
+    /**
+     * Receives the image a target waited for, on the delivery executor.
+     */
+    public interface Callback<T> {
+        void onThumbnailLoaded(T image);
+    }
+
+    private final LruFileCache mDiskCache;
+    private final HttpTransport mTransport;
+    private final Decoder<T> mDecoder;
+    private final ExecutorService mWorkers;
+    private final Executor mDelivery;
+    private final long mMaxMemoryBytes;
+
+    /**
+     * Decoded images in least recently used order, by URL and size
+     */
+    private final LinkedHashMap<String, T> mMemoryCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long mMemoryBytes;
+
+    /** Requests in flight, by URL and size */
+    private final Map<String, Request> mInFlight = new HashMap<>();
+
+    /** Request each target waits for */
+    private final Map<Object, Request> mTargets = new IdentityHashMap<>();
+
+    /** Where the images came from, for the metrics and the unit tests */
+    private int mMemoryHits;
+    private int mDiskHits;
+    private int mDownloads;
+
+    /**
+     * Constructs a new {@link ThumbnailPipeline}.
+     *
+     * @param diskCache      keeps the downloaded images
+     * @param transport      downloads the images
+     * @param decoder        decodes the image files
+     * @param workers        runs the downloads and the decoding
+     * @param delivery       runs the callbacks, e.g. on the main thread
+     * @param maxMemoryBytes is the size above which least recently used images are evicted
+     */
+    ThumbnailPipeline(LruFileCache diskCache, HttpTransport transport, Decoder<T> decoder,
+                      ExecutorService workers, Executor delivery, long maxMemoryBytes) {
+        mDiskCache = diskCache;
+        mTransport = transport;
+        mDecoder = decoder;
+        mWorkers = workers;
+        mDelivery = delivery;
+        mMaxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * Returns the image at the given size right away when it is in memory. Otherwise returns
+     * null and loads it, the callback receiving it unless the target is bound to another
+     * image or canceled first. Any previous request of the target is dropped either way.
+     */
+    public synchronized T load(Object target, String url, int width, int height, Callback<T> callback) {
+        cancel(target);
+        String key = url + '@' + width + 'x' + height;
+        T image = mMemoryCache.get(key);
+        if (image != null) {
+            mMemoryHits++;
+            return image;
+        }
+        Request request = mInFlight.get(key);
+        if (request == null) {
+            request = new Request(key, url, width, height);
+            mInFlight.put(key, request);
+            request.mFuture = mWorkers.submit(request);
+        }
+        request.mCallbacks.put(target, callback);
+        mTargets.put(target, request);
+        return null;
+    }
+
+    /**
+     * Drop the request the target waits for, if any, e.g. when its row is recycled. The
+     * request is aborted when no other target waits for it.
+     */
+    public synchronized void cancel(Object target) {
+        Request request = mTargets.remove(target);
+        if (request == null) {
+            return;
+        }
+        request.mCallbacks.remove(target);
+        if (request.mCallbacks.isEmpty() && mInFlight.get(request.mKey) == request) {
+            mInFlight.remove(request.mKey);
+            request.abort();
+        }
+    }
+
+    /**
+     * Evict every decoded image from memory, e.g. when the system runs low on memory.
+     */
+    public synchronized void clearMemory() {
+        mMemoryCache.clear();
+        mMemoryBytes = 0;
+    }
+
+    /**
+     * Returns the memory taken by the decoded images, in bytes
+     */
+    public synchronized long getMemoryBytes() {
+        return mMemoryBytes;
+    }
+
+    synchronized int getMemoryHits() {
+        return mMemoryHits;
+    }
+
+    synchronized int getDiskHits() {
+        return mDiskHits;
+    }
+
+    synchronized int getDownloads() {
+        return mDownloads;
+    }
+
+    /**
+     * Returns the number of requests in flight
+     */
+    synchronized int inFlightCount() {
+        return mInFlight.size();
+    }
+
+    private void putInMemory(String key, T image) {
+        int size = mDecoder.sizeOf(image);
+        if (size > mMaxMemoryBytes) {
+            return;
+        }
+        T previous = mMemoryCache.put(key, image);
+        mMemoryBytes += size - (previous == null ? 0 : mDecoder.sizeOf(previous));
+        Iterator<T> iterator = mMemoryCache.values().iterator();
+        while (mMemoryBytes > mMaxMemoryBytes && iterator.hasNext()) {
+            mMemoryBytes -= mDecoder.sizeOf(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Loads one image at one size, for every target waiting for it.
+     */
+    private class Request implements Runnable {
+
+        final String mKey;
+        final String mUrl;
+        final int mWidth;
+        final int mHeight;
+        final Map<Object, Callback<T>> mCallbacks = new IdentityHashMap<>();
+        Future<?> mFuture;
+
+        /** Download in progress, aborted with the request */
+        private HttpTransport.Response mResponse;
+        private boolean mAborted;
+
+        Request(String key, String url, int width, int height) {
+            mKey = key;
+            mUrl = url;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public void run() {
+            if (isAborted()) {
+                return;
+            }
+            T image = null;
+            try {
+                image = mDecoder.decode(getFile(), mWidth, mHeight);
+            } catch (IOException e) {
+                if (!isAborted()) {
+                    Log.e(LOG_TAG, "Problem loading the thumbnail " + mUrl, e);
+                }
+            }
+            deliver(image);
+        }
+
+        /**
+         * Returns the image file from the disk cache, downloaded first if needed.
+         */
+        private File getFile() throws IOException {
+            File file = mDiskCache.get(mUrl);
+            if (file != null) {
+                synchronized (ThumbnailPipeline.this) {
+                    mDiskHits++;
+                }
+                return file;
+            }
+            HttpTransport.Response response = mTransport.get(mUrl, new HashMap<String, String>());
+            try {
+                synchronized (this) {
+                    if (mAborted) {
+                        throw new IOException("Canceled");
+                    }
+                    mResponse = response;
+                }
+                if (response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Error response code: " + response.getStatusCode());
+                }
+                file = mDiskCache.put(mUrl, response.getBody());
+                synchronized (ThumbnailPipeline.this) {
+                    mDownloads++;
+                }
+                return file;
+            } finally {
+                response.close();
+            }
+        }
+
+        private synchronized boolean isAborted() {
+            return mAborted;
+        }
+
+        /**
+         * Called with the pipeline lock held: stop the request, or keep it from starting.
+         */
+        void abort() {
+            mFuture.cancel(false);
+            HttpTransport.Response response;
+            synchronized (this) {
+                mAborted = true;
+                response = mResponse;
+            }
+            if (response != null) {
+                response.abort();
+            }
+        }
+
+        /**
+         * Cache the image and hand it to the targets still waiting for it.
+         */
+        private void deliver(final T image) {
+            final Map<Object, Callback<T>> callbacks;
+            synchronized (ThumbnailPipeline.this) {
+                if (mInFlight.get(mKey) == this) {
+                    mInFlight.remove(mKey);
+                }
+                if (image != null) {
+                    putInMemory(mKey, image);
+                }
+                callbacks = new IdentityHashMap<>(mCallbacks);
+                if (image == null) {
+                    // Nothing to show, the targets keep their placeholder.
+                    for (Object target : callbacks.keySet()) {
+                        if (mTargets.get(target) == this) {
+                            mTargets.remove(target);
+                        }
+                    }
+                    return;
+                }
+            }
+            mDelivery.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (Map.Entry<Object, Callback<T>> entry : callbacks.entrySet()) {
+                        // The target may have been bound to another image since.
+                        synchronized (ThumbnailPipeline.this) {
+                            if (mTargets.get(entry.getKey()) != Request.this) {
+                                continue;
+                            }
+                            mTargets.remove(entry.getKey());
+                        }
+                        entry.getValue().onThumbnailLoaded(image);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link HttpTransport} built on {@link HttpURLConnection}.
+ *
+ * Responses are requested gzip compressed. On close, what is left of the body is drained,
+ * which hands the socket back to the keep-alive pool so the next request to the Guardian API
+ * reuses it, unless more than {@link #MAX_DRAIN_BYTES} are left: the connection is then
+ * disconnected rather than downloading the rest of a body nobody reads.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+    /**
+     * Request settings
+     */
+    private static final String request_method = "GET";
+    private static final String header_accept_encoding = "Accept-Encoding";
+    private static final String header_content_encoding = "Content-Encoding";
+    private static final String encoding_gzip = "gzip";
+
+    /**
+     * Most bytes of a body left unread downloaded on close to reuse the connection
+     */
+    static final long MAX_DRAIN_BYTES = 64 * 1024;
+
+    /**
+     * Runs the disconnects of the aborted responses, its idle threads are reused
+     */
+    private static final ExecutorService sAbortExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "abort");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
+        // Timeouts scale with the round-trip time and throughput measured so far.
+        FetchPolicy policy = FetchPolicy.getInstance();
+        urlConnection.setReadTimeout(policy.getReadTimeoutMillis());
+        urlConnection.setConnectTimeout(policy.getConnectTimeoutMillis());
+        urlConnection.setRequestMethod(request_method);
+        // Setting the header ourselves turns off any transparent decompression,
+        // so the body is inflated in ConnectionResponse#getBody().
+        urlConnection.setRequestProperty(header_accept_encoding, encoding_gzip);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            urlConnection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        long connectStart = FeedMetrics.startTimer();
+        urlConnection.connect();
+        FeedMetrics.recordStage(FeedMetrics.STAGE_CONNECT, connectStart);
+        long firstByteStart = FeedMetrics.startTimer();
+        ConnectionResponse response = new ConnectionResponse(urlConnection);
+        FeedMetrics.recordStage(FeedMetrics.STAGE_FIRST_BYTE, firstByteStart);
+        return response;
+    }
+
+    private static class ConnectionResponse extends Response {
+
+        private final HttpURLConnection mConnection;
+        private CountingInputStream mRawStream;
+        private InputStream mBody;
+
+        ConnectionResponse(HttpURLConnection connection) throws IOException {
+            super(connection.getResponseCode());
+            mConnection = connection;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (mBody == null) {
+                InputStream stream = getStatusCode() < HttpURLConnection.HTTP_BAD_REQUEST
+                        ? mConnection.getInputStream() : mConnection.getErrorStream();
+                if (stream == null) {
+                    stream = new ByteArrayInputStream(new byte[0]);
+                }
+                mRawStream = new CountingInputStream(stream);
+                mBody = encoding_gzip.equalsIgnoreCase(getHeader(header_content_encoding))
+                        ? new GZIPInputStream(mRawStream) : mRawStream;
+            }
+            return mBody;
+        }
+
+        @Override
+        public long getBytesTransferred() {
+            return mRawStream == null ? 0 : mRawStream.getByteCount();
+        }
+
+        /**
+         * Disconnect the socket, the connection is not reused.
+         *
+         * Loaders abort from the main thread, and some {@link HttpURLConnection}s, like the
+         * JDK one, close the body under the lock held by a blocked read: the disconnect is
+         * made on a thread of a shared executor so it never blocks the caller.
+         */
+        @Override
+        public void abort() {
+            sAbortExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mConnection.disconnect();
+                }
+            });
+        }
+
+        /**
+         * Drain what is left of the body so the connection can be reused, then close it.
+         * When more than {@link #MAX_DRAIN_BYTES} are left, disconnect instead.
+         */
+        @Override
+        public void close() throws IOException {
+            InputStream body = getBody();
+            boolean drained = false;
+            try {
+                drained = IOUtils.skip(mRawStream, MAX_DRAIN_BYTES) < MAX_DRAIN_BYTES
+                        || mRawStream.read() == -1;
+            } finally {
+                if (drained) {
+                    body.close();
+                } else {
+                    mConnection.disconnect();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Binds per second of the date and time part of {@link ArticleAdapter#getView}, with the
+ * two {@link SimpleDateFormat}s created on every bind (before) and with the strings
+ * precomputed on the {@link Article} (after).
+ *
+ * Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*ArticleAdapterBenchmark'
+ */
+public class ArticleAdapterBenchmark {
+
+    private static final int WARMUP_BINDS = 50000;
+    private static final int MEASURED_BINDS = 200000;
+
+    private List<Article> mArticles;
+
+    /** Keeps the JIT from dropping the formatting */
+    private int mSink;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        byte[] payload = ArticleStreamParserTest.readResource("guardian_search_50.json").getBytes(Charset.forName("UTF-8"));
+        mArticles = ArticleStreamParser.parse(new ByteArrayInputStream(payload));
+    }
+
+    @Test
+    public void compareBinds() {
+        run("format on every bind", new Binder() {
+            @Override
+            public void bind(Article article) {
+                Date date = article.getDate();
+                mSink += new SimpleDateFormat("LLL dd, yyyy").format(date).concat(",").length();
+                mSink += new SimpleDateFormat("h:mm a").format(date).length();
+            }
+        });
+        run("precomputed on the Article", new Binder() {
+            @Override
+            public void bind(Article article) {
+                mSink += article.getDisplayDate().length();
+                mSink += article.getDisplayTime().length();
+            }
+        });
+    }
+
+    private interface Binder {
+        void bind(Article article);
+    }
+
+    private void run(String name, Binder binder) {
+        for (int i = 0; i < WARMUP_BINDS; i++) {
+            binder.bind(mArticles.get(i % mArticles.size()));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_BINDS; i++) {
+            binder.bind(mArticles.get(i % mArticles.size()));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%-30s %12.0f binds/s", name, MEASURED_BINDS * 1e9 / elapsed));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ArticleBodyExtractorTest {
+
+    private static final String URL = "https://www.theguardian.com/environment/reservoirs";
+
+    @Test
+    public void extract_keepsTheParagraphsOfTheArticleBody() throws IOException {
+        String text = ArticleBodyExtractor.extract(
+                ArticleStreamParserTest.readResource("guardian_article.html"), URL);
+
+        assertEquals("Reservoir levels in England have fallen to their lowest point for the time of year"
+                        + " since records began, after the driest spring in more than a century.\n\n"
+                        + "The Environment Agency said on Tuesday that stocks were 14% below the seasonal"
+                        + " average, and that some catchments would need a wet autumn to recover.\n\n"
+                        + "Hosepipe bans\n\n"
+                        + "Three water companies said they were preparing temporary use bans, which would"
+                        + " come into force within weeks.\n\n"
+                        + "Households are asked to take shorter showers.\n\n"
+                        + "Gardens should be watered with grey water.\n\n"
+                        + "“Every drop we save now is a drop we will have in August,” said a spokesperson.",
+                text);
+    }
+
+    @Test
+    public void extract_dropsScriptsFiguresAndPageChrome() throws IOException {
+        String text = ArticleBodyExtractor.extract(
+                ArticleStreamParserTest.readResource("guardian_article.html"), URL);
+
+        assertFalse(text.contains("guardian"));
+        assertFalse(text.contains("lowest level since records began."));
+        assertFalse(text.contains("Related:"));
+        assertFalse(text.contains("Topics:"));
+        assertFalse(text.contains("Most viewed"));
+        assertFalse(text.contains("Sport"));
+    }
+
+    @Test
+    public void extract_fallsBackToTheArticleThenTheBody() {
+        assertEquals("First.\n\nSecond.", ArticleBodyExtractor.extract(
+                "<html><body><nav><p>Menu</p></nav><article><p>First.</p><p>Second.</p></article></body></html>",
+                URL));
+        assertEquals("Only text", ArticleBodyExtractor.extract(
+                "<html><body><div>Only text</div><script>var x;</script></body></html>", URL));
+    }
+
+    @Test
+    public void extract_withoutText_returnsEmpty() {
+        assertEquals("", ArticleBodyExtractor.extract("<html><body><script>var x;</script></body></html>", URL));
+        assertEquals("", ArticleBodyExtractor.extract("", URL));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArticleCacheTest {
+
+    private static final long TTL = 60 * 1000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private List<Article> mArticles;
+
+    @Before
+    public void setUp() {
+        mArticles = new ArrayList<>();
+        mArticles.add(new Article("Title", "Politics", new Date(1527604847000L), "Andrew Sparrow", "https://a"));
+        mArticles.add(new Article("No author", "", null, null, "https://b"));
+    }
+
+    @Test
+    public void putThenGet_returnsSameArticles() {
+        ArticleCache cache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, TTL);
+        cache.put("http://q?page-size=2", mArticles);
+
+        ArticleCache.Entry entry = cache.get("http://q?page-size=2");
+        assertNotNull(entry);
+        ArticleStreamParserTest.assertSameArticles(mArticles, entry.getArticles());
+        assertNull(cache.get("http://other?page-size=2"));
+    }
+
+    @Test
+    public void otherPageSize_findsTheListCutToTheSizeRequested() {
+        ArticleCache cache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, TTL);
+        cache.put("http://q?order-by=newest&page-size=2&page=1", mArticles);
+
+        assertEquals(mArticles.subList(0, 1), cache.get("http://q?order-by=newest&page-size=1&page=1").getArticles());
+        assertEquals(mArticles, cache.get("http://q?order-by=newest&page-size=50&page=1").getArticles());
+        assertNull(cache.get("http://q?order-by=newest&page-size=2&page=2"));
+    }
+
+    @Test
+    public void entriesSurviveANewCacheInstance() {
+        new ArticleCache(mFolder.getRoot(), 1024 * 1024, TTL).put("http://q", mArticles);
+
+        ArticleCache.Entry entry = new ArticleCache(mFolder.getRoot(), 1024 * 1024, TTL).get("http://q");
+        assertNotNull(entry);
+        assertEquals(2, entry.getArticles().size());
+    }
+
+    @Test
+    public void entryBecomesStaleAfterTtl() {
+        ArticleCache cache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, TTL);
+        cache.put("http://q", mArticles);
+
+        ArticleCache.Entry entry = cache.get("http://q");
+        assertFalse(entry.isStale(entry.getSavedAt() + TTL));
+        assertTrue(entry.isStale(entry.getSavedAt() + TTL + 1));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() throws IOException {
+        ArticleCache probe = new ArticleCache(mFolder.newFolder(), 1024 * 1024, TTL);
+        probe.put("http://probe", mArticles);
+        long entrySize = probe.size();
+
+        // Room for two entries only
+        ArticleCache cache = new ArticleCache(mFolder.getRoot(), entrySize * 2 + entrySize / 2, TTL);
+        cache.put("http://1", mArticles);
+        cache.put("http://2", mArticles);
+        cache.get("http://1");
+        cache.put("http://3", mArticles);
+
+        assertNotNull(cache.get("http://1"));
+        assertNull(cache.get("http://2"));
+        assertNotNull(cache.get("http://3"));
+        assertTrue(cache.size() <= entrySize * 2 + entrySize / 2);
+    }
+
+    @Test
+    public void emptyListIsCached() {
+        ArticleCache cache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, TTL);
+        cache.put("http://q", Collections.<Article>emptyList());
+        assertTrue(cache.get("http://q").getArticles().isEmpty());
+    }
+
+    @Test
+    public void corruptedEntry_isAMissAndDeleted() throws IOException {
+        new ArticleCache(mFolder.getRoot(), 1024 * 1024, TTL).put("http://q", mArticles);
+        File file = new File(mFolder.getRoot(), ArticleCache.sha1("http://q") + ".bin");
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // Cut in the middle of the last record
+            randomAccessFile.setLength(file.length() - 4);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        ArticleCache cache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, TTL);
+        assertNull(cache.get("http://q"));
+        assertFalse(file.exists());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the {@link ArticleCodec} cache files with the JSON cache files they replace, for
+ * size, encode time and decode time, on lists of 50 and 500 articles. Reading the first
+ * screen of a lazily decoded list is measured too.
+ *
+ * Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*ArticleCodecBenchmark'
+ */
+public class ArticleCodecBenchmark {
+
+    private static final int[] ARTICLE_COUNTS = {50, 500};
+    private static final int WARMUP_OPS = 300;
+    private static final int SAMPLES = 100;
+
+    /** Rows on the first screen of the list */
+    private static final int FIRST_SCREEN = 8;
+
+    private BenchmarkRunner mRunner;
+
+    /** Keeps the JIT from dropping the results */
+    private int mSink;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        mRunner = BenchmarkRunner.withStoredBaseline();
+    }
+
+    @Test
+    public void compareWithJson() throws IOException {
+        for (int count : ARTICLE_COUNTS) {
+            final List<Article> articles = ArticleStreamParser.parse(
+                    new ByteArrayInputStream(GuardianPayloads.withResults(count)));
+            final String json = encodeJson(articles);
+            final byte[] binary = ArticleCodec.encode(articles, 0, "\"etag\"", null);
+            System.out.println(String.format("%d articles: JSON %d B, binary %d B (%.0f%%)", count,
+                    json.getBytes(Charset.forName("UTF-8")).length, binary.length,
+                    100.0 * binary.length / json.getBytes(Charset.forName("UTF-8")).length));
+            int opsPerSample = Math.max(1, 500 / count);
+
+            mRunner.run("codec.json.encode." + count, WARMUP_OPS, SAMPLES, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    mSink += encodeJson(articles).length();
+                }
+            });
+            mRunner.run("codec.binary.encode." + count, WARMUP_OPS, SAMPLES, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    mSink += ArticleCodec.encode(articles, 0, "\"etag\"", null).length;
+                }
+            });
+            mRunner.run("codec.json.decode." + count, WARMUP_OPS, SAMPLES, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    mSink += decodeJson(json).size();
+                }
+            });
+            mRunner.run("codec.binary.decode." + count, WARMUP_OPS, SAMPLES, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mSink += ArticleCodec.decode(ByteBuffer.wrap(binary)).getArticles().size();
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            mRunner.run("codec.binary.firstScreen." + count, WARMUP_OPS, SAMPLES, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        List<Article> lazy = ArticleCodec.decodeLazily(ByteBuffer.wrap(binary)).getArticles();
+                        for (int i = 0; i < FIRST_SCREEN; i++) {
+                            mSink += lazy.get(i).getDisplayTime().length();
+                        }
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+        }
+        mRunner.saveBaselineIfRequested();
+        assertTrue("Regressions against " + BenchmarkRunner.BASELINE_RESOURCE + ": " + mRunner.getRegressions(),
+                mRunner.getRegressions().isEmpty());
+    }
+
+    /**
+     * The JSON layout of the former cache files.
+     */
+    private static String encodeJson(List<Article> articles) {
+        try {
+            JSONArray array = new JSONArray();
+            for (Article article : articles) {
+                JSONObject json = new JSONObject();
+                json.put("title", article.getArticle_title());
+                json.put("section", article.getArticle_section());
+                json.put("sectionId", article.getSectionId());
+                if (article.getDate() != null) {
+                    json.put("date", article.getDate().getTime());
+                }
+                json.put("author", article.getAuthor());
+                json.put("url", article.getUrl());
+                array.put(json);
+            }
+            return new JSONObject().put("savedAt", 0).put("etag", "\"etag\"").put("articles", array).toString();
+        } catch (JSONException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static List<Article> decodeJson(String text) {
+        try {
+            JSONArray array = new JSONObject(text).getJSONArray("articles");
+            List<Article> articles = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject json = array.getJSONObject(i);
+                Date date = json.has("date") ? new Date(json.getLong("date")) : null;
+                articles.add(new Article(json.getString("title"), json.optString("section"),
+                        json.has("sectionId") ? json.getString("sectionId") : null, date,
+                        json.has("author") ? json.getString("author") : null, json.getString("url")));
+            }
+            return articles;
+        } catch (JSONException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArticleCodecTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static List<Article> recordedArticles() throws IOException {
+        return ArticleStreamParser.parse(new ByteArrayInputStream(
+                ArticleStreamParserTest.readResource("guardian_search_50.json").getBytes(Charset.forName("UTF-8"))));
+    }
+
+    @Test
+    public void roundTrip_keepsEveryFieldAndTheHeader() throws IOException {
+        List<Article> articles = new ArrayList<>(recordedArticles());
+        articles.add(new Article("No author, no date", "", null, null, null, "https://b"));
+        articles.add(new Article("Ünïcödé – “quotes”", "Culture", "culture", new Date(1000), "Zoë", "https://c"));
+        articles.add(new Article("Tagged", "Politics", "politics", 2000L, "Andrew Sparrow", "https://d", null,
+                Arrays.asList(new ArticleTag("profile/andrewsparrow", ArticleTag.TYPE_CONTRIBUTOR, "Andrew Sparrow"),
+                        new ArticleTag("politics/eu-referendum", ArticleTag.TYPE_KEYWORD, "EU referendum"),
+                        new ArticleTag("politics/brexit", null, null))));
+
+        ArticleCodec.Decoded decoded = ArticleCodec.decode(
+                ByteBuffer.wrap(ArticleCodec.encode(articles, 42, "\"v1\"", null)));
+
+        assertEquals(42, decoded.getSavedAt());
+        assertEquals("\"v1\"", decoded.getEtag());
+        assertNull(decoded.getLastModified());
+        assertEquals(articles, decoded.getArticles());
+        for (int i = 0; i < articles.size(); i++) {
+            assertEquals(articles.get(i).getSectionId(), decoded.getArticles().get(i).getSectionId());
+            assertEquals(articles.get(i).getTags(), decoded.getArticles().get(i).getTags());
+        }
+    }
+
+    @Test
+    public void repeatedSectionsAndAuthors_areStoredOnce() {
+        List<Article> once = Arrays.asList(new Article("T0", "Politics", "politics", new Date(0), "Andrew Sparrow", "u0"));
+        List<Article> many = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            many.add(new Article("T" + i, "Politics", "politics", new Date(i), "Andrew Sparrow", "u" + i));
+        }
+
+        int perExtraArticle = (ArticleCodec.encode(many, 0, null, null).length
+                - ArticleCodec.encode(once, 0, null, null).length) / 9;
+
+        // Title, url, no thumbnail, date, three one byte indexes, no tags and the offset, no section
+        // nor author.
+        assertTrue("bytes per article: " + perExtraArticle, perExtraArticle <= 2 + 2 + 1 + 8 + 3 + 1 + 4 + 2);
+    }
+
+    @Test
+    public void mappedFile_decodesRecordsOnAccess() throws IOException {
+        List<Article> articles = recordedArticles();
+        File file = mFolder.newFile();
+        FileUtils.writeByteArrayToFile(file, ArticleCodec.encode(articles, 0, null, null));
+
+        List<Article> mapped = ArticleCodec.map(file).getArticles();
+
+        assertEquals(articles.size(), mapped.size());
+        assertEquals(articles.get(49), mapped.get(49));
+        assertSame(mapped.get(49), mapped.get(49));
+        assertEquals(articles.get(0), mapped.get(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherVersion_isRejected() throws IOException {
+        byte[] bytes = ArticleCodec.encode(new ArrayList<Article>(), 0, null, null);
+        bytes[4] = ArticleCodec.VERSION + 1;
+        ArticleCodec.decode(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFile_isRejected() throws IOException {
+        byte[] bytes = ArticleCodec.encode(recordedArticles(), 0, "etag", "date");
+        ArticleCodec.decode(ByteBuffer.wrap(Arrays.copyOf(bytes, 40)));
+    }
+
+    @Test
+    public void corruptedRecords_failToMapInsteadOfFailingAnAccess() throws IOException {
+        List<Article> articles = Arrays.asList(
+                new Article("First", "Politics", "politics", 1000L, "Andrew Sparrow", "https://a", "https://a.jpg",
+                        Arrays.asList(new ArticleTag("profile/andrewsparrow", ArticleTag.TYPE_CONTRIBUTOR, "Andrew Sparrow"))),
+                new Article("Second", "Culture", "culture", new Date(2000), "Zoë", "https://b"));
+        byte[] bytes = ArticleCodec.encode(articles, 0, null, null);
+
+        // Every byte of the file changed in turn, and the file cut at every length
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] corrupted = bytes.clone();
+            corrupted[i] ^= 0xff;
+            assertDecodesOrFails(corrupted);
+            assertDecodesOrFails(Arrays.copyOf(bytes, i));
+        }
+    }
+
+    /**
+     * Decodes every record of the bytes, which may only fail with an IOException.
+     */
+    private static void assertDecodesOrFails(byte[] bytes) {
+        try {
+            List<Article> decoded = ArticleCodec.decodeLazily(ByteBuffer.wrap(bytes)).getArticles();
+            for (int i = 0; i < decoded.size(); i++) {
+                assertNotNull(decoded.get(i));
+            }
+        } catch (IOException e) {
+            // Rejected as a whole
+        }
+    }
+}
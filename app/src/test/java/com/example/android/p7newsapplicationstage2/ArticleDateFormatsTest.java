@@ -0,0 +1,55 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ArticleDateFormatsTest {
+
+    @Test
+    public void displayStrings_matchTheFormattingDoneAtBindTime() {
+        Date date = QueryUtils.parsePublicationDate("2018-05-29T14:40:47Z");
+        Article article = new Article("T", "S", date, "A", "u");
+        assertEquals(new SimpleDateFormat("LLL dd, yyyy").format(date).concat(","), article.getDisplayDate());
+        assertEquals(new SimpleDateFormat("h:mm a").format(date), article.getDisplayTime());
+    }
+
+    @Test
+    public void missingDate_givesEmptyStrings() {
+        Article article = new Article("T", "S", null, "A", "u");
+        assertEquals(",", article.getDisplayDate());
+        assertEquals("", article.getDisplayTime());
+    }
+
+    @Test
+    public void parsingFromManyThreads_isConsistent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Date>> dates = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                final String text = String.format("2018-05-%02dT%02d:40:47Z", 1 + i % 28, i % 24);
+                dates.add(executor.submit(new Callable<Date>() {
+                    @Override
+                    public Date call() throws Exception {
+                        return ArticleDateFormats.parseGuardianDate(text);
+                    }
+                }));
+            }
+            for (int i = 0; i < dates.size(); i++) {
+                String text = String.format("2018-05-%02dT%02d:40:47Z", 1 + i % 28, i % 24);
+                assertEquals(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse(text), dates.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
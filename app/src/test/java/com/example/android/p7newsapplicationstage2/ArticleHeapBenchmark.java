@@ -0,0 +1,145 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the heap retained by large feeds, in bytes per article: the {@link Article}s as
+ * parsed now, against the former layout where every article held its own copy of every
+ * string and a {@link Date}. Sizes are computed from the object graph rather than sampled
+ * from the GC, so they do not depend on the collector.
+ *
+ * Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*ArticleHeapBenchmark'
+ */
+public class ArticleHeapBenchmark {
+
+    private static final int[] ARTICLE_COUNTS = {10000, 50000};
+
+    /** Retained bytes per article not to exceed, measured at 300 B */
+    private static final long MAX_BYTES_PER_ARTICLE = 400;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    /**
+     * The former {@link Article}: the strings of the parser and a {@link Date}.
+     */
+    private static final class FormerArticle {
+        final String mTitle;
+        final String mSection;
+        final String mSectionId;
+        final Date mPublicationDate;
+        final String mAuthor;
+        final String mUrl;
+        final String mDisplayDate;
+        final String mDisplayTime;
+
+        FormerArticle(Article article) {
+            mTitle = article.getArticle_title();
+            mSection = copy(article.getArticle_section());
+            mSectionId = copy(article.getSectionId());
+            mPublicationDate = article.getDate();
+            mAuthor = copy(article.getAuthor());
+            mUrl = article.getUrl();
+            mDisplayDate = copy(article.getDisplayDate());
+            mDisplayTime = copy(article.getDisplayTime());
+        }
+
+        private static String copy(String string) {
+            return string == null ? null : new String(string.toCharArray());
+        }
+    }
+
+    @Test
+    public void bytesPerArticle() throws IOException, IllegalAccessException {
+        for (int count : ARTICLE_COUNTS) {
+            List<Article> articles = ArticleStreamParser.parse(
+                    new ByteArrayInputStream(GuardianPayloads.withResults(count)));
+            List<FormerArticle> former = new ArrayList<>(articles.size());
+            for (Article article : articles) {
+                former.add(new FormerArticle(article));
+            }
+
+            long compact = retainedBytes(articles) / count;
+            long formerPerArticle = retainedBytes(former) / count;
+            System.out.println(String.format("%d articles: %d B per article, formerly %d B (%d pooled strings)",
+                    count, compact, formerPerArticle, ArticleStrings.size()));
+            assertTrue(count + " articles: " + compact + " B per article", compact <= MAX_BYTES_PER_ARTICLE);
+            assertTrue(compact < formerPerArticle);
+        }
+    }
+
+    /**
+     * Returns the bytes retained by the elements of the list, every object being counted once
+     * however many articles refer to it. Sizes are those of a 64 bit JVM with compressed
+     * references: 12 byte object headers, 4 byte references, 8 byte alignment.
+     */
+    private static long retainedBytes(List<?> list) throws IllegalAccessException {
+        Map<Object, Boolean> visited = new IdentityHashMap<>();
+        long bytes = 0;
+        for (Object element : list) {
+            bytes += 4 + deepSize(element, visited);
+        }
+        return bytes;
+    }
+
+    private static long deepSize(Object object, Map<Object, Boolean> visited) throws IllegalAccessException {
+        if (object == null || visited.put(object, Boolean.TRUE) != null) {
+            return 0;
+        }
+        if (object instanceof String) {
+            String string = (String) object;
+            // String fields, then the byte array holding its Latin-1 or UTF-16 content
+            boolean latin1 = true;
+            for (int i = 0; i < string.length() && latin1; i++) {
+                latin1 = string.charAt(i) < 256;
+            }
+            return 24 + align(16 + (latin1 ? string.length() : 2L * string.length()));
+        }
+        if (object instanceof Date) {
+            // long fastTime and the BaseCalendar.Date left null
+            return 24;
+        }
+        long size = 12;
+        long references = 0;
+        for (Class<?> type = object.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                Class<?> fieldType = field.getType();
+                if (fieldType == long.class || fieldType == double.class) {
+                    size += 8;
+                } else if (fieldType == int.class || fieldType == float.class) {
+                    size += 4;
+                } else if (fieldType.isPrimitive()) {
+                    size += 2;
+                } else {
+                    size += 4;
+                    field.setAccessible(true);
+                    references += deepSize(field.get(object), visited);
+                }
+            }
+        }
+        return align(size) + references;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class ArticleLoaderTest {
+
+    private static final long NOW = 1000000000000L;
+
+    @Test
+    public void recentPage_isDeliveredAgainWithoutReload() {
+        ArticlePage page = new ArticlePage(new ArrayList<Article>());
+        assertFalse(ArticleLoader.isStale(page, NOW, NOW));
+        assertFalse(ArticleLoader.isStale(page, NOW - ArticleLoader.MAX_RESULT_AGE_MILLIS, NOW));
+    }
+
+    @Test
+    public void oldPage_isReloaded() {
+        ArticlePage page = new ArticlePage(new ArrayList<Article>());
+        assertTrue(ArticleLoader.isStale(page, NOW - ArticleLoader.MAX_RESULT_AGE_MILLIS - 1, NOW));
+    }
+
+    @Test
+    public void failedPage_isReloaded() {
+        ArticlePage fallback = ArticlePage.failed(ArticlePage.OUTCOME_NETWORK_ERROR);
+        fallback.setFallback(true);
+        assertTrue(ArticleLoader.isStale(fallback, NOW, NOW));
+        assertTrue(ArticleLoader.isStale(ArticlePage.failed(ArticlePage.OUTCOME_TIMEOUT), NOW, NOW));
+    }
+
+    @Test
+    public void firstStart_loads() {
+        assertTrue(ArticleLoader.shouldReload(false, false, null, 0, NOW));
+    }
+
+    @Test
+    public void startDuringALoad_waitsForItsPage() {
+        // Stopped while loading, the load kept running.
+        assertFalse(ArticleLoader.shouldReload(false, true, null, 0, NOW));
+        ArticlePage old = new ArticlePage(new ArrayList<Article>());
+        assertFalse(ArticleLoader.shouldReload(false, true, old, NOW - ArticleLoader.MAX_RESULT_AGE_MILLIS - 1, NOW));
+    }
+
+    @Test
+    public void startAfterAStop_reloadsOnlyAStaleOrChangedPage() {
+        ArticlePage page = new ArticlePage(new ArrayList<Article>());
+        assertFalse(ArticleLoader.shouldReload(false, false, page, NOW, NOW));
+        assertTrue(ArticleLoader.shouldReload(false, false, page, NOW - ArticleLoader.MAX_RESULT_AGE_MILLIS - 1, NOW));
+        assertTrue(ArticleLoader.shouldReload(true, false, page, NOW, NOW));
+        assertTrue(ArticleLoader.shouldReload(true, true, page, NOW, NOW));
+    }
+
+    @Test
+    public void otherPageSize_isTheSameQuery() {
+        String url = "http://content.guardianapis.com/search?order-by=newest&page-size=15&format=json&page-size=10&page=1&q=";
+        assertTrue(ArticleLoader.isSameQuery(url, url));
+        assertTrue(ArticleLoader.isSameQuery(url, url.replace("page-size=10", "page-size=5")));
+    }
+
+    @Test
+    public void otherParameters_areAnotherQuery() {
+        String url = "http://content.guardianapis.com/search?order-by=newest&page-size=10&page=1&q=";
+        assertFalse(ArticleLoader.isSameQuery(url, url + "&section=politics"));
+        assertFalse(ArticleLoader.isSameQuery(url, url.replace("page=1", "page=2")));
+        assertFalse(ArticleLoader.isSameQuery(url, null));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArticlePagerTest {
+
+    private static Article article(String url) {
+        return new Article("Title " + url, "Politics", new Date(0), "Author", url);
+    }
+
+    private static ArticlePage page(int pages, String... urls) {
+        List<Article> articles = new ArrayList<>();
+        for (String url : urls) {
+            articles.add(article(url));
+        }
+        ArticlePage page = new ArticlePage(articles);
+        page.setPages(pages);
+        return page;
+    }
+
+    @Test
+    public void loadsMoreOnlyNearTheEnd() {
+        ArticlePager pager = new ArticlePager();
+        pager.reset(Arrays.asList(article("a")));
+        assertFalse(pager.shouldLoadMore(10, 50));
+        assertTrue(pager.shouldLoadMore(44, 50));
+        assertFalse(pager.shouldLoadMore(0, 0));
+    }
+
+    @Test
+    public void onlyOneRequestInFlight() {
+        ArticlePager pager = new ArticlePager();
+        assertEquals(1, pager.startLoading());
+        assertFalse(pager.shouldLoadMore(49, 50));
+        pager.onPageFailed();
+        assertTrue(pager.shouldLoadMore(49, 50));
+        assertEquals(1, pager.startLoading());
+    }
+
+    @Test
+    public void articlesAreDeduplicatedByUrlAcrossPages() {
+        ArticlePager pager = new ArticlePager();
+        pager.reset(Arrays.asList(article("a"), article("b")));
+
+        pager.startLoading();
+        List<Article> added = pager.onPageLoaded(page(3, "a", "b", "c", "d"));
+        assertEquals(2, added.size());
+        assertEquals("c", added.get(0).getUrl());
+
+        assertEquals(2, pager.startLoading());
+        added = pager.onPageLoaded(page(3, "d", "e"));
+        assertEquals(1, added.size());
+        assertEquals("e", added.get(0).getUrl());
+    }
+
+    @Test
+    public void stopsAtTheTotalNumberOfPages() {
+        ArticlePager pager = new ArticlePager();
+        pager.reset(null);
+        pager.startLoading();
+        pager.onPageLoaded(page(2, "a"));
+        assertTrue(pager.hasMore());
+        assertEquals(2, pager.startLoading());
+        pager.onPageLoaded(page(2, "b"));
+        assertFalse(pager.hasMore());
+        assertFalse(pager.shouldLoadMore(1, 2));
+    }
+
+    @Test
+    public void redeliveredPageIsIgnored() {
+        ArticlePager pager = new ArticlePager();
+        pager.startLoading();
+        ArticlePage first = page(5, "a");
+        assertEquals(1, pager.onPageLoaded(first).size());
+        assertTrue(pager.onPageLoaded(first).isEmpty());
+        assertEquals(2, pager.startLoading());
+    }
+
+    @Test
+    public void emptyPageWithoutPagingInformationEndsTheList() {
+        ArticlePager pager = new ArticlePager();
+        pager.startLoading();
+        pager.onPageLoaded(page(ArticlePage.UNKNOWN));
+        assertFalse(pager.hasMore());
+    }
+
+    @Test
+    public void followingPagesOfTheFirstPageSizeStartAtPageTwo() {
+        ArticlePager pager = new ArticlePager();
+        pager.reset(Arrays.asList(article("a"), article("b")), 2, 1);
+        assertEquals(2, pager.startLoading());
+        pager.onPageLoaded(page(5, "c", "d"));
+        assertEquals(3, pager.startLoading());
+    }
+
+    @Test
+    public void smallerFirstPageIsCompletedFromPageOne() {
+        ArticlePager pager = new ArticlePager();
+        pager.reset(Arrays.asList(article("a")), 3, 1);
+        assertEquals(1, pager.startLoading());
+        assertEquals(2, pager.onPageLoaded(page(5, "a", "b", "c")).size());
+        assertEquals(2, pager.startLoading());
+    }
+
+    @Test
+    public void pageAddingNothingIsPassed() {
+        ArticlePager pager = new ArticlePager();
+        pager.reset(Arrays.asList(article("a"), article("b"), article("c")), 3, 1);
+        assertEquals(2, pager.startLoading());
+        // Newer articles pushed the shown ones into the second page
+        assertTrue(pager.onPageLoaded(page(5, "a", "b", "c")).isEmpty());
+        assertTrue(pager.hasMore());
+        assertEquals(3, pager.startLoading());
+    }
+
+    @Test
+    public void revalidatedFirstPageKeepsTheAppendedPages() {
+        ArticlePager pager = new ArticlePager();
+        List<Article> shown = new ArrayList<>(Arrays.asList(article("a"), article("b")));
+        pager.reset(shown, 2, 1);
+        assertEquals(2, pager.startLoading());
+        shown.addAll(pager.onPageLoaded(page(5, "c", "d")));
+
+        // Refreshed after the cached first page was shown, with a new article on top
+        List<Article> merged = pager.onFirstPageRevalidated(shown, Arrays.asList(article("z"), article("a")));
+        List<String> urls = new ArrayList<>();
+        for (Article article : merged) {
+            urls.add(article.getUrl());
+        }
+        assertEquals(Arrays.asList("z", "a", "b", "c", "d"), urls);
+        assertEquals(3, pager.startLoading());
+        assertEquals(1, pager.onPageLoaded(page(5, "d", "z", "e")).size());
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.android.p7newsapplicationstage2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the {@link ArticlePrefetcher} against a local web server serving a recorded article
+ * page under /article/ and a page too large under /large/.
+ */
+public class ArticlePrefetcherTest {
+
+    private static final int MAX_PAGE_BYTES = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private String mBaseUrl;
+    private byte[] mPage;
+    private ExecutorService mExecutor;
+    private ArticleBodyCache mCache;
+
+    /** Paths requested, in order */
+    private final List<String> mRequests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger mConcurrentRequests = new AtomicInteger();
+    private final AtomicInteger mMaxConcurrentRequests = new AtomicInteger();
+
+    /** Holds the answers until opened */
+    private volatile CountDownLatch mGate = new CountDownLatch(0);
+
+    @Before
+    public void setUp() throws IOException {
+        mPage = ArticleStreamParserTest.readResource("guardian_article.html").getBytes(Charset.forName("UTF-8"));
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+        mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+        mCache = new ArticleBodyCache(mFolder.newFolder("bodies"), 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        mGate.countDown();
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+        }
+        mServer.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        mRequests.add(path);
+        int concurrent = mConcurrentRequests.incrementAndGet();
+        while (concurrent > mMaxConcurrentRequests.get()) {
+            mMaxConcurrentRequests.compareAndSet(mMaxConcurrentRequests.get(), concurrent);
+        }
+        try {
+            mGate.await(5, TimeUnit.SECONDS);
+            // Hold the request a little so that concurrent prefetches overlap
+            Thread.sleep(20);
+            byte[] page = mPage;
+            if (path.startsWith("/large/")) {
+                page = new byte[4 * MAX_PAGE_BYTES];
+                Arrays.fill(page, (byte) 'x');
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, page.length);
+            OutputStream body = exchange.getResponseBody();
+            body.write(page);
+        } catch (InterruptedException | IOException e) {
+            // The client went away
+        } finally {
+            mConcurrentRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private ArticlePrefetcher newPrefetcher(int threads, long byteBudget) {
+        mExecutor = Executors.newFixedThreadPool(threads);
+        return new ArticlePrefetcher(mCache, new UrlConnectionTransport(), mExecutor, MAX_PAGE_BYTES, byteBudget);
+    }
+
+    private List<Article> articles(String directory, int count) {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            articles.add(new Article("Title " + i, "Environment", new Date(0), "Author",
+                    mBaseUrl + "/" + directory + "/" + i));
+        }
+        return articles;
+    }
+
+    private static void awaitIdle(ArticlePrefetcher prefetcher) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (prefetcher.pendingCount() > 0) {
+            assertTrue("Prefetches still pending", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void prefetchedArticles_openWithoutRequest() throws Exception {
+        ArticlePrefetcher prefetcher = newPrefetcher(2, Long.MAX_VALUE);
+        List<Article> articles = articles("article", 3);
+
+        assertEquals(3, prefetcher.prefetch(articles));
+        awaitIdle(prefetcher);
+        assertEquals(3, mRequests.size());
+
+        String text = prefetcher.load(articles.get(1).getUrl());
+        assertTrue(text.startsWith("Reservoir levels in England"));
+        assertEquals(3, mRequests.size());
+    }
+
+    @Test
+    public void cachedArticles_areNotPrefetchedAgain() throws Exception {
+        ArticlePrefetcher prefetcher = newPrefetcher(2, Long.MAX_VALUE);
+        prefetcher.prefetch(articles("article", 2));
+        awaitIdle(prefetcher);
+
+        // Queued without reading the disk, the cached ones are skipped by the executor.
+        assertEquals(3, prefetcher.prefetch(articles("article", 3)));
+        awaitIdle(prefetcher);
+        assertEquals(Arrays.asList("/article/0", "/article/1", "/article/2"), sorted(mRequests));
+    }
+
+    @Test
+    public void concurrentDownloads_areBoundedByTheExecutor() throws Exception {
+        ArticlePrefetcher prefetcher = newPrefetcher(2, Long.MAX_VALUE);
+
+        prefetcher.prefetch(articles("article", 8));
+        awaitIdle(prefetcher);
+
+        assertEquals(8, mRequests.size());
+        assertTrue(mMaxConcurrentRequests.get() <= 2);
+    }
+
+    @Test
+    public void spentByteBudget_stopsPrefetching() throws Exception {
+        // One page exceeds the budget, the prefetches queued behind it are skipped.
+        ArticlePrefetcher prefetcher = newPrefetcher(1, 1);
+
+        assertEquals(3, prefetcher.prefetch(articles("article", 3)));
+        awaitIdle(prefetcher);
+        assertEquals(1, mRequests.size());
+        assertTrue(prefetcher.getBytesUsed() >= mPage.length);
+
+        assertEquals(0, prefetcher.prefetch(articles("article", 3)));
+
+        prefetcher.setByteBudget(Long.MAX_VALUE);
+        assertEquals(3, prefetcher.prefetch(articles("article", 3)));
+        awaitIdle(prefetcher);
+        assertEquals(3, mRequests.size());
+    }
+
+    @Test
+    public void spentByteBudget_isRenewedAfterItsPeriod() throws Exception {
+        final long[] now = {1000000000000L};
+        mExecutor = Executors.newFixedThreadPool(1);
+        ArticlePrefetcher prefetcher = new ArticlePrefetcher(mCache, new UrlConnectionTransport(), mExecutor,
+                MAX_PAGE_BYTES, 1, new FeedSync.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now[0];
+            }
+        });
+        prefetcher.prefetch(articles("article", 1));
+        awaitIdle(prefetcher);
+        assertEquals(0, prefetcher.prefetch(articles("article", 2)));
+
+        now[0] += ArticlePrefetcher.BUDGET_PERIOD_MILLIS;
+        assertEquals(2, prefetcher.prefetch(articles("article", 2)));
+        awaitIdle(prefetcher);
+        assertEquals(Arrays.asList("/article/0", "/article/1"), sorted(mRequests));
+    }
+
+    @Test
+    public void readerLoads_doNotSpendTheByteBudget() throws Exception {
+        ArticlePrefetcher prefetcher = newPrefetcher(1, 1);
+
+        String text = prefetcher.load(articles("article", 1).get(0).getUrl());
+        assertTrue(text.startsWith("Reservoir levels in England"));
+        assertEquals(0, prefetcher.getBytesUsed());
+        assertEquals(1, prefetcher.prefetch(articles("other", 1)));
+    }
+
+    @Test
+    public void articlesNoLongerWanted_areDropped() throws Exception {
+        mGate = new CountDownLatch(1);
+        ArticlePrefetcher prefetcher = newPrefetcher(1, Long.MAX_VALUE);
+        List<Article> scrolledPast = articles("article", 3);
+        List<Article> onScreen = articles("other", 1);
+
+        prefetcher.prefetch(scrolledPast);
+        // The first prefetch is running and completes, the two queued ones are dropped.
+        prefetcher.prefetch(onScreen);
+        mGate.countDown();
+        awaitIdle(prefetcher);
+
+        assertFalse(mCache.contains(scrolledPast.get(1).getUrl()));
+        assertFalse(mCache.contains(scrolledPast.get(2).getUrl()));
+        assertTrue(mCache.contains(onScreen.get(0).getUrl()));
+        assertFalse(mRequests.contains("/article/1"));
+        assertFalse(mRequests.contains("/article/2"));
+    }
+
+    @Test
+    public void pageTooLarge_isNotCached() throws Exception {
+        ArticlePrefetcher prefetcher = newPrefetcher(1, Long.MAX_VALUE);
+        Article large = articles("large", 1).get(0);
+
+        prefetcher.prefetch(Collections.singletonList(large));
+        awaitIdle(prefetcher);
+
+        assertFalse(mCache.contains(large.getUrl()));
+        // The download stops about the maximum, not at the end of the page.
+        assertTrue(prefetcher.getBytesUsed() < 2 * MAX_PAGE_BYTES);
+        try {
+            prefetcher.load(large.getUrl());
+            fail("A page too large is not read");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void cachedText_isCompressed() throws Exception {
+        String text = ArticleBodyExtractor.extract(new String(mPage, Charset.forName("UTF-8")), mBaseUrl);
+        mCache.put("url", text);
+
+        assertEquals(text, mCache.get("url"));
+        assertTrue(mCache.size() < text.getBytes(Charset.forName("UTF-8")).length);
+        assertNull(mCache.get("other"));
+    }
+
+    @Test
+    public void charsetOf_readsTheContentType() {
+        assertEquals(Charset.forName("ISO-8859-1"), ArticlePrefetcher.charsetOf("text/html; charset=\"iso-8859-1\""));
+        assertEquals(Charset.forName("UTF-8"), ArticlePrefetcher.charsetOf("text/html"));
+        assertEquals(Charset.forName("UTF-8"), ArticlePrefetcher.charsetOf("text/html; charset=unknown"));
+        assertEquals(Charset.forName("UTF-8"), ArticlePrefetcher.charsetOf(null));
+    }
+
+    private static List<String> sorted(List<String> list) {
+        List<String> sorted = new ArrayList<>(list);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the build time of the {@link ArticleSearchIndex} and its query latency
+ * at 10k and 100k articles with titles drawn from a realistic vocabulary.
+ *
+ * Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*ArticleSearchIndexBenchmark'
+ */
+public class ArticleSearchIndexBenchmark {
+
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final int WORDS_PER_TITLE = 10;
+    private static final int QUERY_ITERATIONS = 200;
+    private static final String[] SECTIONS = {"Politics", "Media", "Stage", "Sport", "Film", "World news"};
+    private static final String[] QUERIES = {"po", "pol", "sport", "ab", "a", "be ca", "politics x"};
+
+    private String[] mVocabulary;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        Random random = new Random(42);
+        mVocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(7);
+            for (int c = 0; c < length; c++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            mVocabulary[i] = word.toString();
+        }
+    }
+
+    @Test
+    public void buildAndQuery_10k() {
+        run(10000);
+    }
+
+    @Test
+    public void buildAndQuery_100k() {
+        run(100000);
+    }
+
+    private void run(int count) {
+        List<Article> articles = generate(count);
+
+        long start = System.nanoTime();
+        ArticleSearchIndex index = new ArticleSearchIndex();
+        index.addAll(articles);
+        System.out.println(String.format("%d articles: build %.1f ms", count, (System.nanoTime() - start) / 1e6));
+
+        for (String query : QUERIES) {
+            for (int i = 0; i < QUERY_ITERATIONS; i++) {
+                index.search(query, 50);
+            }
+            long worst = 0;
+            long total = 0;
+            for (int i = 0; i < QUERY_ITERATIONS; i++) {
+                long queryStart = System.nanoTime();
+                index.search(query, 50);
+                long elapsed = System.nanoTime() - queryStart;
+                total += elapsed;
+                worst = Math.max(worst, elapsed);
+            }
+            System.out.println(String.format("  %-12s %8.3f ms/query, worst %8.3f ms",
+                    '"' + query + '"', total / 1e6 / QUERY_ITERATIONS, worst / 1e6));
+        }
+    }
+
+    /**
+     * Titles follow a skewed word distribution, like real headlines.
+     */
+    private List<Article> generate(int count) {
+        Random random = new Random(count);
+        List<Article> articles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < WORDS_PER_TITLE; w++) {
+                double skewed = Math.pow(random.nextDouble(), 3);
+                title.append(mVocabulary[(int) (skewed * VOCABULARY_SIZE)]).append(' ');
+            }
+            String author = mVocabulary[random.nextInt(2000)] + " " + mVocabulary[random.nextInt(2000)];
+            articles.add(new Article(title.toString(), SECTIONS[i % SECTIONS.length],
+                    new Date(1500000000000L + i * 60000L), author, "https://www.theguardian.com/" + i));
+        }
+        return articles;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArticleSearchIndexTest {
+
+    private ArticleSearchIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new ArticleSearchIndex();
+        mIndex.addAll(Arrays.asList(
+                new Article("Brexit talks stall again", "Politics", new Date(1000), "Andrew Sparrow", "https://a"),
+                new Article("Sparrows return to London parks", "Environment", new Date(2000), "Jane Doe", "https://b"),
+                new Article("Election night live", "Politics", new Date(3000), "Heather Stewart", "https://c")));
+    }
+
+    @Test
+    public void prefixQuery_matchesEveryField() {
+        assertEquals(urls("https://b", "https://a"), urls(mIndex.search("sparrow", 10)));
+        assertEquals(urls("https://c", "https://a"), urls(mIndex.search("POLIT", 10)));
+    }
+
+    @Test
+    public void everyWordMustMatch() {
+        assertEquals(urls("https://a"), urls(mIndex.search("politics andrew", 10)));
+        assertTrue(mIndex.search("politics jane", 10).isEmpty());
+    }
+
+    @Test
+    public void titleMatches_rankAboveAuthorMatches_thenNewestFirst() {
+        // "Sparrows" in a title outranks "Sparrow" as an author.
+        assertEquals("https://b", mIndex.search("spa", 10).get(0).getUrl());
+        // Equal scores come newest first.
+        assertEquals(urls("https://c", "https://a"), urls(mIndex.search("politics", 10)));
+    }
+
+    @Test
+    public void sameUrl_isReplaced() {
+        mIndex.add(new Article("Brexit deal agreed", "Politics", new Date(4000), "Andrew Sparrow", "https://a"));
+
+        assertEquals(3, mIndex.size());
+        assertTrue(mIndex.search("stall", 10).isEmpty());
+        assertEquals("Brexit deal agreed", mIndex.search("brexit", 10).get(0).getArticle_title());
+    }
+
+    @Test
+    public void replacedArticles_leaveNoPostingsBehind() {
+        int terms = mIndex.getTermCount();
+        for (int i = 0; i < 100; i++) {
+            mIndex.add(new Article("Brexit talks stall again", "Politics", new Date(1000 + i), "Andrew Sparrow", "https://a"));
+        }
+        mIndex.add(new Article("Brexit deal agreed", "Politics", new Date(4000), "Andrew Sparrow", "https://a"));
+
+        // "talks", "stall" and "again" are gone, "deal" and "agreed" came.
+        assertEquals(terms - 1, mIndex.getTermCount());
+        assertEquals(urls("https://a"), urls(mIndex.search("brexit", 10)));
+        // Now the newest, the reused document ID carries the new date.
+        assertEquals(urls("https://a", "https://b"), urls(mIndex.search("sparrow", 10)));
+    }
+
+    @Test
+    public void largeList_isIndexedInBatches() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < ArticleSearchIndex.BATCH_SIZE * 3 + 1; i++) {
+            articles.add(new Article("Story " + i, "News", new Date(i), "Reporter", "https://story/" + i));
+        }
+        mIndex.addAll(articles);
+
+        assertEquals(3 + articles.size(), mIndex.size());
+        assertEquals(urls("https://story/150"), urls(mIndex.search("story 150", 10)));
+    }
+
+    @Test
+    public void limitAndEmptyQuery() {
+        assertEquals(1, mIndex.search("p", 1).size());
+        assertTrue(mIndex.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void tokenize_splitsOnPunctuation() {
+        assertEquals(Arrays.asList("politics", "live", "2018"), ArticleSearchIndex.tokenize("Politics-live: 2018!"));
+    }
+
+    private static List<String> urls(String... urls) {
+        return Arrays.asList(urls);
+    }
+
+    private static List<String> urls(List<Article> articles) {
+        String[] urls = new String[articles.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = articles.get(i).getUrl();
+        }
+        return Arrays.asList(urls);
+    }
+}
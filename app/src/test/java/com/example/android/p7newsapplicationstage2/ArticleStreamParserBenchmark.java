@@ -0,0 +1,68 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+
+/**
+ * Compares time and allocation of the String + JSONObject parser with
+ * {@link ArticleStreamParser} on the recorded 50 results response.
+ *
+ * Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*ArticleStreamParserBenchmark'
+ */
+public class ArticleStreamParserBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 1000;
+
+    private byte[] mPayload;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        mPayload = ArticleStreamParserTest.readResource("guardian_search_50.json").getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void compareParsers() throws IOException {
+        run("readFromStream + extractFeatureFromJson", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    QueryUtils.extractFeatureFromJson(QueryUtils.readFromStream(new ByteArrayInputStream(mPayload)));
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+        run("ArticleStreamParser", new Runnable() {
+            @Override
+            public void run() {
+                ArticleStreamParser.parse(new ByteArrayInputStream(mPayload));
+            }
+        });
+    }
+
+    private static void run(String name, Runnable parse) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            parse.run();
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            parse.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        System.out.println(String.format("%-45s %8.1f us/op %10d B/op", name,
+                elapsed / 1000.0 / MEASURED_ITERATIONS, allocated / MEASURED_ITERATIONS));
+    }
+}
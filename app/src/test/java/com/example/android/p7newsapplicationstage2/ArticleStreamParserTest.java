@@ -0,0 +1,153 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link ArticleStreamParser} returns exactly what
+ * {@link QueryUtils#extractFeatureFromJson(String)} returns.
+ */
+public class ArticleStreamParserTest {
+
+    static String readResource(String name) throws IOException {
+        InputStream in = ArticleStreamParserTest.class.getClassLoader().getResourceAsStream(name);
+        try {
+            return IOUtils.toString(in, Charset.forName("UTF-8"));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")));
+    }
+
+    static void assertSameArticles(List<Article> expected, List<Article> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Article e = expected.get(i);
+            Article a = actual.get(i);
+            assertEquals(e.getArticle_title(), a.getArticle_title());
+            assertEquals(e.getArticle_section(), a.getArticle_section());
+            assertEquals(e.getSectionId(), a.getSectionId());
+            assertEquals(e.getDate(), a.getDate());
+            assertEquals(e.getAuthor(), a.getAuthor());
+            assertEquals(e.getTags(), a.getTags());
+            assertEquals(e.getUrl(), a.getUrl());
+            assertEquals(e.getThumbnailUrl(), a.getThumbnailUrl());
+        }
+    }
+
+    @Test
+    public void recordedResponse_matchesJsonObjectParser() throws IOException {
+        String json = readResource("guardian_search_50.json");
+        List<Article> expected = QueryUtils.extractFeatureFromJson(json);
+        List<Article> actual = ArticleStreamParser.parse(stream(json));
+        assertEquals(50, expected.size());
+        assertNotNull(expected.get(0).getSectionId());
+        assertSameArticles(expected, actual);
+    }
+
+    @Test
+    public void recordedResponse_pagingFieldsAreRead() throws IOException {
+        ArticlePage page = ArticleStreamParser.parsePage(stream(readResource("guardian_search_50.json")));
+        assertEquals(1, page.getCurrentPage());
+        assertEquals(965, page.getPages());
+        assertEquals(50, page.getArticles().size());
+    }
+
+    @Test
+    public void pagingFieldsAfterTheResultsAreRead() {
+        String json = "{\"response\":{\"results\":[],\"currentPage\":2,\"pages\":7}}";
+        ArticlePage page = ArticleStreamParser.parsePage(stream(json));
+        assertEquals(2, page.getCurrentPage());
+        assertEquals(7, page.getPages());
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() {
+        String json = "{\"extra\":{\"a\":[1,2,{\"b\":null}]},\"response\":{\"results\":["
+                + "{\"nested\":{\"webTitle\":\"ignored\"},\"webTitle\":\"T\",\"webUrl\":\"u\","
+                + "\"webPublicationDate\":\"2018-05-29T14:40:47Z\",\"tags\":[{\"webTitle\":\"A\"},{\"x\":1}],"
+                + "\"fields\":{\"thumbnail\":\"t\"}}],\"status\":\"ok\"}}";
+        assertSameArticles(QueryUtils.extractFeatureFromJson(json), ArticleStreamParser.parse(stream(json)));
+        assertEquals("A", ArticleStreamParser.parse(stream(json)).get(0).getAuthor());
+    }
+
+    @Test
+    public void thumbnail_isReadFromTheFields() {
+        String json = "{\"response\":{\"results\":[{\"webTitle\":\"T\",\"webUrl\":\"u\","
+                + "\"webPublicationDate\":\"2018-05-29T14:40:47Z\",\"tags\":[],"
+                + "\"fields\":{\"headline\":\"H\",\"thumbnail\":\"https://media.guim.co.uk/t.jpg\"}}]}}";
+        List<Article> articles = ArticleStreamParser.parse(stream(json));
+        assertSameArticles(QueryUtils.extractFeatureFromJson(json), articles);
+        assertEquals("https://media.guim.co.uk/t.jpg", articles.get(0).getThumbnailUrl());
+    }
+
+    @Test
+    public void emptyTags_giveNullAuthor() {
+        String json = "{\"response\":{\"results\":[{\"webTitle\":\"T\",\"webUrl\":\"u\","
+                + "\"webPublicationDate\":\"2018-05-29T14:40:47Z\",\"tags\":[]}]}}";
+        List<Article> articles = ArticleStreamParser.parse(stream(json));
+        assertSameArticles(QueryUtils.extractFeatureFromJson(json), articles);
+        assertNull(articles.get(0).getAuthor());
+    }
+
+    @Test
+    public void everyTagIsKept_andTheFirstContributorIsTheAuthor() {
+        String json = "{\"response\":{\"results\":[{\"webTitle\":\"T\",\"webUrl\":\"u\","
+                + "\"webPublicationDate\":\"2018-05-29T14:40:47Z\",\"tags\":["
+                + "{\"id\":\"politics/eu-referendum\",\"type\":\"keyword\",\"webTitle\":\"EU referendum\"},"
+                + "{\"id\":\"profile/andrewsparrow\",\"type\":\"contributor\",\"webTitle\":\"Andrew Sparrow\","
+                + "\"references\":[],\"bylineImageUrl\":\"b\"},"
+                + "{\"id\":\"profile/heatherstewart\",\"type\":\"contributor\",\"webTitle\":\"Heather Stewart\"}]}]}}";
+        List<Article> articles = ArticleStreamParser.parse(stream(json));
+        assertSameArticles(QueryUtils.extractFeatureFromJson(json), articles);
+
+        Article article = articles.get(0);
+        assertEquals("Andrew Sparrow", article.getAuthor());
+        assertEquals(Arrays.asList(
+                new ArticleTag("politics/eu-referendum", ArticleTag.TYPE_KEYWORD, "EU referendum"),
+                new ArticleTag("profile/andrewsparrow", ArticleTag.TYPE_CONTRIBUTOR, "Andrew Sparrow"),
+                new ArticleTag("profile/heatherstewart", ArticleTag.TYPE_CONTRIBUTOR, "Heather Stewart")),
+                article.getTags());
+    }
+
+    @Test
+    public void keywordsWithoutContributor_giveNullAuthor() {
+        String json = "{\"response\":{\"results\":[{\"webTitle\":\"T\",\"webUrl\":\"u\","
+                + "\"webPublicationDate\":\"2018-05-29T14:40:47Z\",\"tags\":["
+                + "{\"id\":\"politics/eu-referendum\",\"type\":\"keyword\",\"webTitle\":\"EU referendum\"}]}]}}";
+        List<Article> articles = ArticleStreamParser.parse(stream(json));
+        assertSameArticles(QueryUtils.extractFeatureFromJson(json), articles);
+        assertNull(articles.get(0).getAuthor());
+        assertEquals(1, articles.get(0).getTags().size());
+    }
+
+    @Test
+    public void missingRequiredField_stopsLikeJsonObjectParser() {
+        String json = "{\"response\":{\"results\":["
+                + "{\"webTitle\":\"T1\",\"webUrl\":\"u1\",\"webPublicationDate\":\"2018-05-29T14:40:47Z\",\"tags\":[]},"
+                + "{\"webTitle\":\"T2\",\"webPublicationDate\":\"2018-05-29T14:40:47Z\",\"tags\":[]},"
+                + "{\"webTitle\":\"T3\",\"webUrl\":\"u3\",\"webPublicationDate\":\"2018-05-29T14:40:47Z\",\"tags\":[]}]}}";
+        List<Article> articles = ArticleStreamParser.parse(stream(json));
+        assertSameArticles(QueryUtils.extractFeatureFromJson(json), articles);
+        assertEquals(1, articles.size());
+    }
+
+    @Test
+    public void emptyOrMissingResponse_givesEmptyList() {
+        assertTrue(ArticleStreamParser.parse(stream("")).isEmpty());
+        assertTrue(ArticleStreamParser.parse(stream("{\"message\":\"Unauthorized\"}")).isEmpty());
+        assertTrue(ArticleStreamParser.parse((InputStream) null).isEmpty());
+    }
+}
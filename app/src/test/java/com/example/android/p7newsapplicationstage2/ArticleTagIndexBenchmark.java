@@ -0,0 +1,130 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the build time of the {@link ArticleTagIndex} and the latency of its tag, author
+ * and related lookups at 10k and 100k articles, holding every article, and at 100k articles
+ * through the bounded index of the app.
+ *
+ * Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*ArticleTagIndexBenchmark'
+ */
+public class ArticleTagIndexBenchmark {
+
+    private static final int CONTRIBUTORS = 2000;
+    private static final int KEYWORDS = 5000;
+    private static final int KEYWORDS_PER_ARTICLE = 6;
+    private static final int LOOKUP_ITERATIONS = 2000;
+    private static final int LIMIT = 20;
+
+    private ArticleTag[] mContributors;
+    private ArticleTag[] mKeywords;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        mContributors = new ArticleTag[CONTRIBUTORS];
+        for (int i = 0; i < CONTRIBUTORS; i++) {
+            mContributors[i] = new ArticleTag("profile/contributor" + i, ArticleTag.TYPE_CONTRIBUTOR, "Contributor " + i);
+        }
+        mKeywords = new ArticleTag[KEYWORDS];
+        for (int i = 0; i < KEYWORDS; i++) {
+            mKeywords[i] = new ArticleTag("section/keyword" + i, ArticleTag.TYPE_KEYWORD, "Keyword " + i);
+        }
+    }
+
+    @Test
+    public void buildAndLookup_10k() {
+        run("unbounded", 10000, new ArticleTagIndex(10000, ArticleTagIndex.MAX_ARTICLES_PER_TAG));
+    }
+
+    @Test
+    public void buildAndLookup_100k() {
+        run("unbounded", 100000, new ArticleTagIndex(100000, ArticleTagIndex.MAX_ARTICLES_PER_TAG));
+    }
+
+    @Test
+    public void buildAndLookup_100k_bounded() {
+        run("bounded", 100000, new ArticleTagIndex(ArticleTagIndex.MAX_ARTICLES, ArticleTagIndex.MAX_ARTICLES_PER_TAG));
+    }
+
+    private void run(String name, int count, final ArticleTagIndex index) {
+        List<Article> articles = generate(count);
+
+        long start = System.nanoTime();
+        index.addAll(articles);
+        System.out.println(String.format("%d articles, %s: build %.1f ms, %d articles and %d tags kept",
+                count, name, (System.nanoTime() - start) / 1e6, index.size(), index.getTagCount()));
+
+        // Look up the newest articles, the ones the list shows.
+        List<Article> recent = articles.subList(count - Math.min(count, ArticleTagIndex.MAX_ARTICLES), count);
+        measure("by tag", recent, new Lookup() {
+            @Override
+            public int lookup(Article article) {
+                return index.getArticles(article.getTags().get(1).getId(), LIMIT).size();
+            }
+        });
+        measure("by author", recent, new Lookup() {
+            @Override
+            public int lookup(Article article) {
+                return index.getByAuthor(article, LIMIT).size();
+            }
+        });
+        measure("related", recent, new Lookup() {
+            @Override
+            public int lookup(Article article) {
+                return index.getRelated(article, LIMIT).size();
+            }
+        });
+    }
+
+    private interface Lookup {
+        int lookup(Article article);
+    }
+
+    private void measure(String name, List<Article> articles, Lookup lookup) {
+        Random random = new Random(7);
+        for (int i = 0; i < LOOKUP_ITERATIONS; i++) {
+            lookup.lookup(articles.get(random.nextInt(articles.size())));
+        }
+        long results = 0;
+        long worst = 0;
+        long total = 0;
+        for (int i = 0; i < LOOKUP_ITERATIONS; i++) {
+            Article article = articles.get(random.nextInt(articles.size()));
+            long lookupStart = System.nanoTime();
+            results += lookup.lookup(article);
+            long elapsed = System.nanoTime() - lookupStart;
+            total += elapsed;
+            worst = Math.max(worst, elapsed);
+        }
+        System.out.println(String.format("  %-10s %8.1f us/lookup, worst %8.1f us, %.1f results/lookup",
+                name, total / 1e3 / LOOKUP_ITERATIONS, worst / 1e3, (double) results / LOOKUP_ITERATIONS));
+    }
+
+    /**
+     * A contributor per article, and keywords following a skewed distribution like real tags,
+     * published a minute apart, oldest first as pages are loaded.
+     */
+    private List<Article> generate(int count) {
+        Random random = new Random(count);
+        List<Article> articles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<ArticleTag> tags = new ArrayList<>();
+            tags.add(mContributors[random.nextInt(CONTRIBUTORS)]);
+            for (int k = 0; k < KEYWORDS_PER_ARTICLE; k++) {
+                double skewed = Math.pow(random.nextDouble(), 3);
+                tags.add(mKeywords[(int) (skewed * KEYWORDS)]);
+            }
+            articles.add(new Article("Title " + i, "Politics", "politics", 1500000000000L + i * 60000L,
+                    tags.get(0).getTitle(), "https://www.theguardian.com/" + i, null, tags));
+        }
+        return articles;
+    }
+}
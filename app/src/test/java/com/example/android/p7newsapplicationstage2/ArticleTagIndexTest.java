@@ -0,0 +1,112 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArticleTagIndexTest {
+
+    private static final ArticleTag SPARROW = new ArticleTag("profile/andrewsparrow", ArticleTag.TYPE_CONTRIBUTOR, "Andrew Sparrow");
+    private static final ArticleTag STEWART = new ArticleTag("profile/heatherstewart", ArticleTag.TYPE_CONTRIBUTOR, "Heather Stewart");
+    private static final ArticleTag BREXIT = new ArticleTag("politics/brexit", ArticleTag.TYPE_KEYWORD, "Brexit");
+    private static final ArticleTag EU = new ArticleTag("world/eu", ArticleTag.TYPE_KEYWORD, "European Union");
+    private static final ArticleTag ELECTIONS = new ArticleTag("politics/elections", ArticleTag.TYPE_KEYWORD, "Elections");
+
+    private ArticleTagIndex mIndex;
+
+    private static Article article(String url, long time, ArticleTag... tags) {
+        return new Article("Title " + url, "Politics", "politics", time, tags.length > 0 ? tags[0].getTitle() : null,
+                url, null, Arrays.asList(tags));
+    }
+
+    @Before
+    public void setUp() {
+        mIndex = new ArticleTagIndex(100, 10);
+        mIndex.addAll(Arrays.asList(
+                article("https://a", 1000, SPARROW, BREXIT, EU),
+                article("https://b", 3000, SPARROW, ELECTIONS),
+                article("https://c", 2000, STEWART, BREXIT, EU),
+                article("https://d", 4000, STEWART, BREXIT),
+                article("https://e", 5000, SPARROW, STEWART, ELECTIONS)));
+    }
+
+    @Test
+    public void articlesOfATag_newestFirst() {
+        assertEquals(urls("https://e", "https://b", "https://a"), urls(mIndex.getArticles(SPARROW.getId(), 10)));
+        assertEquals(urls("https://d", "https://c"), urls(mIndex.getArticles(BREXIT.getId(), 2)));
+        assertTrue(mIndex.getArticles("unknown/tag", 10).isEmpty());
+        assertEquals("Brexit", mIndex.getTag(BREXIT.getId()).getTitle());
+    }
+
+    @Test
+    public void byAuthor_mergesTheContributors_withoutTheArticleItself() {
+        Article e = article("https://e", 5000, SPARROW, STEWART, ELECTIONS);
+        assertEquals(urls("https://d", "https://b", "https://c", "https://a"), urls(mIndex.getByAuthor(e, 10)));
+        assertEquals(urls("https://d", "https://b"), urls(mIndex.getByAuthor(e, 2)));
+    }
+
+    @Test
+    public void related_rankedBySharedKeywords_thenNewest() {
+        Article a = article("https://a", 1000, SPARROW, BREXIT, EU);
+        // c shares both keywords, d only Brexit; contributors are not keywords.
+        assertEquals(urls("https://c", "https://d"), urls(mIndex.getRelated(a, 10)));
+        assertEquals(urls("https://c"), urls(mIndex.getRelated(a, 1)));
+    }
+
+    @Test
+    public void sameUrl_isReplaced() {
+        mIndex.add(article("https://a", 1000, STEWART, ELECTIONS));
+
+        assertEquals(5, mIndex.size());
+        assertEquals(urls("https://e", "https://b"), urls(mIndex.getArticles(SPARROW.getId(), 10)));
+        assertEquals(urls("https://e", "https://b", "https://a"), urls(mIndex.getArticles(ELECTIONS.getId(), 10)));
+        // EU is left to c alone
+        assertEquals(urls("https://c"), urls(mIndex.getArticles(EU.getId(), 10)));
+    }
+
+    @Test
+    public void bounded_dropsTheArticlesIndexedFirst_andTheOldestOfEveryTag() {
+        ArticleTagIndex index = new ArticleTagIndex(3, 2);
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            articles.add(article("https://" + i, i * 1000, i % 2 == 0 ? SPARROW : STEWART, BREXIT));
+        }
+        index.addAll(articles);
+
+        assertEquals(3, index.size());
+        assertEquals(urls("https://4", "https://3"), urls(index.getArticles(BREXIT.getId(), 10)));
+        assertEquals(urls("https://4", "https://2"), urls(index.getArticles(SPARROW.getId(), 10)));
+        assertEquals(urls("https://3"), urls(index.getArticles(STEWART.getId(), 10)));
+
+        // The tags of the articles dropped are dropped with them.
+        index.addAll(Arrays.asList(article("https://5", 5000, ELECTIONS), article("https://6", 6000, ELECTIONS),
+                article("https://7", 7000, ELECTIONS)));
+        assertNull(index.getTag(SPARROW.getId()));
+        assertEquals(1, index.getTagCount());
+    }
+
+    @Test
+    public void untaggedArticles_areNotIndexed() {
+        mIndex.add(new Article("T", "S", "s", 1000, null, "https://untagged", null));
+        assertEquals(5, mIndex.size());
+    }
+
+    private static List<String> urls(String... urls) {
+        return Arrays.asList(urls);
+    }
+
+    private static List<String> urls(List<Article> articles) {
+        String[] urls = new String[articles.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = articles.get(i).getUrl();
+        }
+        return Arrays.asList(urls);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArticleTest {
+
+    @Test
+    public void sameContent_isEqual() {
+        Article a = new Article("T", "S", new Date(1000), "A", "https://u");
+        Article b = new Article("T", "S", new Date(1000), "A", "https://u");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.getId(), b.getId());
+    }
+
+    @Test
+    public void changedContent_keepsTheStableId() {
+        Article a = new Article("T", "S", new Date(1000), "A", "https://u");
+        Article edited = new Article("T (updated)", "S", new Date(2000), null, "https://u");
+        assertNotEquals(a, edited);
+        assertEquals(a.getId(), edited.getId());
+    }
+
+    @Test
+    public void differentUrls_haveDifferentIds() {
+        assertNotEquals(new Article("T", "S", null, null, "https://a").getId(),
+                new Article("T", "S", null, null, "https://b").getId());
+    }
+
+    @Test
+    public void repeatedStrings_areShared() {
+        Article a = new Article("T1", new String("Politics"), new String("politics"), new Date(1000),
+                new String("Andrew Sparrow"), "https://a");
+        Article b = new Article("T2", new String("Politics"), new String("politics"), new Date(2000),
+                new String("Andrew Sparrow"), "https://b");
+        assertSame(a.getArticle_section(), b.getArticle_section());
+        assertSame(a.getSectionId(), b.getSectionId());
+        assertSame(a.getAuthor(), b.getAuthor());
+        assertSame(a.getDisplayDate(), b.getDisplayDate());
+    }
+
+    @Test
+    public void displayDateAndTime_areFormattedPerMinute() {
+        long minute = 1527600000000L;
+        Article first = new Article("T1", "S", "s", minute + 1000, "A", "https://a", null);
+        Article sameMinute = new Article("T2", "S", "s", minute + 59000, "A", "https://b", null);
+        Article nextMinute = new Article("T3", "S", "s", minute + 60000, "A", "https://c", null);
+
+        assertSame(first.getDisplayTime(), sameMinute.getDisplayTime());
+        assertSame(first.getDisplayDate(), sameMinute.getDisplayDate());
+        assertEquals(ArticleDateFormats.formatRowTime(new Date(minute + 60000)), nextMinute.getDisplayTime());
+        assertEquals(ArticleDateFormats.formatRowDate(new Date(minute + 60000)) + ",", nextMinute.getDisplayDate());
+        assertNotEquals(first.getDisplayTime(), nextMinute.getDisplayTime());
+    }
+
+    @Test
+    public void publicationTime_isKeptAsIs() {
+        Date date = new Date(1527600000000L);
+        Article article = new Article("T", "S", "s", date, "A", "https://u");
+        date.setTime(0);
+        assertEquals(1527600000000L, article.getPublicationTime());
+        article.getDate().setTime(0);
+        assertEquals(new Date(1527600000000L), article.getDate());
+
+        Article undated = new Article("T", "S", null, null, "https://u");
+        assertEquals(Article.NO_DATE, undated.getPublicationTime());
+        assertNull(undated.getDate());
+        assertEquals("", undated.getDisplayTime());
+    }
+
+    @Test
+    public void tags_roundTripThroughTheirStoredForm() {
+        List<ArticleTag> tags = Arrays.asList(
+                new ArticleTag("profile/andrewsparrow", ArticleTag.TYPE_CONTRIBUTOR, "Andrew Sparrow"),
+                new ArticleTag("politics/eu-referendum", ArticleTag.TYPE_KEYWORD, "EU referendum"),
+                new ArticleTag("politics/brexit", null, null),
+                new ArticleTag(null, null, "No ID"));
+        assertEquals(tags, ArticleTag.decode(ArticleTag.encode(tags)));
+        assertTrue(ArticleTag.decode(null).isEmpty());
+        assertTrue(ArticleTag.decode(ArticleTag.encode(Arrays.<ArticleTag>asList())).isEmpty());
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Small JVM microbenchmark harness for the benchmarks of this module.
+ *
+ * Every benchmark is warmed up, then timed in samples of a fixed number of operations, which
+ * give the throughput and the bytes allocated per operation. As many operations are then
+ * timed one by one for the p50/p99 latency of an operation, apart so the timer calls do not
+ * weigh on the throughput. The results are compared with the baseline stored in
+ * {@code src/test/resources/benchmark_baseline.properties}. The latency of an operation
+ * shorter than the resolution of {@link System#nanoTime()} is only coarse.
+ *
+ * Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*Benchmark'
+ * Record a new baseline with: ./gradlew testDebugUnitTest -Pbenchmark -PupdateBaseline --tests '*Benchmark'
+ */
+class BenchmarkRunner {
+
+    /** Classpath resource of the stored baseline */
+    static final String BASELINE_RESOURCE = "benchmark_baseline.properties";
+
+    /** Slowdown or allocation growth over the baseline reported as a regression, 0.25 is 25% */
+    private static final double DEFAULT_TOLERANCE = 0.25;
+
+    /** Allocations under this many bytes per operation are noise and never flagged */
+    private static final long MIN_FLAGGED_BYTES = 64;
+
+    private static final String KEY_OPS_PER_SECOND = ".ops_per_s";
+    private static final String KEY_BYTES_PER_OP = ".bytes_per_op";
+    private static final String KEY_P99_NANOS = ".p99_ns";
+
+    /**
+     * Measurements of one benchmark.
+     */
+    static class Result {
+        final String mName;
+        final double mOpsPerSecond;
+        final long mBytesPerOp;
+        final long mP50Nanos;
+        final long mP99Nanos;
+
+        Result(String name, double opsPerSecond, long bytesPerOp, long p50Nanos, long p99Nanos) {
+            mName = name;
+            mOpsPerSecond = opsPerSecond;
+            mBytesPerOp = bytesPerOp;
+            mP50Nanos = p50Nanos;
+            mP99Nanos = p99Nanos;
+        }
+
+        /**
+         * Returns the allocation rate in MB per second
+         */
+        double allocationRate() {
+            return mBytesPerOp * mOpsPerSecond / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-45s %12.0f ops/s %10d B/op %8.1f MB/s  p50 %9.2f us  p99 %9.2f us",
+                    mName, mOpsPerSecond, mBytesPerOp, allocationRate(), mP50Nanos / 1000.0, mP99Nanos / 1000.0);
+        }
+    }
+
+    private final Properties mBaseline;
+    private final double mTolerance;
+    private final List<Result> mResults = new ArrayList<>();
+    private final List<String> mRegressions = new ArrayList<>();
+
+    BenchmarkRunner(Properties baseline, double tolerance) {
+        mBaseline = baseline;
+        mTolerance = tolerance;
+    }
+
+    /**
+     * Returns a runner comparing with the stored baseline, with the tolerance of the
+     * "benchmark.tolerance" system property if set.
+     */
+    static BenchmarkRunner withStoredBaseline() throws IOException {
+        Properties baseline = new Properties();
+        InputStream in = BenchmarkRunner.class.getClassLoader().getResourceAsStream(BASELINE_RESOURCE);
+        if (in != null) {
+            try {
+                baseline.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        String tolerance = System.getProperty("benchmark.tolerance");
+        return new BenchmarkRunner(baseline, tolerance == null ? DEFAULT_TOLERANCE : Double.parseDouble(tolerance));
+    }
+
+    /**
+     * Warm up, then time the operation and compare the result with the baseline.
+     *
+     * @param warmupOps    is the number of untimed operations run first
+     * @param samples      is the number of timed samples
+     * @param opsPerSample is the number of operations of every sample, high enough for a
+     *                     sample to last well over the timer resolution
+     */
+    Result run(String name, int warmupOps, int samples, int opsPerSample, Runnable op) {
+        for (int i = 0; i < warmupOps; i++) {
+            op.run();
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int ops = samples * opsPerSample;
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long totalNanos = 0;
+        for (int s = 0; s < samples; s++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < opsPerSample; i++) {
+                op.run();
+            }
+            totalNanos += System.nanoTime() - start;
+        }
+        long bytesPerOp = (threads.getThreadAllocatedBytes(threadId) - bytesBefore) / ops;
+
+        long[] opNanos = new long[ops];
+        long opStart = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            op.run();
+            long opEnd = System.nanoTime();
+            opNanos[i] = opEnd - opStart;
+            opStart = opEnd;
+        }
+        Arrays.sort(opNanos);
+        Result result = new Result(name, ops * 1e9 / Math.max(totalNanos, 1), bytesPerOp,
+                percentile(opNanos, 0.50), percentile(opNanos, 0.99));
+        record(result);
+        return result;
+    }
+
+    /**
+     * Print the result and check it against the baseline.
+     */
+    void record(Result result) {
+        mResults.add(result);
+        String regression = compare(result);
+        if (regression != null) {
+            mRegressions.add(regression);
+        }
+        System.out.println(result + (regression == null ? "" : "  REGRESSION"));
+    }
+
+    /**
+     * Returns a description of the regression of the result against the baseline, or null
+     * when it is within the tolerance or has no baseline.
+     */
+    String compare(Result result) {
+        String opsPerSecond = mBaseline.getProperty(result.mName + KEY_OPS_PER_SECOND);
+        if (opsPerSecond != null && result.mOpsPerSecond < Double.parseDouble(opsPerSecond) * (1 - mTolerance)) {
+            return String.format(Locale.ROOT, "%s: %.0f ops/s, baseline %s", result.mName,
+                    result.mOpsPerSecond, opsPerSecond);
+        }
+        String bytesPerOp = mBaseline.getProperty(result.mName + KEY_BYTES_PER_OP);
+        if (bytesPerOp != null && result.mBytesPerOp > MIN_FLAGGED_BYTES
+                && result.mBytesPerOp > Long.parseLong(bytesPerOp) * (1 + mTolerance)) {
+            return String.format(Locale.ROOT, "%s: %d B/op, baseline %s", result.mName,
+                    result.mBytesPerOp, bytesPerOp);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the regressions found so far, empty when every benchmark is within the tolerance
+     */
+    List<String> getRegressions() {
+        return mRegressions;
+    }
+
+    /**
+     * Write the results as the new baseline when the "benchmark.baselineOut" system property
+     * names a file, keeping the entries of the benchmarks not run this time.
+     */
+    void saveBaselineIfRequested() throws IOException {
+        String path = System.getProperty("benchmark.baselineOut");
+        if (path == null) {
+            return;
+        }
+        Properties baseline = new Properties();
+        baseline.putAll(mBaseline);
+        for (Result result : mResults) {
+            baseline.setProperty(result.mName + KEY_OPS_PER_SECOND, String.format(Locale.ROOT, "%.0f", result.mOpsPerSecond));
+            baseline.setProperty(result.mName + KEY_BYTES_PER_OP, String.valueOf(result.mBytesPerOp));
+            baseline.setProperty(result.mName + KEY_P99_NANOS, String.valueOf(result.mP99Nanos));
+        }
+        OutputStream out = new FileOutputStream(new File(path));
+        try {
+            baseline.store(out, "Benchmark baseline, see BenchmarkRunner");
+        } finally {
+            out.close();
+        }
+        // The baseline now matches this run, nothing to flag.
+        mRegressions.clear();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class BenchmarkRunnerTest {
+
+    private static BenchmarkRunner runner() {
+        Properties baseline = new Properties();
+        baseline.setProperty("parse.ops_per_s", "1000");
+        baseline.setProperty("parse.bytes_per_op", "10000");
+        return new BenchmarkRunner(baseline, 0.25);
+    }
+
+    @Test
+    public void withinTolerance_isNotARegression() {
+        assertNull(runner().compare(new BenchmarkRunner.Result("parse", 800, 12000, 1, 2)));
+    }
+
+    @Test
+    public void slowerThroughput_isARegression() {
+        assertNotNull(runner().compare(new BenchmarkRunner.Result("parse", 700, 10000, 1, 2)));
+    }
+
+    @Test
+    public void moreAllocation_isARegression() {
+        assertNotNull(runner().compare(new BenchmarkRunner.Result("parse", 1000, 13000, 1, 2)));
+    }
+
+    @Test
+    public void noBaseline_isNotARegression() {
+        assertNull(runner().compare(new BenchmarkRunner.Result("bind", 1, 1000000, 1, 2)));
+    }
+
+    @Test
+    public void run_recordsRegressions() {
+        BenchmarkRunner runner = new BenchmarkRunner(new Properties(), 0.25);
+        BenchmarkRunner.Result result = runner.run("noop", 10, 5, 10, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        assertEquals("noop", result.mName);
+        assertEquals(0, runner.getRegressions().size());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walks a {@link CircuitBreaker} through its states with a fake clock.
+ */
+public class CircuitBreakerTest {
+
+    private static class FakeClock implements FeedSync.Clock {
+        long mNow = 1000000;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    }
+
+    private final FakeClock mClock = new FakeClock();
+    private final CircuitBreaker mBreaker = new CircuitBreaker(3, 1000, 3000, mClock);
+
+    @Test
+    public void opensAfterTheThreshold_andClosesAfterASuccessfulTrial() {
+        mBreaker.onFailure();
+        mBreaker.onFailure();
+        assertTrue(mBreaker.allowRequest());
+        mBreaker.onFailure();
+        assertEquals(CircuitBreaker.STATE_OPEN, mBreaker.getState());
+        assertFalse(mBreaker.allowRequest());
+
+        mClock.mNow += 1000;
+        assertTrue(mBreaker.allowRequest());
+        assertEquals(CircuitBreaker.STATE_HALF_OPEN, mBreaker.getState());
+        // A single trial request at a time
+        assertFalse(mBreaker.allowRequest());
+
+        mBreaker.onSuccess();
+        assertEquals(CircuitBreaker.STATE_CLOSED, mBreaker.getState());
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void failedTrial_doublesTheOpenDelayUpToTheMaximum() {
+        for (int i = 0; i < 3; i++) {
+            mBreaker.onFailure();
+        }
+        long[] openDelays = {2000, 3000, 3000};
+        mClock.mNow += 1000;
+        for (long openDelay : openDelays) {
+            assertTrue(mBreaker.allowRequest());
+            mBreaker.onFailure();
+            mClock.mNow += openDelay - 1;
+            assertFalse(mBreaker.allowRequest());
+            mClock.mNow += 1;
+        }
+    }
+
+    @Test
+    public void openFor_keepsTheLongerDelay() {
+        mBreaker.openFor(5000);
+        mBreaker.openFor(1000);
+        mClock.mNow += 4999;
+        assertFalse(mBreaker.allowRequest());
+        mClock.mNow += 1;
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void canceledTrial_letsTheNextRequestBeTheTrial() {
+        for (int i = 0; i < 3; i++) {
+            mBreaker.onFailure();
+        }
+        mClock.mNow += 1000;
+        assertTrue(mBreaker.allowRequest());
+        mBreaker.onCanceled();
+        assertEquals(CircuitBreaker.STATE_OPEN, mBreaker.getState());
+
+        assertTrue(mBreaker.allowRequest());
+        assertFalse(mBreaker.allowRequest());
+        mBreaker.onSuccess();
+        assertEquals(CircuitBreaker.STATE_CLOSED, mBreaker.getState());
+    }
+
+    @Test
+    public void clientError_neitherClosesNorResetsTheFailures() {
+        mBreaker.onFailure();
+        mBreaker.onFailure();
+        mBreaker.onClientError();
+        mBreaker.onFailure();
+        assertEquals(CircuitBreaker.STATE_OPEN, mBreaker.getState());
+
+        mClock.mNow += 1000;
+        assertTrue(mBreaker.allowRequest());
+        mBreaker.onClientError();
+        assertEquals(CircuitBreaker.STATE_OPEN, mBreaker.getState());
+        assertTrue(mBreaker.allowRequest());
+    }
+}
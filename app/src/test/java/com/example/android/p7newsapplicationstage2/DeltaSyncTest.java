@@ -0,0 +1,286 @@
+package com.example.android.p7newsapplicationstage2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the delta refreshes of {@link QueryUtils#fetchArticlePage(String, ArticleCache)}
+ * against a local stand-in of the Guardian API, which serves the recorded results newest
+ * first and honors the "from-date" and "page-size" parameters.
+ */
+public class DeltaSyncTest {
+
+    private static final int PAGE_SIZE = 15;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private String mUrl;
+    private ArticleCache mCache;
+
+    /** Recorded results, newest first, the oldest ones being published at first */
+    private final List<JSONObject> mRecorded = new ArrayList<>();
+    /** Results published on the stand-in, guarded by itself */
+    private final List<JSONObject> mPublished = new ArrayList<>();
+
+    /** Written by the server thread */
+    private volatile String mLastQuery;
+    private volatile int mLastResultCount;
+    private volatile long mLastBytesSent;
+    /** Set to serve no results, like a response failing to parse */
+    private volatile boolean mServeNoResults;
+
+    @Before
+    public void setUp() throws Exception {
+        JSONArray results = new JSONObject(ArticleStreamParserTest.readResource("guardian_search_50.json"))
+                .getJSONObject("response").getJSONArray("results");
+        for (int i = 0; i < results.length(); i++) {
+            mRecorded.add(results.getJSONObject(i));
+        }
+        publishOldest(mRecorded.size() - 25);
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort()
+                + "/search?order-by=newest&page-size=" + PAGE_SIZE + "&page=1";
+        mCache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, 60 * 1000);
+        QueryUtils.setTransport(new UrlConnectionTransport());
+        FakeTransport.disableRetries();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    /**
+     * Publish the oldest of the recorded results not published yet.
+     */
+    private void publishOldest(int count) {
+        synchronized (mPublished) {
+            for (int i = 0; i < count; i++) {
+                mPublished.add(mRecorded.get(mRecorded.size() - 1 - mPublished.size()));
+            }
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String url = exchange.getRequestURI().toString();
+        mLastQuery = url;
+        String fromDate = DeltaSync.getQueryParameter(url, "from-date");
+        int pageSize = Integer.parseInt(DeltaSync.getQueryParameter(url, "page-size"));
+
+        List<JSONObject> matching = new ArrayList<>();
+        try {
+            synchronized (mPublished) {
+                for (JSONObject result : mPublished) {
+                    // The ISO dates of the same format compare as strings.
+                    if (fromDate == null || result.getString("webPublicationDate").compareTo(fromDate) >= 0) {
+                        matching.add(result);
+                    }
+                }
+            }
+            Collections.sort(matching, new Comparator<JSONObject>() {
+                @Override
+                public int compare(JSONObject a, JSONObject b) {
+                    return b.optString("webPublicationDate").compareTo(a.optString("webPublicationDate"));
+                }
+            });
+            List<JSONObject> page = matching.subList(0, mServeNoResults ? 0 : Math.min(pageSize, matching.size()));
+            JSONObject response = new JSONObject()
+                    .put("status", "ok")
+                    .put("total", matching.size())
+                    .put("pageSize", pageSize)
+                    .put("currentPage", 1)
+                    .put("pages", Math.max(1, (matching.size() + pageSize - 1) / pageSize))
+                    .put("results", new JSONArray(page));
+            byte[] body = new JSONObject().put("response", response).toString().getBytes(Charset.forName("UTF-8"));
+            mLastResultCount = page.size();
+            mLastBytesSent = body.length;
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        } catch (JSONException e) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the page a request without any cache gets right now.
+     */
+    private List<Article> fullFetch() {
+        ArticlePage page = QueryUtils.fetchArticlePage(mUrl, null);
+        assertNull(DeltaSync.getQueryParameter(mLastQuery, "from-date"));
+        return page.getArticles();
+    }
+
+    @Test
+    public void deltaRefreshes_produceTheFeedOfAFullFetch() {
+        // The first refresh has nothing to start from.
+        QueryUtils.fetchArticlePage(mUrl, mCache);
+        assertNull(DeltaSync.getQueryParameter(mLastQuery, "from-date"));
+
+        // None, one, several, then more new articles than a page holds.
+        for (int published : new int[]{0, 1, 3, 0, PAGE_SIZE + 1}) {
+            publishOldest(published);
+            ArticlePage delta = QueryUtils.fetchArticlePage(mUrl, mCache);
+            assertNotNull(DeltaSync.getQueryParameter(mLastQuery, "from-date"));
+            assertTrue(delta.isSuccessful());
+
+            assertEquals(fullFetch(), delta.getArticles());
+            assertEquals(fullFetch(), mCache.get(mUrl).getArticles());
+        }
+    }
+
+    @Test
+    public void steadyStateRefresh_downloadsOnlyTheNewArticles() {
+        QueryUtils.fetchArticlePage(mUrl, mCache);
+        long fullBytes = mLastBytesSent;
+
+        publishOldest(1);
+        QueryUtils.fetchArticlePage(mUrl, mCache);
+
+        // The new article and the ones of the overlap window, not the whole page.
+        assertTrue(mLastResultCount < PAGE_SIZE / 3);
+        assertTrue(mLastBytesSent * 5 < fullBytes);
+        System.out.println(String.format("full refresh %d B, delta refresh %d B (%d results)",
+                fullBytes, mLastBytesSent, mLastResultCount));
+    }
+
+    @Test
+    public void articleIndexedLate_isCaughtByTheOverlap() throws Exception {
+        QueryUtils.fetchArticlePage(mUrl, mCache);
+        long highWaterMark = DeltaSync.highWaterMark(mCache.get(mUrl).getArticles());
+
+        // Published just before the newest cached article, but only indexed now.
+        JSONObject late = new JSONObject(mRecorded.get(0).toString())
+                .put("webUrl", "https://www.theguardian.com/late")
+                .put("webPublicationDate", ArticleDateFormats.formatGuardianDate(
+                        new Date(highWaterMark - DeltaSync.OVERLAP_MILLIS / 2)));
+        synchronized (mPublished) {
+            mPublished.add(late);
+        }
+
+        List<Article> merged = QueryUtils.fetchArticlePage(mUrl, mCache).getArticles();
+        assertEquals("https://www.theguardian.com/late", merged.get(1).getUrl());
+        assertEquals(fullFetch(), merged);
+    }
+
+    @Test
+    public void listFetchedInFullLongAgo_isFetchedInFullAgain() {
+        List<Article> articles = fullFetch();
+        mCache.putMerged(mUrl, articles, System.currentTimeMillis() - DeltaSync.MAX_DELTA_AGE_MILLIS - 1);
+
+        publishOldest(1);
+        ArticlePage page = QueryUtils.fetchArticlePage(mUrl, mCache);
+        assertNull(DeltaSync.getQueryParameter(mLastQuery, "from-date"));
+        assertEquals(fullFetch(), page.getArticles());
+
+        // Delta requests again from the new full fetch on.
+        QueryUtils.fetchArticlePage(mUrl, mCache);
+        assertNotNull(DeltaSync.getQueryParameter(mLastQuery, "from-date"));
+    }
+
+    @Test
+    public void listShorterThanThePage_isFetchedInFull() {
+        List<Article> articles = fullFetch();
+        mCache.putMerged(mUrl, articles.subList(0, 5), System.currentTimeMillis());
+
+        assertEquals(articles, QueryUtils.fetchArticlePage(mUrl, mCache).getArticles());
+        assertNull(DeltaSync.getQueryParameter(mLastQuery, "from-date"));
+    }
+
+    @Test
+    public void emptyDelta_keepsTheCachedEntry() throws InterruptedException {
+        QueryUtils.fetchArticlePage(mUrl, mCache);
+        ArticleCache.Entry entry = mCache.get(mUrl);
+
+        Thread.sleep(5);
+        mServeNoResults = true;
+        ArticlePage page = QueryUtils.fetchArticlePage(mUrl, mCache);
+        assertNotNull(DeltaSync.getQueryParameter(mLastQuery, "from-date"));
+
+        assertEquals(entry.getArticles(), page.getArticles());
+        assertEquals(entry.getSavedAt(), mCache.get(mUrl).getSavedAt());
+    }
+
+    @Test
+    public void deltaUrl_onlyForTheFirstPageOfADatedList() {
+        List<Article> cached = Arrays.asList(
+                new Article("Title", "Politics", "politics", 1000000000000L, "Author", "https://a", null));
+
+        String deltaUrl = DeltaSync.buildDeltaUrl(mUrl, cached);
+        assertEquals(ArticleDateFormats.formatGuardianDate(
+                new Date(1000000000000L - DeltaSync.OVERLAP_MILLIS)),
+                DeltaSync.getQueryParameter(deltaUrl, "from-date"));
+        assertEquals("published", DeltaSync.getQueryParameter(deltaUrl, "use-date"));
+
+        assertNull(DeltaSync.buildDeltaUrl(mUrl.replace("page=1", "page=2"), cached));
+        assertNull(DeltaSync.buildDeltaUrl(deltaUrl, cached));
+        assertNull(DeltaSync.buildDeltaUrl(mUrl, Arrays.asList(
+                new Article("Title", "Politics", "politics", Article.NO_DATE, "Author", "https://a", null))));
+    }
+
+    @Test
+    public void merge_keepsThePageSizeOfTheAppUrls() {
+        String url = ArticleQuery.buildRequestUrl("50", 1, null);
+        assertEquals("50", DeltaSync.getQueryParameter(url, "page-size"));
+
+        List<Article> cached = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            cached.add(new Article("Cached " + i, "Politics", "politics", 1000L - i, "Author", "https://cached/" + i, null));
+        }
+        List<Article> newer = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            newer.add(new Article("Newer " + i, "Politics", "politics", 2000L - i, "Author", "https://newer/" + i, null));
+        }
+        assertEquals(45, DeltaSync.merge(url, newer, cached).size());
+    }
+
+    @Test
+    public void merge_replacesTheCachedArticlesAndKeepsThePageSize() {
+        Article older = new Article("Older", "Politics", "politics", 1000L, "Author", "https://older", null);
+        Article cached = new Article("Title", "Politics", "politics", 2000L, "Author", "https://a", null);
+        Article updated = new Article("Updated title", "Politics", "politics", 2000L, "Author", "https://a", null);
+        Article newer = new Article("Newer", "Politics", "politics", 3000L, "Author", "https://newer", null);
+
+        assertEquals(Arrays.asList(newer, updated),
+                DeltaSync.merge("http://host/search?page-size=2", Arrays.asList(newer, updated),
+                        Arrays.asList(cached, older)));
+        assertEquals(Arrays.asList(newer, cached, older),
+                DeltaSync.merge("http://host/search", Collections.singletonList(newer),
+                        Arrays.asList(cached, older, older)));
+    }
+}
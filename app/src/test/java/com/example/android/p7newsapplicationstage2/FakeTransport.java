@@ -0,0 +1,145 @@
+package com.example.android.p7newsapplicationstage2;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory {@link HttpTransport} for the unit tests: answers every URL containing a
+ * registered key with a canned body, after an optional delay.
+ */
+class FakeTransport implements HttpTransport {
+
+    private static class Route {
+        final int mStatusCode;
+        final byte[] mBody;
+        final long mDelayMillis;
+        final Map<String, String> mHeaders;
+
+        Route(int statusCode, byte[] body, long delayMillis, Map<String, String> headers) {
+            mStatusCode = statusCode;
+            mBody = body;
+            mDelayMillis = delayMillis;
+            mHeaders = headers;
+        }
+    }
+
+    private final Map<String, Route> mRoutes = new ConcurrentHashMap<>();
+    private final Map<String, Route> mFailures = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> mFailuresLeft = new ConcurrentHashMap<>();
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private volatile Map<String, String> mLastRequestHeaders;
+
+    FakeTransport route(String key, String body) {
+        return route(key, 200, body, 0);
+    }
+
+    FakeTransport route(String key, int statusCode, String body, long delayMillis) {
+        return route(key, statusCode, body, delayMillis, new HashMap<String, String>());
+    }
+
+    FakeTransport route(String key, int statusCode, String body, long delayMillis, Map<String, String> headers) {
+        mRoutes.put(key, new Route(statusCode, body.getBytes(Charset.forName("UTF-8")), delayMillis, headers));
+        return this;
+    }
+
+    /**
+     * Answer the next count requests to URLs containing the key with the given status and
+     * headers, before the registered route.
+     */
+    FakeTransport failFirst(String key, int count, int statusCode, Map<String, String> headers) {
+        mFailures.put(key, new Route(statusCode, new byte[0], 0, headers));
+        mFailuresLeft.put(key, new AtomicInteger(count));
+        return this;
+    }
+
+    /**
+     * Make every request a single attempt through a circuit which never opens, so the failures
+     * of a test neither slow it down nor leak into the following tests.
+     */
+    static void disableRetries() {
+        QueryUtils.setResilience(new RetryPolicy(1, 0, 0, new Random()),
+                new CircuitBreaker(Integer.MAX_VALUE, 0, 0, FeedSync.SYSTEM_CLOCK));
+    }
+
+    int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    Map<String, String> getLastRequestHeaders() {
+        return mLastRequestHeaders;
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        mRequestCount.incrementAndGet();
+        mLastRequestHeaders = headers;
+        for (Map.Entry<String, Route> entry : mFailures.entrySet()) {
+            if (url.contains(entry.getKey()) && mFailuresLeft.get(entry.getKey()).getAndDecrement() > 0) {
+                return response(entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Route> entry : mRoutes.entrySet()) {
+            if (url.contains(entry.getKey())) {
+                final Route route = entry.getValue();
+                if (route.mDelayMillis > 0) {
+                    try {
+                        Thread.sleep(route.mDelayMillis);
+                    } catch (InterruptedException e) {
+                        throw new IOException("interrupted", e);
+                    }
+                }
+                return response(route);
+            }
+        }
+        throw new IOException("No route for " + url);
+    }
+
+    private static Response response(final Route route) {
+        return new Response(route.mStatusCode) {
+            private final InputStream mBody = new ByteArrayInputStream(route.mBody);
+
+            @Override
+            public String getHeader(String name) {
+                return route.mHeaders.get(name);
+            }
+
+            @Override
+            public InputStream getBody() {
+                return mBody;
+            }
+
+            @Override
+            public long getBytesTransferred() {
+                return route.mBody.length;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Returns a Guardian search response with one result per (url, date) pair.
+     */
+    static String searchResponse(String... urlsAndDates) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"currentPage\":1,\"pages\":1,\"results\":[");
+        for (int i = 0; i < urlsAndDates.length; i += 2) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"webTitle\":\"Title ").append(urlsAndDates[i]).append("\",\"sectionName\":\"S\",")
+                    .append("\"webUrl\":\"").append(urlsAndDates[i]).append("\",")
+                    .append("\"webPublicationDate\":\"").append(urlsAndDates[i + 1]).append("\",")
+                    .append("\"tags\":[{\"webTitle\":\"Author\"}]}");
+        }
+        return json.append("]}}").toString();
+    }
+}
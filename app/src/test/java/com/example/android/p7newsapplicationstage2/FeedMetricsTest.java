@@ -0,0 +1,73 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks what a load records in the {@link FeedMetrics}, against an in-memory API stand-in.
+ */
+public class FeedMetricsTest {
+
+    private static final String URL = "https://content.guardianapis.com/search?q=metrics";
+
+    private FakeTransport mTransport;
+
+    @Before
+    public void setUp() {
+        FeedMetrics.reset();
+        mTransport = new FakeTransport();
+        QueryUtils.setTransport(mTransport);
+        FakeTransport.disableRetries();
+    }
+
+    @After
+    public void tearDown() {
+        FeedMetrics.setEnabled(false);
+        FeedMetrics.reset();
+        QueryUtils.setTransport(new UrlConnectionTransport());
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        FeedMetrics.setEnabled(false);
+        mTransport.route(URL, FakeTransport.searchResponse("https://a", "2018-05-29T14:40:47Z"));
+
+        QueryUtils.fetchArticlePage(URL, null);
+
+        assertEquals(0, FeedMetrics.startTimer());
+        assertEquals(0, FeedMetrics.getStatusClassCount(2));
+        assertEquals(0, FeedMetrics.getItemsParsed());
+        assertEquals(0, FeedMetrics.getStage(FeedMetrics.STAGE_DOWNLOAD_PARSE).getCount());
+    }
+
+    @Test
+    public void enabled_recordsStatusItemsBytesAndParseTime() {
+        FeedMetrics.setEnabled(true);
+        mTransport.route(URL, FakeTransport.searchResponse(
+                "https://a", "2018-05-29T14:40:47Z", "https://b", "2018-05-29T15:40:47Z"));
+
+        QueryUtils.fetchArticlePage(URL, null);
+
+        assertEquals(1, FeedMetrics.getStatusClassCount(2));
+        assertEquals(2, FeedMetrics.getItemsParsed());
+        assertTrue(FeedMetrics.getBytesRead() > 0);
+        assertEquals(1, FeedMetrics.getStage(FeedMetrics.STAGE_DOWNLOAD_PARSE).getCount());
+        assertTrue(FeedMetrics.dump().contains("2xx=1"));
+    }
+
+    @Test
+    public void cacheLookups_areCounted() {
+        FeedMetrics.setEnabled(true);
+
+        FeedMetrics.recordCacheLookup(true);
+        FeedMetrics.recordCacheLookup(false);
+        FeedMetrics.recordCacheLookup(false);
+
+        assertEquals(1, FeedMetrics.getCacheHits());
+        assertEquals(2, FeedMetrics.getCacheMisses());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the {@link FeedRequests} coalescing against an in-memory API stand-in with slow
+ * responses, so the callers overlap.
+ */
+public class FeedRequestsTest {
+
+    private static final String URL = "http://x/search?section=politics";
+    private static final long RESPONSE_DELAY_MILLIS = 300;
+
+    private ExecutorService mExecutor;
+    private FakeTransport mTransport;
+    private FeedRequests mRequests;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(4);
+        mTransport = new FakeTransport();
+        mTransport.route("section=politics", 200,
+                FakeTransport.searchResponse("p1", "2018-05-29T10:00:00Z", "p2", "2018-05-28T10:00:00Z"),
+                RESPONSE_DELAY_MILLIS);
+        QueryUtils.setTransport(mTransport);
+        FakeTransport.disableRetries();
+        mRequests = new FeedRequests();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        QueryUtils.setTransport(new UrlConnectionTransport());
+    }
+
+    private Future<ArticlePage> fetchAsync(final ArticleCache cache, final FeedRequests.Ticket ticket) {
+        return mExecutor.submit(new Callable<ArticlePage>() {
+            @Override
+            public ArticlePage call() {
+                return mRequests.fetch(URL, cache, ticket);
+            }
+        });
+    }
+
+    @Test
+    public void concurrentIdenticalRequests_shareOneNetworkCall() throws Exception {
+        List<Future<ArticlePage>> pages = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            pages.add(fetchAsync(null, new FeedRequests.Ticket()));
+        }
+
+        List<Article> first = pages.get(0).get(5, TimeUnit.SECONDS).getArticles();
+        for (Future<ArticlePage> page : pages) {
+            List<Article> articles = page.get(5, TimeUnit.SECONDS).getArticles();
+            assertEquals(2, articles.size());
+            assertEquals(first, articles);
+        }
+        assertEquals(1, mTransport.getRequestCount());
+        assertEquals(0, mRequests.inFlightCount());
+    }
+
+    @Test
+    public void subscribersGetTheirOwnList() {
+        ArticlePage page = mRequests.fetch(URL, null);
+        page.getArticles().clear();
+
+        assertEquals(2, mRequests.fetch(URL, null).getArticles().size());
+    }
+
+    @Test
+    public void canceledSubscriber_returnsAtOnce_andTheOthersStillGetTheResult() throws Exception {
+        Future<ArticlePage> owner = fetchAsync(null, new FeedRequests.Ticket());
+        Thread.sleep(RESPONSE_DELAY_MILLIS / 3);
+        FeedRequests.Ticket ticket = new FeedRequests.Ticket();
+        Future<ArticlePage> subscriber = fetchAsync(null, ticket);
+        Thread.sleep(RESPONSE_DELAY_MILLIS / 3);
+
+        long canceledAt = System.nanoTime();
+        ticket.cancel();
+        assertTrue(subscriber.get(5, TimeUnit.SECONDS).getArticles().isEmpty());
+        assertTrue(System.nanoTime() - canceledAt < TimeUnit.MILLISECONDS.toNanos(RESPONSE_DELAY_MILLIS / 2));
+
+        assertEquals(2, owner.get(5, TimeUnit.SECONDS).getArticles().size());
+        assertEquals(1, mTransport.getRequestCount());
+    }
+
+    @Test
+    public void abandonedRequest_isNotCached_andTheNextCallerStartsANewOne() throws Exception {
+        File directory = Files.createTempDirectory("feed-requests").toFile();
+        ArticleCache cache = new ArticleCache(directory, 1024 * 1024, 60000);
+        FeedRequests.Ticket ticket = new FeedRequests.Ticket();
+        Future<ArticlePage> superseded = fetchAsync(cache, ticket);
+        Thread.sleep(RESPONSE_DELAY_MILLIS / 3);
+
+        ticket.cancel();
+        assertEquals(0, mRequests.inFlightCount());
+        ArticlePage fresh = mRequests.fetch(URL, cache, new FeedRequests.Ticket());
+
+        assertTrue(superseded.get(5, TimeUnit.SECONDS).getArticles().isEmpty());
+        assertEquals(2, fresh.getArticles().size());
+        assertEquals(2, mTransport.getRequestCount());
+        assertEquals(2, cache.get(URL).getArticles().size());
+    }
+
+    @Test
+    public void canceledCall_abortsItsResponse() throws IOException {
+        final boolean[] aborted = new boolean[1];
+        FeedCall call = new FeedCall();
+        call.cancel();
+        call.setResponse(new HttpTransport.Response(200) {
+            @Override
+            public String getHeader(String name) {
+                return null;
+            }
+
+            @Override
+            public InputStream getBody() {
+                return null;
+            }
+
+            @Override
+            public long getBytesTransferred() {
+                return 0;
+            }
+
+            @Override
+            public void abort() {
+                aborted[0] = true;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        assertTrue(aborted[0]);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the {@link FeedSync} schedule with a fake clock against an in-memory API stand-in.
+ */
+public class FeedSyncTest {
+
+    private static final String URL = "http://x/search?page-size=10&page=1";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final FakeClock mClock = new FakeClock();
+    private FakeTransport mTransport;
+    private ArticleCache mCache;
+    private List<String> mUrls;
+
+    private static class FakeClock implements FeedSync.Clock {
+        long mNow = 1000000;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mTransport = new FakeTransport();
+        QueryUtils.setTransport(mTransport);
+        FakeTransport.disableRetries();
+        mCache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, 60 * 1000);
+        mUrls = Collections.singletonList(URL);
+    }
+
+    @After
+    public void tearDown() {
+        QueryUtils.setTransport(new UrlConnectionTransport());
+    }
+
+    @Test
+    public void successfulSync_writesTheStoreAndWaitsForTheInterval() {
+        mTransport.route("search", FakeTransport.searchResponse("a", "2018-05-29T10:00:00Z"));
+        FeedSync sync = new FeedSync(mCache, mClock);
+
+        assertTrue(sync.runIfDue(mUrls));
+        assertEquals(1, mCache.get(URL).getArticles().size());
+        assertEquals(mClock.mNow + FeedSync.MIN_SYNC_SPACING_MILLIS, sync.getNextAttemptAt());
+        // The next periodic run is never skipped, even early in its window.
+        assertTrue(FeedSync.MIN_SYNC_SPACING_MILLIS <= FeedSync.SYNC_INTERVAL_MILLIS - FeedSync.SYNC_FLEX_MILLIS);
+
+        mClock.mNow += FeedSync.MIN_SYNC_SPACING_MILLIS - 1;
+        assertFalse(sync.runIfDue(mUrls));
+        assertEquals(1, mTransport.getRequestCount());
+
+        mClock.mNow += 1;
+        assertTrue(sync.runIfDue(mUrls));
+        assertEquals(2, mTransport.getRequestCount());
+    }
+
+    @Test
+    public void failures_backOffExponentially() {
+        mTransport.route("search", 503, "", 0);
+        FeedSync sync = new FeedSync(mCache, mClock);
+
+        long expectedBackoff = FeedSync.INITIAL_BACKOFF_MILLIS;
+        for (int failure = 1; failure <= 4; failure++) {
+            assertFalse(sync.runIfDue(mUrls));
+            assertEquals(failure, sync.getFailureCount());
+            long expectedDelay = FeedSync.MIN_SYNC_SPACING_MILLIS + expectedBackoff;
+            assertEquals(mClock.mNow + expectedDelay, sync.getNextAttemptAt());
+
+            // Nothing is sent while backing off
+            mClock.mNow += expectedDelay - 1;
+            sync.runIfDue(mUrls);
+            assertEquals(failure, mTransport.getRequestCount());
+
+            mClock.mNow += 1;
+            expectedBackoff *= 2;
+        }
+
+        // The API is back: the failure count resets and the normal interval applies again
+        mTransport.route("search", FakeTransport.searchResponse("a", "2018-05-29T10:00:00Z"));
+        assertTrue(sync.runIfDue(mUrls));
+        assertEquals(0, sync.getFailureCount());
+        assertEquals(mClock.mNow, sync.getLastSuccessAt());
+        assertNotNull(mCache.get(URL));
+    }
+
+    @Test
+    public void firstFailure_skipsTheNextRunOfTheJob() {
+        mTransport.route("search", 503, "", 0);
+        FeedSync sync = new FeedSync(mCache, mClock);
+        assertFalse(sync.runIfDue(mUrls));
+
+        // The next run comes late in its period, the one after early in its window.
+        mClock.mNow += FeedSync.SYNC_INTERVAL_MILLIS + FeedSync.SYNC_FLEX_MILLIS;
+        sync.runIfDue(mUrls);
+        assertEquals(1, mTransport.getRequestCount());
+
+        mClock.mNow += FeedSync.SYNC_INTERVAL_MILLIS - 2 * FeedSync.SYNC_FLEX_MILLIS;
+        sync.runIfDue(mUrls);
+        assertEquals(2, mTransport.getRequestCount());
+    }
+
+    @Test
+    public void backoffIsCapped() {
+        assertEquals(FeedSync.INITIAL_BACKOFF_MILLIS, FeedSync.backoffMillis(1));
+        assertEquals(FeedSync.INITIAL_BACKOFF_MILLIS * 2, FeedSync.backoffMillis(2));
+        assertEquals(FeedSync.MAX_BACKOFF_MILLIS, FeedSync.backoffMillis(50));
+    }
+
+    @Test
+    public void restoredSchedule_isHonoured() {
+        FeedSync sync = new FeedSync(mCache, mClock);
+        sync.restore(3, mClock.mNow + 5000, 0);
+        assertFalse(sync.isDue());
+        mClock.mNow += 5000;
+        assertTrue(sync.isDue());
+    }
+
+    @Test
+    public void canceledSync_abortsTheRequestAndKeepsTheSchedule() {
+        final FeedSync sync = new FeedSync(mCache, mClock);
+        sync.restore(2, 0, 0);
+        QueryUtils.setTransport(new HttpTransport() {
+            @Override
+            public Response get(String url, Map<String, String> headers) throws IOException {
+                // The job is stopped while the request is on its way.
+                sync.cancel();
+                throw new IOException("Aborted");
+            }
+        });
+
+        assertFalse(sync.runIfDue(mUrls));
+        assertEquals(2, sync.getFailureCount());
+        assertEquals(0, sync.getNextAttemptAt());
+        assertTrue(sync.isDue());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.p7newsapplicationstage2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class FetchPolicyTest {
+
+    /** Results of the local server, a second of transfer once throttled */
+    private static final int PAGE_SIZE = 10;
+
+    private FetchPolicy mPolicy;
+    private HttpServer mServer;
+
+    /** Throttling of the local server: delay before the headers and body bytes per second */
+    private volatile long mHeadersDelayMillis;
+    private volatile int mBytesPerSecond;
+
+    @Before
+    public void setUp() {
+        mPolicy = FetchPolicy.getInstance();
+        mPolicy.reset();
+        FakeTransport.disableRetries();
+    }
+
+    @After
+    public void tearDown() {
+        mPolicy.reset();
+        if (mServer != null) {
+            mServer.stop(0);
+        }
+    }
+
+    @Test
+    public void withoutMeasurements_keepsTheDefaults() {
+        assertEquals(ArticlePager.FIRST_PAGE_SIZE, mPolicy.getFirstPageSize(50));
+        assertEquals(5, mPolicy.getFirstPageSize(5));
+        assertEquals(50, mPolicy.getPageSize(50));
+        assertEquals(FetchPolicy.MIN_PREFETCH_DISTANCE, mPolicy.getPrefetchDistance(50));
+        assertEquals(FetchPolicy.DEFAULT_CONNECT_TIMEOUT_MILLIS, mPolicy.getConnectTimeoutMillis());
+        assertEquals(FetchPolicy.DEFAULT_READ_TIMEOUT_MILLIS, mPolicy.getReadTimeoutMillis());
+    }
+
+    @Test
+    public void fastNetwork_getsThePageSizeOfTheSettings() {
+        // 30 ms round trip, 20 KB of 20 articles in 10 ms
+        mPolicy.recordFetch(30, 10, 20000, 20);
+        assertEquals(50, mPolicy.getFirstPageSize(50));
+        assertEquals(25, mPolicy.getFirstPageSize(25));
+        assertEquals(50, mPolicy.getPageSize(50));
+        assertEquals(FetchPolicy.MIN_PREFETCH_DISTANCE, mPolicy.getPrefetchDistance(50));
+    }
+
+    @Test
+    public void slowNetwork_shrinksThePagesAndStretchesTheTimeouts() {
+        // 2G: 600 ms round trip, 10 KB of 10 articles in 2 s
+        mPolicy.recordFetch(600, 2000, 10000, 10);
+        assertEquals(5, mPolicy.getFirstPageSize(50));
+        // 600 ms + 15 * 200 ms fits in the page target
+        assertEquals(15, mPolicy.getPageSize(50));
+        assertTrue(mPolicy.getPrefetchDistance(15) > FetchPolicy.MIN_PREFETCH_DISTANCE);
+        assertTrue(mPolicy.getReadTimeoutMillis() > FetchPolicy.DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void smallBodies_onlyMeasureTheRoundTrip() {
+        mPolicy.recordFetch(200, 1, FetchPolicy.MIN_THROUGHPUT_BYTES - 1, 1);
+        assertEquals(ArticlePager.FIRST_PAGE_SIZE, mPolicy.getFirstPageSize(50));
+        assertTrue(mPolicy.getConnectTimeoutMillis() < FetchPolicy.DEFAULT_CONNECT_TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void throttledServer_shrinksTheFirstPage() throws IOException {
+        String url = startServer();
+        mHeadersDelayMillis = 300;
+        mBytesPerSecond = 10 * 1024;
+        QueryUtils.setTransport(new UrlConnectionTransport());
+
+        assertEquals(PAGE_SIZE, QueryUtils.fetchArticlePage(url, null).getArticles().size());
+
+        int firstPageSize = mPolicy.getFirstPageSize(50);
+        assertTrue("first page of " + firstPageSize + " with " + mPolicy, firstPageSize < ArticlePager.FIRST_PAGE_SIZE);
+    }
+
+    @Test
+    public void unthrottledServer_keepsTheFullPage() throws IOException {
+        String url = startServer();
+        QueryUtils.setTransport(new UrlConnectionTransport());
+
+        assertEquals(PAGE_SIZE, QueryUtils.fetchArticlePage(url, null).getArticles().size());
+
+        assertEquals(mPolicy.toString(), 50, mPolicy.getFirstPageSize(50));
+    }
+
+    /**
+     * Start a local server answering the recorded response, throttled as set by the test.
+     */
+    private String startServer() throws IOException {
+        final byte[] payload = GuardianPayloads.withResults(PAGE_SIZE);
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(mHeadersDelayMillis);
+                    exchange.sendResponseHeaders(200, payload.length);
+                    OutputStream body = exchange.getResponseBody();
+                    int chunk = mBytesPerSecond == 0 ? payload.length : mBytesPerSecond / 10;
+                    for (int offset = 0; offset < payload.length; offset += chunk) {
+                        body.write(payload, offset, Math.min(chunk, payload.length - offset));
+                        body.flush();
+                        if (mBytesPerSecond != 0) {
+                            Thread.sleep(100);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.start();
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/search?page-size=" + PAGE_SIZE;
+    }
+}
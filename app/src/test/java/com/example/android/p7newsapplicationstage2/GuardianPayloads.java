@@ -0,0 +1,63 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Guardian search responses of any size, built from the recorded 50 results response.
+ *
+ * Smaller responses keep the first results. Larger ones repeat the recorded results with a
+ * distinct webUrl, as if several pages had been merged into one.
+ */
+final class GuardianPayloads {
+
+    private GuardianPayloads() {
+    }
+
+    /**
+     * Returns the UTF-8 body of a search response with the given number of results.
+     */
+    static byte[] withResults(int count) throws IOException {
+        try {
+            JSONObject root = new JSONObject(ArticleStreamParserTest.readResource("guardian_search_50.json"));
+            JSONObject response = root.getJSONObject("response");
+            JSONArray recorded = response.getJSONArray("results");
+            JSONArray results = new JSONArray();
+            for (int i = 0; i < count; i++) {
+                JSONObject result = new JSONObject(recorded.getJSONObject(i % recorded.length()).toString());
+                if (i >= recorded.length()) {
+                    result.put("webUrl", result.getString("webUrl") + "?copy=" + i);
+                }
+                results.put(result);
+            }
+            response.put("results", results);
+            response.put("pageSize", count);
+            return root.toString().getBytes(Charset.forName("UTF-8"));
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns the raw "webPublicationDate" of every result of the response.
+     */
+    static List<String> publicationDates(byte[] payload) throws IOException {
+        try {
+            JSONArray results = new JSONObject(new String(payload, Charset.forName("UTF-8")))
+                    .getJSONObject("response").getJSONArray("results");
+            List<String> dates = new ArrayList<>();
+            for (int i = 0; i < results.length(); i++) {
+                dates.add(results.getJSONObject(i).getString("webPublicationDate"));
+            }
+            return dates;
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketOf_isTheNumberOfBits() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(1, LatencyHistogram.bucketOf(1));
+        assertEquals(2, LatencyHistogram.bucketOf(3));
+        assertEquals(11, LatencyHistogram.bucketOf(1024));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles_areBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100000);
+        }
+        histogram.record(50000000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(128, histogram.getPercentileMicros(0.50));
+        assertEquals(128, histogram.getPercentileMicros(0.99));
+        assertEquals(50000, histogram.getPercentileMicros(1.0));
+        assertEquals(50000, histogram.getMaxMicros());
+        assertEquals((99 * 100 + 50000) / 100, histogram.getMeanMicros());
+    }
+
+    @Test
+    public void concurrentRecords_areAllCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            final long nanos = (t + 1) * 1000;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(nanos);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        assertEquals(40000, histogram.getCount());
+        assertEquals(4, histogram.getMaxMicros());
+    }
+}
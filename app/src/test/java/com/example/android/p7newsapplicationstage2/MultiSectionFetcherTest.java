@@ -0,0 +1,181 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MultiSectionFetcherTest {
+
+    private static final List<String> SECTIONS = Arrays.asList(
+            "http://x/search?section=politics", "http://x/search?section=media");
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private ExecutorService mExecutor;
+    private FakeTransport mTransport;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(4);
+        mTransport = new FakeTransport();
+        QueryUtils.setTransport(mTransport);
+        FakeTransport.disableRetries();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        QueryUtils.setTransport(new UrlConnectionTransport());
+    }
+
+    @Test
+    public void sectionsAreMergedNewestFirstWithoutDuplicates() {
+        mTransport.route("section=politics", FakeTransport.searchResponse(
+                "p1", "2018-05-29T10:00:00Z", "shared", "2018-05-28T10:00:00Z"));
+        mTransport.route("section=sport", FakeTransport.searchResponse(
+                "s1", "2018-05-29T12:00:00Z", "shared", "2018-05-28T10:00:00Z", "s2", "2018-05-27T10:00:00Z"));
+
+        List<Article> feed = new MultiSectionFetcher(mExecutor, null, 5000)
+                .fetch(Arrays.asList("http://x/search?section=politics", "http://x/search?section=sport"));
+
+        assertEquals(4, feed.size());
+        assertEquals("s1", feed.get(0).getUrl());
+        assertEquals("p1", feed.get(1).getUrl());
+        assertEquals("shared", feed.get(2).getUrl());
+        assertEquals("s2", feed.get(3).getUrl());
+    }
+
+    @Test
+    public void failedSectionDoesNotDropTheOthers() {
+        mTransport.route("section=politics", FakeTransport.searchResponse("p1", "2018-05-29T10:00:00Z"));
+        mTransport.route("section=media", 500, "", 0);
+
+        List<Article> feed = new MultiSectionFetcher(mExecutor, null, 5000).fetch(Arrays.asList(
+                "http://x/search?section=politics", "http://x/search?section=media", "http://x/search?section=none"));
+
+        assertEquals(1, feed.size());
+        assertEquals("p1", feed.get(0).getUrl());
+    }
+
+    @Test
+    public void latencyIsCloseToTheSlowestSection() {
+        mTransport.route("section=politics", 200, FakeTransport.searchResponse("p1", "2018-05-29T10:00:00Z"), 300);
+        mTransport.route("section=media", 200, FakeTransport.searchResponse("m1", "2018-05-29T11:00:00Z"), 300);
+        mTransport.route("section=sport", 200, FakeTransport.searchResponse("s1", "2018-05-29T12:00:00Z"), 300);
+
+        long start = System.nanoTime();
+        List<Article> feed = new MultiSectionFetcher(mExecutor, null, 5000).fetch(Arrays.asList(
+                "http://x/search?section=politics", "http://x/search?section=media", "http://x/search?section=sport"));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(3, feed.size());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 800);
+    }
+
+    @Test
+    public void slowSectionIsDroppedAtTheDeadline() {
+        mTransport.route("section=politics", FakeTransport.searchResponse("p1", "2018-05-29T10:00:00Z"));
+        mTransport.route("section=sport", 200, FakeTransport.searchResponse("s1", "2018-05-29T12:00:00Z"), 2000);
+
+        long start = System.nanoTime();
+        List<Article> feed = new MultiSectionFetcher(mExecutor, null, 300).fetch(Arrays.asList(
+                "http://x/search?section=politics", "http://x/search?section=sport"));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(1, feed.size());
+        assertEquals("p1", feed.get(0).getUrl());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1500);
+    }
+
+    @Test
+    public void canceledFetchReturnsWithoutWaitingForTheSections() throws Exception {
+        mTransport.route("section=politics", FakeTransport.searchResponse("p1", "2018-05-29T10:00:00Z"));
+        mTransport.route("section=sport", 200, FakeTransport.searchResponse("s1", "2018-05-29T12:00:00Z"), 2000);
+        final MultiSectionFetcher fetcher = new MultiSectionFetcher(mExecutor, null, 5000);
+
+        long start = System.nanoTime();
+        Future<ArticlePage> page = Executors.newSingleThreadExecutor().submit(new Callable<ArticlePage>() {
+            @Override
+            public ArticlePage call() {
+                return fetcher.fetchPage(Arrays.asList("http://x/search?section=politics", "http://x/search?section=sport"));
+            }
+        });
+        Thread.sleep(200);
+        fetcher.cancel();
+        ArticlePage canceled = page.get(1, TimeUnit.SECONDS);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(ArticlePage.OUTCOME_CANCELED, canceled.getOutcome());
+        assertTrue(canceled.getArticles().isEmpty());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1500);
+    }
+
+    @Test
+    public void fetchCanceledBeforehand_startsNoRequest() {
+        mTransport.route("section=politics", FakeTransport.searchResponse("p1", "2018-05-29T10:00:00Z"));
+        MultiSectionFetcher fetcher = new MultiSectionFetcher(mExecutor, null, 5000);
+        fetcher.cancel();
+
+        ArticlePage page = fetcher.fetchPage(Arrays.asList("http://x/search?section=politics"));
+
+        assertEquals(ArticlePage.OUTCOME_CANCELED, page.getOutcome());
+        assertEquals(0, mTransport.getRequestCount());
+    }
+
+    @Test
+    public void sectionFallingBack_doesNotMakeTheLivePageAFallback() {
+        mTransport.route("section=politics", FakeTransport.searchResponse("p1", "2018-05-29T10:00:00Z"));
+        mTransport.route("section=media", FakeTransport.searchResponse("m1", "2018-05-29T11:00:00Z"));
+        MultiSectionFetcher fetcher = new MultiSectionFetcher(mExecutor, new ArticleCache(mFolder.getRoot(), 1024 * 1024, 0), 5000);
+        assertTrue(fetcher.fetchPage(SECTIONS).isSuccessful());
+        mTransport.failFirst("section=media", 100, 503, Collections.<String, String>emptyMap());
+
+        ArticlePage page = fetcher.fetchPage(SECTIONS);
+
+        assertTrue(page.isSuccessful());
+        assertFalse(page.isFallback());
+        assertEquals(2, page.getArticles().size());
+    }
+
+    @Test
+    public void everySectionFallingBack_makesAFallbackPage() {
+        mTransport.route("section=politics", FakeTransport.searchResponse("p1", "2018-05-29T10:00:00Z"));
+        mTransport.route("section=media", FakeTransport.searchResponse("m1", "2018-05-29T11:00:00Z"));
+        MultiSectionFetcher fetcher = new MultiSectionFetcher(mExecutor, new ArticleCache(mFolder.getRoot(), 1024 * 1024, 0), 5000);
+        assertTrue(fetcher.fetchPage(SECTIONS).isSuccessful());
+        mTransport.failFirst("section=politics", 100, 503, Collections.<String, String>emptyMap());
+        mTransport.failFirst("section=media", 100, 503, Collections.<String, String>emptyMap());
+
+        ArticlePage page = fetcher.fetchPage(SECTIONS);
+
+        assertFalse(page.isSuccessful());
+        assertTrue(page.isFallback());
+        assertEquals(2, page.getArticles().size());
+    }
+
+    @Test
+    public void articlesWithoutADateAreMergedLast() {
+        Article undated = new Article("Undated", "S", null, Article.NO_DATE, "Author", "u1");
+        Article dated = new Article("Dated", "S", null, 1000, "Author", "d1");
+
+        List<Article> merged = MultiSectionFetcher.merge(Arrays.asList(
+                Collections.singletonList(undated), Collections.singletonList(dated)));
+
+        assertEquals("d1", merged.get(0).getUrl());
+        assertEquals("u1", merged.get(1).getUrl());
+    }
+}
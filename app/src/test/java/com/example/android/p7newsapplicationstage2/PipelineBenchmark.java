@@ -0,0 +1,119 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks every step of the fetch, parse and bind pipeline on responses of 10, 50 and
+ * 500 results, and fails when a step regressed against the stored baseline.
+ *
+ * Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*PipelineBenchmark'
+ * Record a new baseline with: ./gradlew testDebugUnitTest -Pbenchmark -PupdateBaseline --tests '*PipelineBenchmark'
+ */
+public class PipelineBenchmark {
+
+    private static final int[] RESULT_COUNTS = {10, 50, 500};
+    private static final int WARMUP_OPS = 300;
+    private static final int SAMPLES = 200;
+
+    /** Every sample handles about this many results, whatever the response size */
+    private static final int RESULTS_PER_SAMPLE = 500;
+
+    private BenchmarkRunner mRunner;
+
+    /** Keeps the JIT from dropping the results */
+    private int mSink;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        mRunner = BenchmarkRunner.withStoredBaseline();
+    }
+
+    @Test
+    public void pipeline() throws IOException {
+        for (int count : RESULT_COUNTS) {
+            final byte[] payload = GuardianPayloads.withResults(count);
+            final String json = new String(payload, Charset.forName("UTF-8"));
+            final List<Article> articles = ArticleStreamParser.parse(new ByteArrayInputStream(payload));
+            final List<String> dates = GuardianPayloads.publicationDates(payload);
+            int opsPerSample = Math.max(1, RESULTS_PER_SAMPLE / count);
+
+            run("readFromStream." + count, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mSink += QueryUtils.readFromStream(new ByteArrayInputStream(payload)).length();
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            run("extractFeatureFromJson." + count, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    mSink += QueryUtils.extractFeatureFromJson(json).size();
+                }
+            });
+            run("ArticleStreamParser.parse." + count, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    mSink += ArticleStreamParser.parse(new ByteArrayInputStream(payload)).size();
+                }
+            });
+            run("parsePublicationDate." + count, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    for (String date : dates) {
+                        mSink += (int) QueryUtils.parsePublicationDate(date).getTime();
+                    }
+                }
+            });
+            run("Article.new." + count, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    for (Article article : articles) {
+                        Date date = article.getDate();
+                        mSink += new Article(article.getArticle_title(), article.getArticle_section(),
+                                article.getSectionId(), date, article.getAuthor(), article.getUrl())
+                                .getDisplayTime().length();
+                    }
+                }
+            });
+            run("ArticleAdapter.bind." + count, opsPerSample, new Runnable() {
+                @Override
+                public void run() {
+                    // The fields onBindViewHolder hands to the TextViews
+                    for (Article article : articles) {
+                        mSink += length(article.getArticle_title()) + length(article.getArticle_section())
+                                + length(article.getDisplayDate()) + length(article.getDisplayTime())
+                                + length(article.getAuthor());
+                    }
+                }
+            });
+        }
+        mRunner.saveBaselineIfRequested();
+        assertTrue("Regressions against " + BenchmarkRunner.BASELINE_RESOURCE + ": " + mRunner.getRegressions(),
+                mRunner.getRegressions().isEmpty());
+    }
+
+    /**
+     * Returns the length of a text, 0 for null, like an empty TextView
+     */
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+
+    private void run(String name, int opsPerSample, Runnable op) {
+        mRunner.run("pipeline." + name, WARMUP_OPS, SAMPLES, opsPerSample, op);
+    }
+}
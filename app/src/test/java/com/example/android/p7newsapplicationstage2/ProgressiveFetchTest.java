@@ -0,0 +1,133 @@
+package com.example.android.p7newsapplicationstage2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fetches the recorded response from a local server which sends the first part of the body,
+ * then stalls: the first articles must be handed over before the body is complete, and
+ * canceling the call must neither block the caller nor keep any list.
+ */
+public class ProgressiveFetchTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private byte[] mPayload;
+    private String mUrl;
+    private ArticleCache mCache;
+    private ExecutorService mExecutor;
+
+    /** Released by the test to let the server send the rest of the body */
+    private final CountDownLatch mSendRest = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws IOException {
+        mPayload = ArticleStreamParserTest.readResource("guardian_search_50.json").getBytes(Charset.forName("UTF-8"));
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream body = exchange.getResponseBody();
+                try {
+                    int firstPart = mPayload.length / 4;
+                    body.write(mPayload, 0, firstPart);
+                    body.flush();
+                    mSendRest.await(5, TimeUnit.SECONDS);
+                    body.write(mPayload, firstPart, mPayload.length - firstPart);
+                } catch (InterruptedException | IOException e) {
+                    // The client went away
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/search?page-size=50";
+        mCache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, 60 * 1000);
+        mExecutor = Executors.newSingleThreadExecutor();
+        QueryUtils.setTransport(new UrlConnectionTransport());
+        FakeTransport.disableRetries();
+    }
+
+    @After
+    public void tearDown() {
+        mSendRest.countDown();
+        mExecutor.shutdownNow();
+        mServer.stop(0);
+    }
+
+    private Future<ArticlePage> fetchAsync(final FeedCall call, final CountDownLatch firstArticles) {
+        return mExecutor.submit(new Callable<ArticlePage>() {
+            @Override
+            public ArticlePage call() {
+                return QueryUtils.fetchArticlePage(mUrl, mCache, call,
+                        new ArticleStreamParser.OnArticleParsedListener() {
+                            @Override
+                            public void onArticleParsed(Article article) {
+                                firstArticles.countDown();
+                            }
+                        });
+            }
+        });
+    }
+
+    @Test
+    public void firstArticles_areHandedOverBeforeTheBodyIsComplete() throws Exception {
+        CountDownLatch firstArticles = new CountDownLatch(3);
+        Future<ArticlePage> page = fetchAsync(new FeedCall(), firstArticles);
+
+        // The server still holds back three quarters of the body.
+        assertTrue(firstArticles.await(3, TimeUnit.SECONDS));
+        assertFalse(page.isDone());
+
+        mSendRest.countDown();
+        assertEquals(50, page.get(5, TimeUnit.SECONDS).getArticles().size());
+        assertEquals(50, mCache.get(mUrl).getArticles().size());
+    }
+
+    @Test
+    public void cancel_abortsTheStalledDownload() throws Exception {
+        FeedCall call = new FeedCall();
+        CountDownLatch firstArticles = new CountDownLatch(3);
+        Future<ArticlePage> page = fetchAsync(call, firstArticles);
+        assertTrue(firstArticles.await(3, TimeUnit.SECONDS));
+
+        long canceledAt = System.nanoTime();
+        call.cancel();
+        // Loaders cancel from the main thread.
+        assertTrue(System.nanoTime() - canceledAt < TimeUnit.MILLISECONDS.toNanos(500));
+
+        // The disconnect of the JDK connection waits for the stalled read to return, which it
+        // only does once the server sends again, so the server goes on. Even with the whole
+        // body received, the canceled call keeps nothing.
+        mSendRest.countDown();
+        ArticlePage canceled = page.get(5, TimeUnit.SECONDS);
+        assertEquals(ArticlePage.OUTCOME_CANCELED, canceled.getOutcome());
+        assertTrue(canceled.getArticles().isEmpty());
+        assertNull(mCache.get(mUrl));
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the retries, the circuit breaker and the cached fallback of
+ * {@link QueryUtils#fetchArticlePage(String, ArticleCache)} against failing responses.
+ */
+public class QueryUtilsRetryTest {
+
+    private static final String URL = "http://x/search?section=politics";
+    private static final long MAX_DELAY_MILLIS = 100;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private FakeTransport mTransport;
+    private CircuitBreaker mBreaker;
+
+    @Before
+    public void setUp() {
+        mTransport = new FakeTransport();
+        mTransport.route("section=politics", FakeTransport.searchResponse("p1", "2018-05-29T10:00:00Z"));
+        QueryUtils.setTransport(mTransport);
+        mBreaker = new CircuitBreaker(3, 60 * 1000, 60 * 1000, FeedSync.SYSTEM_CLOCK);
+        QueryUtils.setResilience(new RetryPolicy(3, 10, MAX_DELAY_MILLIS, new Random(1)), mBreaker);
+    }
+
+    @After
+    public void tearDown() {
+        QueryUtils.setTransport(new UrlConnectionTransport());
+        FakeTransport.disableRetries();
+    }
+
+    @Test
+    public void serverError_isRetried() {
+        mTransport.failFirst("section=politics", 2, 503, Collections.<String, String>emptyMap());
+
+        ArticlePage page = QueryUtils.fetchArticlePage(URL, null);
+
+        assertTrue(page.isSuccessful());
+        assertEquals(1, page.getArticles().size());
+        assertEquals(3, mTransport.getRequestCount());
+    }
+
+    @Test
+    public void clientError_isNotRetried() {
+        mTransport.failFirst("section=politics", 1, 404, Collections.<String, String>emptyMap());
+
+        ArticlePage page = QueryUtils.fetchArticlePage(URL, null);
+
+        assertEquals(ArticlePage.OUTCOME_HTTP_ERROR, page.getOutcome());
+        assertEquals(1, mTransport.getRequestCount());
+        assertEquals(CircuitBreaker.STATE_CLOSED, mBreaker.getState());
+    }
+
+    @Test
+    public void longRetryAfter_opensTheCircuitWithoutWaiting() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Retry-After", "120");
+        mTransport.failFirst("section=politics", 1, 429, headers);
+
+        long start = System.currentTimeMillis();
+        ArticlePage page = QueryUtils.fetchArticlePage(URL, null);
+
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(ArticlePage.OUTCOME_RATE_LIMITED, page.getOutcome());
+        assertEquals(120000, page.getRetryAfterMillis());
+        assertEquals(1, mTransport.getRequestCount());
+
+        // The next request is refused without reaching the API.
+        assertEquals(ArticlePage.OUTCOME_CIRCUIT_OPEN, QueryUtils.fetchArticlePage(URL, null).getOutcome());
+        assertEquals(1, mTransport.getRequestCount());
+    }
+
+    @Test
+    public void repeatedFailures_openTheCircuit() {
+        mTransport.failFirst("section=politics", 100, 500, Collections.<String, String>emptyMap());
+
+        assertEquals(ArticlePage.OUTCOME_SERVER_ERROR, QueryUtils.fetchArticlePage(URL, null).getOutcome());
+        assertEquals(3, mTransport.getRequestCount());
+        assertEquals(CircuitBreaker.STATE_OPEN, mBreaker.getState());
+
+        assertEquals(ArticlePage.OUTCOME_CIRCUIT_OPEN, QueryUtils.fetchArticlePage(URL, null).getOutcome());
+        assertEquals(3, mTransport.getRequestCount());
+    }
+
+    @Test
+    public void failure_fallsBackToTheCachedList() {
+        ArticleCache cache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, 0);
+        assertTrue(QueryUtils.fetchArticlePage(URL, cache).isSuccessful());
+        mTransport.failFirst("section=politics", 100, 503, Collections.<String, String>emptyMap());
+
+        ArticlePage page = QueryUtils.fetchArticlePage(URL, cache);
+
+        assertFalse(page.isSuccessful());
+        assertTrue(page.isFallback());
+        assertEquals(ArticlePage.OUTCOME_SERVER_ERROR, page.getOutcome());
+        assertEquals("p1", page.getArticles().get(0).getUrl());
+    }
+
+    @Test
+    public void canceledTrial_doesNotKeepTheCircuitHalfOpen() {
+        mBreaker.openFor(0);
+        final FeedCall call = new FeedCall();
+        QueryUtils.setTransport(new HttpTransport() {
+            @Override
+            public Response get(String url, Map<String, String> headers) throws IOException {
+                // Canceled while the trial request is on its way
+                call.cancel();
+                throw new IOException("Canceled");
+            }
+        });
+
+        assertEquals(ArticlePage.OUTCOME_CANCELED, QueryUtils.fetchArticlePage(URL, null, call).getOutcome());
+
+        QueryUtils.setTransport(mTransport);
+        assertTrue(QueryUtils.fetchArticlePage(URL, null).isSuccessful());
+        assertEquals(CircuitBreaker.STATE_CLOSED, mBreaker.getState());
+    }
+}
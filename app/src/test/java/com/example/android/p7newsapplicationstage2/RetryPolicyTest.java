@@ -0,0 +1,36 @@
+package com.example.android.p7newsapplicationstage2;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the backoff of the {@link RetryPolicy} and its parsing of the Retry-After header.
+ */
+public class RetryPolicyTest {
+
+    @Test
+    public void backoffDoublesWithinJitterUpToTheMaximum() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1000, new Random(42));
+        long[] expected = {100, 200, 400, 800, 1000, 1000};
+        for (int attempt = 1; attempt <= expected.length; attempt++) {
+            for (int i = 0; i < 50; i++) {
+                long backoff = policy.backoffMillis(attempt);
+                long max = expected[attempt - 1];
+                assertTrue("attempt " + attempt + ": " + backoff, backoff >= max / 2 && backoff <= max);
+            }
+        }
+    }
+
+    @Test
+    public void retryAfter_inSecondsOrAsADate() {
+        long now = 1527588000000L; // Tue, 29 May 2018 10:00:00 GMT
+        assertEquals(120000, RetryPolicy.parseRetryAfterMillis("120", now));
+        assertEquals(30000, RetryPolicy.parseRetryAfterMillis("Tue, 29 May 2018 10:00:30 GMT", now));
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis("Tue, 29 May 2018 09:00:00 GMT", now));
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis(null, now));
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis("soon", now));
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.android.p7newsapplicationstage2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the {@link ThumbnailPipeline} against a local image server, with a decoder returning
+ * the bytes of the image files.
+ */
+public class ThumbnailPipelineTest {
+
+    private static final int IMAGE_BYTES = 100;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private String mBaseUrl;
+    private ExecutorService mWorkers;
+    private File mDirectory;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    /** Holds the second half of the images until opened, once the first half is sent */
+    private volatile CountDownLatch mGate = new CountDownLatch(0);
+    private final CountDownLatch mFirstHalfSent = new CountDownLatch(1);
+
+    /** Returns the bytes of the image files, sized after them */
+    private static final ThumbnailPipeline.Decoder<byte[]> DECODER = new ThumbnailPipeline.Decoder<byte[]>() {
+        @Override
+        public byte[] decode(File file, int width, int height) throws IOException {
+            return FileUtils.readFileToByteArray(file);
+        }
+
+        @Override
+        public int sizeOf(byte[] image) {
+            return image.length;
+        }
+    };
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    /** Counts the images received by a target */
+    private static class Target implements ThumbnailPipeline.Callback<byte[]> {
+        final CountDownLatch mLoaded = new CountDownLatch(1);
+        volatile byte[] mImage;
+
+        @Override
+        public void onThumbnailLoaded(byte[] image) {
+            mImage = image;
+            mLoaded.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return mLoaded.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/img", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+        mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/img/";
+        mWorkers = Executors.newFixedThreadPool(2);
+        mDirectory = mFolder.newFolder("thumbnails");
+        FakeTransport.disableRetries();
+    }
+
+    @After
+    public void tearDown() {
+        mGate.countDown();
+        mWorkers.shutdownNow();
+        mServer.stop(0);
+    }
+
+    /**
+     * Answers /img/name with IMAGE_BYTES bytes, all equal to the first char of the name.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        mRequestCount.incrementAndGet();
+        String name = exchange.getRequestURI().getPath().substring("/img/".length());
+        byte[] image = new byte[IMAGE_BYTES];
+        Arrays.fill(image, (byte) name.charAt(0));
+        exchange.sendResponseHeaders(200, image.length);
+        OutputStream body = exchange.getResponseBody();
+        try {
+            body.write(image, 0, IMAGE_BYTES / 2);
+            body.flush();
+            mFirstHalfSent.countDown();
+            mGate.await(5, TimeUnit.SECONDS);
+            body.write(image, IMAGE_BYTES / 2, IMAGE_BYTES - IMAGE_BYTES / 2);
+        } catch (InterruptedException | IOException e) {
+            // The client went away
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private ThumbnailPipeline<byte[]> newPipeline(long maxMemoryBytes) {
+        return new ThumbnailPipeline<>(new LruFileCache(mDirectory, 1024 * 1024),
+                new UrlConnectionTransport(), DECODER, mWorkers, DIRECT, maxMemoryBytes);
+    }
+
+    @Test
+    public void loadedImage_isServedFromMemory() throws Exception {
+        ThumbnailPipeline<byte[]> pipeline = newPipeline(1024);
+        Target target = new Target();
+
+        assertNull(pipeline.load(target, mBaseUrl + "a", 10, 10, target));
+        assertTrue(target.await());
+        assertEquals(IMAGE_BYTES, target.mImage.length);
+        assertEquals('a', target.mImage[0]);
+
+        Target other = new Target();
+        assertSame(target.mImage, pipeline.load(other, mBaseUrl + "a", 10, 10, other));
+        assertEquals(1, pipeline.getMemoryHits());
+        assertEquals(1, mRequestCount.get());
+    }
+
+    @Test
+    public void downloadedImage_isReadFromDiskByTheNextRun() throws Exception {
+        Target target = new Target();
+        newPipeline(1024).load(target, mBaseUrl + "a", 10, 10, target);
+        assertTrue(target.await());
+
+        ThumbnailPipeline<byte[]> pipeline = newPipeline(1024);
+        Target again = new Target();
+        assertNull(pipeline.load(again, mBaseUrl + "a", 10, 10, again));
+        assertTrue(again.await());
+        assertEquals(1, pipeline.getDiskHits());
+        assertEquals(0, pipeline.getDownloads());
+        assertEquals(1, mRequestCount.get());
+    }
+
+    @Test
+    public void identicalRequests_shareOneDownload() throws Exception {
+        mGate = new CountDownLatch(1);
+        ThumbnailPipeline<byte[]> pipeline = newPipeline(1024);
+        Target first = new Target();
+        Target second = new Target();
+
+        pipeline.load(first, mBaseUrl + "a", 10, 10, first);
+        pipeline.load(second, mBaseUrl + "a", 10, 10, second);
+        assertEquals(1, pipeline.inFlightCount());
+        mGate.countDown();
+
+        assertTrue(first.await());
+        assertTrue(second.await());
+        assertEquals(1, mRequestCount.get());
+    }
+
+    @Test
+    public void canceledTarget_abortsTheDownload() throws Exception {
+        mGate = new CountDownLatch(1);
+        ThumbnailPipeline<byte[]> pipeline = newPipeline(1024);
+        Target target = new Target();
+
+        pipeline.load(target, mBaseUrl + "a", 10, 10, target);
+        assertTrue(mFirstHalfSent.await(5, TimeUnit.SECONDS));
+        long canceledAt = System.nanoTime();
+        pipeline.cancel(target);
+        // Rows are recycled on the main thread.
+        assertTrue(System.nanoTime() - canceledAt < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, pipeline.inFlightCount());
+
+        // The JDK connection may only fail the stalled read once the server sends again,
+        // the one of Android fails it right away. Either way the target is not called back.
+        mGate.countDown();
+        mWorkers.shutdown();
+        assertTrue(mWorkers.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, target.mLoaded.getCount());
+    }
+
+    @Test
+    public void reboundTarget_onlyGetsItsLastImage() throws Exception {
+        ThumbnailPipeline<byte[]> pipeline = newPipeline(1024);
+        Target target = new Target();
+        Target other = new Target();
+
+        pipeline.load(target, mBaseUrl + "a", 10, 10, other);
+        pipeline.load(target, mBaseUrl + "b", 10, 10, target);
+
+        assertTrue(target.await());
+        assertEquals('b', target.mImage[0]);
+        assertEquals(1, other.mLoaded.getCount());
+    }
+
+    @Test
+    public void memoryCache_isBoundedInBytes() throws Exception {
+        ThumbnailPipeline<byte[]> pipeline = newPipeline(IMAGE_BYTES * 5 / 2);
+        for (String name : new String[]{"a", "b", "c"}) {
+            Target target = new Target();
+            pipeline.load(target, mBaseUrl + name, 10, 10, target);
+            assertTrue(target.await());
+        }
+
+        assertEquals(2 * IMAGE_BYTES, pipeline.getMemoryBytes());
+        Target target = new Target();
+        assertNull(pipeline.load(target, mBaseUrl + "a", 10, 10, target));
+        assertNotNull(pipeline.load(target, mBaseUrl + "c", 10, 10, target));
+    }
+
+    @Test
+    public void sampleSize_keepsTheImageAtLeastAsLargeAsTheView() {
+        assertEquals(1, ArticleThumbnails.sampleSize(500, 300, 400, 240));
+        assertEquals(2, ArticleThumbnails.sampleSize(500, 300, 140, 84));
+        assertEquals(4, ArticleThumbnails.sampleSize(1000, 600, 140, 84));
+        assertEquals(1, ArticleThumbnails.sampleSize(500, 300, 0, 0));
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.android.p7newsapplicationstage2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link QueryUtils#fetchArcticlesAppData(String, ArticleCache)} against a local
+ * mock of the Guardian API serving the recorded response.
+ */
+public class UrlConnectionTransportTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Tue, 29 May 2018 14:40:47 GMT";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private byte[] mPayload;
+    private String mUrl;
+    private ArticleCache mCache;
+
+    /** Written by the server thread */
+    private volatile long mBytesSent;
+    private volatile int mLastStatus;
+    private volatile String mLastAcceptEncoding;
+    private final Set<Integer> mClientPorts = new HashSet<>();
+
+    @Before
+    public void setUp() throws IOException {
+        mPayload = ArticleStreamParserTest.readResource("guardian_search_50.json").getBytes(Charset.forName("UTF-8"));
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        mServer.createContext("/large", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                // Uncompressed, far more than a close drains
+                byte[] chunk = new byte[64 * 1024];
+                exchange.sendResponseHeaders(200, 64 * chunk.length);
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    for (int i = 0; i < 64; i++) {
+                        out.write(chunk);
+                    }
+                } catch (IOException e) {
+                    // The client went away
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/search?page-size=50";
+        mCache = new ArticleCache(mFolder.getRoot(), 1024 * 1024, 60 * 1000);
+        QueryUtils.setTransport(new UrlConnectionTransport());
+        FakeTransport.disableRetries();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        synchronized (mClientPorts) {
+            mClientPorts.add(exchange.getRemoteAddress().getPort());
+        }
+        mLastAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        exchange.getResponseHeaders().set("ETag", ETAG);
+        exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ETAG.equals(ifNoneMatch) || (ifNoneMatch == null && LAST_MODIFIED.equals(ifModifiedSince))) {
+            mLastStatus = 304;
+            mBytesSent = 0;
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = mPayload;
+        if ("gzip".equals(mLastAcceptEncoding)) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(mPayload);
+            gzip.close();
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        mLastStatus = 200;
+        mBytesSent = body.length;
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    @Test
+    public void gzipIsNegotiatedAndDecoded() throws IOException {
+        List<Article> articles = QueryUtils.fetchArcticlesAppData(mUrl, mCache);
+
+        assertEquals("gzip", mLastAcceptEncoding);
+        assertTrue(mBytesSent < mPayload.length / 3);
+        ArticleStreamParserTest.assertSameArticles(
+                QueryUtils.extractFeatureFromJson(new String(mPayload, "UTF-8")), articles);
+    }
+
+    @Test
+    public void repeatedRefresh_isA304CacheHitOnTheSameConnection() {
+        long start = System.nanoTime();
+        List<Article> first = QueryUtils.fetchArcticlesAppData(mUrl, mCache);
+        long firstNanos = System.nanoTime() - start;
+        long firstBytes = mBytesSent;
+        assertEquals(200, mLastStatus);
+
+        start = System.nanoTime();
+        List<Article> second = QueryUtils.fetchArcticlesAppData(mUrl, mCache);
+        long secondNanos = System.nanoTime() - start;
+
+        assertEquals(304, mLastStatus);
+        assertEquals(0, mBytesSent);
+        ArticleStreamParserTest.assertSameArticles(first, second);
+        assertEquals(1, mClientPorts.size());
+        System.out.println(String.format("first refresh %d B %.2f ms, second refresh %d B %.2f ms",
+                firstBytes, firstNanos / 1e6, mBytesSent, secondNanos / 1e6));
+    }
+
+    @Test
+    public void lastModifiedAloneIsEnoughForA304() {
+        List<Article> first = QueryUtils.fetchArcticlesAppData(mUrl, mCache);
+        mCache.put(mUrl, first, null, LAST_MODIFIED);
+
+        List<Article> second = QueryUtils.fetchArcticlesAppData(mUrl, mCache);
+        assertEquals(304, mLastStatus);
+        assertEquals(first.size(), second.size());
+    }
+
+    @Test
+    public void closeBeforeTheEnd_drainsABoundedPart() throws IOException {
+        String url = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/large";
+        HttpTransport.Response response = new UrlConnectionTransport().get(url, new HashMap<String, String>());
+        assertTrue(response.getBody().read(new byte[16]) > 0);
+
+        response.close();
+        assertTrue(response.getBytesTransferred() <= UrlConnectionTransport.MAX_DRAIN_BYTES + 16 * 1024);
+    }
+
+    @Test
+    public void withoutCache_noValidatorsAreSent() {
+        QueryUtils.fetchArcticlesAppData(mUrl, mCache);
+        QueryUtils.fetchArcticlesAppData(mUrl);
+        assertEquals(200, mLastStatus);
+    }
+}